@@ -0,0 +1,185 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.benchmark;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.deidentifier.arx.kettle.rrm.DataBuffer;
+import org.deidentifier.arx.kettle.rrm.DataPayload;
+import org.deidentifier.arx.kettle.rrm.OperationDataTransformer;
+import org.deidentifier.arx.kettle.rrm.ParametersRisk;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+/**
+ * Synthetic datasets for benchmarking. Each row consists of a configurable number of
+ * quasi-identifiers, followed by two insensitive fields with unique values. Values of
+ * quasi-identifiers are drawn from a Zipf distribution over the given number of distinct
+ * values, a skew of 0 results in a uniform distribution. A fixed fraction of values is null.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class BenchmarkData {
+
+    /** Number of insensitive fields */
+    private static final int    NUM_INSENSITIVE = 2;
+
+    /** Fraction of null values in quasi-identifiers */
+    private static final double NULL_FRACTION   = 0.01d;
+
+    /** Seed */
+    private static final long   SEED            = 0xDEADBEEFL;
+
+    /** The header */
+    private final String[]      header;
+
+    /** The rows, as strings */
+    private final String[][]    rows;
+
+    /** The row meta */
+    private final RowMeta       meta;
+
+    /** The number of quasi-identifiers */
+    private final int           qis;
+
+    /**
+     * Creates a new dataset.
+     *
+     * @param rows
+     * @param qis
+     * @param cardinality Number of distinct values per quasi-identifier
+     * @param skew Exponent of the Zipf distribution
+     */
+    public BenchmarkData(int rows, int qis, int cardinality, double skew) {
+
+        // Prepare
+        this.qis = qis;
+        this.header = new String[qis + NUM_INSENSITIVE];
+        this.meta = new RowMeta();
+        for (int i = 0; i < header.length; i++) {
+            header[i] = i < qis ? "qi" + i : "field" + (i - qis);
+            meta.addValueMeta(new ValueMetaString(header[i]));
+        }
+
+        // Cumulative distribution
+        double[] cdf = new double[cardinality];
+        double sum = 0d;
+        for (int i = 0; i < cardinality; i++) {
+            sum += 1d / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < cardinality; i++) {
+            cdf[i] /= sum;
+        }
+
+        // Generate
+        Random random = new Random(SEED);
+        this.rows = new String[rows][header.length];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < qis; column++) {
+                if (random.nextDouble() < NULL_FRACTION) {
+                    this.rows[row][column] = null;
+                } else {
+                    int index = Arrays.binarySearch(cdf, random.nextDouble());
+                    this.rows[row][column] = "v" + (index >= 0 ? index : Math.min(-index - 1, cardinality - 1));
+                }
+            }
+            for (int column = qis; column < header.length; column++) {
+                this.rows[row][column] = header[column] + "-" + row;
+            }
+        }
+    }
+
+    /**
+     * Returns a buffer containing all rows, including their native representation.
+     *
+     * @return
+     * @throws Exception
+     */
+    public DataBuffer getBuffer() throws Exception {
+        OperationDataTransformer transformer = getTransformer();
+        DataBuffer buffer = new DataBuffer(transformer.getHeader());
+        buffer.setPayload(new DataPayload(meta));
+        for (Object[] row : getNativeRows()) {
+            transformer.read(buffer, row);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the header.
+     *
+     * @return
+     */
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the row meta.
+     *
+     * @return
+     */
+    public RowMetaInterface getMeta() {
+        return meta;
+    }
+
+    /**
+     * Returns the rows in Kettle's native representation.
+     *
+     * @return
+     */
+    public Object[][] getNativeRows() {
+        Object[][] result = new Object[rows.length][];
+        for (int row = 0; row < rows.length; row++) {
+            result[row] = rows[row].clone();
+        }
+        return result;
+    }
+
+    /**
+     * Returns risk thresholds for the quasi-identifiers.
+     *
+     * @return
+     */
+    public ParametersRisk getRisk() {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < qis; i++) {
+            result.add(header[i]);
+        }
+        return new ParametersRisk(result);
+    }
+
+    /**
+     * Returns a transformer for the dataset, which buffers the quasi-identifiers only.
+     *
+     * @return
+     */
+    public OperationDataTransformer getTransformer() {
+        int[] fieldIndexes = new int[this.qis];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            fieldIndexes[i] = i;
+        }
+        return new OperationDataTransformer(meta, fieldIndexes);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.kettle.rrm.DataSegmentReader;
+import org.deidentifier.arx.kettle.rrm.DataSegmentWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for spilling blocks of rows to disk, comparing the columnar segment format
+ * with Java serialization of string arrays.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataSegmentBenchmark {
+
+    /** Number of rows */
+    @Param({ "10000", "100000" })
+    private int        rows;
+
+    /** Number of quasi-identifiers */
+    @Param({ "2", "5" })
+    private int        qis;
+
+    /** Number of distinct values per quasi-identifier */
+    @Param({ "100" })
+    private int        cardinality;
+
+    /** Skew of the distribution of values */
+    @Param({ "0.0", "1.0" })
+    private double     skew;
+
+    /** Number of rows per block */
+    @Param({ "10000" })
+    private int        rowsPerBlock;
+
+    /** The header */
+    private String[]   header;
+
+    /** Whether columns are quasi-identifiers */
+    private boolean[]  flags;
+
+    /** The rows */
+    private String[][] input;
+
+    /** File which is written */
+    private File       target;
+
+    /** Segment file which is read */
+    private File       segment;
+
+    /** Serialized file which is read */
+    private File       serialized;
+
+    /**
+     * Creates the data and the files.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkData data = new BenchmarkData(rows, qis, cardinality, skew);
+        header = data.getHeader();
+        flags = new boolean[header.length];
+        for (int i = 0; i < qis; i++) {
+            flags[i] = true;
+        }
+        Object[][] rows = data.getNativeRows();
+        input = new String[rows.length][];
+        for (int row = 0; row < rows.length; row++) {
+            input[row] = new String[rows[row].length];
+            for (int column = 0; column < rows[row].length; column++) {
+                input[row][column] = (String) rows[row][column];
+            }
+        }
+        target = File.createTempFile("arx-benchmark-", ".tmp");
+        segment = File.createTempFile("arx-benchmark-", ".seg");
+        serialized = File.createTempFile("arx-benchmark-", ".ser");
+        writeSegment(segment);
+        writeSerialized(serialized);
+    }
+
+    /**
+     * Deletes the files.
+     */
+    @TearDown
+    public void tearDown() {
+        target.delete();
+        segment.delete();
+        serialized.delete();
+    }
+
+    /**
+     * Writes all rows in the segment format.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public long writeSegment() throws Exception {
+        writeSegment(target);
+        return target.length();
+    }
+
+    /**
+     * Writes all rows with Java serialization.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public long writeSerialized() throws Exception {
+        writeSerialized(target);
+        return target.length();
+    }
+
+    /**
+     * Reads all rows in the segment format.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public int readSegment() throws Exception {
+        int result = 0;
+        try (DataSegmentReader reader = new DataSegmentReader(segment)) {
+            for (int block = 0; block < reader.getNumBlocks(); block++) {
+                result += reader.read(block).size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads all rows with Java serialization.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public int readSerialized() throws Exception {
+        int result = 0;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(serialized), 1 << 16))) {
+            for (int row = 0; row < input.length; row++) {
+                result += ((String[]) in.readObject()).length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes all rows to the given file in the segment format.
+     *
+     * @param file
+     * @throws IOException
+     */
+    private void writeSegment(File file) throws IOException {
+        try (DataSegmentWriter writer = new DataSegmentWriter(file, header, flags, rowsPerBlock)) {
+            for (String[] row : input) {
+                writer.add(row);
+            }
+        }
+    }
+
+    /**
+     * Writes all rows to the given file with Java serialization. The stream is reset
+     * after each row, as otherwise all rows would be retained in memory.
+     *
+     * @param file
+     * @throws IOException
+     */
+    private void writeSerialized(File file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            for (String[] row : input) {
+                out.writeObject(row);
+                out.reset();
+            }
+        }
+    }
+}
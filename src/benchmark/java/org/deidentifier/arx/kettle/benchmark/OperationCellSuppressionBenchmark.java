@@ -0,0 +1,159 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.kettle.rrm.DataBuffer;
+import org.deidentifier.arx.kettle.rrm.DataSuppressionMask;
+import org.deidentifier.arx.kettle.rrm.OperationCellSuppression;
+import org.deidentifier.arx.kettle.rrm.OperationCellSuppressionTwoPass;
+import org.deidentifier.arx.kettle.rrm.ParametersRisk;
+import org.deidentifier.arx.kettle.rrm.ParametersRuntime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for cell suppression with ARX. Small blocks show the cost of preparing the
+ * anonymization, which is saved by reusing an operation for all blocks of a step. The setup
+ * of the configuration is also compared on its own, once created for each block and once
+ * cloned from the configuration prepared by a shared operation. Suppression for a size
+ * threshold only is benchmarked separately, as it does not use ARX.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OperationCellSuppressionBenchmark {
+
+    /** Number of rows */
+    @Param({ "100", "1000", "10000" })
+    private int               rows;
+
+    /** Number of quasi-identifiers */
+    @Param({ "2", "5" })
+    private int               qis;
+
+    /** Number of distinct values per quasi-identifier */
+    @Param({ "10", "100" })
+    private int               cardinality;
+
+    /** Skew of the distribution of values */
+    @Param({ "0.0", "1.0" })
+    private double            skew;
+
+    /** The data */
+    private DataBuffer        buffer;
+
+    /** The thresholds */
+    private ParametersRisk    risk;
+
+    /** The runtime settings */
+    private ParametersRuntime runtime;
+
+    /** The operation, reused across invocations */
+    private OperationCellSuppression operation;
+
+    /** The operation for a size threshold only */
+    private OperationCellSuppressionTwoPass twoPass;
+
+    /**
+     * Creates the data.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkData data = new BenchmarkData(rows, qis, cardinality, skew);
+        buffer = data.getBuffer();
+        risk = data.getRisk();
+        runtime = new ParametersRuntime();
+        operation = new OperationCellSuppression(risk, runtime);
+        ParametersRisk sizeOnly = risk.clone();
+        sizeOnly.setAverageRisk(1d);
+        sizeOnly.setRecordsAtRisk(0d);
+        twoPass = new OperationCellSuppressionTwoPass(sizeOnly);
+    }
+
+    /**
+     * Performs cell suppression, preparing the anonymization for each block.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public DataSuppressionMask perform() throws Exception {
+        return new OperationCellSuppression(risk, runtime).perform(buffer);
+    }
+
+    /**
+     * Performs cell suppression, reusing a prepared anonymization.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public DataSuppressionMask performReused() throws Exception {
+        return operation.perform(buffer);
+    }
+
+    /**
+     * Creates the configuration of a block from the parameters.
+     *
+     * @return
+     */
+    @Benchmark
+    public ARXConfiguration setupPerBlock() {
+        return OperationCellSuppression.createConfiguration(risk, runtime);
+    }
+
+    /**
+     * Clones the configuration of a block from the prepared configuration.
+     *
+     * @return
+     */
+    @Benchmark
+    public ARXConfiguration setupShared() {
+        return operation.getConfiguration();
+    }
+
+    /**
+     * Performs cell suppression for a size threshold only.
+     *
+     * @return
+     */
+    @Benchmark
+    public DataSuppressionMask performTwoPass() {
+        return twoPass.perform(buffer, null);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.kettle.rrm.DataBuffer;
+import org.deidentifier.arx.kettle.rrm.DataPayload;
+import org.deidentifier.arx.kettle.rrm.DataSuppressionMask;
+import org.deidentifier.arx.kettle.rrm.OperationDataTransformer;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.di.trans.step.BaseStep;
+
+/**
+ * Benchmarks for converting rows from and to Kettle's native representation.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OperationDataTransformerBenchmark {
+
+    /** Number of rows */
+    @Param({ "10000", "100000" })
+    private int                      rows;
+
+    /** Number of quasi-identifiers */
+    @Param({ "2", "5" })
+    private int                      qis;
+
+    /** Number of distinct values per quasi-identifier */
+    @Param({ "100" })
+    private int                      cardinality;
+
+    /** Skew of the distribution of values */
+    @Param({ "0.0", "1.0" })
+    private double                   skew;
+
+    /** Native input rows */
+    private Object[][]               input;
+
+    /** Buffer into which rows are read */
+    private DataBuffer               target;
+
+    /** Buffer from which rows are written */
+    private DataBuffer               source;
+
+    /** Result of the anonymization, all values retained */
+    private DataSuppressionMask      output;
+
+    /** The transformer */
+    private OperationDataTransformer transformer;
+
+    /** The step, discarding all rows */
+    private BaseStep                 step;
+
+    /**
+     * Creates the data.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkData data = new BenchmarkData(rows, qis, cardinality, skew);
+        input = data.getNativeRows();
+        transformer = data.getTransformer();
+        target = new DataBuffer(transformer.getHeader());
+        target.setPayload(new DataPayload(data.getMeta()));
+        source = data.getBuffer();
+        output = new DataSuppressionMask(source);
+        step = Mockito.mock(BaseStep.class, Mockito.withSettings().stubOnly());
+    }
+
+    /**
+     * Reads all rows.
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public int read() throws Exception {
+        target.clear();
+        for (Object[] row : input) {
+            transformer.read(target, row);
+        }
+        return target.getNumRows();
+    }
+
+    /**
+     * Writes all rows, based on the result of an anonymization.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public void write() throws Exception {
+        transformer.write(step, source, output, true);
+    }
+
+    /**
+     * Writes all rows unchanged, as done after an assessment.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public void writeUnchanged() throws Exception {
+        transformer.write(step, source, true);
+    }
+}
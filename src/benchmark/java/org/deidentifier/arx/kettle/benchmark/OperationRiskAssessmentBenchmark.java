@@ -0,0 +1,171 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.benchmark;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.kettle.rrm.DataBuffer;
+import org.deidentifier.arx.kettle.rrm.DataDictionary;
+import org.deidentifier.arx.kettle.rrm.OperationDataTransformer;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessment;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentIncremental;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentWildcard;
+import org.deidentifier.arx.kettle.rrm.ParametersRisk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for risk assessment of a buffer, incrementally, and of classes which have been encoded
+ * and counted before, with the wildcard matching only.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OperationRiskAssessmentBenchmark {
+
+    /** Number of rows */
+    @Param({ "10000", "100000" })
+    private int            rows;
+
+    /** Number of quasi-identifiers */
+    @Param({ "2", "5" })
+    private int            qis;
+
+    /** Number of distinct values per quasi-identifier */
+    @Param({ "10", "100" })
+    private int            cardinality;
+
+    /** Skew of the distribution of values */
+    @Param({ "0.0", "1.0" })
+    private double         skew;
+
+    /** The data */
+    private DataBuffer     buffer;
+
+    /** The thresholds */
+    private ParametersRisk risk;
+
+    /** The encoded classes */
+    private int[][]        codes;
+
+    /** The sizes of the classes */
+    private long[]         counts;
+
+    /** The code of the null value in each column */
+    private int[]          nulls;
+
+    /**
+     * Creates the data.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkData data = new BenchmarkData(rows, qis, cardinality, skew);
+        buffer = data.getBuffer();
+        risk = data.getRisk();
+
+        // Encode and count classes
+        DataDictionary[] dictionaries = new DataDictionary[qis];
+        for (int i = 0; i < qis; i++) {
+            dictionaries[i] = new DataDictionary();
+        }
+        Map<List<Integer>, Long> classes = new LinkedHashMap<>();
+        for (int row = 0; row < buffer.getNumRows(); row++) {
+            List<Integer> tuple = new ArrayList<>();
+            for (int i = 0; i < qis; i++) {
+                tuple.add(dictionaries[i].register(buffer.getValue(row, i)));
+            }
+            Long count = classes.get(tuple);
+            classes.put(tuple, count == null ? 1L : count + 1L);
+        }
+        codes = new int[classes.size()][qis];
+        counts = new long[classes.size()];
+        int index = 0;
+        for (Map.Entry<List<Integer>, Long> entry : classes.entrySet()) {
+            for (int i = 0; i < qis; i++) {
+                codes[index][i] = entry.getKey().get(i);
+            }
+            counts[index++] = entry.getValue();
+        }
+        nulls = new int[qis];
+        for (int i = 0; i < qis; i++) {
+            nulls[i] = dictionaries[i].getCode(OperationDataTransformer.MAGIC_NULL_VALUE);
+        }
+    }
+
+    /**
+     * Assesses risks of the buffer.
+     *
+     * @return
+     */
+    @Benchmark
+    public ParametersRisk calculate() {
+        return new OperationRiskAssessment(risk).calculate(buffer);
+    }
+
+    /**
+     * Assesses risks incrementally, including adding all rows.
+     *
+     * @return
+     */
+    @Benchmark
+    public ParametersRisk calculateIncremental() {
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(risk, buffer.getHeader());
+        Iterator<String[]> iterator = buffer.iterator();
+        iterator.next(); // Skip header
+        while (iterator.hasNext()) {
+            assessment.add(iterator.next());
+        }
+        return assessment.calculate();
+    }
+
+    /**
+     * Assesses risks of the encoded classes.
+     *
+     * @return
+     */
+    @Benchmark
+    public ParametersRisk calculateWildcard() {
+        OperationRiskAssessmentWildcard wildcard = new OperationRiskAssessmentWildcard(risk, nulls);
+        for (int i = 0; i < codes.length; i++) {
+            wildcard.add(codes[i], counts[i]);
+        }
+        return wildcard.calculate();
+    }
+}
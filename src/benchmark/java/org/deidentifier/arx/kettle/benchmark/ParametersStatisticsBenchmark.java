@@ -0,0 +1,105 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.kettle.rrm.DataBuffer;
+import org.deidentifier.arx.kettle.rrm.DataSuppressionMask;
+import org.deidentifier.arx.kettle.rrm.ParametersStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for collecting statistics about suppressed cells.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParametersStatisticsBenchmark {
+
+    /** Fraction of cells of quasi-identifiers which are suppressed */
+    private static final double SUPPRESSED = 0.1d;
+
+    /** Number of rows */
+    @Param({ "10000", "100000" })
+    private int                 rows;
+
+    /** Number of quasi-identifiers */
+    @Param({ "2", "5" })
+    private int                 qis;
+
+    /** Number of distinct values per quasi-identifier */
+    @Param({ "100" })
+    private int                 cardinality;
+
+    /** Skew of the distribution of values */
+    @Param({ "0.0", "1.0" })
+    private double              skew;
+
+    /** The output, with suppressed cells */
+    private DataSuppressionMask output;
+
+    /**
+     * Creates the data.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkData data = new BenchmarkData(rows, qis, cardinality, skew);
+        DataBuffer buffer = data.getBuffer();
+        output = new DataSuppressionMask(buffer);
+        Random random = new Random(0);
+        for (int row = 0; row < buffer.getNumRows(); row++) {
+            for (int i = 0; i < qis; i++) {
+                if (random.nextDouble() < SUPPRESSED) {
+                    output.suppress(row, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tracks suppressed cells.
+     *
+     * @return
+     */
+    @Benchmark
+    public double trackSuppressedCells() {
+        ParametersStatistics statistics = new ParametersStatistics();
+        statistics.trackSuppressedCells(output);
+        return statistics.getFractionOfSuppressedCells();
+    }
+}
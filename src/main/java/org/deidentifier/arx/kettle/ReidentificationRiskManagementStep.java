@@ -17,16 +17,48 @@
  */
 package org.deidentifier.arx.kettle;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.deidentifier.arx.kettle.rrm.BlockSizeController;
+import org.deidentifier.arx.kettle.rrm.DataBuffer;
+import org.deidentifier.arx.kettle.rrm.DataPartitioner;
+import org.deidentifier.arx.kettle.rrm.DataPayload;
+import org.deidentifier.arx.kettle.rrm.DataSuppressionMask;
+import org.deidentifier.arx.kettle.rrm.HierarchyCache;
+import org.deidentifier.arx.kettle.rrm.OperationBlockEmitter;
 import org.deidentifier.arx.kettle.rrm.OperationCellSuppression;
+import org.deidentifier.arx.kettle.rrm.OperationCellSuppressionCoordinator;
+import org.deidentifier.arx.kettle.rrm.OperationCellSuppressionTask;
+import org.deidentifier.arx.kettle.rrm.OperationCellSuppressionTwoPass;
+import org.deidentifier.arx.kettle.rrm.OperationClusterAggregation;
+import org.deidentifier.arx.kettle.rrm.OperationClusterNode;
 import org.deidentifier.arx.kettle.rrm.OperationDataTransformer;
-import org.deidentifier.arx.kettle.rrm.OperationRiskAssessment;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentIncremental;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentOffHeap;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentSample;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentWindow;
+import org.deidentifier.arx.kettle.rrm.ParametersMetrics;
 import org.deidentifier.arx.kettle.rrm.ParametersRisk;
+import org.deidentifier.arx.kettle.rrm.ParametersRuntime;
+import org.deidentifier.arx.kettle.rrm.ParametersRuntime.Emission;
+import org.deidentifier.arx.kettle.rrm.ParametersRuntime.Mode;
+import org.deidentifier.arx.kettle.rrm.ResultCache;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.logging.Metrics;
+import org.pentaho.di.core.metrics.MetricsSnapshotType;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -56,6 +88,21 @@ public class ReidentificationRiskManagementStep extends BaseStep implements Step
     /** The access variable to PDI's i18n system */
     private Class<?> PKG = ReidentificationRiskManagementStep.class;
 
+    /** Step metric */
+    private static final Metrics METRIC_ROWS          = new Metrics(MetricsSnapshotType.SUM, "RRM_ROWS", "Rows processed in blocks");
+    /** Step metric */
+    private static final Metrics METRIC_BUFFERING     = new Metrics(MetricsSnapshotType.SUM, "RRM_BUFFERING", "Time spent buffering rows (ms)");
+    /** Step metric */
+    private static final Metrics METRIC_PREPARATION   = new Metrics(MetricsSnapshotType.SUM, "RRM_PREPARATION", "Time spent preparing data for ARX (ms)");
+    /** Step metric */
+    private static final Metrics METRIC_ANONYMIZATION = new Metrics(MetricsSnapshotType.SUM, "RRM_ANONYMIZATION", "Time spent in the anonymizer (ms)");
+    /** Step metric */
+    private static final Metrics METRIC_OPTIMIZATION  = new Metrics(MetricsSnapshotType.SUM, "RRM_OPTIMIZATION", "Time spent optimizing results (ms)");
+    /** Step metric */
+    private static final Metrics METRIC_WRITING       = new Metrics(MetricsSnapshotType.SUM, "RRM_WRITING", "Time spent writing rows (ms)");
+    /** Step metric */
+    private static final Metrics METRIC_BUFFER_SIZE   = new Metrics(MetricsSnapshotType.MAX, "RRM_BUFFER_SIZE", "Estimated size of a block (bytes)");
+
     /**
      * The constructor should simply pass on its arguments to the parent class.
      * 
@@ -93,7 +140,7 @@ public class ReidentificationRiskManagementStep extends BaseStep implements Step
         
         // Casting to step-specific implementation classes is safe
         ReidentificationRiskManagementStepMeta meta = (ReidentificationRiskManagementStepMeta) smi;
-        ReidentificationRiskManagementStepData data = (ReidentificationRiskManagementStepData) sdi;
+        final ReidentificationRiskManagementStepData data = (ReidentificationRiskManagementStepData) sdi;
         if ( !super.init( meta, data ) ) {
           return false;
         }
@@ -101,6 +148,102 @@ public class ReidentificationRiskManagementStep extends BaseStep implements Step
         // Initialize the StepData object.
         data.init();
 
+        // Create the hierarchy cache, if there may be several blocks or partitions
+        if (meta.getRuntimeSettings().getMode() == Mode.ANONYMIZE && (meta.getRuntimeSettings().doRowBlocking() || meta.getRuntimeSettings().doPartitioning()) && meta.getRuntimeSettings().getHierarchyCacheSize() > 0) {
+            data.setHierarchies(new HierarchyCache(meta.getRuntimeSettings().getHierarchyCacheSize()));
+        }
+
+        // Open the result cache, if configured
+        if (meta.getRuntimeSettings().getMode() == Mode.ANONYMIZE && meta.getRuntimeSettings().doResultCaching()) {
+            try {
+                data.setResults(new ResultCache(getResultCacheDirectory(meta.getRuntimeSettings()), meta.getRuntimeSettings().getResultCacheSize() * 1024L * 1024L,
+                                                meta.getRiskSettings(), meta.getRuntimeSettings()));
+            } catch (IOException e) {
+                logError(e.getMessage(), e);
+                return false;
+            }
+        }
+
+        // Prepare the anonymization, which is shared by all blocks and partitions
+        if (meta.getRuntimeSettings().getMode() == Mode.ANONYMIZE) {
+            data.setAnonymization(new OperationCellSuppression(meta.getRiskSettings(), meta.getRuntimeSettings(), data.getHierarchies(), data.getResults()));
+        }
+
+        // Aggregate classes across the slave servers of a cluster, if configured and running clustered.
+        // The first copy across all slave servers hosts the aggregation. Otherwise, share classes with
+        // the other copies of the step, if configured.
+        if (isClustered(meta)) {
+            if (meta.getRuntimeSettings().getMode() == Mode.ANONYMIZE && !OperationCellSuppressionTwoPass.isSupported(meta.getRiskSettings())) {
+                logError(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.ClusterAggregationUnsupported"));
+                return false;
+            }
+            if (getUniqueStepNrAcrossSlaves() == 0) {
+                OperationClusterAggregation aggregation = new OperationClusterAggregation(meta.getRiskSettings(), getUniqueStepCountAcrossSlaves(),
+                                                                                          meta.getRuntimeSettings().getCoordinationTimeout());
+                try {
+                    aggregation.start(meta.getRuntimeSettings().getAggregationPort());
+                } catch (IOException e) {
+                    logError(e.getMessage(), e);
+                    return false;
+                }
+                data.setAggregation(aggregation);
+                logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.ClusterAggregation", getUniqueStepCountAcrossSlaves(),
+                                                String.valueOf(aggregation.getPort())));
+            }
+        } else if (meta.getRuntimeSettings().doCoordination() && getStepMeta().getCopies() > 1) {
+            data.setCoordinator(OperationCellSuppressionCoordinator.get(getTrans().getLogChannelId() + "/" + getStepname(),
+                                                                        getStepMeta().getCopies(), meta.getRiskSettings(), meta.getRuntimeSettings()));
+        }
+
+        // Adapt the block size, if configured
+        if (meta.getRuntimeSettings().doAdaptiveBlocking() && !meta.getRuntimeSettings().doPartitioning()) {
+            data.setBlockSizes(new BlockSizeController(meta.getRuntimeSettings().getBlockSize(), meta.getRuntimeSettings().getMinBlockSize(),
+                                                       meta.getRuntimeSettings().getMaxBlockSize(), meta.getRuntimeSettings().getTargetLatency()));
+        }
+
+        // Start the workers, if blocks or partitions are anonymized in parallel
+        if (meta.getRuntimeSettings().getMode() == Mode.ANONYMIZE && meta.getRuntimeSettings().doParallelProcessing()) {
+            data.setWorkers(Executors.newFixedThreadPool(meta.getRuntimeSettings().getNumWorkers(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, getStepname() + " - worker " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }));
+        }
+
+        // Emit blocks on a dedicated thread, if configured
+        if (meta.getRuntimeSettings().doEmitterThread()) {
+            boolean ordered = meta.getRuntimeSettings().getEmission() == Emission.EMITTER_IN_ORDER;
+            data.setEmitter(new OperationBlockEmitter(data.getWorkers(), ordered, new OperationBlockEmitter.Sink() {
+                @Override
+                public void emit(OperationCellSuppressionTask task) throws KettleException {
+                    emitBlock(data, task);
+                }
+            }, getStepname() + " - emitter"));
+        }
+
+        // Separate the hop to the metrics step from regular output
+        if (meta.getRuntimeSettings().doMetricsOutput()) {
+            RowSet rowSet;
+            try {
+                rowSet = findOutputRowSet(meta.getRuntimeSettings().getMetricsStep().trim());
+            } catch (KettleStepException e) {
+                logError(e.getMessage(), e);
+                return false;
+            }
+            if (rowSet == null) {
+                logError(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.MetricsStep.ERROR", meta.getRuntimeSettings().getMetricsStep()));
+                return false;
+            }
+            getOutputRowSets().remove(rowSet);
+            data.setMetricsRowSet(rowSet);
+            data.setMetricsRowMeta(meta.getRuntimeSettings().getMode() == Mode.MONITOR ? OperationRiskAssessmentWindow.getRowMeta(getStepname())
+                                                                                     : ParametersMetrics.getRowMeta(getStepname()));
+        }
+
         return true;
     }
 
@@ -133,51 +276,112 @@ public class ReidentificationRiskManagementStep extends BaseStep implements Step
         
         // Get incoming row, getRow() potentially blocks waiting for more rows, returns null if no more rows expected
         Object[] r = getRow();
+
+        // Rows are passed on immediately in MONITOR mode
+        if (stepMeta.getRuntimeSettings().getMode() == Mode.MONITOR) {
+            return processRowMonitor(stepMeta, stepData, r);
+        }
+
+        // Rows are anonymized or assessed together with the rows of the copies on all slave servers once all rows have been read
+        if (isClustered(stepMeta)) {
+            return processRowClustered(stepMeta, stepData, r);
+        }
+
+        // Rows are partitioned and anonymized once all rows have been read
+        if (stepMeta.getRuntimeSettings().doPartitioning()) {
+            return processRowPartitioned(stepMeta, stepData, r);
+        }
+
+        // Rows are anonymized together with the rows of the other copies once all rows have been read
+        if (stepData.getCoordinator() != null) {
+            return processRowCoordinated(stepMeta, stepData, r);
+        }
         
-        // Handle empty input
-        if (r == null && stepData.getBuffer().isEmpty()) {
+        // Handle empty input, or an empty buffer after the last block
+        if (r == null && (stepData.getBuffer() == null || stepData.getBuffer().isEmpty())) {
+            emitBlocks(stepData, 0);
+            setOutputDone(stepData);
             return false;
         }
 
         // If no more rows are expected, indicate step is finished and processRow() should not be called again
-        if (r == null || (stepMeta.getRuntimeSettings().doRowBlocking() && stepMeta.getRuntimeSettings().getBlockSize() == stepData.getBuffer().size())) {
+        if (r == null || (stepData.getBuffer() != null && isBlockComplete(stepMeta, stepData, stepData.getBuffer()))) {
+            if (stepData.getBuffer().getNumSegments() > 0) {
+                logDetailed(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.NumSegmentsSpilled", stepData.getBuffer().getNumSegments()));
+            }
+            ParametersMetrics metrics = stepData.finishMetrics();
+            metrics.trackBuffer(stepData.getBuffer());
             switch (stepMeta.getRuntimeSettings().getMode()) {
             case ANONYMIZE:
-                OperationCellSuppression op = new OperationCellSuppression(stepMeta.getRiskSettings(), stepMeta.getRuntimeSettings());
-                List<String[]> output = op.perform(stepData.getBuffer());
-                stepData.getStatistics().trackSuppressedCells(stepData.getBuffer(), output);
-                new OperationDataTransformer().write(this, output, true, stepData);
+                anonymizeBlock(stepMeta, stepData, stepData.getBuffer(), metrics);
+                if (stepData.getWorkers() != null) {
+                    // Continue reading while the workers anonymize the block. Blocks are emitted in input order,
+                    // unless configured otherwise, reading is paused while the maximal number of blocks is in flight.
+                    DataBuffer free = stepData.getFreeBuffers().poll();
+                    stepData.setBuffer(free != null ? free : createBuffer(stepMeta.getRuntimeSettings(), stepData, 1));
+                    emitBlocks(stepData, r == null ? 0 : Math.max(1, stepMeta.getRuntimeSettings().getQueueDepth()) - 1);
+                }
 
                 // Done
                 if (r == null) {
                     logBasic("Fraction of suppressed cells: " + stepData.getStatistics().getFractionOfSuppressedCells());
-                    setOutputDone();
+                    setOutputDone(stepData);
                     return false;
                 }
                 break;
             case ASSESS:
-                OperationRiskAssessment assessment = new OperationRiskAssessment(stepMeta.getRiskSettings());
-                ParametersRisk risk = assessment.calculate(stepData.getBuffer());
-                stepData.getStatistics().trackRisks(risk, stepData.getBuffer().size()-1);
+                ParametersRisk risk = estimateRisks(stepData);
+                if (risk == null && stepData.getCounts() != null) {
+                    if (stepData.getCounts().getNumSpills() > 0) {
+                        logDetailed(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.NumClassSpills", stepData.getCounts().getNumSpills()));
+                    }
+                    risk = stepData.getCounts().calculate();
+                } else if (risk == null) {
+                    if (stepData.getSample() != null) { // Classes are only built if the estimate is inconclusive
+                        long time = System.nanoTime();
+                        DataPayload payload = stepData.getBuffer().getPayload();
+                        for (int row = 0; row < payload.size(); row++) {
+                            stepData.getAssessment().add(stepData.getTransformer().read(payload.get(row)));
+                        }
+                        metrics.trackBuffering(System.nanoTime() - time);
+                    }
+                    risk = stepData.getAssessment().calculate();
+                }
+                stepData.getStatistics().trackRisks(risk, stepData.getBuffer().getNumRows());
 
                 if (!risk.satisfies(stepMeta.getRiskSettings())) { // Check if risks are fulfilled
                     String errorMessage = BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.InvalidThreshold");
                     logError(errorMessage);
 
                     if (getStepMeta().isDoingErrorHandling()) {
-                        new OperationDataTransformer().write(this, stepData.getBuffer(), false, stepData); // HS
+                        long time = System.nanoTime();
+                        stepData.getTransformer().write(this, stepData.getBuffer(), false); // HS
+                        metrics.trackWriting(System.nanoTime() - time);
                         //                            for (Object[] rowForNextStep : rowBuffer) {
                         putError(getInputRowMeta(), r, 1, errorMessage, null, "RiskThresholds001");
                         //                            }
                     } else {
                         setErrors(1);
                         stopAll();
-                        setOutputDone(); // signal end to receiver(s)
+                        setOutputDone(stepData); // signal end to receiver(s)
                         return false;
                     }
                 } else {
-                    new OperationDataTransformer().write(this, stepData.getBuffer(), true, stepData); // HS
+                    long time = System.nanoTime();
+                    stepData.getTransformer().write(this, stepData.getBuffer(), true); // HS
+                    metrics.trackWriting(System.nanoTime() - time);
+                }
+                stepData.getBuffer().clear();
+                if (stepData.getAssessment() != null) {
+                    stepData.getAssessment().clear();
+                }
+                if (stepData.getCounts() != null) {
+                    stepData.getCounts().clear();
+                }
+                if (stepData.getSample() != null) {
+                    stepData.getSample().clear();
                 }
+                putMetrics(stepData, metrics);
 
                 // Done
                 if (r == null) {
@@ -187,7 +391,7 @@ public class ReidentificationRiskManagementStep extends BaseStep implements Step
                             + risk.getAverageRisk());
                     log.logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.RecordsAtRisk") + " = "
                             + risk.getRecordsAtRisk());
-                    setOutputDone();
+                    setOutputDone(stepData);
                     return false;
                 }
             }
@@ -199,36 +403,35 @@ public class ReidentificationRiskManagementStep extends BaseStep implements Step
         if (first) {
             first = false;
            
-            // Clone the input row structure and place it in our data object. As the row structure
-            // is not changed by our plugin, a subsequent call getFields() isn't necessary
-            stepData.setOutputRowMeta(getInputRowMeta().clone());
-            
-            // Check if at least one QI is specified
-            if (stepMeta.getRiskSettings().getQis().size() < 1) {                
-                throw new KettleException((BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.QiNecessary")));
-            }
-            
-            // For each defined QI field, if it really exists in input
-            Set<String> fieldsFromInputStream = new HashSet<String>(Arrays.asList(stepData.getOutputRowMeta().getFieldNames()));
-            for (String qi : stepMeta.getRiskSettings().getQis()) {
-                if (!fieldsFromInputStream.contains(qi)) {
-                    throw new KettleException((BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.QiNotInFields")) +  ": '" + qi + "'");
-                }
-            }
-            
-            // Initialize the field indexes
-            for (String field : stepData.getOutputRowMeta().getFieldNames()) {
-                int actualIndex = stepData.getOutputRowMeta().indexOfValue(field);
-                stepData.getFieldIndexes().add(actualIndex);
-                if (actualIndex < 0) {
-                    throw new KettleException(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.FieldNotFound: " + field));
+            initialize(stepMeta, stepData);
+            stepData.setBuffer(createBuffer(stepMeta.getRuntimeSettings(), stepData, 1)); // The header is needed by ARX
+            if (stepMeta.getRuntimeSettings().doOffHeapCounting()) { // Risks are assessed while rows arrive, classes are counted off-heap
+                stepData.setCounts(new OperationRiskAssessmentOffHeap(stepMeta.getRiskSettings(), stepData.getTransformer().getHeader(),
+                                                                      stepMeta.getRuntimeSettings().getClassTableSize() * 1024L * 1024L,
+                                                                      getSpillDirectory(stepMeta.getRuntimeSettings())));
+            } else if (stepMeta.getRuntimeSettings().getMode() == Mode.ASSESS) { // Risks are assessed while rows arrive
+                stepData.setAssessment(new OperationRiskAssessmentIncremental(stepMeta.getRiskSettings(), stepData.getTransformer().getHeader()));
+                if (stepMeta.getRuntimeSettings().doSampling()) { // Risks are pre-assessed on a sample
+                    stepData.setSample(new OperationRiskAssessmentSample(stepMeta.getRiskSettings(), stepData.getTransformer().getHeader(),
+                                                                         stepMeta.getRuntimeSettings().getSampleSize(),
+                                                                         stepMeta.getRuntimeSettings().getConfidenceLevel()));
                 }
             }
-            stepData.getBuffer().add(stepData.getOutputRowMeta().getFieldNames());      // Ad the header to the payload; needed by ARX
-            stepData.getBuffer().add(new OperationDataTransformer().read(stepData, r)); // Also add the first row!
-        } else { // Convert and buffer data
-            if (r != null) {
-                stepData.getBuffer().add(new OperationDataTransformer().read(stepData, r));
+        }
+
+        // Convert and buffer data
+        if (r != null) {
+            ParametersMetrics metrics = stepData.getMetrics() != null ? stepData.getMetrics() : stepData.startMetrics();
+            long time = System.nanoTime();
+            String[] row = stepMeta.getRuntimeSettings().getMode() == Mode.ASSESS ? stepData.getTransformer().readNative(stepData.getBuffer(), r)
+                                                                                 : stepData.getTransformer().read(stepData.getBuffer(), r);
+            metrics.trackBuffering(System.nanoTime() - time);
+            if (stepData.getSample() != null) {
+                stepData.getSample().add(row);
+            } else if (stepData.getAssessment() != null) {
+                stepData.getAssessment().add(row);
+            } else if (stepData.getCounts() != null) {
+                stepData.getCounts().add(row);
             }
         }
       // Log progress if it is time to to so
@@ -240,6 +443,494 @@ public class ReidentificationRiskManagementStep extends BaseStep implements Step
       return true;
     }
 
+    /**
+     * Processes a row in MONITOR mode. Rows are passed on immediately, while risks are
+     * assessed for a sliding window over the stream. A risk snapshot is taken each time
+     * the configured number of rows has been added, and once more at the end of the stream.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @param r
+     * @return true to indicate that the function should be called again, false if the step is done
+     * @throws KettleException
+     */
+    private boolean processRowMonitor(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData, Object[] r) throws KettleException {
+
+        // Done
+        int interval = Math.max(1, stepMeta.getRuntimeSettings().getSnapshotInterval());
+        if (r == null) {
+            if (stepData.getWindow() != null && stepData.getWindow().getNumRows() % interval != 0) {
+                ParametersRisk risk = putSnapshot(stepMeta, stepData, stepData.getWindow().getNumRows() % interval);
+                log.logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.AverageRisk") + " = "
+                        + risk.getAverageRisk());
+                log.logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.RecordsAtRisk") + " = "
+                        + risk.getRecordsAtRisk());
+            }
+            setOutputDone(stepData);
+            return false;
+        }
+
+        // Prepare
+        if (first) {
+            first = false;
+            initialize(stepMeta, stepData);
+            stepData.setWindow(new OperationRiskAssessmentWindow(stepMeta.getRiskSettings(),
+                                                                 stepData.getTransformer().getHeader(),
+                                                                 Math.max(1, stepMeta.getRuntimeSettings().getWindowSize()),
+                                                                 stepMeta.getRuntimeSettings().getWindowDuration()));
+        }
+
+        // Assess and pass on
+        stepData.getWindow().add(stepData.getTransformer().read(r));
+        putRow(stepData.getOutputRowMeta(), r);
+        if (stepData.getWindow().getNumRows() % interval == 0) {
+            putSnapshot(stepMeta, stepData, interval);
+        }
+
+        // Log progress if it is time to to so
+        if (checkFeedback(getLinesRead())) {
+            logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.NumLinesProcessed", getLinesRead()));
+        }
+        return true;
+    }
+
+    /**
+     * Processes a row in ANONYMIZE mode with partitioning. Rows are assigned to partitions
+     * by the values of the partition fields, so that each equivalence class is contained in
+     * exactly one partition. Null values are hashed like any other value, as described in
+     * DataPartitioner. Once all rows have been read, partitions are anonymized
+     * independently of each other, in parallel if workers are configured. Rows are emitted
+     * grouped by partition.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @param r
+     * @return true to indicate that the function should be called again, false if the step is done
+     * @throws KettleException
+     */
+    private boolean processRowPartitioned(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData, Object[] r) throws KettleException {
+
+        // Done
+        if (r == null) {
+            if (stepData.getPartitions() != null) {
+                for (int i = 0; i < stepData.getPartitions().length; i++) {
+                    DataBuffer partition = stepData.getPartitions()[i];
+                    if (!partition.isEmpty()) {
+                        ParametersMetrics metrics = stepData.getPartitionMetrics()[i];
+                        metrics.trackBuffer(partition);
+                        anonymizeBlock(stepMeta, stepData, partition, metrics);
+                    }
+                }
+                emitBlocks(stepData, 0);
+                logBasic("Fraction of suppressed cells: " + stepData.getStatistics().getFractionOfSuppressedCells());
+            }
+            setOutputDone(stepData);
+            return false;
+        }
+
+        // Prepare
+        if (first) {
+            first = false;
+            initialize(stepMeta, stepData);
+            for (String field : stepMeta.getRuntimeSettings().getPartitionFieldList()) {
+                if (!stepMeta.getRiskSettings().isQi(field)) {
+                    throw new KettleException(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.PartitionFieldNotQi") + ": '" + field + "'");
+                }
+            }
+            int numPartitions = Math.max(1, stepMeta.getRuntimeSettings().getNumPartitions());
+            DataBuffer[] partitions = new DataBuffer[numPartitions];
+            ParametersMetrics[] metrics = new ParametersMetrics[numPartitions];
+            for (int i = 0; i < numPartitions; i++) {
+                partitions[i] = createBuffer(stepMeta.getRuntimeSettings(), stepData, numPartitions);
+                metrics[i] = new ParametersMetrics(i + 1);
+            }
+            stepData.setPartitioner(new DataPartitioner(stepData.getTransformer().getHeader(), stepMeta.getRuntimeSettings().getPartitionFieldList(), numPartitions));
+            stepData.setPartitions(partitions);
+            stepData.setPartitionMetrics(metrics);
+        }
+
+        // Convert and buffer data. A partition which has reached the maximal number of cells is anonymized
+        // as a separate block, as its classes cannot be kept together anyway.
+        long time = System.nanoTime();
+        String[] row = stepData.getTransformer().read(r);
+        int partition = stepData.getPartitioner().getPartition(row);
+        if (stepData.getPartitions()[partition].isFull()) {
+            flushPartition(stepMeta, stepData, partition);
+        }
+        stepData.getTransformer().append(stepData.getPartitions()[partition], row, r);
+        stepData.getPartitionMetrics()[partition].trackBuffering(System.nanoTime() - time);
+
+        // Log progress if it is time to to so
+        if (checkFeedback(getLinesRead())) {
+            logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.NumLinesProcessed", getLinesRead()));
+        }
+        return true;
+    }
+
+    /**
+     * Anonymizes a partition which has reached the maximal number of cells as a separate block, and
+     * continues with an empty buffer for the partition.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @param partition
+     * @throws KettleException
+     */
+    private void flushPartition(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData, int partition) throws KettleException {
+        logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.PartitionFull", partition + 1, DataBuffer.MAX_CELLS));
+        DataBuffer buffer = stepData.getPartitions()[partition];
+        ParametersMetrics metrics = stepData.getPartitionMetrics()[partition];
+        metrics.trackBuffer(buffer);
+        anonymizeBlock(stepMeta, stepData, buffer, metrics);
+        if (stepData.getWorkers() != null) {
+            DataBuffer free = stepData.getFreeBuffers().poll();
+            stepData.getPartitions()[partition] = free != null ? free : createBuffer(stepMeta.getRuntimeSettings(), stepData, stepData.getPartitions().length);
+            emitBlocks(stepData, Math.max(1, stepMeta.getRuntimeSettings().getQueueDepth()) - 1);
+        }
+        stepData.getPartitionMetrics()[partition] = new ParametersMetrics(metrics.getBlock());
+    }
+
+    /**
+     * Processes a row in ANONYMIZE mode with several coordinated copies of the step. Each copy buffers
+     * all of its rows. Once its input is exhausted, the rows are handed over to the coordinator, which
+     * assesses the classes of all copies together, so that suppression decisions are consistent across
+     * copies. Copies which do not receive any rows take part as well, as the others wait for them.
+     * As the rows of a copy are anonymized together, the step fails if they exceed the maximal number
+     * of cells of a buffer.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @param r
+     * @return true to indicate that the function should be called again, false if the step is done
+     * @throws KettleException
+     */
+    private boolean processRowCoordinated(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData, Object[] r) throws KettleException {
+
+        // Done
+        if (r == null) {
+            DataBuffer buffer = stepData.getBuffer();
+            ParametersMetrics metrics = buffer != null ? stepData.finishMetrics() : null;
+            if (metrics != null) {
+                metrics.trackBuffer(buffer);
+            }
+            DataSuppressionMask output = stepData.getCoordinator().perform(getCopy(), buffer, stepData.getAnonymization(), metrics);
+            if (output != null) {
+                int fields = stepData.getTransformer().getNumFields();
+                metrics.trackSuppressedCells(stepData.getStatistics().trackSuppressedCells(output, fields), metrics.getRows() * fields);
+                long time = System.nanoTime();
+                stepData.getTransformer().write(this, buffer, output, true);
+                metrics.trackWriting(System.nanoTime() - time);
+                buffer.clear();
+                putMetrics(stepData, metrics);
+                logBasic("Fraction of suppressed cells: " + stepData.getStatistics().getFractionOfSuppressedCells());
+            }
+            setOutputDone(stepData);
+            return false;
+        }
+
+        // Prepare
+        if (first) {
+            first = false;
+            initialize(stepMeta, stepData);
+            stepData.setBuffer(createBuffer(stepMeta.getRuntimeSettings(), stepData, 1));
+        }
+
+        // Convert and buffer data
+        ParametersMetrics metrics = stepData.getMetrics() != null ? stepData.getMetrics() : stepData.startMetrics();
+        long time = System.nanoTime();
+        if (stepData.getBuffer().isFull()) {
+            throw new KettleException(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.CoordinationBufferFull", DataBuffer.MAX_CELLS));
+        }
+        stepData.getTransformer().read(stepData.getBuffer(), r);
+        metrics.trackBuffering(System.nanoTime() - time);
+        stepData.getCoordinator().progress();
+
+        // Log progress if it is time to to so
+        if (checkFeedback(getLinesRead())) {
+            logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.NumLinesProcessed", getLinesRead()));
+        }
+        return true;
+    }
+
+    /**
+     * Processes a row when running clustered, with classes aggregated across the slave servers. Each copy
+     * buffers all of its rows and summarizes their classes. Once its input is exhausted, the summary is sent
+     * to the aggregation, which returns the risks of the rows of all copies and, in ANONYMIZE mode, the tuples
+     * to suppress. These are applied to the rows of this copy, so that suppression decisions are the same as
+     * if a single copy had processed all rows. Copies which do not receive any rows take part as well, as the
+     * others wait for them. As in coordinated mode, the step fails if the rows exceed the maximal number of
+     * cells of a buffer.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @param r
+     * @return true to indicate that the function should be called again, false if the step is done
+     * @throws KettleException
+     */
+    private boolean processRowClustered(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData, Object[] r) throws KettleException {
+
+        // Done
+        if (r == null) {
+            DataBuffer buffer = stepData.getBuffer();
+            ParametersMetrics metrics = buffer != null ? stepData.finishMetrics() : null;
+            if (metrics != null) {
+                metrics.trackBuffer(buffer);
+            }
+
+            // Exchange the summary for the results of all copies
+            OperationClusterNode node = stepData.getNode() != null ? stepData.getNode() : new OperationClusterNode(stepMeta.getRiskSettings(), new String[0]);
+            String host = environmentSubstitute(stepMeta.getRuntimeSettings().getAggregationHost());
+            int port = stepMeta.getRuntimeSettings().getAggregationPort();
+            try {
+                node.exchange(host, port, stepMeta.getRuntimeSettings().getCoordinationTimeout());
+            } catch (IOException e) {
+                throw new KettleException(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.ClusterAggregationFailed", host, String.valueOf(port), e.getMessage()), e);
+            }
+            ParametersRisk risk = node.getRisk();
+            logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.ClusterRisks", risk.getAverageRisk(),
+                                            risk.getRecordsAtRisk(), node.getSuppressions().size()));
+
+            // Apply the results to the rows of this copy
+            if (buffer != null && !buffer.isEmpty()) {
+                if (stepMeta.getRuntimeSettings().getMode() == Mode.ANONYMIZE) {
+                    long time = System.nanoTime();
+                    DataSuppressionMask output = node.apply(buffer);
+                    metrics.trackAnonymization(System.nanoTime() - time);
+                    int fields = stepData.getTransformer().getNumFields();
+                    metrics.trackSuppressedCells(stepData.getStatistics().trackSuppressedCells(output, fields), metrics.getRows() * fields);
+                    time = System.nanoTime();
+                    stepData.getTransformer().write(this, buffer, output, true);
+                    metrics.trackWriting(System.nanoTime() - time);
+                    logBasic("Fraction of suppressed cells: " + stepData.getStatistics().getFractionOfSuppressedCells());
+                } else {
+                    stepData.getStatistics().trackRisks(risk, buffer.getNumRows());
+                    boolean satisfied = risk.satisfies(stepMeta.getRiskSettings());
+                    if (!satisfied) {
+                        logError(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.InvalidThreshold"));
+                        if (!getStepMeta().isDoingErrorHandling()) {
+                            buffer.clear();
+                            setErrors(1);
+                            stopAll();
+                            setOutputDone(stepData);
+                            return false;
+                        }
+                    }
+                    long time = System.nanoTime();
+                    stepData.getTransformer().write(this, buffer, satisfied);
+                    metrics.trackWriting(System.nanoTime() - time);
+                }
+                buffer.clear();
+                putMetrics(stepData, metrics);
+            }
+            setOutputDone(stepData);
+            return false;
+        }
+
+        // Prepare
+        if (first) {
+            first = false;
+            initialize(stepMeta, stepData);
+            stepData.setBuffer(createBuffer(stepMeta.getRuntimeSettings(), stepData, 1));
+            stepData.setNode(new OperationClusterNode(stepMeta.getRiskSettings(), stepData.getTransformer().getHeader()));
+        }
+
+        // Convert, buffer and summarize data
+        ParametersMetrics metrics = stepData.getMetrics() != null ? stepData.getMetrics() : stepData.startMetrics();
+        long time = System.nanoTime();
+        String[] row;
+        if (stepMeta.getRuntimeSettings().getMode() == Mode.ASSESS) {
+            row = stepData.getTransformer().readNative(stepData.getBuffer(), r);
+        } else if (stepData.getBuffer().isFull()) {
+            throw new KettleException(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.CoordinationBufferFull", DataBuffer.MAX_CELLS));
+        } else {
+            row = stepData.getTransformer().read(stepData.getBuffer(), r);
+        }
+        stepData.getNode().add(row);
+        metrics.trackBuffering(System.nanoTime() - time);
+
+        // Log progress if it is time to to so
+        if (checkFeedback(getLinesRead())) {
+            logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.NumLinesProcessed", getLinesRead()));
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the risks of the current block from the sample, if configured. The estimate is logged
+     * and returned if its confidence intervals allow to decide whether the thresholds are satisfied.
+     * 
+     * @param stepData
+     * @return The estimate, null if the risks must be calculated exactly
+     */
+    private ParametersRisk estimateRisks(ReidentificationRiskManagementStepData stepData) {
+        OperationRiskAssessmentSample sample = stepData.getSample();
+        if (sample == null) {
+            return null;
+        }
+        ParametersRisk estimate = sample.estimate();
+        logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.RiskEstimate", sample.getNumSampledRows(),
+                                        estimate.getAverageRisk(), sample.getLowerBounds().getAverageRisk(), sample.getUpperBounds().getAverageRisk(),
+                                        estimate.getRecordsAtRisk(), sample.getLowerBounds().getRecordsAtRisk(), sample.getUpperBounds().getRecordsAtRisk()));
+        if (sample.isConclusive()) {
+            return estimate;
+        }
+        logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.RiskEstimateInconclusive"));
+        return null;
+    }
+
+    /**
+     * Anonymizes a block or partition. If workers are configured, the block is handed over to them
+     * and emitted later on, by the step thread or the emitter thread. Otherwise, it is anonymized and
+     * emitted right away, and cleared afterwards.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @param buffer
+     * @param metrics
+     * @throws KettleException
+     */
+    private void anonymizeBlock(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData, DataBuffer buffer, ParametersMetrics metrics) throws KettleException {
+        if (stepData.getEmitter() != null) {
+            stepData.getEmitter().submit(new OperationCellSuppressionTask(stepData.getAnonymization(), buffer, metrics));
+        } else if (stepData.getWorkers() != null) {
+            OperationCellSuppressionTask task = new OperationCellSuppressionTask(stepData.getAnonymization(), buffer, metrics);
+            task.submit(stepData.getWorkers());
+            stepData.getPending().add(task);
+        } else {
+            DataSuppressionMask output = stepData.getAnonymization().perform(buffer, metrics);
+            int fields = stepData.getTransformer().getNumFields();
+            metrics.trackSuppressedCells(stepData.getStatistics().trackSuppressedCells(output, fields), metrics.getRows() * fields);
+            long time = System.nanoTime();
+            stepData.getTransformer().write(this, buffer, output, true);
+            metrics.trackWriting(System.nanoTime() - time);
+            buffer.clear();
+            putMetrics(stepData, metrics);
+            adaptBlockSize(stepData, metrics);
+        }
+    }
+
+    /**
+     * Adapts the block size to the metrics of a block which has been anonymized, if configured.
+     * Each decision is logged.
+     * 
+     * @param stepData
+     * @param metrics
+     */
+    private void adaptBlockSize(ReidentificationRiskManagementStepData stepData, ParametersMetrics metrics) {
+        BlockSizeController controller = stepData.getBlockSizes();
+        if (controller != null) {
+            int previous = controller.getBlockSize();
+            int next = controller.update(metrics);
+            logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.BlockSize", metrics.getBlock(), previous, next, controller.getReason()));
+        }
+    }
+
+    /**
+     * Returns the number of rows after which the current block is complete.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @return
+     */
+    private int getBlockSize(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData) {
+        return stepData.getBlockSizes() != null ? stepData.getBlockSizes().getBlockSize() : stepMeta.getRuntimeSettings().getBlockSize();
+    }
+
+    /**
+     * Returns whether the given buffer holds a complete block. Without row blocking, this is only
+     * the case once the buffer is full, as the number of cells of a block is limited.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @param buffer
+     * @return
+     */
+    private boolean isBlockComplete(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData, DataBuffer buffer) {
+        return buffer.isFull() || (stepMeta.getRuntimeSettings().doRowBlocking() && getBlockSize(stepMeta, stepData) <= buffer.getNumRows());
+    }
+
+    /**
+     * Returns whether classes are aggregated across the slave servers of a cluster, i.e. whether
+     * this is configured and the transformation runs clustered.
+     * 
+     * @param stepMeta
+     * @return
+     */
+    private boolean isClustered(ReidentificationRiskManagementStepMeta stepMeta) {
+        return stepMeta.getRuntimeSettings().doClusterAggregation() && getClusterSize() > 0;
+    }
+
+    /**
+     * Takes a risk snapshot of the sliding window. The snapshot is logged, tracked in the
+     * statistics and sent to the metrics step, if configured.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @param numRows The number of rows added since the last snapshot
+     * @return
+     * @throws KettleStepException
+     */
+    private ParametersRisk putSnapshot(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData, long numRows) throws KettleStepException {
+        OperationRiskAssessmentWindow window = stepData.getWindow();
+        ParametersRisk risk = window.calculate();
+        stepData.getStatistics().trackRisks(risk, numRows);
+        if (isDetailed()) {
+            logDetailed(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.RiskSnapshot", window.getNumRows(),
+                                               window.getNumWindowRows(), risk.getAverageRisk(), risk.getRecordsAtRisk()));
+        }
+        if (!risk.satisfies(stepMeta.getRiskSettings())) {
+            logError(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.InvalidThreshold"));
+        }
+        if (stepData.getMetricsRowSet() != null) {
+            putRowTo(stepData.getMetricsRowMeta(), window.getRow(risk), stepData.getMetricsRowSet());
+        }
+        return risk;
+    }
+
+    /**
+     * Prepares processing upon receiving the first row: validates the quasi-identifiers
+     * and creates the transformer.
+     * 
+     * @param stepMeta
+     * @param stepData
+     * @throws KettleException
+     */
+    private void initialize(ReidentificationRiskManagementStepMeta stepMeta, ReidentificationRiskManagementStepData stepData) throws KettleException {
+
+        // Clone the input row structure and place it in our data object. As the row structure
+        // is not changed by our plugin, a subsequent call getFields() isn't necessary
+        stepData.setOutputRowMeta(getInputRowMeta().clone());
+        
+        // Check if at least one QI is specified
+        if (stepMeta.getRiskSettings().getQis().size() < 1) {                
+            throw new KettleException((BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.QiNecessary")));
+        }
+        
+        // For each defined QI field, if it really exists in input
+        Set<String> fieldsFromInputStream = new HashSet<String>(Arrays.asList(stepData.getOutputRowMeta().getFieldNames()));
+        for (String qi : stepMeta.getRiskSettings().getQis()) {
+            if (!fieldsFromInputStream.contains(qi)) {
+                throw new KettleException((BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.QiNotInFields")) +  ": '" + qi + "'");
+            }
+        }
+        
+        // Initialize the field indexes. Only QIs are buffered, all other fields are passed on unchanged
+        List<String> fields = new ArrayList<>();
+        for (String field : stepData.getOutputRowMeta().getFieldNames()) {
+            if (stepMeta.getRiskSettings().isQi(field)) {
+                fields.add(field);
+            }
+        }
+        int[] fieldIndexes = new int[fields.size()];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            fieldIndexes[i] = stepData.getOutputRowMeta().indexOfValue(fields.get(i));
+            if (fieldIndexes[i] < 0) {
+                throw new KettleException(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.FieldNotFound: " + fields.get(i)));
+            }
+        }
+        stepData.setTransformer(new OperationDataTransformer(stepData.getOutputRowMeta(), fieldIndexes));
+    }
+
     /**
      * This method is called by PDI once the step is done processing. 
      * 
@@ -262,9 +953,156 @@ public class ReidentificationRiskManagementStep extends BaseStep implements Step
         ReidentificationRiskManagementStepData data = (ReidentificationRiskManagementStepData) sdi;
 
         // Add any step-specific clean up that may be needed here
+        if (data.getHierarchies() != null) {
+            logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.HierarchyCache", data.getHierarchies().getStatistics()));
+        }
+        if (data.getResults() != null) {
+            logBasic(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.ResultCache", data.getResults().getStatistics()));
+        }
+        if (data.getCoordinator() != null) {
+            data.getCoordinator().release(getCopy());
+        }
         data.dispose();
         
         // Call superclass dispose()
         super.dispose( meta, data );
     }
+
+    /**
+     * Emits the results of anonymized blocks in input order. Blocks which have been completed are emitted
+     * right away, the method waits for further blocks while more than the given number is pending. If an
+     * emitter thread is used, the method only waits for it. A block remains pending until it has been
+     * emitted, so that it is cancelled and cleared on dispose() if emitting it fails.
+     * 
+     * @param stepData
+     * @param maxPending
+     * @throws KettleException
+     */
+    private void emitBlocks(ReidentificationRiskManagementStepData stepData, int maxPending) throws KettleException {
+        if (stepData.getEmitter() != null) {
+            stepData.getEmitter().await(maxPending);
+            return;
+        }
+        while (!stepData.getPending().isEmpty() && (stepData.getPending().size() > maxPending || stepData.getPending().peek().isDone())) {
+            OperationCellSuppressionTask task = stepData.getPending().peek();
+            try {
+                task.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KettleException(e);
+            } catch (ExecutionException e) {
+                throw new KettleException(e.getCause());
+            }
+            emitBlock(stepData, task);
+            stepData.getPending().poll();
+        }
+    }
+
+    /**
+     * Emits the result of a block anonymized by the workers. The buffer is cleared and can be reused afterwards.
+     * 
+     * @param stepData
+     * @param task
+     * @throws KettleException
+     */
+    private void emitBlock(ReidentificationRiskManagementStepData stepData, OperationCellSuppressionTask task) throws KettleException {
+        ParametersMetrics metrics = task.getMetrics();
+        int fields = stepData.getTransformer().getNumFields();
+        metrics.trackSuppressedCells(stepData.getStatistics().trackSuppressedCells(task.getOutput(), fields), metrics.getRows() * fields);
+        long time = System.nanoTime();
+        stepData.getTransformer().write(this, task.getInput(), task.getOutput(), true);
+        metrics.trackWriting(System.nanoTime() - time);
+        task.getInput().clear();
+        stepData.getFreeBuffers().add(task.getInput());
+        putMetrics(stepData, metrics);
+        adaptBlockSize(stepData, metrics);
+    }
+
+    /**
+     * Reports the metrics of a block which has been written. Metrics are logged, recorded as
+     * step metrics and sent to the metrics step, if configured.
+     * 
+     * @param stepData
+     * @param metrics
+     * @throws KettleStepException
+     */
+    private void putMetrics(ReidentificationRiskManagementStepData stepData, ParametersMetrics metrics) throws KettleStepException {
+        if (isDetailed()) {
+            logDetailed(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Message.BlockMetrics", metrics.getBlock(), metrics.getRows(),
+                                               metrics.getBufferingTime(), metrics.getPreparationTime(), metrics.getAnonymizationTime(),
+                                               metrics.getOptimizationTime(), metrics.getWritingTime(), (long) metrics.getRowsPerSecond(),
+                                               metrics.getBufferSize(), metrics.getFractionOfSuppressedCells()));
+        }
+        if (log.isGatheringMetrics()) {
+            log.snap(METRIC_ROWS, metrics.getRows());
+            log.snap(METRIC_BUFFERING, metrics.getBufferingTime());
+            log.snap(METRIC_PREPARATION, metrics.getPreparationTime());
+            log.snap(METRIC_ANONYMIZATION, metrics.getAnonymizationTime());
+            log.snap(METRIC_OPTIMIZATION, metrics.getOptimizationTime());
+            log.snap(METRIC_WRITING, metrics.getWritingTime());
+            log.snap(METRIC_BUFFER_SIZE, metrics.getBufferSize());
+        }
+        if (stepData.getMetricsRowSet() != null) {
+            putRowTo(stepData.getMetricsRowMeta(), metrics.getRow(), stepData.getMetricsRowSet());
+        }
+    }
+
+    /**
+     * Signals the end of output to all receivers, including the metrics step, which is
+     * not one of the regular output row sets.
+     * 
+     * @param stepData
+     */
+    private void setOutputDone(ReidentificationRiskManagementStepData stepData) {
+        if (stepData.getMetricsRowSet() != null) {
+            stepData.getMetricsRowSet().setDone();
+        }
+        setOutputDone();
+    }
+
+    /**
+     * Returns the directory to which data is spilled. The spill directory may contain variables.
+     * 
+     * @param runtime
+     * @return
+     */
+    private File getSpillDirectory(ParametersRuntime runtime) {
+        String directory = environmentSubstitute(runtime.getSpillDirectory());
+        return directory == null || directory.trim().isEmpty() ? new File(System.getProperty("java.io.tmpdir")) : new File(directory.trim());
+    }
+
+    /**
+     * Returns the directory of the result cache. The directory may contain variables. By default,
+     * a directory within the Kettle home directory is used, which is private to the current user.
+     * 
+     * @param runtime
+     * @return
+     */
+    private File getResultCacheDirectory(ParametersRuntime runtime) {
+        String directory = environmentSubstitute(runtime.getResultCacheDirectory());
+        return directory == null || directory.trim().isEmpty() ? new File(Const.getKettleDirectory(), "arx-result-cache") : new File(directory.trim());
+    }
+
+    /**
+     * Creates the row buffer, including the payload for native rows. If spilling is enabled,
+     * native rows are spilled together with the buffered rows. The spill directory may contain variables.
+     * In ASSESS mode, risks are assessed while rows arrive and only the native rows are buffered.
+     * 
+     * @param runtime
+     * @param stepData
+     * @param parts The number of buffers sharing the maximum buffer size
+     * @return
+     */
+    private DataBuffer createBuffer(ParametersRuntime runtime, ReidentificationRiskManagementStepData stepData, int parts) {
+        String[] header = runtime.getMode() == Mode.ASSESS ? new String[0] : stepData.getTransformer().getHeader();
+        if (!runtime.doSpilling()) {
+            DataBuffer buffer = new DataBuffer(header);
+            buffer.setPayload(new DataPayload(stepData.getOutputRowMeta()));
+            return buffer;
+        }
+        File file = getSpillDirectory(runtime);
+        DataBuffer buffer = new DataBuffer(header, runtime.getMaxBufferSize() * 1024L * 1024L / parts, file);
+        buffer.setPayload(new DataPayload(stepData.getOutputRowMeta(), file));
+        return buffer;
+    }
 }
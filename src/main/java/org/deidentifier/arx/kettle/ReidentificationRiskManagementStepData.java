@@ -17,10 +17,30 @@
  */
 package org.deidentifier.arx.kettle;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
 
+import org.deidentifier.arx.kettle.rrm.BlockSizeController;
+import org.deidentifier.arx.kettle.rrm.DataBuffer;
+import org.deidentifier.arx.kettle.rrm.DataPartitioner;
+import org.deidentifier.arx.kettle.rrm.HierarchyCache;
+import org.deidentifier.arx.kettle.rrm.OperationBlockEmitter;
+import org.deidentifier.arx.kettle.rrm.OperationCellSuppression;
+import org.deidentifier.arx.kettle.rrm.OperationCellSuppressionCoordinator;
+import org.deidentifier.arx.kettle.rrm.OperationCellSuppressionTask;
+import org.deidentifier.arx.kettle.rrm.OperationClusterAggregation;
+import org.deidentifier.arx.kettle.rrm.OperationClusterNode;
+import org.deidentifier.arx.kettle.rrm.OperationDataTransformer;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentIncremental;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentOffHeap;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentSample;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentWindow;
+import org.deidentifier.arx.kettle.rrm.ParametersMetrics;
 import org.deidentifier.arx.kettle.rrm.ParametersStatistics;
+import org.deidentifier.arx.kettle.rrm.ResultCache;
+import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -37,14 +57,80 @@ public class ReidentificationRiskManagementStepData extends BaseStepData impleme
      /** The metadata for the outgoing rows. We don't need a member for the incoming rows, since they are identical */
     private RowMetaInterface outputRowMeta;    
 
-    /** The row buffer (intentionally package-private) */
-    private List<String[]> buffer;
+    /** The row buffer (intentionally package-private). Created upon receiving the first row */
+    private DataBuffer buffer;
+
+    /** The incremental risk assessment, used in ASSESS mode. Created upon receiving the first row */
+    private OperationRiskAssessmentIncremental assessment;
+
+    /** The off-heap risk assessment, used in ASSESS mode instead of the incremental one, if configured. Created upon receiving the first row */
+    private OperationRiskAssessmentOffHeap counts;
+
+    /** The sample used for pre-assessing risks in ASSESS mode. Null if risks are always calculated exactly */
+    private OperationRiskAssessmentSample sample;
+
+    /** The sliding-window risk assessment, used in MONITOR mode. Created upon receiving the first row */
+    private OperationRiskAssessmentWindow window;
 
     /** The statistics collected (intentionally package-private) */
     private ParametersStatistics statistics;
     
-    /** The indices for the particular fields in the incoming object array. Needed by OperationDataTransformer  */
-    private List<Integer> fieldIndexes;
+    /** Converts rows, specialized for the fields of the incoming object arrays. Created upon receiving the first row */
+    private OperationDataTransformer transformer;
+
+    /** The workers anonymizing blocks in parallel. Null if blocks are anonymized on the step thread */
+    private ExecutorService workers;
+
+    /** Blocks submitted to the workers, in input order */
+    private Deque<OperationCellSuppressionTask> pending;
+
+    /** Emits blocks on a dedicated thread. Null if blocks are emitted by the step thread */
+    private OperationBlockEmitter emitter;
+
+    /** Buffers of emitted blocks, which can be reused. Blocks may be emitted by another thread */
+    private Deque<DataBuffer> freeBuffers;
+
+    /** Hierarchies shared across blocks. Null if caching is disabled */
+    private HierarchyCache hierarchies;
+
+    /** Results of earlier runs. Null if caching is disabled */
+    private ResultCache results;
+
+    /** The anonymization, prepared once and used for all blocks. Null if rows are not anonymized */
+    private OperationCellSuppression anonymization;
+
+    /** Adapts the block size. Null if the block size is fixed */
+    private BlockSizeController blockSizes;
+
+    /** Shares classes with the other copies of the step. Null if copies are not coordinated */
+    private OperationCellSuppressionCoordinator coordinator;
+
+    /** Aggregates the classes of all copies across the slave servers. Null if not hosted by this copy */
+    private OperationClusterAggregation aggregation;
+
+    /** Summarizes the classes of this copy for the aggregation. Null if not running clustered */
+    private OperationClusterNode node;
+
+    /** Assigns rows to partitions. Null if rows are not partitioned */
+    private DataPartitioner partitioner;
+
+    /** The partitions. Null if rows are not partitioned */
+    private DataBuffer[] partitions;
+
+    /** The metrics of each partition */
+    private ParametersMetrics[] partitionMetrics;
+
+    /** The metrics of the block which is currently buffered */
+    private ParametersMetrics metrics;
+
+    /** The number of blocks started */
+    private long blocks;
+
+    /** The row set leading to the metrics step. Null if no metrics rows are written */
+    private RowSet metricsRowSet;
+
+    /** The metadata for metrics rows */
+    private RowMetaInterface metricsRowMeta;
 
     /**
      * Constructor.
@@ -57,28 +143,173 @@ public class ReidentificationRiskManagementStepData extends BaseStepData impleme
      * This method is called from ReidentificationRiskManagementStep.init(), each time a transformation has started.
      */
     public void init() {
-        buffer = new ArrayList<String[]>();
+        buffer = null; // the buffer can only be created upon receiving the first row
+        assessment = null;
+        counts = null;
+        node = null;
+        aggregation = null;
+        sample = null;
+        window = null;
         statistics = new ParametersStatistics();
-        fieldIndexes = new ArrayList<>(); // fieldIndexes can only be filled with content upon receiving the first row
+        transformer = null; // the transformer can only be created upon receiving the first row
+        workers = null;
+        pending = new ArrayDeque<>();
+        emitter = null;
+        freeBuffers = new ConcurrentLinkedDeque<>();
+        hierarchies = null;
+        results = null;
+        anonymization = null;
+        blockSizes = null;
+        coordinator = null;
+        partitioner = null;
+        partitions = null;
+        partitionMetrics = null;
+        metrics = null;
+        blocks = 0;
+        metricsRowSet = null;
+        metricsRowMeta = null;
     }
 
     /**
      * This method is called from ReidentificationRiskManagementStep.dispose(), each time a transformation has finished.
      */
     public void dispose() {
+        if (buffer != null) {
+            buffer.clear(); // deletes spilled segments
+        }
         buffer = null;
+        if (partitions != null) {
+            for (DataBuffer partition : partitions) {
+                partition.clear(); // deletes spilled segments
+            }
+        }
+        if (counts != null) {
+            counts.clear(); // deletes spilled classes
+        }
+        if (emitter != null) {
+            emitter.close(); // cancels blocks which have not been emitted
+        }
+        if (pending != null) {
+            for (OperationCellSuppressionTask task : pending) {
+                task.cancel(); // clears the block once it is no longer anonymized
+            }
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        if (aggregation != null) {
+            aggregation.close(); // copies which are still waiting fail
+        }
+        if (freeBuffers != null) {
+            for (DataBuffer free : freeBuffers) {
+                free.clear();
+            }
+        }
+        assessment = null;
+        counts = null;
+        node = null;
+        aggregation = null;
+        sample = null;
+        window = null;
         statistics = null;
-        fieldIndexes = null;
+        transformer = null;
+        workers = null;
+        pending = null;
+        emitter = null;
+        freeBuffers = null;
+        hierarchies = null;
+        results = null;
+        anonymization = null;
+        blockSizes = null;
+        coordinator = null;
+        partitioner = null;
+        partitions = null;
+        partitionMetrics = null;
+        metrics = null;
+        metricsRowSet = null;
+        metricsRowMeta = null;
     }
 
     /**
      * Return the buffer.
      * @return
      */
-    public List<String[]> getBuffer() {
+    public DataBuffer getBuffer() {
         return buffer;
     }
 
+    /**
+     * Set the buffer.
+     * @param buffer
+     */
+    public void setBuffer(DataBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Return the incremental risk assessment.
+     * @return
+     */
+    public OperationRiskAssessmentIncremental getAssessment() {
+        return assessment;
+    }
+
+    /**
+     * Set the incremental risk assessment.
+     * @param assessment
+     */
+    public void setAssessment(OperationRiskAssessmentIncremental assessment) {
+        this.assessment = assessment;
+    }
+
+    /**
+     * Return the off-heap risk assessment, null if classes are counted on the heap.
+     * @return
+     */
+    public OperationRiskAssessmentOffHeap getCounts() {
+        return counts;
+    }
+
+    /**
+     * Set the off-heap risk assessment.
+     * @param counts
+     */
+    public void setCounts(OperationRiskAssessmentOffHeap counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * Return the sample used for pre-assessing risks, null if risks are always calculated exactly.
+     * @return
+     */
+    public OperationRiskAssessmentSample getSample() {
+        return sample;
+    }
+
+    /**
+     * Set the sample used for pre-assessing risks.
+     * @param sample
+     */
+    public void setSample(OperationRiskAssessmentSample sample) {
+        this.sample = sample;
+    }
+
+    /**
+     * Return the sliding-window risk assessment.
+     * @return
+     */
+    public OperationRiskAssessmentWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Set the sliding-window risk assessment.
+     * @param window
+     */
+    public void setWindow(OperationRiskAssessmentWindow window) {
+        this.window = window;
+    }
+
     /**
      * Return the statistics.
      * @return
@@ -104,10 +335,285 @@ public class ReidentificationRiskManagementStepData extends BaseStepData impleme
     }
 
     /**
-     * Return the field indexes.
+     * Return the transformer.
+     * @return
+     */
+    public OperationDataTransformer getTransformer() {
+        return transformer;
+    }
+
+    /**
+     * Set the transformer.
+     * @param transformer
+     */
+    public void setTransformer(OperationDataTransformer transformer) {
+        this.transformer = transformer;
+    }
+
+    /**
+     * Return the workers, null if blocks are anonymized on the step thread.
+     * @return
+     */
+    public ExecutorService getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Set the workers.
+     * @param workers
+     */
+    public void setWorkers(ExecutorService workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Return the blocks submitted to the workers, in input order.
+     * @return
+     */
+    public Deque<OperationCellSuppressionTask> getPending() {
+        return pending;
+    }
+
+    /**
+     * Return the emitter, null if blocks are emitted by the step thread.
+     * @return
+     */
+    public OperationBlockEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * Set the emitter.
+     * @param emitter
+     */
+    public void setEmitter(OperationBlockEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    /**
+     * Return the hierarchies shared across blocks, null if caching is disabled.
+     * @return
+     */
+    public HierarchyCache getHierarchies() {
+        return hierarchies;
+    }
+
+    /**
+     * Set the hierarchies shared across blocks.
+     * @param hierarchies
+     */
+    public void setHierarchies(HierarchyCache hierarchies) {
+        this.hierarchies = hierarchies;
+    }
+
+    /**
+     * Return the results of earlier runs, null if caching is disabled.
+     * @return
+     */
+    public ResultCache getResults() {
+        return results;
+    }
+
+    /**
+     * Set the results of earlier runs.
+     * @param results
+     */
+    public void setResults(ResultCache results) {
+        this.results = results;
+    }
+
+    /**
+     * Return the anonymization, null if rows are not anonymized.
+     * @return
+     */
+    public OperationCellSuppression getAnonymization() {
+        return anonymization;
+    }
+
+    /**
+     * Set the anonymization.
+     * @param anonymization
+     */
+    public void setAnonymization(OperationCellSuppression anonymization) {
+        this.anonymization = anonymization;
+    }
+
+    /**
+     * Return the block size controller, null if the block size is fixed.
+     * @return
+     */
+    public BlockSizeController getBlockSizes() {
+        return blockSizes;
+    }
+
+    /**
+     * Set the block size controller.
+     * @param blockSizes
+     */
+    public void setBlockSizes(BlockSizeController blockSizes) {
+        this.blockSizes = blockSizes;
+    }
+
+    /**
+     * Return the coordinator shared with the other copies of the step, null if copies are not coordinated.
+     * @return
+     */
+    public OperationCellSuppressionCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    /**
+     * Set the coordinator shared with the other copies of the step.
+     * @param coordinator
+     */
+    public void setCoordinator(OperationCellSuppressionCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    /**
+     * Return the aggregation of the classes of all copies, null if it is not hosted by this copy.
+     * @return
+     */
+    public OperationClusterAggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * Set the aggregation of the classes of all copies.
+     * @param aggregation
+     */
+    public void setAggregation(OperationClusterAggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    /**
+     * Return the summary of the classes of this copy for the aggregation, null if not running clustered.
+     * @return
+     */
+    public OperationClusterNode getNode() {
+        return node;
+    }
+
+    /**
+     * Set the summary of the classes of this copy for the aggregation.
+     * @param node
+     */
+    public void setNode(OperationClusterNode node) {
+        this.node = node;
+    }
+
+    /**
+     * Return the partitioner, null if rows are not partitioned.
+     * @return
+     */
+    public DataPartitioner getPartitioner() {
+        return partitioner;
+    }
+
+    /**
+     * Set the partitioner.
+     * @param partitioner
+     */
+    public void setPartitioner(DataPartitioner partitioner) {
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * Return the partitions, null if rows are not partitioned.
+     * @return
+     */
+    public DataBuffer[] getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Set the partitions.
+     * @param partitions
+     */
+    public void setPartitions(DataBuffer[] partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * Return the metrics of each partition.
+     * @return
+     */
+    public ParametersMetrics[] getPartitionMetrics() {
+        return partitionMetrics;
+    }
+
+    /**
+     * Set the metrics of each partition.
+     * @param partitionMetrics
+     */
+    public void setPartitionMetrics(ParametersMetrics[] partitionMetrics) {
+        this.partitionMetrics = partitionMetrics;
+    }
+
+    /**
+     * Return the metrics of the block which is currently buffered.
+     * @return
+     */
+    public ParametersMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Start collecting metrics for the next block.
+     * @return
+     */
+    public ParametersMetrics startMetrics() {
+        this.metrics = new ParametersMetrics(++blocks);
+        return metrics;
+    }
+
+    /**
+     * Stop collecting metrics for the block which is currently buffered, as it is complete.
+     * @return
+     */
+    public ParametersMetrics finishMetrics() {
+        ParametersMetrics result = this.metrics;
+        this.metrics = null;
+        return result;
+    }
+
+    /**
+     * Return the row set leading to the metrics step, null if no metrics rows are written.
+     * @return
+     */
+    public RowSet getMetricsRowSet() {
+        return metricsRowSet;
+    }
+
+    /**
+     * Set the row set leading to the metrics step.
+     * @param metricsRowSet
+     */
+    public void setMetricsRowSet(RowSet metricsRowSet) {
+        this.metricsRowSet = metricsRowSet;
+    }
+
+    /**
+     * Return the metadata for metrics rows.
+     * @return
+     */
+    public RowMetaInterface getMetricsRowMeta() {
+        return metricsRowMeta;
+    }
+
+    /**
+     * Set the metadata for metrics rows.
+     * @param metricsRowMeta
+     */
+    public void setMetricsRowMeta(RowMetaInterface metricsRowMeta) {
+        this.metricsRowMeta = metricsRowMeta;
+    }
+
+    /**
+     * Return the buffers of emitted blocks, which can be reused.
      * @return
      */
-    public List<Integer> getFieldIndexes() {
-        return fieldIndexes;
+    public Deque<DataBuffer> getFreeBuffers() {
+        return freeBuffers;
     }
 }
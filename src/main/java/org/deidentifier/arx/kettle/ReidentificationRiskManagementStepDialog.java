@@ -29,6 +29,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.deidentifier.arx.kettle.rrm.ParametersRuntime.Emission;
 import org.deidentifier.arx.kettle.rrm.ParametersRuntime.Mode;
 import org.deidentifier.arx.reliability.ParameterTranslation;
 import org.eclipse.jface.dialogs.IInputValidator;
@@ -130,10 +131,55 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
     private Text                                   wMaxSsSizeSs;
     /** Value for history size */
     private Text                                   wCacheSize;
+    /** Value for the size of the hierarchy cache */
+    private Text                                   wHierarchyCacheSize;
+    /** Text field for result cache size */
+    private Text                                   wResultCacheSize;
+    /** Text field for result cache directory */
+    private Text                                   wResultCacheDirectory;
     /** The value for the block size for row blocking */
     private Text                                   wBlockSize;
     /** The label for input element block size */
     private Label                                  wlBlockSize;
+    /** The value for the number of workers */
+    private Text                                   wNumWorkers;
+    /** The value for the maximum number of blocks in flight */
+    private Text                                   wQueueDepth;
+    private CCombo                                 wEmission;
+    /** The value for the minimal block size */
+    private Text                                   wMinBlockSize;
+    /** The value for the maximal block size */
+    private Text                                   wMaxBlockSize;
+    /** The value for the target latency */
+    private Text                                   wTargetLatency;
+    /** The value for the maximum buffer size before spilling */
+    private Text                                   wMaxBufferSize;
+    /** The value for the spill directory */
+    private Text                                   wSpillDirectory;
+    /** The value for the size of the class table */
+    private Text                                   wClassTableSize;
+    /** The value for the name of the metrics step */
+    private Text                                   wMetricsStep;
+    /** The value for the size of the sliding window */
+    private Text                                   wWindowSize;
+    /** The value for the duration of the sliding window */
+    private Text                                   wWindowDuration;
+    /** The value for the snapshot interval */
+    private Text                                   wSnapshotInterval;
+    /** The value for the sample size */
+    private Text                                   wSampleSize;
+    /** The value for the confidence level */
+    private Text                                   wConfidenceLevel;
+    /** The value for the partition fields */
+    private Text                                   wPartitionFields;
+    /** The value for the number of partitions */
+    private Text                                   wNumPartitions;
+    /** Time for which copies wait for each other */
+    private Text                                   wCoordinationTimeout;
+    /** Host on which the classes of a cluster are aggregated */
+    private Text                                   wAggregationHost;
+    /** Port on which the classes of a cluster are aggregated */
+    private Text                                   wAggregationPort;
     /** State of the original "meta"*/
     private boolean state;
 
@@ -392,7 +438,30 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
         double snapshotSizeDataset;
         double snapshotSizeSnapshot;
         int cacheSize;
+        int hierarchyCacheSize;
+        int resultCacheSize;
+        String resultCacheDirectory;
         int blockSize;
+        int numWorkers;
+        int queueDepth;
+        Emission emission;
+        int minBlockSize;
+        int maxBlockSize;
+        int targetLatency;
+        int maxBufferSize;
+        String spillDirectory;
+        int classTableSize;
+        String metricsStep;
+        int windowSize;
+        int windowDuration;
+        int snapshotInterval;
+        int sampleSize;
+        double confidenceLevel;
+        String partitionFields;
+        int numPartitions;
+        int coordinationTimeout;
+        String aggregationHost;
+        int aggregationPort;
         List<String> fields;
         Set<String> qis;
         try {
@@ -407,7 +476,30 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
             snapshotSizeDataset = parsePercentage(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.SnapshotSizeDataset"), wMaxSsSizeDs.getText());
             snapshotSizeSnapshot = parsePercentage(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.SnapshotSizeSnapshot"), wMaxSsSizeSs.getText());
             cacheSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.CacheSize"), wCacheSize.getText(), 0);
+            hierarchyCacheSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.HierarchyCacheSize"), wHierarchyCacheSize.getText(), 0);
+            resultCacheSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.ResultCacheSize"), wResultCacheSize.getText(), 0);
+            resultCacheDirectory = wResultCacheDirectory.getText();
             blockSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.BlockSize"), wBlockSize.getText(), 0);
+            numWorkers = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.NumWorkers"), wNumWorkers.getText(), 1);
+            queueDepth = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.QueueDepth"), wQueueDepth.getText(), 1);
+            emission = Emission.valueOf(wEmission.getText());
+            minBlockSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.MinBlockSize"), wMinBlockSize.getText(), 1);
+            maxBlockSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.MaxBlockSize"), wMaxBlockSize.getText(), 0);
+            targetLatency = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.TargetLatency"), wTargetLatency.getText(), 1);
+            maxBufferSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.MaxBufferSize"), wMaxBufferSize.getText(), 0);
+            spillDirectory = wSpillDirectory.getText();
+            classTableSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.ClassTableSize"), wClassTableSize.getText(), 0);
+            metricsStep = wMetricsStep.getText();
+            windowSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.WindowSize"), wWindowSize.getText(), 1);
+            windowDuration = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.WindowDuration"), wWindowDuration.getText(), 0);
+            snapshotInterval = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.SnapshotInterval"), wSnapshotInterval.getText(), 1);
+            sampleSize = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.SampleSize"), wSampleSize.getText(), 0);
+            confidenceLevel = parsePercentage(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.ConfidenceLevel"), wConfidenceLevel.getText());
+            partitionFields = wPartitionFields.getText();
+            numPartitions = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.NumPartitions"), wNumPartitions.getText(), 1);
+            coordinationTimeout = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.CoordinationTimeout"), wCoordinationTimeout.getText(), 0);
+            aggregationHost = wAggregationHost.getText();
+            aggregationPort = parsePositiveInteger(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.AggregationPort"), wAggregationPort.getText(), 0);
             fields = new ArrayList<>();
             qis = new HashSet<>();
             for (int i = 0; i < wFields.nrNonEmpty(); i++) {
@@ -444,7 +536,30 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
         changed |= meta.getRuntimeSettings().getSnapshotSizeDataset() != snapshotSizeDataset;
         changed |= meta.getRuntimeSettings().getSnapshotSizeSnapshot() != snapshotSizeSnapshot;
         changed |= meta.getRuntimeSettings().getCacheSize() != cacheSize;
+        changed |= meta.getRuntimeSettings().getHierarchyCacheSize() != hierarchyCacheSize;
+        changed |= meta.getRuntimeSettings().getResultCacheSize() != resultCacheSize;
+        changed |= !meta.getRuntimeSettings().getResultCacheDirectory().equals(resultCacheDirectory);
         changed |= meta.getRuntimeSettings().getBlockSize() != blockSize;
+        changed |= meta.getRuntimeSettings().getNumWorkers() != numWorkers;
+        changed |= meta.getRuntimeSettings().getQueueDepth() != queueDepth;
+        changed |= meta.getRuntimeSettings().getEmission() != emission;
+        changed |= meta.getRuntimeSettings().getMinBlockSize() != minBlockSize;
+        changed |= meta.getRuntimeSettings().getMaxBlockSize() != maxBlockSize;
+        changed |= meta.getRuntimeSettings().getTargetLatency() != targetLatency;
+        changed |= meta.getRuntimeSettings().getMaxBufferSize() != maxBufferSize;
+        changed |= !meta.getRuntimeSettings().getSpillDirectory().equals(spillDirectory);
+        changed |= meta.getRuntimeSettings().getClassTableSize() != classTableSize;
+        changed |= !meta.getRuntimeSettings().getMetricsStep().equals(metricsStep);
+        changed |= meta.getRuntimeSettings().getWindowSize() != windowSize;
+        changed |= meta.getRuntimeSettings().getWindowDuration() != windowDuration;
+        changed |= meta.getRuntimeSettings().getSnapshotInterval() != snapshotInterval;
+        changed |= meta.getRuntimeSettings().getSampleSize() != sampleSize;
+        changed |= meta.getRuntimeSettings().getConfidenceLevel() != confidenceLevel;
+        changed |= !meta.getRuntimeSettings().getPartitionFields().equals(partitionFields);
+        changed |= meta.getRuntimeSettings().getNumPartitions() != numPartitions;
+        changed |= meta.getRuntimeSettings().getCoordinationTimeout() != coordinationTimeout;
+        changed |= !meta.getRuntimeSettings().getAggregationHost().equals(aggregationHost);
+        changed |= meta.getRuntimeSettings().getAggregationPort() != aggregationPort;
         
         
         // Change
@@ -462,7 +577,30 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
             meta.getRuntimeSettings().setSnapshotSizeDataset(snapshotSizeDataset);
             meta.getRuntimeSettings().setSnapshotSizeSnapshot(snapshotSizeSnapshot);
             meta.getRuntimeSettings().setCacheSize(cacheSize);
+            meta.getRuntimeSettings().setHierarchyCacheSize(hierarchyCacheSize);
+            meta.getRuntimeSettings().setResultCacheSize(resultCacheSize);
+            meta.getRuntimeSettings().setResultCacheDirectory(resultCacheDirectory);
             meta.getRuntimeSettings().setBlockSize(blockSize);
+            meta.getRuntimeSettings().setNumWorkers(numWorkers);
+            meta.getRuntimeSettings().setQueueDepth(queueDepth);
+            meta.getRuntimeSettings().setEmission(emission);
+            meta.getRuntimeSettings().setMinBlockSize(minBlockSize);
+            meta.getRuntimeSettings().setMaxBlockSize(maxBlockSize);
+            meta.getRuntimeSettings().setTargetLatency(targetLatency);
+            meta.getRuntimeSettings().setMaxBufferSize(maxBufferSize);
+            meta.getRuntimeSettings().setSpillDirectory(spillDirectory);
+            meta.getRuntimeSettings().setClassTableSize(classTableSize);
+            meta.getRuntimeSettings().setMetricsStep(metricsStep);
+            meta.getRuntimeSettings().setWindowSize(windowSize);
+            meta.getRuntimeSettings().setWindowDuration(windowDuration);
+            meta.getRuntimeSettings().setSnapshotInterval(snapshotInterval);
+            meta.getRuntimeSettings().setSampleSize(sampleSize);
+            meta.getRuntimeSettings().setConfidenceLevel(confidenceLevel);
+            meta.getRuntimeSettings().setPartitionFields(partitionFields);
+            meta.getRuntimeSettings().setNumPartitions(numPartitions);
+            meta.getRuntimeSettings().setCoordinationTimeout(coordinationTimeout);
+            meta.getRuntimeSettings().setAggregationHost(aggregationHost);
+            meta.getRuntimeSettings().setAggregationPort(aggregationPort);
             meta.setChanged(true);
         } else {
             meta.setChanged(state);
@@ -862,6 +1000,65 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
         fdCacheSize.right = new FormAttachment(100, 0);
         wCacheSize.setLayoutData(fdCacheSize);
 
+        ////////////////////////////////////////////////
+        // Hierarchy cache size
+        ////////////////////////////////////////////////
+        Label wlHierarchyCacheSize = new Label(wCachingGrp, SWT.RIGHT); // !
+        wlHierarchyCacheSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.HierarchyCacheSize"));
+        props.setLook(wlHierarchyCacheSize);
+        FormData fdlHierarchyCacheSize = new FormData();
+        fdlHierarchyCacheSize.top = new FormAttachment(wCacheSize, margin);
+        fdlHierarchyCacheSize.left = new FormAttachment(0, margin);
+        fdlHierarchyCacheSize.width = vertAlign;
+        wlHierarchyCacheSize.setLayoutData(fdlHierarchyCacheSize);
+        wHierarchyCacheSize = new Text(wCachingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wHierarchyCacheSize);
+        FormData fdHierarchyCacheSize = new FormData();
+        fdHierarchyCacheSize.top = new FormAttachment(wCacheSize, margin);
+        fdHierarchyCacheSize.left = new FormAttachment(wlHierarchyCacheSize, margin);
+        fdHierarchyCacheSize.right = new FormAttachment(100, 0);
+        wHierarchyCacheSize.setLayoutData(fdHierarchyCacheSize);
+
+        ////////////////////////////////////////////////
+        // Result cache size
+        ////////////////////////////////////////////////
+        Label wlResultCacheSize = new Label(wCachingGrp, SWT.RIGHT); // !
+        wlResultCacheSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.ResultCacheSize"));
+        props.setLook(wlResultCacheSize);
+        FormData fdlResultCacheSize = new FormData();
+        fdlResultCacheSize.top = new FormAttachment(wHierarchyCacheSize, margin);
+        fdlResultCacheSize.left = new FormAttachment(0, margin);
+        fdlResultCacheSize.width = vertAlign;
+        wlResultCacheSize.setLayoutData(fdlResultCacheSize);
+
+        wResultCacheSize = new Text(wCachingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wResultCacheSize);
+        FormData fdResultCacheSize = new FormData();
+        fdResultCacheSize.top = new FormAttachment(wHierarchyCacheSize, margin);
+        fdResultCacheSize.left = new FormAttachment(wlResultCacheSize, margin);
+        fdResultCacheSize.right = new FormAttachment(100, 0);
+        wResultCacheSize.setLayoutData(fdResultCacheSize);
+
+        ////////////////////////////////////////////////
+        // Result cache directory
+        ////////////////////////////////////////////////
+        Label wlResultCacheDirectory = new Label(wCachingGrp, SWT.RIGHT); // !
+        wlResultCacheDirectory.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.ResultCacheDirectory"));
+        props.setLook(wlResultCacheDirectory);
+        FormData fdlResultCacheDirectory = new FormData();
+        fdlResultCacheDirectory.top = new FormAttachment(wResultCacheSize, margin);
+        fdlResultCacheDirectory.left = new FormAttachment(0, margin);
+        fdlResultCacheDirectory.width = vertAlign;
+        wlResultCacheDirectory.setLayoutData(fdlResultCacheDirectory);
+
+        wResultCacheDirectory = new Text(wCachingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wResultCacheDirectory);
+        FormData fdResultCacheDirectory = new FormData();
+        fdResultCacheDirectory.top = new FormAttachment(wResultCacheSize, margin);
+        fdResultCacheDirectory.left = new FormAttachment(wlResultCacheDirectory, margin);
+        fdResultCacheDirectory.right = new FormAttachment(100, 0);
+        wResultCacheDirectory.setLayoutData(fdResultCacheDirectory);
+
         ////////////////////////////////////////////////
         // Format the group
         ////////////////////////////////////////////////
@@ -891,7 +1088,7 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
         wlBlockSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.BlockSize"));
         props.setLook(wlBlockSize);
         FormData fdlBlockSize = new FormData();
-        fdlBlockSize.top = new FormAttachment(wCacheSize, margin);
+        fdlBlockSize.top = new FormAttachment(wResultCacheDirectory, margin);
         fdlBlockSize.left = new FormAttachment(0, margin);
         fdlBlockSize.width = vertAlign;
         wlBlockSize.setLayoutData(fdlBlockSize);
@@ -899,11 +1096,132 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
         wBlockSize = new Text(wRowBlockingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
         props.setLook(wBlockSize);
         FormData fdBlockSize = new FormData();
-        fdBlockSize.top = new FormAttachment(wCacheSize, margin);
+        fdBlockSize.top = new FormAttachment(wResultCacheDirectory, margin);
         fdBlockSize.left = new FormAttachment(wlBlockSize, margin);
         fdBlockSize.right = new FormAttachment(100, 0);
         wBlockSize.setLayoutData(fdBlockSize);
 
+        ////////////////////////////////////////////////
+        // Number of workers
+        ////////////////////////////////////////////////
+        Label wlNumWorkers = new Label(wRowBlockingGrp, SWT.RIGHT); // !
+        wlNumWorkers.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.NumWorkers"));
+        props.setLook(wlNumWorkers);
+        FormData fdlNumWorkers = new FormData();
+        fdlNumWorkers.top = new FormAttachment(wBlockSize, margin);
+        fdlNumWorkers.left = new FormAttachment(0, margin);
+        fdlNumWorkers.width = vertAlign;
+        wlNumWorkers.setLayoutData(fdlNumWorkers);
+
+        wNumWorkers = new Text(wRowBlockingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wNumWorkers);
+        FormData fdNumWorkers = new FormData();
+        fdNumWorkers.top = new FormAttachment(wBlockSize, margin);
+        fdNumWorkers.left = new FormAttachment(wlNumWorkers, margin);
+        fdNumWorkers.right = new FormAttachment(100, 0);
+        wNumWorkers.setLayoutData(fdNumWorkers);
+
+        ////////////////////////////////////////////////
+        // Queue depth
+        ////////////////////////////////////////////////
+        Label wlQueueDepth = new Label(wRowBlockingGrp, SWT.RIGHT); // !
+        wlQueueDepth.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.QueueDepth"));
+        props.setLook(wlQueueDepth);
+        FormData fdlQueueDepth = new FormData();
+        fdlQueueDepth.top = new FormAttachment(wNumWorkers, margin);
+        fdlQueueDepth.left = new FormAttachment(0, margin);
+        fdlQueueDepth.width = vertAlign;
+        wlQueueDepth.setLayoutData(fdlQueueDepth);
+
+        wQueueDepth = new Text(wRowBlockingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wQueueDepth);
+        FormData fdQueueDepth = new FormData();
+        fdQueueDepth.top = new FormAttachment(wNumWorkers, margin);
+        fdQueueDepth.left = new FormAttachment(wlQueueDepth, margin);
+        fdQueueDepth.right = new FormAttachment(100, 0);
+        wQueueDepth.setLayoutData(fdQueueDepth);
+
+        ////////////////////////////////////////////////
+        // Emission
+        ////////////////////////////////////////////////
+        Label wlEmission = new Label(wRowBlockingGrp, SWT.RIGHT); // !
+        wlEmission.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.Emission"));
+        props.setLook(wlEmission);
+        FormData fdlEmission = new FormData();
+        fdlEmission.top = new FormAttachment(wQueueDepth, margin);
+        fdlEmission.left = new FormAttachment(0, margin);
+        fdlEmission.width = vertAlign;
+        wlEmission.setLayoutData(fdlEmission);
+
+        wEmission = new CCombo(wRowBlockingGrp, SWT.BORDER | SWT.READ_ONLY); // !
+        props.setLook(wEmission);
+        FormData fdEmission = new FormData();
+        fdEmission.top = new FormAttachment(wQueueDepth, margin);
+        fdEmission.left = new FormAttachment(wlEmission, margin);
+        fdEmission.right = new FormAttachment(100, 0);
+        wEmission.setLayoutData(fdEmission);
+        wEmission.setItems(toStringArray(Emission.values()));
+
+        ////////////////////////////////////////////////
+        // Min block size
+        ////////////////////////////////////////////////
+        Label wlMinBlockSize = new Label(wRowBlockingGrp, SWT.RIGHT); // !
+        wlMinBlockSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.MinBlockSize"));
+        props.setLook(wlMinBlockSize);
+        FormData fdlMinBlockSize = new FormData();
+        fdlMinBlockSize.top = new FormAttachment(wEmission, margin);
+        fdlMinBlockSize.left = new FormAttachment(0, margin);
+        fdlMinBlockSize.width = vertAlign;
+        wlMinBlockSize.setLayoutData(fdlMinBlockSize);
+
+        wMinBlockSize = new Text(wRowBlockingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wMinBlockSize);
+        FormData fdMinBlockSize = new FormData();
+        fdMinBlockSize.top = new FormAttachment(wEmission, margin);
+        fdMinBlockSize.left = new FormAttachment(wlMinBlockSize, margin);
+        fdMinBlockSize.right = new FormAttachment(100, 0);
+        wMinBlockSize.setLayoutData(fdMinBlockSize);
+
+        ////////////////////////////////////////////////
+        // Max block size
+        ////////////////////////////////////////////////
+        Label wlMaxBlockSize = new Label(wRowBlockingGrp, SWT.RIGHT); // !
+        wlMaxBlockSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.MaxBlockSize"));
+        props.setLook(wlMaxBlockSize);
+        FormData fdlMaxBlockSize = new FormData();
+        fdlMaxBlockSize.top = new FormAttachment(wMinBlockSize, margin);
+        fdlMaxBlockSize.left = new FormAttachment(0, margin);
+        fdlMaxBlockSize.width = vertAlign;
+        wlMaxBlockSize.setLayoutData(fdlMaxBlockSize);
+
+        wMaxBlockSize = new Text(wRowBlockingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wMaxBlockSize);
+        FormData fdMaxBlockSize = new FormData();
+        fdMaxBlockSize.top = new FormAttachment(wMinBlockSize, margin);
+        fdMaxBlockSize.left = new FormAttachment(wlMaxBlockSize, margin);
+        fdMaxBlockSize.right = new FormAttachment(100, 0);
+        wMaxBlockSize.setLayoutData(fdMaxBlockSize);
+
+        ////////////////////////////////////////////////
+        // Target latency
+        ////////////////////////////////////////////////
+        Label wlTargetLatency = new Label(wRowBlockingGrp, SWT.RIGHT); // !
+        wlTargetLatency.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.TargetLatency"));
+        props.setLook(wlTargetLatency);
+        FormData fdlTargetLatency = new FormData();
+        fdlTargetLatency.top = new FormAttachment(wMaxBlockSize, margin);
+        fdlTargetLatency.left = new FormAttachment(0, margin);
+        fdlTargetLatency.width = vertAlign;
+        wlTargetLatency.setLayoutData(fdlTargetLatency);
+
+        wTargetLatency = new Text(wRowBlockingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wTargetLatency);
+        FormData fdTargetLatency = new FormData();
+        fdTargetLatency.top = new FormAttachment(wMaxBlockSize, margin);
+        fdTargetLatency.left = new FormAttachment(wlTargetLatency, margin);
+        fdTargetLatency.right = new FormAttachment(100, 0);
+        wTargetLatency.setLayoutData(fdTargetLatency);
+
         ////////////////////////////////////////////////
         // Format the group
         ////////////////////////////////////////////////
@@ -913,6 +1231,352 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
         fdRowBlockingGrp.right = new FormAttachment(100, -margin);
         wRowBlockingGrp.setLayoutData(fdRowBlockingGrp);
 
+        ////////////////////////////////////////////////
+        // Group for spilling
+        ////////////////////////////////////////////////
+
+        Group wSpillingGrp = new Group(wRtSettingsComp, SWT.SHADOW_NONE);
+        props.setLook(wSpillingGrp);
+        wSpillingGrp.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Heading.Spilling"));
+
+        FormLayout spillingGroupLayout = new FormLayout();
+        spillingGroupLayout.marginWidth = 10;
+        spillingGroupLayout.marginHeight = 10;
+        wSpillingGrp.setLayout(spillingGroupLayout);
+
+        ////////////////////////////////////////////////
+        // Max. buffer size
+        ////////////////////////////////////////////////
+        Label wlMaxBufferSize = new Label(wSpillingGrp, SWT.RIGHT); // !
+        wlMaxBufferSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.MaxBufferSize"));
+        props.setLook(wlMaxBufferSize);
+        FormData fdlMaxBufferSize = new FormData();
+        fdlMaxBufferSize.top = new FormAttachment(wTargetLatency, margin);
+        fdlMaxBufferSize.left = new FormAttachment(0, margin);
+        fdlMaxBufferSize.width = vertAlign;
+        wlMaxBufferSize.setLayoutData(fdlMaxBufferSize);
+
+        wMaxBufferSize = new Text(wSpillingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wMaxBufferSize);
+        FormData fdMaxBufferSize = new FormData();
+        fdMaxBufferSize.top = new FormAttachment(wTargetLatency, margin);
+        fdMaxBufferSize.left = new FormAttachment(wlMaxBufferSize, margin);
+        fdMaxBufferSize.right = new FormAttachment(100, 0);
+        wMaxBufferSize.setLayoutData(fdMaxBufferSize);
+
+        ////////////////////////////////////////////////
+        // Spill directory
+        ////////////////////////////////////////////////
+        Label wlSpillDirectory = new Label(wSpillingGrp, SWT.RIGHT); // !
+        wlSpillDirectory.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.SpillDirectory"));
+        props.setLook(wlSpillDirectory);
+        FormData fdlSpillDirectory = new FormData();
+        fdlSpillDirectory.top = new FormAttachment(wMaxBufferSize, margin);
+        fdlSpillDirectory.left = new FormAttachment(0, margin);
+        fdlSpillDirectory.width = vertAlign;
+        wlSpillDirectory.setLayoutData(fdlSpillDirectory);
+
+        wSpillDirectory = new Text(wSpillingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wSpillDirectory);
+        FormData fdSpillDirectory = new FormData();
+        fdSpillDirectory.top = new FormAttachment(wMaxBufferSize, margin);
+        fdSpillDirectory.left = new FormAttachment(wlSpillDirectory, margin);
+        fdSpillDirectory.right = new FormAttachment(100, 0);
+        wSpillDirectory.setLayoutData(fdSpillDirectory);
+
+        ////////////////////////////////////////////////
+        // Class table size
+        ////////////////////////////////////////////////
+        Label wlClassTableSize = new Label(wSpillingGrp, SWT.RIGHT); // !
+        wlClassTableSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.ClassTableSize"));
+        props.setLook(wlClassTableSize);
+        FormData fdlClassTableSize = new FormData();
+        fdlClassTableSize.top = new FormAttachment(wSpillDirectory, margin);
+        fdlClassTableSize.left = new FormAttachment(0, margin);
+        fdlClassTableSize.width = vertAlign;
+        wlClassTableSize.setLayoutData(fdlClassTableSize);
+
+        wClassTableSize = new Text(wSpillingGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wClassTableSize);
+        FormData fdClassTableSize = new FormData();
+        fdClassTableSize.top = new FormAttachment(wSpillDirectory, margin);
+        fdClassTableSize.left = new FormAttachment(wlClassTableSize, margin);
+        fdClassTableSize.right = new FormAttachment(100, 0);
+        wClassTableSize.setLayoutData(fdClassTableSize);
+
+        ////////////////////////////////////////////////
+        // Format the group
+        ////////////////////////////////////////////////
+        FormData fdSpillingGrp = new FormData();
+        fdSpillingGrp.left = new FormAttachment(0, margin);
+        fdSpillingGrp.top = new FormAttachment(wRowBlockingGrp, 2 * margin);
+        fdSpillingGrp.right = new FormAttachment(100, -margin);
+        wSpillingGrp.setLayoutData(fdSpillingGrp);
+
+        ////////////////////////////////////////////////
+        // Group for monitoring
+        ////////////////////////////////////////////////
+
+        Group wMonitoringGrp = new Group(wRtSettingsComp, SWT.SHADOW_NONE);
+        props.setLook(wMonitoringGrp);
+        wMonitoringGrp.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Heading.Monitoring"));
+
+        FormLayout monitoringGroupLayout = new FormLayout();
+        monitoringGroupLayout.marginWidth = 10;
+        monitoringGroupLayout.marginHeight = 10;
+        wMonitoringGrp.setLayout(monitoringGroupLayout);
+
+        ////////////////////////////////////////////////
+        // Metrics step
+        ////////////////////////////////////////////////
+        Label wlMetricsStep = new Label(wMonitoringGrp, SWT.RIGHT); // !
+        wlMetricsStep.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.MetricsStep"));
+        props.setLook(wlMetricsStep);
+        FormData fdlMetricsStep = new FormData();
+        fdlMetricsStep.top = new FormAttachment(wClassTableSize, margin);
+        fdlMetricsStep.left = new FormAttachment(0, margin);
+        fdlMetricsStep.width = vertAlign;
+        wlMetricsStep.setLayoutData(fdlMetricsStep);
+
+        wMetricsStep = new Text(wMonitoringGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wMetricsStep);
+        FormData fdMetricsStep = new FormData();
+        fdMetricsStep.top = new FormAttachment(wClassTableSize, margin);
+        fdMetricsStep.left = new FormAttachment(wlMetricsStep, margin);
+        fdMetricsStep.right = new FormAttachment(100, 0);
+        wMetricsStep.setLayoutData(fdMetricsStep);
+
+        ////////////////////////////////////////////////
+        // Window size
+        ////////////////////////////////////////////////
+        Label wlWindowSize = new Label(wMonitoringGrp, SWT.RIGHT); // !
+        wlWindowSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.WindowSize"));
+        props.setLook(wlWindowSize);
+        FormData fdlWindowSize = new FormData();
+        fdlWindowSize.top = new FormAttachment(wMetricsStep, margin);
+        fdlWindowSize.left = new FormAttachment(0, margin);
+        fdlWindowSize.width = vertAlign;
+        wlWindowSize.setLayoutData(fdlWindowSize);
+
+        wWindowSize = new Text(wMonitoringGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wWindowSize);
+        FormData fdWindowSize = new FormData();
+        fdWindowSize.top = new FormAttachment(wMetricsStep, margin);
+        fdWindowSize.left = new FormAttachment(wlWindowSize, margin);
+        fdWindowSize.right = new FormAttachment(100, 0);
+        wWindowSize.setLayoutData(fdWindowSize);
+
+        ////////////////////////////////////////////////
+        // Window duration
+        ////////////////////////////////////////////////
+        Label wlWindowDuration = new Label(wMonitoringGrp, SWT.RIGHT); // !
+        wlWindowDuration.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.WindowDuration"));
+        props.setLook(wlWindowDuration);
+        FormData fdlWindowDuration = new FormData();
+        fdlWindowDuration.top = new FormAttachment(wWindowSize, margin);
+        fdlWindowDuration.left = new FormAttachment(0, margin);
+        fdlWindowDuration.width = vertAlign;
+        wlWindowDuration.setLayoutData(fdlWindowDuration);
+
+        wWindowDuration = new Text(wMonitoringGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wWindowDuration);
+        FormData fdWindowDuration = new FormData();
+        fdWindowDuration.top = new FormAttachment(wWindowSize, margin);
+        fdWindowDuration.left = new FormAttachment(wlWindowDuration, margin);
+        fdWindowDuration.right = new FormAttachment(100, 0);
+        wWindowDuration.setLayoutData(fdWindowDuration);
+
+        ////////////////////////////////////////////////
+        // Snapshot interval
+        ////////////////////////////////////////////////
+        Label wlSnapshotInterval = new Label(wMonitoringGrp, SWT.RIGHT); // !
+        wlSnapshotInterval.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.SnapshotInterval"));
+        props.setLook(wlSnapshotInterval);
+        FormData fdlSnapshotInterval = new FormData();
+        fdlSnapshotInterval.top = new FormAttachment(wWindowDuration, margin);
+        fdlSnapshotInterval.left = new FormAttachment(0, margin);
+        fdlSnapshotInterval.width = vertAlign;
+        wlSnapshotInterval.setLayoutData(fdlSnapshotInterval);
+
+        wSnapshotInterval = new Text(wMonitoringGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wSnapshotInterval);
+        FormData fdSnapshotInterval = new FormData();
+        fdSnapshotInterval.top = new FormAttachment(wWindowDuration, margin);
+        fdSnapshotInterval.left = new FormAttachment(wlSnapshotInterval, margin);
+        fdSnapshotInterval.right = new FormAttachment(100, 0);
+        wSnapshotInterval.setLayoutData(fdSnapshotInterval);
+
+        ////////////////////////////////////////////////
+        // Sample size
+        ////////////////////////////////////////////////
+        Label wlSampleSize = new Label(wMonitoringGrp, SWT.RIGHT); // !
+        wlSampleSize.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.SampleSize"));
+        props.setLook(wlSampleSize);
+        FormData fdlSampleSize = new FormData();
+        fdlSampleSize.top = new FormAttachment(wSnapshotInterval, margin);
+        fdlSampleSize.left = new FormAttachment(0, margin);
+        fdlSampleSize.width = vertAlign;
+        wlSampleSize.setLayoutData(fdlSampleSize);
+
+        wSampleSize = new Text(wMonitoringGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wSampleSize);
+        FormData fdSampleSize = new FormData();
+        fdSampleSize.top = new FormAttachment(wSnapshotInterval, margin);
+        fdSampleSize.left = new FormAttachment(wlSampleSize, margin);
+        fdSampleSize.right = new FormAttachment(100, 0);
+        wSampleSize.setLayoutData(fdSampleSize);
+
+        ////////////////////////////////////////////////
+        // Confidence level
+        ////////////////////////////////////////////////
+        Label wlConfidenceLevel = new Label(wMonitoringGrp, SWT.RIGHT); // !
+        wlConfidenceLevel.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.ConfidenceLevel"));
+        props.setLook(wlConfidenceLevel);
+        FormData fdlConfidenceLevel = new FormData();
+        fdlConfidenceLevel.top = new FormAttachment(wSampleSize, margin);
+        fdlConfidenceLevel.left = new FormAttachment(0, margin);
+        fdlConfidenceLevel.width = vertAlign;
+        wlConfidenceLevel.setLayoutData(fdlConfidenceLevel);
+
+        wConfidenceLevel = new Text(wMonitoringGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wConfidenceLevel);
+        FormData fdConfidenceLevel = new FormData();
+        fdConfidenceLevel.top = new FormAttachment(wSampleSize, margin);
+        fdConfidenceLevel.left = new FormAttachment(wlConfidenceLevel, margin);
+        fdConfidenceLevel.right = new FormAttachment(100, 0);
+        wConfidenceLevel.setLayoutData(fdConfidenceLevel);
+
+        ////////////////////////////////////////////////
+        // Format the group
+        ////////////////////////////////////////////////
+        FormData fdMonitoringGrp = new FormData();
+        fdMonitoringGrp.left = new FormAttachment(0, margin);
+        fdMonitoringGrp.top = new FormAttachment(wSpillingGrp, 2 * margin);
+        fdMonitoringGrp.right = new FormAttachment(100, -margin);
+        wMonitoringGrp.setLayoutData(fdMonitoringGrp);
+
+        ////////////////////////////////////////////////
+        // Group for partitioning
+        ////////////////////////////////////////////////
+
+        Group wPartitioningGrp = new Group(wRtSettingsComp, SWT.SHADOW_NONE);
+        props.setLook(wPartitioningGrp);
+        wPartitioningGrp.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Heading.Partitioning"));
+
+        FormLayout partitioningGroupLayout = new FormLayout();
+        partitioningGroupLayout.marginWidth = 10;
+        partitioningGroupLayout.marginHeight = 10;
+        wPartitioningGrp.setLayout(partitioningGroupLayout);
+
+        ////////////////////////////////////////////////
+        // Partition fields
+        ////////////////////////////////////////////////
+        Label wlPartitionFields = new Label(wPartitioningGrp, SWT.RIGHT); // !
+        wlPartitionFields.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.PartitionFields"));
+        props.setLook(wlPartitionFields);
+        FormData fdlPartitionFields = new FormData();
+        fdlPartitionFields.top = new FormAttachment(wConfidenceLevel, margin);
+        fdlPartitionFields.left = new FormAttachment(0, margin);
+        fdlPartitionFields.width = vertAlign;
+        wlPartitionFields.setLayoutData(fdlPartitionFields);
+
+        wPartitionFields = new Text(wPartitioningGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wPartitionFields);
+        FormData fdPartitionFields = new FormData();
+        fdPartitionFields.top = new FormAttachment(wConfidenceLevel, margin);
+        fdPartitionFields.left = new FormAttachment(wlPartitionFields, margin);
+        fdPartitionFields.right = new FormAttachment(100, 0);
+        wPartitionFields.setLayoutData(fdPartitionFields);
+
+        ////////////////////////////////////////////////
+        // Number of partitions
+        ////////////////////////////////////////////////
+        Label wlNumPartitions = new Label(wPartitioningGrp, SWT.RIGHT); // !
+        wlNumPartitions.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.NumPartitions"));
+        props.setLook(wlNumPartitions);
+        FormData fdlNumPartitions = new FormData();
+        fdlNumPartitions.top = new FormAttachment(wPartitionFields, margin);
+        fdlNumPartitions.left = new FormAttachment(0, margin);
+        fdlNumPartitions.width = vertAlign;
+        wlNumPartitions.setLayoutData(fdlNumPartitions);
+
+        wNumPartitions = new Text(wPartitioningGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wNumPartitions);
+        FormData fdNumPartitions = new FormData();
+        fdNumPartitions.top = new FormAttachment(wPartitionFields, margin);
+        fdNumPartitions.left = new FormAttachment(wlNumPartitions, margin);
+        fdNumPartitions.right = new FormAttachment(100, 0);
+        wNumPartitions.setLayoutData(fdNumPartitions);
+
+        ////////////////////////////////////////////////
+        // Coordination timeout
+        ////////////////////////////////////////////////
+        Label wlCoordinationTimeout = new Label(wPartitioningGrp, SWT.RIGHT); // !
+        wlCoordinationTimeout.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.CoordinationTimeout"));
+        props.setLook(wlCoordinationTimeout);
+        FormData fdlCoordinationTimeout = new FormData();
+        fdlCoordinationTimeout.top = new FormAttachment(wNumPartitions, margin);
+        fdlCoordinationTimeout.left = new FormAttachment(0, margin);
+        fdlCoordinationTimeout.width = vertAlign;
+        wlCoordinationTimeout.setLayoutData(fdlCoordinationTimeout);
+
+        wCoordinationTimeout = new Text(wPartitioningGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wCoordinationTimeout);
+        FormData fdCoordinationTimeout = new FormData();
+        fdCoordinationTimeout.top = new FormAttachment(wNumPartitions, margin);
+        fdCoordinationTimeout.left = new FormAttachment(wlCoordinationTimeout, margin);
+        fdCoordinationTimeout.right = new FormAttachment(100, 0);
+        wCoordinationTimeout.setLayoutData(fdCoordinationTimeout);
+
+        ////////////////////////////////////////////////
+        // Aggregation host
+        ////////////////////////////////////////////////
+        Label wlAggregationHost = new Label(wPartitioningGrp, SWT.RIGHT); // !
+        wlAggregationHost.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.AggregationHost"));
+        props.setLook(wlAggregationHost);
+        FormData fdlAggregationHost = new FormData();
+        fdlAggregationHost.top = new FormAttachment(wCoordinationTimeout, margin);
+        fdlAggregationHost.left = new FormAttachment(0, margin);
+        fdlAggregationHost.width = vertAlign;
+        wlAggregationHost.setLayoutData(fdlAggregationHost);
+
+        wAggregationHost = new Text(wPartitioningGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wAggregationHost);
+        FormData fdAggregationHost = new FormData();
+        fdAggregationHost.top = new FormAttachment(wCoordinationTimeout, margin);
+        fdAggregationHost.left = new FormAttachment(wlAggregationHost, margin);
+        fdAggregationHost.right = new FormAttachment(100, 0);
+        wAggregationHost.setLayoutData(fdAggregationHost);
+
+        ////////////////////////////////////////////////
+        // Aggregation port
+        ////////////////////////////////////////////////
+        Label wlAggregationPort = new Label(wPartitioningGrp, SWT.RIGHT); // !
+        wlAggregationPort.setText(BaseMessages.getString(PKG, "ReidentificationRiskManagementStep.Label.AggregationPort"));
+        props.setLook(wlAggregationPort);
+        FormData fdlAggregationPort = new FormData();
+        fdlAggregationPort.top = new FormAttachment(wAggregationHost, margin);
+        fdlAggregationPort.left = new FormAttachment(0, margin);
+        fdlAggregationPort.width = vertAlign;
+        wlAggregationPort.setLayoutData(fdlAggregationPort);
+
+        wAggregationPort = new Text(wPartitioningGrp, SWT.SINGLE | SWT.LEFT | SWT.BORDER); // !
+        props.setLook(wAggregationPort);
+        FormData fdAggregationPort = new FormData();
+        fdAggregationPort.top = new FormAttachment(wAggregationHost, margin);
+        fdAggregationPort.left = new FormAttachment(wlAggregationPort, margin);
+        fdAggregationPort.right = new FormAttachment(100, 0);
+        wAggregationPort.setLayoutData(fdAggregationPort);
+
+        ////////////////////////////////////////////////
+        // Format the group
+        ////////////////////////////////////////////////
+        FormData fdPartitioningGrp = new FormData();
+        fdPartitioningGrp.left = new FormAttachment(0, margin);
+        fdPartitioningGrp.top = new FormAttachment(wMonitoringGrp, 2 * margin);
+        fdPartitioningGrp.right = new FormAttachment(100, -margin);
+        wPartitioningGrp.setLayoutData(fdPartitioningGrp);
+
         wRtSettingsComp.layout();
         wRtSettingsTab.setControl(wRtSettingsComp);
 
@@ -991,8 +1655,31 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
         wMaxSsSizeDs.setText(String.valueOf(meta.getRuntimeSettings().getSnapshotSizeDataset() * 100d));
         wMaxSsSizeSs.setText(String.valueOf(meta.getRuntimeSettings().getSnapshotSizeSnapshot() * 100d));
         wCacheSize.setText(String.valueOf(meta.getRuntimeSettings().getCacheSize()));
+        wHierarchyCacheSize.setText(String.valueOf(meta.getRuntimeSettings().getHierarchyCacheSize()));
+        wResultCacheSize.setText(String.valueOf(meta.getRuntimeSettings().getResultCacheSize()));
+        wResultCacheDirectory.setText(meta.getRuntimeSettings().getResultCacheDirectory());
 
         wBlockSize.setText(String.valueOf(meta.getRuntimeSettings().getBlockSize()));
+        wNumWorkers.setText(String.valueOf(meta.getRuntimeSettings().getNumWorkers()));
+        wQueueDepth.setText(String.valueOf(meta.getRuntimeSettings().getQueueDepth()));
+        wEmission.setText(meta.getRuntimeSettings().getEmission().name());
+        wMinBlockSize.setText(String.valueOf(meta.getRuntimeSettings().getMinBlockSize()));
+        wMaxBlockSize.setText(String.valueOf(meta.getRuntimeSettings().getMaxBlockSize()));
+        wTargetLatency.setText(String.valueOf(meta.getRuntimeSettings().getTargetLatency()));
+        wMaxBufferSize.setText(String.valueOf(meta.getRuntimeSettings().getMaxBufferSize()));
+        wSpillDirectory.setText(meta.getRuntimeSettings().getSpillDirectory());
+        wClassTableSize.setText(String.valueOf(meta.getRuntimeSettings().getClassTableSize()));
+        wMetricsStep.setText(meta.getRuntimeSettings().getMetricsStep());
+        wWindowSize.setText(String.valueOf(meta.getRuntimeSettings().getWindowSize()));
+        wWindowDuration.setText(String.valueOf(meta.getRuntimeSettings().getWindowDuration()));
+        wSnapshotInterval.setText(String.valueOf(meta.getRuntimeSettings().getSnapshotInterval()));
+        wSampleSize.setText(String.valueOf(meta.getRuntimeSettings().getSampleSize()));
+        wConfidenceLevel.setText(String.valueOf(meta.getRuntimeSettings().getConfidenceLevel() * 100d));
+        wPartitionFields.setText(meta.getRuntimeSettings().getPartitionFields());
+        wNumPartitions.setText(String.valueOf(meta.getRuntimeSettings().getNumPartitions()));
+        wCoordinationTimeout.setText(String.valueOf(meta.getRuntimeSettings().getCoordinationTimeout()));
+        wAggregationHost.setText(meta.getRuntimeSettings().getAggregationHost());
+        wAggregationPort.setText(String.valueOf(meta.getRuntimeSettings().getAggregationPort()));
 
         wFields.removeEmptyRows();
         wFields.setRowNums();
@@ -1015,15 +1702,15 @@ public class ReidentificationRiskManagementStepDialog extends BaseStepDialog
     }
 
     /**
-     * Return the display names for the modes.
+     * Return the display names for the modes or other enumerated settings.
      * 
      * @param values
      * @return
      */
-    private String[] toStringArray(Mode[] values) {
+    private String[] toStringArray(Enum<?>[] values) {
         List<String> names = new ArrayList<>();
-        for (Mode mode : values) {
-            names.add(mode.name());
+        for (Enum<?> value : values) {
+            names.add(value.name());
         }
         return names.toArray(new String[names.size()]);
     }
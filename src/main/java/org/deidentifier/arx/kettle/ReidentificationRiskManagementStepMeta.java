@@ -18,9 +18,12 @@
 package org.deidentifier.arx.kettle;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentWindow;
+import org.deidentifier.arx.kettle.rrm.ParametersMetrics;
 import org.deidentifier.arx.kettle.rrm.ParametersRisk;
 import org.deidentifier.arx.kettle.rrm.ParametersRuntime;
 import org.deidentifier.arx.kettle.rrm.XMLDict;
@@ -280,8 +283,15 @@ public class ReidentificationRiskManagementStepMeta extends BaseStepMeta impleme
                            VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
 
         /*
-         * This implementation does not change the field definitions, therefore nothing happens here.
+         * This implementation does not change the field definitions of regular output. Rows sent
+         * to the metrics step, if any, have a dedicated structure: block metrics or, in MONITOR
+         * mode, risk snapshots.
          */
+        if (nextStep != null && runtimeSettings.doMetricsOutput() && nextStep.getName().equals(runtimeSettings.getMetricsStep().trim())) {
+            inputRowMeta.clear();
+            inputRowMeta.addRowMeta(runtimeSettings.getMode() == ParametersRuntime.Mode.MONITOR ? OperationRiskAssessmentWindow.getRowMeta(name)
+                                                                                                 : ParametersMetrics.getRowMeta(name));
+        }
     }
 
     /**
@@ -319,6 +329,13 @@ public class ReidentificationRiskManagementStepMeta extends BaseStepMeta impleme
                                   BaseMessages.getString( PKG, "ReidentificationRiskManagementStep.Message.ReceivingRows.ERROR" ), stepMeta );
             remarks.add( cr );
         }
+
+        // See if the metrics step is a target of this step
+        if ( runtimeSettings.doMetricsOutput() && ( output == null || !Arrays.asList( output ).contains( runtimeSettings.getMetricsStep().trim() ) ) ) {
+            cr = new CheckResult( CheckResult.TYPE_RESULT_ERROR,
+                                  BaseMessages.getString( PKG, "ReidentificationRiskManagementStep.Message.MetricsStep.ERROR", runtimeSettings.getMetricsStep() ), stepMeta );
+            remarks.add( cr );
+        }
     }
 
     /**
@@ -0,0 +1,175 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.Locale;
+
+/**
+ * Adapts the block size between a lower and an upper bound, based on the metrics of previous blocks.
+ * Blocks are shrunk if little heap space is left or if their anonymization takes longer than the
+ * target latency. They are grown if many cells are suppressed, as larger blocks contain larger
+ * classes, or if their anonymization is considerably faster than the target latency. The block size
+ * is changed by at most a factor of two per decision. Access is synchronized, as blocks may be
+ * emitted by a thread other than the one reading rows.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class BlockSizeController {
+
+    /** Maximal factor by which the block size is changed at once */
+    private static final double MAX_FACTOR      = 2d;
+
+    /** Minimal fraction of the heap which must remain available */
+    private static final double MIN_HEADROOM    = 0.25d;
+
+    /** Fraction of suppressed cells above which blocks are grown */
+    private static final double MAX_SUPPRESSION = 0.05d;
+
+    /** Estimated memory consumption of ARX relative to the size of the buffer */
+    private static final long   MEMORY_FACTOR   = 10L;
+
+    /** The lower bound */
+    private final int           min;
+
+    /** The upper bound */
+    private final int           max;
+
+    /** The target latency in milliseconds */
+    private final long          target;
+
+    /** The current block size */
+    private int                 size;
+
+    /** The fraction of suppressed cells in the previous block, negative if there is none */
+    private double              suppression     = -1d;
+
+    /** The reason for the last decision */
+    private String              reason          = "";
+
+    /**
+     * Creates a new instance.
+     *
+     * @param initial The size of the first block
+     * @param min
+     * @param max
+     * @param targetLatency The target latency in seconds
+     */
+    public BlockSizeController(int initial, int min, int max, int targetLatency) {
+        this.min = Math.max(1, Math.min(min, max));
+        this.max = Math.max(this.min, max);
+        this.target = Math.max(1L, targetLatency * 1000L);
+        this.size = clamp(initial);
+    }
+
+    /**
+     * Returns the current block size.
+     *
+     * @return
+     */
+    public synchronized int getBlockSize() {
+        return size;
+    }
+
+    /**
+     * Returns the reason for the last decision.
+     *
+     * @return
+     */
+    public synchronized String getReason() {
+        return reason;
+    }
+
+    /**
+     * Adapts the block size to the metrics of a block which has been anonymized and to the
+     * current state of the heap.
+     *
+     * @param metrics
+     * @return The new block size
+     */
+    public int update(ParametersMetrics metrics) {
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return update(metrics, available, runtime.maxMemory());
+    }
+
+    /**
+     * Adapts the block size to the metrics of a block which has been anonymized.
+     *
+     * @param metrics
+     * @param available The available heap space in bytes
+     * @param heap The maximal heap size in bytes
+     * @return The new block size
+     */
+    synchronized int update(ParametersMetrics metrics, long available, long heap) {
+
+        // Observations
+        long latency = Math.max(1L, metrics.getPreparationTime() + metrics.getAnonymizationTime() + metrics.getOptimizationTime());
+        double headroom = (double) available / (double) heap;
+        double suppressed = metrics.getFractionOfSuppressedCells();
+        double previous = this.suppression;
+        this.suppression = suppressed;
+
+        // Decide
+        double factor;
+        String cause;
+        if (headroom < MIN_HEADROOM) {
+            factor = 1d / MAX_FACTOR;
+            cause = "heap pressure";
+        } else if (latency > target) {
+            factor = Math.max(1d / MAX_FACTOR, (double) target / (double) latency);
+            cause = "latency above target";
+        } else if (suppressed > MAX_SUPPRESSION || (previous >= 0d && suppressed > previous)) {
+            factor = Math.min(MAX_FACTOR, (double) target / (double) latency);
+            cause = "suppression";
+        } else if (latency < target / MAX_FACTOR) {
+            factor = Math.min(MAX_FACTOR, (double) target / (double) latency);
+            cause = "latency below target";
+        } else {
+            factor = 1d;
+            cause = "within target";
+        }
+
+        // Growth is limited by the heap space which is available for the next block
+        int next = clamp((long) Math.ceil(size * factor));
+        if (next > size && metrics.getRows() > 0) {
+            long bytesPerRow = Math.max(1L, metrics.getBufferSize() / metrics.getRows()) * MEMORY_FACTOR;
+            long affordable = (long) ((available - heap * MIN_HEADROOM) / bytesPerRow);
+            if (affordable < next) {
+                next = clamp(Math.max(size, affordable));
+                cause += ", limited by heap";
+            }
+        }
+
+        // Remember
+        this.reason = String.format(Locale.ENGLISH, "%s; latency %d ms, target %d ms, %.1f%% of heap available, %.4f of cells suppressed",
+                                    cause, latency, target, headroom * 100d, suppressed);
+        this.size = next;
+        return next;
+    }
+
+    /**
+     * Keeps the given size within the bounds.
+     *
+     * @param size
+     * @return
+     */
+    private int clamp(long size) {
+        return (int) Math.max(min, Math.min(max, size));
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.NoSuchElementException;
+
+/**
+ * A columnar row buffer. Each column is stored as an array of codes referring
+ * to a per-column dictionary, so that each distinct value is held in memory only once.
+ * If a memory limit is specified, rows are spilled to segment files once the estimated
+ * size of the buffer, including the native rows held in memory, exceeds the limit. The native
+ * rows are spilled at the same time. Spilled rows are stored in the columnar format of
+ * DataSegmentWriter and read back block by block via memory-mapped I/O.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataBuffer {
+
+    /** Initial capacity */
+    private static final int        INITIAL_CAPACITY = 1024;
+
+    /** Maximal number of cells, as cells are addressed with ints, e.g. by DataSuppressionMask */
+    public static final long        MAX_CELLS        = Integer.MAX_VALUE;
+
+    /** Maximal size of the rows of a single segment held in memory */
+    private static final long       MAX_SEGMENT_SIZE = 1L << 30;
+
+    /** Estimated memory consumption of a distinct value, in addition to its characters */
+    private static final long       VALUE_OVERHEAD   = 96L;
+
+    /** The header */
+    private final String[]          header;
+
+    /** The dictionaries, one per column */
+    private final DataDictionary[]  dictionaries;
+
+    /** The codes, one array per column */
+    private int[][]                 columns;
+
+    /** Number of rows in memory */
+    private int                     rows;
+
+    /** Estimated size of the dictionaries in bytes */
+    private long                    size;
+
+    /** Size in bytes after which rows are spilled, Long.MAX_VALUE if spilling is disabled */
+    private final long              limit;
+
+    /** Directory for segment files */
+    private final File              directory;
+
+    /** Segments which have been spilled to disk */
+    private final List<DataBufferSegment> segments = new ArrayList<>();
+
+    /** Index of the first row of each segment */
+    private int[]                   offsets          = new int[0];
+
+    /** Number of rows which have been spilled */
+    private int                     spilled;
+
+    /** The segment accessed last */
+    private DataBufferSegment       current;
+
+    /** The native rows, may be null */
+    private DataPayload             payload;
+
+    /**
+     * Creates a new buffer which is held in memory.
+     *
+     * @param header
+     */
+    public DataBuffer(String[] header) {
+        this(header, 0L, null);
+    }
+
+    /**
+     * Creates a new buffer which spills rows to disk once its estimated size exceeds the given limit.
+     *
+     * @param header
+     * @param limit Limit in bytes, 0 disables spilling
+     * @param directory Directory for segment files, null for the default temporary-file directory
+     */
+    public DataBuffer(String[] header, long limit, File directory) {
+        this.header = header;
+        this.dictionaries = new DataDictionary[header.length];
+        this.columns = new int[header.length][INITIAL_CAPACITY];
+        for (int column = 0; column < header.length; column++) {
+            this.dictionaries[column] = new DataDictionary();
+        }
+        this.rows = 0;
+        this.limit = limit <= 0L ? Long.MAX_VALUE : Math.min(limit, MAX_SEGMENT_SIZE);
+        this.directory = directory;
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param row
+     * @throws IOException if rows cannot be spilled to disk
+     * @throws IllegalStateException if the buffer is full
+     */
+    public void add(String[] row) throws IOException {
+        if (isFull()) {
+            throw new IllegalStateException("A buffer is limited to " + MAX_CELLS + " cells");
+        }
+        if (columns.length > 0 && rows == columns[0].length) {
+            int capacity = (int) Math.min(rows + (rows >> 1), MAX_CELLS / Math.max(1, header.length));
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = Arrays.copyOf(columns[column], capacity);
+            }
+        }
+        for (int column = 0; column < columns.length; column++) {
+            DataDictionary dictionary = dictionaries[column];
+            int code = dictionary.register(row[column]);
+            if (code == dictionary.size() - 1) {
+                size += VALUE_OVERHEAD + 2L * row[column].length();
+            }
+            columns[column][rows] = code;
+        }
+        rows++;
+        if (size + 4L * rows * columns.length + (payload != null ? payload.getEstimatedSize() : 0L) >= limit) {
+            spill();
+        }
+    }
+
+    /**
+     * Removes all rows and values and deletes all segments. The allocated space is retained.
+     */
+    public void clear() {
+        for (DataDictionary dictionary : dictionaries) {
+            dictionary.clear();
+        }
+        for (DataBufferSegment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        if (payload != null) {
+            payload.clear();
+        }
+        offsets = new int[0];
+        current = null;
+        spilled = 0;
+        rows = 0;
+        size = 0L;
+    }
+
+    /**
+     * Creates an empty buffer with the same header and the same spill settings, without native rows.
+     *
+     * @return
+     */
+    public DataBuffer createBuffer() {
+        return new DataBuffer(header, limit == Long.MAX_VALUE ? 0L : limit, directory);
+    }
+
+    /**
+     * Returns the native rows, may be null.
+     *
+     * @return
+     */
+    public DataPayload getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns the estimated size of the rows held in memory, in bytes, including
+     * dictionaries, the space allocated for codes and the native rows.
+     *
+     * @return
+     */
+    public long getEstimatedSize() {
+        long result = columns.length == 0 ? size : size + 4L * columns.length * columns[0].length;
+        return payload != null ? result + payload.getEstimatedSize() : result;
+    }
+
+    /**
+     * Returns the header.
+     *
+     * @return
+     */
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return
+     */
+    public int getNumColumns() {
+        return header.length;
+    }
+
+    /**
+     * Returns the number of rows, excluding the header.
+     *
+     * @return
+     */
+    public int getNumRows() {
+        return spilled + rows;
+    }
+
+    /**
+     * Returns the number of segments which have been spilled to disk.
+     *
+     * @return
+     */
+    public int getNumSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Returns the distinct values of the given column, as known from encoding the rows.
+     * If rows have been spilled, the values of all segments are combined.
+     *
+     * @param column
+     * @return
+     */
+    public String[] getDistinctValues(int column) {
+        return segments.isEmpty() ? dictionaries[column].getValues() : getDistinctValues()[column];
+    }
+
+    /**
+     * Returns the distinct values of all columns. If rows have been spilled, the values of all
+     * segments are combined, reading each segment only once.
+     *
+     * @return
+     */
+    public String[][] getDistinctValues() {
+        String[][] result = new String[header.length][];
+        if (segments.isEmpty()) {
+            for (int column = 0; column < result.length; column++) {
+                result[column] = dictionaries[column].getValues();
+            }
+            return result;
+        }
+        List<Set<String>> values = new ArrayList<>();
+        for (int column = 0; column < result.length; column++) {
+            values.add(new LinkedHashSet<String>());
+        }
+        for (DataBufferSegment segment : segments) {
+            segment.getValues(values);
+            if (segment != current) {
+                segment.release();
+            }
+        }
+        for (int column = 0; column < result.length; column++) {
+            values.get(column).addAll(Arrays.asList(dictionaries[column].getValues()));
+            result[column] = values.get(column).toArray(new String[values.get(column).size()]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value of the given cell.
+     *
+     * @param row
+     * @param column
+     * @return
+     */
+    public String getValue(int row, int column) {
+
+        // In memory
+        if (row >= spilled) {
+            row -= spilled;
+            return dictionaries[column].getValue(columns[column][row]);
+        }
+
+        // On disk
+        int index = Arrays.binarySearch(offsets, row);
+        index = index >= 0 ? index : -index - 2;
+        DataBufferSegment segment = segments.get(index);
+        if (segment != current) {
+            if (current != null) {
+                current.release();
+            }
+            current = segment;
+        }
+        return segment.getValue(row - offsets[index], column);
+    }
+
+    /**
+     * Sets the native rows, which are spilled and cleared together with the buffer.
+     *
+     * @param payload
+     */
+    public void setPayload(DataPayload payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Returns whether the buffer contains no rows.
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return getNumRows() == 0;
+    }
+
+    /**
+     * Returns whether the buffer is full, i.e. whether adding another row would exceed the
+     * maximal number of cells. Blocks must be processed before this happens.
+     *
+     * @return
+     */
+    public boolean isFull() {
+        return (getNumRows() + 1L) * Math.max(1, header.length) > MAX_CELLS;
+    }
+
+    /**
+     * Returns an iterator over all rows, starting with the header, as expected by ARX.
+     * Values are not copied but taken from the dictionaries. The array returned for
+     * data rows is reused, as ARX encodes each row immediately.
+     *
+     * @return
+     */
+    public Iterator<String[]> iterator() {
+        return new Iterator<String[]>() {
+
+            /** The next row, -1 denotes the header */
+            private int            row    = -1;
+
+            /** The row returned */
+            private final String[] buffer = new String[header.length];
+
+            @Override
+            public boolean hasNext() {
+                return row < getNumRows();
+            }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (row == -1) {
+                    row++;
+                    return header;
+                }
+                for (int column = 0; column < buffer.length; column++) {
+                    buffer[column] = getValue(row, column);
+                }
+                row++;
+                return buffer;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Writes all rows held in memory to a new segment, clears the dictionaries and spills
+     * the native rows. Buffers without columns only spill their native rows.
+     *
+     * @throws IOException
+     */
+    private void spill() throws IOException {
+        if (columns.length > 0) {
+            DataBufferSegment segment = DataBufferSegment.write(directory, header, dictionaries, columns, rows);
+            segments.add(segment);
+            offsets = Arrays.copyOf(offsets, offsets.length + 1);
+            offsets[offsets.length - 1] = spilled;
+        }
+        if (payload != null) {
+            payload.spill();
+        }
+        spilled += rows;
+        for (DataDictionary dictionary : dictionaries) {
+            dictionary.clear();
+        }
+        rows = 0;
+        size = 0L;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A block of rows which has been spilled to disk. Segments are written with DataSegmentWriter,
+ * treating all columns as quasi-identifiers, as the columns of a buffer are dictionary-encoded anyway.
+ * Rows are read back block by block with DataSegmentReader, which maps each block into memory. The block accessed last is held in memory
+ * until it is released, as rows are usually accessed in order.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+class DataBufferSegment {
+
+    /** The number of rows per block */
+    private static final int ROWS_PER_BLOCK = 4096;
+
+    /**
+     * Writes the given rows to a new segment.
+     *
+     * @param directory
+     * @param header
+     * @param dictionaries
+     * @param columns
+     * @param rows
+     * @return
+     * @throws IOException
+     */
+    static DataBufferSegment write(File directory, String[] header, DataDictionary[] dictionaries, int[][] columns, int rows) throws IOException {
+
+        File file = File.createTempFile("arx-buffer-", ".seg", directory);
+        boolean[] qis = new boolean[header.length];
+        Arrays.fill(qis, true);
+        try (DataSegmentWriter writer = new DataSegmentWriter(file, header, qis, ROWS_PER_BLOCK)) {
+            String[] values = new String[header.length];
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < values.length; column++) {
+                    values[column] = dictionaries[column].getValue(columns[column][row]);
+                }
+                writer.add(values);
+            }
+        } catch (IOException e) {
+            delete(file);
+            throw e;
+        }
+        try {
+            return new DataBufferSegment(file);
+        } catch (IOException e) {
+            delete(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the file, or schedules it for deletion if this fails.
+     *
+     * @param file
+     */
+    private static void delete(File file) {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /** The file */
+    private final File              file;
+
+    /** The reader */
+    private final DataSegmentReader reader;
+
+    /** The index of the block held in memory, -1 if none */
+    private int                     block = -1;
+
+    /** The rows of the block held in memory */
+    private List<String[]>          cache;
+
+    /**
+     * Opens the given segment file.
+     *
+     * @param file
+     * @throws IOException
+     */
+    private DataBufferSegment(File file) throws IOException {
+        this.file = file;
+        this.reader = new DataSegmentReader(file);
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return
+     */
+    int getNumRows() {
+        return (int) reader.getNumRows();
+    }
+
+    /**
+     * Returns the value of the given cell.
+     *
+     * @param row
+     * @param column
+     * @return
+     * @throws IllegalStateException if the segment cannot be read
+     */
+    String getValue(int row, int column) {
+        int index = reader.getBlock(row);
+        if (index != block) {
+            cache = read(index);
+            block = index;
+        }
+        return cache.get((int) (row - reader.getFirstRow(index)))[column];
+    }
+
+    /**
+     * Adds the distinct values of all columns to the given sets, one per column, in order of first
+     * occurrence. Each block is decoded only once.
+     *
+     * @param values
+     * @throws IllegalStateException if the segment cannot be read
+     */
+    void getValues(List<Set<String>> values) {
+        for (int index = 0; index < reader.getNumBlocks(); index++) {
+            for (String[] row : index == block ? cache : read(index)) {
+                for (int column = 0; column < row.length; column++) {
+                    values.get(column).add(row[column]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the block held in memory.
+     */
+    void release() {
+        cache = null;
+        block = -1;
+    }
+
+    /**
+     * Deletes the segment.
+     */
+    void delete() {
+        release();
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        delete(file);
+    }
+
+    /**
+     * Reads the given block.
+     *
+     * @param index
+     * @return
+     * @throws IllegalStateException if the segment cannot be read
+     */
+    private List<String[]> read(int index) {
+        try {
+            return reader.read(index);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A compact summary of the equivalence classes of a set of rows, i.e. the distinct tuples of QI values
+ * and their numbers of occurrences. Values are encoded with one dictionary per quasi-identifier. Null
+ * values are treated like any other value, as by ARX when enforcing a size threshold, i.e. rows only
+ * belong to the same class if all of their values are equal. The summary is used to determine the
+ * tuples which must be suppressed to satisfy a size threshold.<br>
+ * <br>
+ * Summaries of disjoint sets of rows can be merged and serialized, so that they can be computed where
+ * the rows are read and aggregated elsewhere, without shipping the rows themselves. The risks of the
+ * rows can be assessed with the same wildcard model as OperationRiskAssessmentIncremental.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataClassSummary {
+
+    /**
+     * An encoded tuple, used as a key.
+     */
+    private static class Tuple {
+
+        /** The codes */
+        private final int[] codes;
+
+        /** The hash code */
+        private final int   hashcode;
+
+        /**
+         * Creates a new instance
+         * @param codes
+         */
+        private Tuple(int[] codes) {
+            this.codes = codes;
+            this.hashcode = Arrays.hashCode(codes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return Arrays.equals(codes, ((Tuple) obj).codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashcode;
+        }
+    }
+
+    /**
+     * Reads a summary, which has been serialized with toBytes().
+     *
+     * @param bytes
+     * @return
+     * @throws IOException
+     */
+    public static DataClassSummary fromBytes(byte[] bytes) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Reads a summary, which has been written with write().
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static DataClassSummary read(DataInput in) throws IOException {
+        String[] header = new String[in.readInt()];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = DataSegmentCodec.readString(in);
+        }
+        DataClassSummary result = new DataClassSummary(header);
+        for (DataDictionary dictionary : result.dictionaries) {
+            int size = in.readInt();
+            for (int code = 0; code < size; code++) {
+                dictionary.register(DataSegmentCodec.readString(in));
+            }
+        }
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            int[] codes = new int[header.length];
+            for (int column = 0; column < codes.length; column++) {
+                codes[column] = in.readInt();
+                if (codes[column] < 0 || codes[column] >= result.dictionaries[column].size()) {
+                    throw new IOException("Malformed summary");
+                }
+            }
+            long count = in.readLong();
+            result.classes.put(new Tuple(codes), new long[] { count });
+            result.rows += count;
+        }
+        return result;
+    }
+
+    /** The quasi-identifiers */
+    private final String[]           header;
+
+    /** The dictionaries, one per quasi-identifier */
+    private final DataDictionary[]   dictionaries;
+
+    /** The classes and their sizes */
+    private final Map<Tuple, long[]> classes = new HashMap<>();
+
+    /** The number of rows */
+    private long                     rows;
+
+    /**
+     * Creates an empty summary.
+     *
+     * @param header The quasi-identifiers, in the order in which values are added
+     */
+    public DataClassSummary(String[] header) {
+        this.header = header.clone();
+        this.dictionaries = new DataDictionary[header.length];
+        for (int i = 0; i < header.length; i++) {
+            this.dictionaries[i] = new DataDictionary();
+        }
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param values The values of the quasi-identifiers
+     */
+    public void add(String[] values) {
+        add(values, 1L);
+    }
+
+    /**
+     * Adds the given number of rows with the given values.
+     *
+     * @param values The values of the quasi-identifiers
+     * @param count
+     */
+    public void add(String[] values, long count) {
+        int[] codes = new int[header.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = dictionaries[i].register(values[i]);
+        }
+        Tuple tuple = new Tuple(codes);
+        long[] size = classes.get(tuple);
+        if (size == null) {
+            classes.put(tuple, new long[] { count });
+        } else {
+            size[0] += count;
+        }
+        rows += count;
+    }
+
+    /**
+     * Calculates the different risk values for all rows, treating null values as wildcards.
+     *
+     * @param thresholds
+     * @return
+     */
+    public ParametersRisk calculate(ParametersRisk thresholds) {
+        int[] nulls = new int[header.length];
+        for (int i = 0; i < header.length; i++) {
+            nulls[i] = dictionaries[i].getCode(OperationDataTransformer.MAGIC_NULL_VALUE);
+        }
+        OperationRiskAssessmentWildcard wildcard = new OperationRiskAssessmentWildcard(thresholds, nulls);
+        for (Entry<Tuple, long[]> entry : classes.entrySet()) {
+            wildcard.add(entry.getKey().codes, entry.getValue()[0]);
+        }
+        return wildcard.calculate();
+    }
+
+    /**
+     * Returns the quasi-identifiers.
+     *
+     * @return
+     */
+    public String[] getHeader() {
+        return header.clone();
+    }
+
+    /**
+     * Returns the number of classes.
+     *
+     * @return
+     */
+    public int getNumClasses() {
+        return classes.size();
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return
+     */
+    public long getNumRows() {
+        return rows;
+    }
+
+    /**
+     * Determines the tuples which must be suppressed, i.e. replaced by null values, to satisfy the size
+     * threshold. These are the tuples of all classes smaller than the threshold, which are the records
+     * that ARX suppresses when the threshold is enforced without generalization. As suppressed rows are
+     * not part of any class, the sizes of the remaining classes are not affected.
+     *
+     * @param thresholds
+     * @return
+     */
+    public DataSuppressionDictionary getSuppressions(ParametersRisk thresholds) {
+        int k = OperationCellSuppression.getSizeThreshold(thresholds.getHighestRisk());
+        DataSuppressionDictionary result = new DataSuppressionDictionary();
+        String[] values = new String[header.length];
+        for (Entry<Tuple, long[]> entry : classes.entrySet()) {
+            if (entry.getValue()[0] < k) {
+                for (int column = 0; column < values.length; column++) {
+                    values[column] = dictionaries[column].getValue(entry.getKey().codes[column]);
+                }
+                result.add(values);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the classes of the given summary, which must refer to the same quasi-identifiers.
+     *
+     * @param other
+     */
+    public void merge(DataClassSummary other) {
+        if (!Arrays.equals(header, other.header)) {
+            throw new IllegalArgumentException("Summaries refer to different quasi-identifiers");
+        }
+        String[] values = new String[header.length];
+        for (Entry<Tuple, long[]> entry : other.classes.entrySet()) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = other.dictionaries[i].getValue(entry.getKey().codes[i]);
+            }
+            add(values, entry.getValue()[0]);
+        }
+    }
+
+    /**
+     * Serializes the summary.
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Cannot happen in memory
+        }
+    }
+
+    /**
+     * Writes the summary: the quasi-identifiers, the dictionaries, and the encoded classes with their sizes.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(header.length);
+        for (String qi : header) {
+            DataSegmentCodec.writeString(out, qi);
+        }
+        for (DataDictionary dictionary : dictionaries) {
+            out.writeInt(dictionary.size());
+            for (String value : dictionary.getValues()) {
+                DataSegmentCodec.writeString(out, value);
+            }
+        }
+        out.writeInt(classes.size());
+        for (Entry<Tuple, long[]> entry : classes.entrySet()) {
+            for (int code : entry.getKey().codes) {
+                out.writeInt(code);
+            }
+            out.writeLong(entry.getValue()[0]);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An open-addressing hash table which maps tuples of codes of a fixed width to counts. Entries are
+ * stored off-heap in a direct buffer, each consisting of the count followed by the codes, a count of
+ * zero denoting an empty slot. The table grows until its size reaches the memory limit. Afterwards,
+ * its entries are spilled to a fixed number of partition files, chosen by hash, and the table is
+ * cleared. When entries are visited, the partitions are aggregated one after another, so that each
+ * tuple is visited exactly once with its total count. While a partition is aggregated, the table may
+ * exceed the memory limit, as a partition holds a fraction of the tuples only.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataClassTable {
+
+    /**
+     * Visits the entries of a table.
+     */
+    public static interface EntryVisitor {
+
+        /**
+         * Visits an entry. The array of codes is reused.
+         *
+         * @param codes
+         * @param count
+         */
+        public void visit(int[] codes, int count);
+    }
+
+    /** Initial number of slots */
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    /** Maximal number of slots, direct buffers are limited to 2GB */
+    private static final int MAX_CAPACITY     = 1 << 30;
+
+    /** Number of partitions to which entries are spilled */
+    private static final int NUM_PARTITIONS   = 16;
+
+    /** The number of codes per tuple */
+    private final int        width;
+
+    /** The size of a slot in bytes */
+    private final int        slot;
+
+    /** The memory limit in bytes, Long.MAX_VALUE if the table is never spilled */
+    private final long       limit;
+
+    /** Directory for partition files */
+    private final File       directory;
+
+    /** The slots */
+    private ByteBuffer       table;
+
+    /** The number of slots */
+    private int              capacity;
+
+    /** The number of entries */
+    private int              size;
+
+    /** The partition files, null if no entries have been spilled */
+    private File[]           files;
+
+    /** The streams to the partition files */
+    private DataOutputStream[] outputs;
+
+    /** The number of times entries have been spilled */
+    private int              spills;
+
+    /** The tuple which is processed */
+    private final int[]      tuple;
+
+    /**
+     * Creates a new table which is held in memory only.
+     *
+     * @param width The number of codes per tuple
+     */
+    public DataClassTable(int width) {
+        this(width, 0L, null);
+    }
+
+    /**
+     * Creates a new table which spills entries to disk once its size reaches the given limit.
+     *
+     * @param width The number of codes per tuple
+     * @param limit Limit in bytes, 0 disables spilling
+     * @param directory Directory for partition files, null for the default temporary-file directory
+     */
+    public DataClassTable(int width, long limit, File directory) {
+        this.width = width;
+        this.slot = 4 * (width + 1);
+        this.limit = limit <= 0L ? Long.MAX_VALUE : limit;
+        this.directory = directory;
+        this.tuple = new int[width];
+        this.capacity = INITIAL_CAPACITY;
+        while (capacity > 1 && (long) capacity * slot > this.limit) {
+            capacity >>>= 1;
+        }
+        this.table = ByteBuffer.allocateDirect(capacity * slot);
+    }
+
+    /**
+     * Adds the given count to the count of the given tuple.
+     *
+     * @param codes
+     * @param count Must be positive
+     * @throws IOException if entries cannot be spilled to disk
+     */
+    public void add(int[] codes, int count) throws IOException {
+        put(codes, count);
+        if (size > capacity - (capacity >>> 2)) {
+            long required = 2L * capacity * slot;
+            if (capacity < MAX_CAPACITY && required <= Integer.MAX_VALUE && required <= limit) {
+                resize(capacity << 1);
+            } else {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries and deletes all partition files. The allocated memory is retained,
+     * unless the table has exceeded the memory limit while aggregating partitions.
+     */
+    public void clear() {
+        if ((long) capacity * slot > limit) {
+            while (capacity > 1 && (long) capacity * slot > limit) {
+                capacity >>>= 1;
+            }
+            table = ByteBuffer.allocateDirect(capacity * slot);
+            size = 0;
+        } else {
+            reset();
+        }
+        close();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        files = null;
+        spills = 0;
+    }
+
+    /**
+     * Returns the number of entries held in memory.
+     *
+     * @return
+     */
+    public int getNumEntries() {
+        return size;
+    }
+
+    /**
+     * Returns the number of times entries have been spilled to disk.
+     *
+     * @return
+     */
+    public int getNumSpills() {
+        return spills;
+    }
+
+    /**
+     * Returns the number of bytes allocated off-heap.
+     *
+     * @return
+     */
+    public long getAllocatedSize() {
+        return (long) capacity * slot;
+    }
+
+    /**
+     * Visits all entries. If entries have been spilled, the entries held in memory are spilled as well
+     * and the partitions are aggregated one after another. Afterwards, the table is cleared.
+     *
+     * @param visitor
+     * @throws IOException
+     */
+    public void visit(EntryVisitor visitor) throws IOException {
+
+        // In memory
+        if (files == null) {
+            visitTable(visitor);
+            reset();
+            return;
+        }
+
+        // Spilled
+        spill();
+        close();
+        for (File file : files) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                while (true) {
+                    int count;
+                    try {
+                        count = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    for (int i = 0; i < width; i++) {
+                        tuple[i] = in.readInt();
+                    }
+                    put(tuple, count);
+                    if (size > capacity - (capacity >>> 2)) {
+                        if (capacity == MAX_CAPACITY) {
+                            throw new IOException("Partition exceeds the maximal size of the table");
+                        }
+                        resize(capacity << 1);
+                    }
+                }
+            }
+            visitTable(visitor);
+            reset();
+        }
+        clear();
+    }
+
+    /**
+     * Closes all streams to partition files.
+     */
+    private void close() {
+        if (outputs != null) {
+            for (DataOutputStream out : outputs) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+        outputs = null;
+    }
+
+    /**
+     * Returns the hash code of a tuple. Codes are small and dense, so they are mixed thoroughly,
+     * as linear probing degrades quickly with clustered hash codes.
+     *
+     * @param codes
+     * @return
+     */
+    private int hash(int[] codes) {
+        int hash = 0;
+        for (int i = 0; i < width; i++) {
+            hash = Integer.rotateLeft(hash ^ (codes[i] * 0xCC9E2D51), 13) * 5 + 0xE6546B64;
+        }
+        hash = (hash ^ (hash >>> 16)) * 0x85EBCA6B;
+        hash = (hash ^ (hash >>> 13)) * 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Adds the given count to the count of the given tuple, without checking the load.
+     *
+     * @param codes
+     * @param count
+     */
+    private void put(int[] codes, int count) {
+        int mask = capacity - 1;
+        int index = hash(codes) & mask;
+        while (true) {
+            int offset = index * slot;
+            int current = table.getInt(offset);
+            if (current == 0) {
+                table.putInt(offset, count);
+                for (int i = 0; i < width; i++) {
+                    table.putInt(offset + 4 * (i + 1), codes[i]);
+                }
+                size++;
+                return;
+            }
+            boolean equal = true;
+            for (int i = 0; i < width && equal; i++) {
+                equal = table.getInt(offset + 4 * (i + 1)) == codes[i];
+            }
+            if (equal) {
+                table.putInt(offset, current + count);
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes all entries held in memory.
+     */
+    private void reset() {
+        for (int index = 0; index < capacity; index++) {
+            table.putInt(index * slot, 0);
+        }
+        size = 0;
+    }
+
+    /**
+     * Rehashes all entries into a table with the given number of slots.
+     *
+     * @param capacity
+     */
+    private void resize(int capacity) {
+        ByteBuffer old = this.table;
+        int oldCapacity = this.capacity;
+        this.table = ByteBuffer.allocateDirect(capacity * slot);
+        this.capacity = capacity;
+        this.size = 0;
+        for (int index = 0; index < oldCapacity; index++) {
+            int offset = index * slot;
+            int count = old.getInt(offset);
+            if (count != 0) {
+                for (int i = 0; i < width; i++) {
+                    tuple[i] = old.getInt(offset + 4 * (i + 1));
+                }
+                put(tuple, count);
+            }
+        }
+    }
+
+    /**
+     * Writes all entries held in memory to the partition files and clears the table.
+     *
+     * @throws IOException
+     */
+    private void spill() throws IOException {
+        if (outputs == null) {
+            if (files == null) {
+                files = new File[NUM_PARTITIONS];
+                for (int i = 0; i < NUM_PARTITIONS; i++) {
+                    files[i] = File.createTempFile("arx-classes-", ".part", directory);
+                }
+            }
+            outputs = new DataOutputStream[NUM_PARTITIONS];
+            for (int i = 0; i < NUM_PARTITIONS; i++) {
+                outputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(files[i], true), 1 << 16));
+            }
+        }
+        for (int index = 0; index < capacity; index++) {
+            int offset = index * slot;
+            int count = table.getInt(offset);
+            if (count != 0) {
+                for (int i = 0; i < width; i++) {
+                    tuple[i] = table.getInt(offset + 4 * (i + 1));
+                }
+                DataOutputStream out = outputs[(hash(tuple) >>> 24) & (NUM_PARTITIONS - 1)];
+                out.writeInt(count);
+                for (int i = 0; i < width; i++) {
+                    out.writeInt(tuple[i]);
+                }
+            }
+        }
+        reset();
+        spills++;
+    }
+
+    /**
+     * Visits all entries held in memory.
+     *
+     * @param visitor
+     */
+    private void visitTable(EntryVisitor visitor) {
+        for (int index = 0; index < capacity; index++) {
+            int offset = index * slot;
+            int count = table.getInt(offset);
+            if (count != 0) {
+                for (int i = 0; i < width; i++) {
+                    tuple[i] = table.getInt(offset + 4 * (i + 1));
+                }
+                visitor.visit(tuple, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A dictionary mapping the distinct values of a single column to dense integer codes.
+ * Each distinct value is stored exactly once, codes are assigned in order of appearance.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataDictionary {
+
+    /** Initial capacity */
+    private static final int     INITIAL_CAPACITY = 16;
+
+    /** Maps values to codes */
+    private Map<String, Integer> codes;
+
+    /** Maps codes to values */
+    private String[]             values;
+
+    /** Number of distinct values */
+    private int                  size;
+
+    /**
+     * Creates a new, empty dictionary.
+     */
+    public DataDictionary() {
+        clear();
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+        this.codes = new HashMap<>();
+        this.values = new String[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the code of the given value, or -1 if it is not contained.
+     *
+     * @param value
+     * @return
+     */
+    public int getCode(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * Returns the value for the given code.
+     *
+     * @param code
+     * @return
+     */
+    public String getValue(int code) {
+        return values[code];
+    }
+
+    /**
+     * Returns all distinct values, ordered by code.
+     *
+     * @return
+     */
+    public String[] getValues() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Registers the value and returns its code.
+     *
+     * @param value
+     * @return
+     */
+    public int register(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size << 1);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Returns the number of distinct values.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.List;
+
+/**
+ * Assigns rows to partitions by hashing the values of a subset of the quasi-identifiers.
+ * As all rows of an equivalence class share their values of each quasi-identifier, each
+ * class is contained in exactly one partition, so that partitions can be anonymized
+ * independently of each other.
+ * <br>
+ * Null values are hashed like any other value, which matches how classes are formed during
+ * anonymization. When risks are assessed, null values are wildcards, i.e. a row with a null
+ * value in a partition field would also match rows of other partitions. Rows are nevertheless
+ * not routed to a global pass: matching more rows only enlarges classes, so partitions which
+ * satisfy the thresholds on their own also satisfy them together. The price is that rows with
+ * null values may be suppressed although they would match enough rows across partitions, as
+ * is the case for rows in different blocks without partitioning.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataPartitioner {
+
+    /** The indices of the columns by which rows are partitioned */
+    private final int[] columns;
+
+    /** The number of partitions */
+    private final int   numPartitions;
+
+    /**
+     * Constructor.
+     *
+     * @param header
+     * @param fields The fields by which rows are partitioned, which must be contained in the header
+     * @param numPartitions
+     */
+    public DataPartitioner(String[] header, List<String> fields, int numPartitions) {
+        this.columns = new int[fields.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = -1;
+            for (int column = 0; column < header.length; column++) {
+                if (header[column].equals(fields.get(i))) {
+                    columns[i] = column;
+                }
+            }
+            if (columns[i] == -1) {
+                throw new IllegalArgumentException("Unknown field: " + fields.get(i));
+            }
+        }
+        this.numPartitions = numPartitions;
+    }
+
+    /**
+     * Returns the number of partitions.
+     *
+     * @return
+     */
+    public int getNumPartitions() {
+        return numPartitions;
+    }
+
+    /**
+     * Returns the partition of the given row.
+     *
+     * @param row
+     * @return
+     */
+    public int getPartition(String[] row) {
+        int hash = 1;
+        for (int column : columns) {
+            hash = 31 * hash + row[column].hashCode();
+        }
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % numPartitions;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * The native rows belonging to a buffer, which are passed on unchanged apart from suppressed cells.
+ * Rows are held in memory. If a directory is given, the rows held in memory are appended to a file
+ * via Kettle's row serialization whenever the buffer spills its rows. Rows on disk must be accessed
+ * sequentially, as done when results are written.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataPayload {
+
+    /** Estimated memory consumption of a row, in addition to its cells */
+    private static final long      ROW_OVERHEAD   = 16L;
+
+    /** Estimated memory consumption of a cell, in addition to its value */
+    private static final long      CELL_OVERHEAD  = 8L;
+
+    /** Estimated memory consumption of a value, in addition to its characters or bytes */
+    private static final long      VALUE_OVERHEAD = 40L;
+
+    /** The row meta */
+    private final RowMetaInterface meta;
+
+    /** The rows held in memory */
+    private final List<Object[]>   rows;
+
+    /** The directory, null if rows are never spilled */
+    private final File             directory;
+
+    /** The file */
+    private File                   file;
+
+    /** Output stream */
+    private DataOutputStream       out;
+
+    /** Input stream */
+    private DataInputStream        in;
+
+    /** The number of rows */
+    private int                    size;
+
+    /** The number of rows which have been spilled */
+    private int                    spilled;
+
+    /** The index of the next row to be read from disk */
+    private int                    position;
+
+    /** Estimated size of the rows held in memory in bytes */
+    private long                   memory;
+
+    /**
+     * Creates a payload which is held in memory.
+     *
+     * @param meta
+     */
+    public DataPayload(RowMetaInterface meta) {
+        this(meta, null);
+    }
+
+    /**
+     * Creates a payload which is spilled to the given directory together with its buffer.
+     *
+     * @param meta
+     * @param directory Directory for spilled rows, null if rows are never spilled
+     */
+    public DataPayload(RowMetaInterface meta, File directory) {
+        this.meta = meta;
+        this.rows = new ArrayList<>();
+        this.directory = directory;
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param row
+     * @throws KettleException
+     */
+    public void add(Object[] row) throws KettleException {
+        rows.add(row);
+        memory += ROW_OVERHEAD + CELL_OVERHEAD * row.length;
+        for (Object value : row) {
+            if (value instanceof String) {
+                memory += VALUE_OVERHEAD + 2L * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                memory += VALUE_OVERHEAD + ((byte[]) value).length;
+            } else if (value != null) {
+                memory += VALUE_OVERHEAD;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes all rows.
+     */
+    public void clear() {
+        rows.clear();
+        close();
+        if (file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+        file = null;
+        size = 0;
+        spilled = 0;
+        position = 0;
+        memory = 0L;
+    }
+
+    /**
+     * Returns the given row. Rows stored on disk must be accessed in sequential order.
+     *
+     * @param row
+     * @return
+     * @throws KettleException
+     */
+    public Object[] get(int row) throws KettleException {
+        if (row >= spilled) {
+            return rows.get(row - spilled);
+        }
+        try {
+            if (out != null) {
+                out.flush();
+            }
+            if (in == null || row < position) {
+                if (in != null) {
+                    in.close();
+                }
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+                position = 0;
+            }
+            Object[] result = null;
+            while (position <= row) {
+                result = meta.readData(in);
+                position++;
+            }
+            return result;
+        } catch (IOException e) {
+            throw new KettleException(e);
+        }
+    }
+
+    /**
+     * Returns the estimated size of the rows held in memory, in bytes.
+     *
+     * @return
+     */
+    public long getEstimatedSize() {
+        return memory;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends the rows held in memory to the file, if a directory has been specified.
+     * Called when the buffer spills its rows.
+     *
+     * @throws IOException
+     */
+    void spill() throws IOException {
+        if (directory == null || rows.isEmpty()) {
+            return;
+        }
+        if (out == null) {
+            file = File.createTempFile("arx-payload-", ".rows", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        }
+        try {
+            for (Object[] row : rows) {
+                meta.writeData(out, row);
+            }
+        } catch (KettleException e) {
+            throw new IOException(e);
+        }
+        spilled += rows.size();
+        rows.clear();
+        memory = 0L;
+    }
+
+    /**
+     * Closes all streams.
+     */
+    private void close() {
+        try {
+            if (out != null) {
+                out.close();
+            }
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException e) {
+            // Ignore
+        }
+        out = null;
+        in = null;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodings used by the columnar segment format: variable-length integers, strings, bit-packed or
+ * run-length encoded codes, and a compression scheme for byte arrays in the style of LZ4's block
+ * format. A compressed array is a sequence of tokens, each consisting of a run of literal bytes and a
+ * back-reference of at least four bytes into the last 64KB of output. Matches are found via a hash
+ * table over four-byte prefixes, which trades some compression ratio for speed.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+class DataSegmentCodec {
+
+    /**
+     * Sequential access to an encoded byte array or a memory-mapped region of a file.
+     */
+    static class Input {
+
+        /** The data */
+        private final ByteBuffer data;
+
+        /**
+         * Creates a new instance
+         * @param data
+         */
+        Input(byte[] data) {
+            this(ByteBuffer.wrap(data));
+        }
+
+        /**
+         * Creates a new instance, reading from the current position to the limit of the buffer
+         * @param data
+         */
+        Input(ByteBuffer data) {
+            this.data = data;
+        }
+
+        /**
+         * Reads a byte.
+         *
+         * @return
+         * @throws IOException
+         */
+        int read() throws IOException {
+            if (!data.hasRemaining()) {
+                throw new IOException("Unexpected end of block");
+            }
+            return data.get() & 0xFF;
+        }
+
+        /**
+         * Reads the given number of bytes.
+         *
+         * @param length
+         * @return
+         * @throws IOException
+         */
+        byte[] read(int length) throws IOException {
+            if (length < 0 || length > data.remaining()) {
+                throw new IOException("Unexpected end of block");
+            }
+            byte[] result = new byte[length];
+            data.get(result);
+            return result;
+        }
+    }
+
+    /** Codes are bit-packed */
+    static final int          ENCODING_BIT_PACKED = 0;
+
+    /** Codes are run-length encoded */
+    static final int          ENCODING_RUN_LENGTH = 1;
+
+    /** Minimal length of a match */
+    private static final int  MIN_MATCH           = 4;
+
+    /** Maximal distance of a match */
+    private static final int  MAX_OFFSET          = 0xFFFF;
+
+    /** Number of bits of the hash table */
+    private static final int  HASH_BITS           = 14;
+
+    /**
+     * Compresses the given bytes.
+     *
+     * @param src
+     * @return
+     */
+    static byte[] compress(byte[] src) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(src.length / 2 + 16);
+        int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+        int anchor = 0;
+        int position = 0;
+        int limit = src.length - MIN_MATCH;
+        while (position <= limit) {
+            int sequence = getInt(src, position);
+            int hash = (sequence * 0x9E3779B1) >>> (32 - HASH_BITS);
+            int reference = table[hash];
+            table[hash] = position;
+            if (reference < 0 || position - reference > MAX_OFFSET || getInt(src, reference) != sequence) {
+                position++;
+                continue;
+            }
+            int length = MIN_MATCH;
+            while (position + length < src.length && src[reference + length] == src[position + length]) {
+                length++;
+            }
+            writeSequence(out, src, anchor, position - anchor, position - reference, length);
+            position += length;
+            anchor = position;
+        }
+        writeSequence(out, src, anchor, src.length - anchor, 0, 0);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decompresses the given bytes.
+     *
+     * @param src
+     * @param length The length of the uncompressed data
+     * @return
+     * @throws IOException
+     */
+    static byte[] decompress(byte[] src, int length) throws IOException {
+        byte[] result = new byte[length];
+        int in = 0;
+        int out = 0;
+        try {
+            while (in < src.length) {
+                int token = src[in++] & 0xFF;
+
+                // Literals
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int value;
+                    do {
+                        value = src[in++] & 0xFF;
+                        literals += value;
+                    } while (value == 255);
+                }
+                System.arraycopy(src, in, result, out, literals);
+                in += literals;
+                out += literals;
+                if (in == src.length) {
+                    break;
+                }
+
+                // Match
+                int offset = (src[in++] & 0xFF) | ((src[in++] & 0xFF) << 8);
+                int match = token & 0x0F;
+                if (match == 15) {
+                    int value;
+                    do {
+                        value = src[in++] & 0xFF;
+                        match += value;
+                    } while (value == 255);
+                }
+                match += MIN_MATCH;
+                if (offset == 0 || offset > out) {
+                    throw new IOException("Invalid match offset");
+                }
+                for (int i = 0; i < match; i++) { // Matches may overlap
+                    result[out] = result[out - offset];
+                    out++;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt compressed data", e);
+        }
+        if (out != length) {
+            throw new IOException("Corrupt compressed data");
+        }
+        return result;
+    }
+
+    /**
+     * Packs the given codes with the given number of bits each.
+     *
+     * @param out
+     * @param codes
+     * @param rows
+     * @param bits
+     */
+    static void pack(ByteArrayOutputStream out, int[] codes, int rows, int bits) {
+        long buffer = 0L;
+        int buffered = 0;
+        for (int row = 0; row < rows; row++) {
+            buffer |= ((long) codes[row]) << buffered;
+            buffered += bits;
+            while (buffered >= 8) {
+                out.write((int) buffer);
+                buffer >>>= 8;
+                buffered -= 8;
+            }
+        }
+        if (buffered > 0) {
+            out.write((int) buffer);
+        }
+    }
+
+    /**
+     * Reads codes which have been packed with the given number of bits each.
+     *
+     * @param in
+     * @param rows
+     * @param bits
+     * @return
+     * @throws IOException
+     */
+    static int[] unpack(Input in, int rows, int bits) throws IOException {
+        int[] codes = new int[rows];
+        if (bits == 0) {
+            return codes;
+        }
+        long buffer = 0L;
+        int buffered = 0;
+        long mask = (1L << bits) - 1L;
+        for (int row = 0; row < rows; row++) {
+            while (buffered < bits) {
+                buffer |= ((long) in.read()) << buffered;
+                buffered += 8;
+            }
+            codes[row] = (int) (buffer & mask);
+            buffer >>>= bits;
+            buffered -= bits;
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the number of bits needed to represent codes up to the given size.
+     *
+     * @param size
+     * @return
+     */
+    static int getBits(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Reads a string from the footer of a file or from a message.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a string, which may be null.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    static String readString(Input in) throws IOException {
+        int length = readVarInt(in);
+        return length == 0 ? null : new String(in.read(length - 1), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a variable-length integer.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    static int readVarInt(Input in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int value = in.read();
+            result |= (value & 0x7F) << shift;
+            if ((value & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed integer");
+    }
+
+    /**
+     * Writes a string to the footer of a file or to a message. Unlike writeUTF(), this is not limited in length.
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a string, which may be null.
+     *
+     * @param out
+     * @param value
+     */
+    static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes a variable-length integer, which must not be negative.
+     *
+     * @param out
+     * @param value
+     */
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads four bytes in little-endian order.
+     *
+     * @param data
+     * @param position
+     * @return
+     */
+    private static int getInt(byte[] data, int position) {
+        return (data[position] & 0xFF) | ((data[position + 1] & 0xFF) << 8) | ((data[position + 2] & 0xFF) << 16) | ((data[position + 3] & 0xFF) << 24);
+    }
+
+    /**
+     * Writes a sequence of literals followed by a match. The last sequence has no match.
+     *
+     * @param out
+     * @param src
+     * @param start Start of the literals
+     * @param literals Number of literals
+     * @param offset Distance of the match
+     * @param match Length of the match, 0 for the last sequence
+     */
+    private static void writeSequence(ByteArrayOutputStream out, byte[] src, int start, int literals, int offset, int match) {
+        int extra = match == 0 ? 0 : match - MIN_MATCH;
+        out.write((Math.min(literals, 15) << 4) | Math.min(extra, 15));
+        writeLength(out, literals);
+        out.write(src, start, literals);
+        if (match != 0) {
+            out.write(offset & 0xFF);
+            out.write(offset >>> 8);
+            writeLength(out, extra);
+        }
+    }
+
+    /**
+     * Writes the part of a length which does not fit into the token.
+     *
+     * @param out
+     * @param length
+     */
+    private static void writeLength(ByteArrayOutputStream out, int length) {
+        if (length < 15) {
+            return;
+        }
+        length -= 15;
+        while (length >= 255) {
+            out.write(255);
+            length -= 255;
+        }
+        out.write(length);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads files written by DataSegmentWriter. The footer is read upon construction, blocks are read
+ * and decoded on request, in any order. Blocks are accessed via memory-mapped I/O, each block is
+ * mapped separately, so that files are not limited to the 2GB addressable by a single mapping.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataSegmentReader implements Closeable {
+
+    /** The file */
+    private final RandomAccessFile file;
+
+    /** The channel of the file */
+    private final FileChannel      channel;
+
+    /** The header */
+    private final String[]         header;
+
+    /** Whether columns are quasi-identifiers */
+    private final boolean[]        qis;
+
+    /** Offsets of the blocks */
+    private final long[]           offsets;
+
+    /** Lengths of the blocks */
+    private final int[]            lengths;
+
+    /** Index of the first row of each block */
+    private final long[]           first;
+
+    /** The number of rows */
+    private final long             rows;
+
+    /**
+     * Opens the given file and reads the footer.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public DataSegmentReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        try {
+
+            // Trailer
+            long length = channel.size();
+            if (length < 12) {
+                throw new IOException("Not a segment file: " + file);
+            }
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, length - 12, 12);
+            long footer = trailer.getLong();
+            if (trailer.getInt() != DataSegmentWriter.MAGIC || footer < 0 || footer > length - 12) {
+                throw new IOException("Not a segment file: " + file);
+            }
+
+            // Footer
+            byte[] bytes = new byte[(int) (length - 12 - footer)];
+            channel.map(FileChannel.MapMode.READ_ONLY, footer, bytes.length).get(bytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int version = in.readInt();
+            if (version != DataSegmentWriter.VERSION) {
+                throw new IOException("Unsupported version of segment file: " + version);
+            }
+            this.header = new String[in.readInt()];
+            this.qis = new boolean[header.length];
+            for (int column = 0; column < header.length; column++) {
+                header[column] = DataSegmentCodec.readString(in);
+                qis[column] = in.readBoolean();
+            }
+            int blocks = in.readInt();
+            this.offsets = new long[blocks];
+            this.lengths = new int[blocks];
+            this.first = new long[blocks];
+            long rows = 0L;
+            for (int block = 0; block < blocks; block++) {
+                offsets[block] = in.readLong();
+                lengths[block] = in.readInt();
+                first[block] = rows;
+                rows += in.readInt();
+            }
+            this.rows = rows;
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Returns the index of the block containing the given row.
+     *
+     * @param row
+     * @return
+     */
+    public int getBlock(long row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+        int index = Arrays.binarySearch(first, row); // Blocks are never empty
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Returns the index of the first row of the given block.
+     *
+     * @param block
+     * @return
+     */
+    public long getFirstRow(int block) {
+        return first[block];
+    }
+
+    /**
+     * Returns the header.
+     *
+     * @return
+     */
+    public String[] getHeader() {
+        return header.clone();
+    }
+
+    /**
+     * Returns the number of blocks.
+     *
+     * @return
+     */
+    public int getNumBlocks() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return
+     */
+    public long getNumRows() {
+        return rows;
+    }
+
+    /**
+     * Returns whether the given column is a quasi-identifier.
+     *
+     * @param column
+     * @return
+     */
+    public boolean isQi(int column) {
+        return qis[column];
+    }
+
+    /**
+     * Reads and decodes the given block.
+     *
+     * @param block
+     * @return
+     * @throws IOException
+     */
+    public List<String[]> read(int block) throws IOException {
+
+        // Map
+        DataSegmentCodec.Input in = new DataSegmentCodec.Input(channel.map(FileChannel.MapMode.READ_ONLY, offsets[block], lengths[block]));
+
+        // Decode
+        int size = DataSegmentCodec.readVarInt(in);
+        String[][] result = new String[size][header.length];
+        for (int column = 0; column < header.length; column++) {
+            if (qis[column]) {
+                readCodes(in, result, column);
+            } else {
+                readPayload(in, result, column);
+            }
+        }
+        return new ArrayList<>(Arrays.asList(result));
+    }
+
+    /**
+     * Decodes the values of a column which is not a quasi-identifier.
+     *
+     * @param in
+     * @param rows
+     * @param column
+     * @throws IOException
+     */
+    private void readPayload(DataSegmentCodec.Input in, String[][] rows, int column) throws IOException {
+        int raw = DataSegmentCodec.readVarInt(in);
+        int compressed = DataSegmentCodec.readVarInt(in);
+        DataSegmentCodec.Input values = new DataSegmentCodec.Input(DataSegmentCodec.decompress(in.read(compressed), raw));
+        for (String[] row : rows) {
+            row[column] = DataSegmentCodec.readString(values);
+        }
+    }
+
+    /**
+     * Decodes the values of a quasi-identifier.
+     *
+     * @param in
+     * @param rows
+     * @param column
+     * @throws IOException
+     */
+    private void readCodes(DataSegmentCodec.Input in, String[][] rows, int column) throws IOException {
+
+        // Dictionary
+        String[] dictionary = new String[DataSegmentCodec.readVarInt(in)];
+        for (int code = 0; code < dictionary.length; code++) {
+            dictionary[code] = DataSegmentCodec.readString(in);
+        }
+
+        // Codes
+        try {
+            int encoding = in.read();
+            if (encoding == DataSegmentCodec.ENCODING_RUN_LENGTH) {
+                int runs = DataSegmentCodec.readVarInt(in);
+                int row = 0;
+                for (int run = 0; run < runs; run++) {
+                    String value = dictionary[DataSegmentCodec.readVarInt(in)];
+                    int length = DataSegmentCodec.readVarInt(in);
+                    for (int i = 0; i < length; i++) {
+                        rows[row++][column] = value;
+                    }
+                }
+                if (row != rows.length) {
+                    throw new IOException("Corrupt block");
+                }
+            } else if (encoding == DataSegmentCodec.ENCODING_BIT_PACKED) {
+                int[] codes = DataSegmentCodec.unpack(in, rows.length, in.read());
+                for (int row = 0; row < rows.length; row++) {
+                    rows[row][column] = dictionary[codes[row]];
+                }
+            } else {
+                throw new IOException("Unknown encoding: " + encoding);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt block", e);
+        }
+    }
+}
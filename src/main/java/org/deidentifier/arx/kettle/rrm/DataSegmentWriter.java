@@ -0,0 +1,245 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes rows to a file in a columnar format. Rows are grouped into blocks, which are encoded column
+ * by column. Values of quasi-identifiers are dictionary-encoded per block, with codes being bit-packed
+ * or run-length encoded, whichever is smaller. The values of all other columns are concatenated and
+ * compressed. A footer, which is written when the writer is closed, contains the header and the
+ * position of each block, so that blocks can be read in any order.<br>
+ * <br>
+ * File layout: blocks, footer (version, header, offset, length and number of rows of each block),
+ * offset of the footer (8 bytes), magic number (4 bytes).
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataSegmentWriter implements Closeable {
+
+    /** Magic number, "ARXS" */
+    static final int                     MAGIC   = 0x41525853;
+
+    /** Version of the format */
+    static final int                     VERSION = 1;
+
+    /** The header */
+    private final String[]               header;
+
+    /** Whether columns are quasi-identifiers */
+    private final boolean[]              qis;
+
+    /** The number of rows per block */
+    private final int                    rowsPerBlock;
+
+    /** The output */
+    private final DataOutputStream       out;
+
+    /** The rows of the current block */
+    private final List<String[]>         rows    = new ArrayList<>();
+
+    /** For each block: offset, length and number of rows */
+    private final List<long[]>           blocks  = new ArrayList<>();
+
+    /** The current offset */
+    private long                         offset;
+
+    /** The number of rows written */
+    private long                         written;
+
+    /** Whether the writer has been closed */
+    private boolean                      closed;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param file
+     * @param header
+     * @param qis Whether columns are quasi-identifiers
+     * @param rowsPerBlock
+     * @throws IOException
+     */
+    public DataSegmentWriter(File file, String[] header, boolean[] qis, int rowsPerBlock) throws IOException {
+        if (header.length != qis.length) {
+            throw new IllegalArgumentException("Header and flags differ in length");
+        }
+        this.header = header.clone();
+        this.qis = qis.clone();
+        this.rowsPerBlock = Math.max(1, rowsPerBlock);
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    }
+
+    /**
+     * Adds a row. The row is copied.
+     *
+     * @param row
+     * @throws IOException
+     */
+    public void add(String[] row) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Writer has been closed");
+        }
+        if (row.length != header.length) {
+            throw new IllegalArgumentException("Row has " + row.length + " instead of " + header.length + " columns");
+        }
+        rows.add(row.clone());
+        if (rows.size() == rowsPerBlock) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the remaining rows and the footer, and closes the file.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            out.writeInt(VERSION);
+            out.writeInt(header.length);
+            for (int column = 0; column < header.length; column++) {
+                DataSegmentCodec.writeString(out, header[column]);
+                out.writeBoolean(qis[column]);
+            }
+            out.writeInt(blocks.size());
+            for (long[] block : blocks) {
+                out.writeLong(block[0]);
+                out.writeInt((int) block[1]);
+                out.writeInt((int) block[2]);
+            }
+            out.writeLong(offset);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the number of rows added.
+     *
+     * @return
+     */
+    public long getNumRows() {
+        return written + rows.size();
+    }
+
+    /**
+     * Encodes the current block and writes it.
+     *
+     * @throws IOException
+     */
+    private void flush() throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        int size = rows.size();
+        DataSegmentCodec.writeVarInt(block, size);
+        for (int column = 0; column < header.length; column++) {
+            if (qis[column]) {
+                writeCodes(block, column);
+            } else {
+                writePayload(block, column);
+            }
+        }
+        byte[] bytes = block.toByteArray();
+        out.write(bytes);
+        blocks.add(new long[] { offset, bytes.length, size });
+        offset += bytes.length;
+        written += size;
+        rows.clear();
+    }
+
+    /**
+     * Writes the dictionary and the codes of a quasi-identifier.
+     *
+     * @param block
+     * @param column
+     */
+    private void writeCodes(ByteArrayOutputStream block, int column) {
+
+        // Encode
+        DataDictionary dictionary = new DataDictionary();
+        int size = rows.size();
+        int[] codes = new int[size];
+        int runs = 0;
+        for (int row = 0; row < size; row++) {
+            codes[row] = dictionary.register(rows.get(row)[column]);
+            if (row == 0 || codes[row] != codes[row - 1]) {
+                runs++;
+            }
+        }
+        DataSegmentCodec.writeVarInt(block, dictionary.size());
+        for (String value : dictionary.getValues()) {
+            DataSegmentCodec.writeString(block, value);
+        }
+
+        // Choose the smaller representation, estimating two bytes each for the code and the length of a run
+        int bits = DataSegmentCodec.getBits(dictionary.size());
+        if (4L * runs < ((long) size * bits + 7L) / 8L) {
+            block.write(DataSegmentCodec.ENCODING_RUN_LENGTH);
+            DataSegmentCodec.writeVarInt(block, runs);
+            int start = 0;
+            for (int row = 1; row <= size; row++) {
+                if (row == size || codes[row] != codes[start]) {
+                    DataSegmentCodec.writeVarInt(block, codes[start]);
+                    DataSegmentCodec.writeVarInt(block, row - start);
+                    start = row;
+                }
+            }
+        } else {
+            block.write(DataSegmentCodec.ENCODING_BIT_PACKED);
+            block.write(bits);
+            DataSegmentCodec.pack(block, codes, size, bits);
+        }
+    }
+
+    /**
+     * Writes the values of a column which is not a quasi-identifier.
+     *
+     * @param block
+     * @param column
+     */
+    private void writePayload(ByteArrayOutputStream block, int column) {
+        ByteArrayOutputStream values = new ByteArrayOutputStream();
+        for (String[] row : rows) {
+            DataSegmentCodec.writeString(values, row[column]);
+        }
+        byte[] raw = values.toByteArray();
+        byte[] compressed = DataSegmentCodec.compress(raw);
+        DataSegmentCodec.writeVarInt(block, raw.length);
+        DataSegmentCodec.writeVarInt(block, compressed.length);
+        block.write(compressed, 0, compressed.length);
+    }
+}
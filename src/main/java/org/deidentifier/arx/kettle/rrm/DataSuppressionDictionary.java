@@ -0,0 +1,136 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A set of tuples of QI values which are to be suppressed. As the decision only depends on the values
+ * of a row, the dictionary can be computed once from the classes of all rows and then be applied to
+ * each row individually, wherever the rows are held. To this end, dictionaries can be serialized.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataSuppressionDictionary {
+
+    /**
+     * Reads a dictionary, which has been serialized with toBytes().
+     *
+     * @param bytes
+     * @return
+     * @throws IOException
+     */
+    public static DataSuppressionDictionary fromBytes(byte[] bytes) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Reads a dictionary, which has been written with write().
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static DataSuppressionDictionary read(DataInput in) throws IOException {
+        DataSuppressionDictionary result = new DataSuppressionDictionary();
+        String[] values = new String[in.readInt()];
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            for (int column = 0; column < values.length; column++) {
+                values[column] = DataSegmentCodec.readString(in);
+            }
+            result.add(values);
+        }
+        return result;
+    }
+
+    /** The tuples */
+    private final Set<List<String>> tuples = new HashSet<>();
+
+    /**
+     * Adds a tuple.
+     *
+     * @param values
+     */
+    public void add(String[] values) {
+        tuples.add(Arrays.asList(values.clone()));
+    }
+
+    /**
+     * Returns whether the given tuple is to be suppressed.
+     *
+     * @param values
+     * @return
+     */
+    public boolean contains(String[] values) {
+        return !tuples.isEmpty() && tuples.contains(Arrays.asList(values));
+    }
+
+    /**
+     * Returns the number of tuples.
+     *
+     * @return
+     */
+    public int size() {
+        return tuples.size();
+    }
+
+    /**
+     * Serializes the dictionary.
+     *
+     * @return
+     */
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Cannot happen in memory
+        }
+    }
+
+    /**
+     * Writes the dictionary: the number of values per tuple, followed by the tuples.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(tuples.isEmpty() ? 0 : tuples.iterator().next().size());
+        out.writeInt(tuples.size());
+        for (List<String> tuple : tuples) {
+            for (String value : tuple) {
+                DataSegmentCodec.writeString(out, value);
+            }
+        }
+    }
+}
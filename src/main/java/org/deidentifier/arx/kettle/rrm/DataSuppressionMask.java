@@ -0,0 +1,128 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.BitSet;
+
+/**
+ * The result of anonymizing a buffer, represented by the cells which have been suppressed.
+ * Cells are numbered row by row, and only cells whose value was not null before are contained.
+ * As cells are addressed with ints, the number of cells of the buffer is limited to
+ * DataBuffer.MAX_CELLS, which is enforced by the buffer.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataSuppressionMask {
+
+    /** The buffer */
+    private final DataBuffer data;
+
+    /** The number of columns */
+    private final int        columns;
+
+    /** The suppressed cells */
+    private final BitSet     cells;
+
+    /**
+     * Creates a mask in which no cells are suppressed.
+     *
+     * @param data
+     */
+    public DataSuppressionMask(DataBuffer data) {
+        this(data, new BitSet());
+    }
+
+    /**
+     * Creates a mask for the given cells.
+     *
+     * @param data
+     * @param cells
+     */
+    DataSuppressionMask(DataBuffer data, BitSet cells) {
+        if ((long) data.getNumRows() * data.getNumColumns() > DataBuffer.MAX_CELLS) {
+            throw new IllegalArgumentException("A mask is limited to " + DataBuffer.MAX_CELLS + " cells");
+        }
+        this.data = data;
+        this.columns = data.getNumColumns();
+        this.cells = cells;
+    }
+
+    /**
+     * Returns the buffer.
+     *
+     * @return
+     */
+    public DataBuffer getData() {
+        return data;
+    }
+
+    /**
+     * Returns the number of suppressed cells.
+     *
+     * @return
+     */
+    public int getNumSuppressedCells() {
+        return cells.cardinality();
+    }
+
+    /**
+     * Returns whether the given cell is suppressed.
+     *
+     * @param row
+     * @param column
+     * @return
+     */
+    public boolean isSuppressed(int row, int column) {
+        return cells.get(row * columns + column);
+    }
+
+    /**
+     * Suppresses the given cell, unless it is null.
+     *
+     * @param row
+     * @param column
+     */
+    public void suppress(int row, int column) {
+        if (!OperationDataTransformer.isNull(data.getValue(row, column))) {
+            cells.set(row * columns + column);
+        }
+    }
+
+    /**
+     * Suppresses the given columns in all rows.
+     *
+     * @param columns
+     */
+    public void suppressAll(int[] columns) {
+        for (int row = 0; row < data.getNumRows(); row++) {
+            for (int column : columns) {
+                suppress(row, column);
+            }
+        }
+    }
+
+    /**
+     * Returns the suppressed cells.
+     *
+     * @return
+     */
+    BitSet getCells() {
+        return cells;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A cache for the generalization hierarchies of quasi-identifiers, which is shared
+ * by all blocks processed by a step. For each attribute, the rows of the two-level
+ * hierarchy (value, suppressed value) are kept in an array, which is handed to ARX
+ * as it is. The array is only replaced by a larger copy if a block contains values
+ * which have not been seen before, so that blocks without new values do not create
+ * any rows or arrays. ARX accepts hierarchies which contain more values than the data.
+ * Each attribute's cache is bounded and evicts the least recently used values, but
+ * never values of the current block. Arrays which have been handed out are never
+ * modified, so that they can be used by blocks which are anonymized in parallel.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class HierarchyCache {
+
+    /**
+     * The cache for a single attribute.
+     */
+    private static class AttributeCache {
+
+        /** The rows of the values, in the order of their last use */
+        private final Map<String, String[]> rows      = new LinkedHashMap<>(16, 0.75f, true);
+
+        /** The current hierarchy */
+        private String[][]                  hierarchy = new String[0][];
+
+        /** Number of values found */
+        private long                        hits;
+
+        /** Number of values added */
+        private long                        misses;
+    }
+
+    /** The maximal number of values per attribute */
+    private final int                         capacity;
+
+    /** The caches, one per attribute */
+    private final Map<String, AttributeCache> caches = new TreeMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The maximal number of values cached per attribute
+     */
+    public HierarchyCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the rows of a hierarchy for the given attribute, which contains at least
+     * the given values. The array must not be modified.
+     *
+     * @param attribute
+     * @param values Distinct values
+     * @return
+     */
+    public String[][] getHierarchy(String attribute, String[] values) {
+
+        // Prepare
+        AttributeCache cache;
+        synchronized (caches) {
+            cache = caches.get(attribute);
+            if (cache == null) {
+                cache = new AttributeCache();
+                caches.put(attribute, cache);
+            }
+        }
+
+        synchronized (cache) {
+
+            // Look up values, which marks them as used
+            String[][] added = new String[values.length][];
+            int misses = 0;
+            for (String value : values) {
+                if (cache.rows.get(value) == null) {
+                    String[] row = new String[] { value, OperationDataTransformer.MAGIC_NULL_VALUE };
+                    cache.rows.put(value, row);
+                    added[misses++] = row;
+                }
+            }
+            cache.hits += values.length - misses;
+            cache.misses += misses;
+            if (misses == 0) {
+                return cache.hierarchy;
+            }
+
+            // Evict values which have not been used recently, or extend the hierarchy
+            int size = Math.max(capacity, values.length);
+            if (cache.rows.size() > size) {
+                Iterator<String> iterator = cache.rows.keySet().iterator();
+                for (int i = cache.rows.size(); i > size; i--) {
+                    iterator.next();
+                    iterator.remove();
+                }
+                cache.hierarchy = cache.rows.values().toArray(new String[cache.rows.size()][]);
+            } else {
+                int offset = cache.hierarchy.length;
+                cache.hierarchy = Arrays.copyOf(cache.hierarchy, offset + misses);
+                System.arraycopy(added, 0, cache.hierarchy, offset, misses);
+            }
+            return cache.hierarchy;
+        }
+    }
+
+    /**
+     * Returns a summary of hits and misses for each attribute.
+     *
+     * @return
+     */
+    public String getStatistics() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (caches) {
+            for (Map.Entry<String, AttributeCache> entry : caches.entrySet()) {
+                synchronized (entry.getValue()) {
+                    if (builder.length() > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(entry.getKey()).append(": ");
+                    builder.append(entry.getValue().hits).append(" hits, ");
+                    builder.append(entry.getValue().misses).append(" misses");
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Emits the results of blocks anonymized by a pool of workers on a dedicated thread, so that rows are
+ * passed on while the step thread reads the next block. Blocks are emitted either in the order in which
+ * they have been submitted, or in the order in which they are completed, if downstream steps do not
+ * depend on the order of rows. The first failure stops emission and is reported to the step thread.
+ * When the emitter is closed, blocks which have not been emitted are cancelled and their buffers cleared.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationBlockEmitter {
+
+    /**
+     * Receives the blocks to be emitted.
+     */
+    public interface Sink {
+
+        /**
+         * Emits the result of a block. Called on the emitter thread only.
+         *
+         * @param task
+         * @throws KettleException
+         */
+        public void emit(OperationCellSuppressionTask task) throws KettleException;
+    }
+
+    /** The workers */
+    private final ExecutorService                                     workers;
+
+    /** Blocks in the order of completion, null if blocks are emitted in input order */
+    private final CompletionService<OperationCellSuppressionTask>     completed;
+
+    /** Blocks in input order */
+    private final BlockingQueue<Future<OperationCellSuppressionTask>> submitted = new LinkedBlockingQueue<>();
+
+    /** Blocks which have been submitted but not yet handed over to the sink */
+    private final Set<OperationCellSuppressionTask>                   tasks     = new LinkedHashSet<>();
+
+    /** The sink */
+    private final Sink                                                sink;
+
+    /** The thread */
+    private final Thread                                              thread;
+
+    /** Number of blocks which have been submitted but not yet emitted */
+    private int                                                       pending;
+
+    /** The first failure, if any */
+    private KettleException                                           failure;
+
+    /**
+     * Creates a new instance and starts the emitter thread.
+     *
+     * @param workers
+     * @param ordered Whether blocks are emitted in input order
+     * @param sink
+     * @param name The name of the thread
+     */
+    public OperationBlockEmitter(ExecutorService workers, boolean ordered, Sink sink, String name) {
+        this.workers = workers;
+        this.completed = ordered ? null : new ExecutorCompletionService<OperationCellSuppressionTask>(workers);
+        this.sink = sink;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                emit();
+            }
+        }, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Waits until at most the given number of blocks is pending, i.e. anonymized or waiting to be emitted.
+     *
+     * @param maxPending
+     * @throws KettleException If emitting a block has failed
+     */
+    public synchronized void await(int maxPending) throws KettleException {
+        while (failure == null && pending > maxPending) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KettleException(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops the emitter thread. Blocks which have not been emitted yet are cancelled and their buffers
+     * are cleared, which deletes spilled segments.
+     */
+    public void close() {
+        thread.interrupt();
+        synchronized (this) {
+            for (OperationCellSuppressionTask task : tasks) {
+                task.cancel();
+            }
+            tasks.clear();
+        }
+    }
+
+    /**
+     * Returns the number of blocks which have been submitted but not yet emitted.
+     *
+     * @return
+     */
+    public synchronized int getNumPending() {
+        return pending;
+    }
+
+    /**
+     * Hands a block over to the workers. It will be emitted once it has been anonymized.
+     *
+     * @param task
+     * @throws KettleException If emitting a block has failed
+     */
+    public void submit(OperationCellSuppressionTask task) throws KettleException {
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+            pending++;
+            tasks.add(task);
+        }
+        if (completed != null) {
+            completed.submit(task);
+        } else {
+            submitted.add(workers.submit(task));
+        }
+    }
+
+    /**
+     * Emits blocks until the thread is interrupted or emitting a block fails.
+     */
+    private void emit() {
+        try {
+            while (true) {
+                Future<OperationCellSuppressionTask> future = completed != null ? completed.take() : submitted.take();
+                OperationCellSuppressionTask task;
+                try {
+                    task = future.get();
+                } catch (ExecutionException e) {
+                    throw new KettleException(e.getCause());
+                }
+                synchronized (this) {
+                    if (!tasks.remove(task)) {
+                        return; // Cancelled
+                    }
+                }
+                try {
+                    sink.emit(task);
+                } catch (KettleException | RuntimeException | Error e) {
+                    task.cancel();
+                    throw e;
+                }
+                synchronized (this) {
+                    pending--;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        } catch (KettleException e) {
+            fail(e);
+        } catch (RuntimeException | Error e) {
+            fail(new KettleException(e));
+        }
+    }
+
+    /**
+     * Records a failure and wakes up the step thread.
+     *
+     * @param e
+     */
+    private synchronized void fail(KettleException e) {
+        failure = e;
+        notifyAll();
+    }
+}
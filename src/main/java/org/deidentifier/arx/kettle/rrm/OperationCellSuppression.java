@@ -18,7 +18,7 @@
 package org.deidentifier.arx.kettle.rrm;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Arrays;
 
 import org.deidentifier.arx.ARXAnonymizer;
 import org.deidentifier.arx.ARXConfiguration;
@@ -30,12 +30,17 @@ import org.deidentifier.arx.Data;
 import org.deidentifier.arx.DataHandle;
 import org.deidentifier.arx.criteria.AverageReidentificationRisk;
 import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.criteria.PrivacyCriterion;
 import org.deidentifier.arx.exceptions.RollbackRequiredException;
 import org.deidentifier.arx.metric.Metric;
 import org.pentaho.di.core.exception.KettleException;
 
 /**
- * This class performs all operations related to cell suppression, using ARX. 
+ * This class performs all operations related to cell suppression, using ARX. Instances are
+ * meant to be created once per step and used for all blocks, possibly concurrently. The
+ * anonymizer, a prepared configuration and, if configured, the hierarchies are shared by all
+ * blocks. ARX initializes the configuration, its privacy models and its quality model with the
+ * data, so the prepared configuration is never used directly but cloned for each block.
  * @author Helmut Spengler
  * @author Fabian Prasser
  */
@@ -46,6 +51,27 @@ public class OperationCellSuppression {
     
     /** Parameters determining runtime behavior. */
     private final ParametersRuntime runtime;
+
+    /** Hierarchies shared across blocks, may be null. */
+    private final HierarchyCache hierarchies;
+
+    /** Results of earlier runs, may be null. */
+    private final ResultCache results;
+
+    /** The minimal class size. */
+    private final int k;
+
+    /** The anonymizer, which only holds settings and can thus be shared. */
+    private final ARXAnonymizer anonymizer;
+
+    /** The prepared configuration, which is cloned for each block and never modified. */
+    private final ARXConfiguration configuration;
+
+    /** Converts the output of ARX. */
+    private final OperationDataTransformer transformer;
+
+    /** Performs suppression without ARX if only a size threshold is used, null otherwise. */
+    private final OperationCellSuppressionTwoPass twoPass;
     
 	/**
 	 * Constructor.
@@ -54,65 +80,174 @@ public class OperationCellSuppression {
 	 * @param runtime
 	 */
 	public OperationCellSuppression(ParametersRisk risk, ParametersRuntime runtime) {
-	    this.risk = risk;
-	    this.runtime = runtime;
+	    this(risk, runtime, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param risk
+     * @param runtime
+     * @param results Results of earlier runs, may be null
+     */
+    public OperationCellSuppression(ParametersRisk risk, ParametersRuntime runtime, ResultCache results) {
+        this(risk, runtime, null, results);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param risk
+     * @param runtime
+     * @param hierarchies Hierarchies shared across blocks, may be null
+     * @param results Results of earlier runs, may be null
+     */
+    public OperationCellSuppression(ParametersRisk risk, ParametersRuntime runtime, HierarchyCache hierarchies, ResultCache results) {
+        this.risk = risk;
+        this.runtime = runtime;
+        this.hierarchies = hierarchies;
+        this.results = results;
+        this.k = getSizeThreshold(risk.getHighestRisk());
+        this.transformer = new OperationDataTransformer();
+        this.twoPass = OperationCellSuppressionTwoPass.isSupported(risk) ? new OperationCellSuppressionTwoPass(risk) : null;
+
+        // Configure anonymizer
+        this.anonymizer = new ARXAnonymizer();
+        anonymizer.setMaximumSnapshotSizeDataset(runtime.getSnapshotSizeDataset());
+        anonymizer.setMaximumSnapshotSizeSnapshot(runtime.getSnapshotSizeSnapshot());
+        anonymizer.setHistorySize(runtime.getCacheSize());
+
+        // Prepare configuration
+        this.configuration = createConfiguration(risk, runtime);
     }
 
     /**
 	 * Perform cell suppression
 	 * 
 	 * @param data
-	 * @return
-	 * @throws IOException
-	 * @throws RollbackRequiredException
+	 * @return The suppressed cells
+	 * @throws KettleException
 	 */
-    public List<String[]> perform(List<String[]> data) throws KettleException {
+    public DataSuppressionMask perform(DataBuffer data) throws KettleException {
+        return perform(data, null);
+    }
 
-		int numDataRows = data.size() - 1;
-		int k = getSizeThreshold(risk.getHighestRisk());
-		if (k > numDataRows) {
-			return new OperationDataTransformer().getEmptyDataset(data.get(0), data.get(0).length, numDataRows);
-		}
+    /**
+	 * Perform cell suppression, tracking the time spent in each phase. Blocks which already
+	 * satisfy the thresholds are returned unchanged. If only a size threshold is used, rows
+	 * in classes smaller than the threshold are suppressed in two passes, without ARX. If
+	 * the result of an identical block has been cached, it is reused instead of running ARX,
+	 * provided that the block satisfies the thresholds after applying the cached result.
+	 * Otherwise, only the rows in classes smaller than the size threshold are anonymized
+	 * with ARX, provided that the block then satisfies the thresholds, and all rows if not.
+	 * 
+	 * @param data
+	 * @param metrics May be null
+	 * @return The suppressed cells
+	 * @throws KettleException
+	 */
+    public DataSuppressionMask perform(DataBuffer data, ParametersMetrics metrics) throws KettleException {
 
-		// Load data
-		Data arxData = Data.create(data);
+		long time = System.nanoTime();
+		if (k > data.getNumRows()) {
+			return getSuppressedOutput(data);
+		}
 
-		// Configure QI settings
-		for (String attr : data.get(0)) {
-		    arxData.getDefinition().setAttributeType(attr, AttributeType.INSENSITIVE_ATTRIBUTE);
+		// Suppress rows in classes which are too small, counting classes in a first pass
+		if (twoPass != null) {
+		    return twoPass.perform(data, metrics);
 		}
-		
-		for (String qi : risk.getQis()) {
-			Hierarchy hierarchy = getHierarchy(arxData, qi);
 
-			arxData.getDefinition().setAttributeType(qi, hierarchy);
+		// Check whether anonymization is needed at all
+		OperationCellSuppressionPrecheck precheck = new OperationCellSuppressionPrecheck(risk, data);
+		if (precheck.isSatisfied()) {
+		    if (metrics != null) {
+		        metrics.trackPreparation(System.nanoTime() - time);
+		    }
+		    return new DataSuppressionMask(data);
 		}
 
-		// Configure algorithm
-		ARXConfiguration config = ARXConfiguration.create();
-		double o_min = runtime.getRecordsPerIteration();
-		double maxOutliers = 1.0d - o_min;
-		config.setSuppressionLimit(maxOutliers);
-		config.setQualityModel(Metric.createLossMetric(0d));
-		if (risk.getRecordsAtRisk() == 0d) {
-		    if (k != 1) {
-		        config.addPrivacyModel(new KAnonymity(k));
+		// Reuse the result of an earlier run on the same block
+		String fingerprint = null;
+		if (results != null) {
+		    fingerprint = results.getFingerprint(data);
+		    DataSuppressionMask cached = results.get(fingerprint, data);
+		    if (cached != null && new OperationCellSuppressionPrecheck(risk, cached).isSatisfied()) {
+		        if (metrics != null) {
+		            metrics.trackPreparation(System.nanoTime() - time);
+		        }
+		        return cached;
 		    }
-		    if (risk.getAverageRisk() != 1d) {
-		        config.addPrivacyModel(new AverageReidentificationRisk(risk.getAverageRisk()));
+		}
+
+		// Anonymize the rows at risk only, provided that all rows then satisfy the thresholds
+		DataSuppressionMask result = null;
+		int[] rowsAtRisk = precheck.getRowsAtRisk();
+		if (rowsAtRisk.length != 0 && rowsAtRisk.length < data.getNumRows()) {
+		    result = anonymize(data, rowsAtRisk, metrics, time);
+		    time = System.nanoTime();
+		}
+
+		// Anonymize all rows
+		if (result == null) {
+		    result = anonymize(data, metrics, time);
+		}
+		if (results != null) {
+		    results.put(fingerprint, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a minimal class size for the given risk threshold.
+	 * 
+	 * @param threshold
+	 * @return
+	 */
+	static int getSizeThreshold(double riskThreshold) {
+		double size = 1d / riskThreshold;
+		double floor = Math.floor(size);
+		if ((1d / floor) - (1d / size) >= 0.01d * riskThreshold) {
+			floor += 1d;
+		}
+		return (int) floor;
+	}
+
+	/**
+	 * Anonymizes the given rows with ARX
+	 * 
+	 * @param data
+	 * @param metrics May be null
+	 * @param time Point in time at which preparation started
+	 * @return
+	 * @throws KettleException
+	 */
+	private DataSuppressionMask anonymize(DataBuffer data, ParametersMetrics metrics, long time) throws KettleException {
+
+		// Load data
+		Data arxData = Data.create(data.iterator());
+
+		// Configure QI settings, with hierarchies built from the buffer's dictionaries, so that
+		// ARX encodes the data only once, when the handle is created
+		String[] header = data.getHeader();
+		String[][] values = data.getDistinctValues();
+		for (int column = 0; column < header.length; column++) {
+		    if (risk.isQi(header[column])) {
+		        arxData.getDefinition().setAttributeType(header[column], getHierarchy(header[column], values[column]));
+		    } else {
+		        arxData.getDefinition().setAttributeType(header[column], AttributeType.INSENSITIVE_ATTRIBUTE);
 		    }
-		} else {
-			config.addPrivacyModel(new AverageReidentificationRisk(risk.getAverageRisk(), risk.getHighestRisk(), risk.getRecordsAtRisk()));
 		}
-		config.setHeuristicSearchTimeLimit(runtime.getSecondsPerIteration() * 1000);
-		config.setHeuristicSearchEnabled(risk.getQis().size() > runtime.getMaxQIsOptimal());
+
+		// Configure algorithm
+		ARXConfiguration config = getConfiguration();
 		arxData.getHandle();
+		if (metrics != null) {
+		    metrics.trackPreparation(System.nanoTime() - time);
+		    time = System.nanoTime();
+		}
 
 		// Perform anonymization
-		ARXAnonymizer anonymizer = new ARXAnonymizer();
-		anonymizer.setMaximumSnapshotSizeDataset(runtime.getSnapshotSizeDataset());
-		anonymizer.setMaximumSnapshotSizeSnapshot(runtime.getSnapshotSizeSnapshot());
-		anonymizer.setHistorySize(runtime.getCacheSize());
 		ARXResult result;
         try {
             result = anonymizer.anonymize(arxData, config);
@@ -120,50 +255,167 @@ public class OperationCellSuppression {
             throw new KettleException(e);
         }
 		DataHandle output = result.getOutput();
+		if (metrics != null) {
+		    metrics.trackAnonymization(System.nanoTime() - time);
+		    time = System.nanoTime();
+		}
 		if (output != null && result.isOptimizable(output)) {
 		    try {
-                result.optimizeIterativeFast(output, o_min);
+                result.optimizeIterativeFast(output, runtime.getRecordsPerIteration());
             } catch (RollbackRequiredException e) {
                 throw new KettleException(e);
             }
 		}
+		if (metrics != null) {
+		    metrics.trackOptimization(System.nanoTime() - time);
+		    time = System.nanoTime();
+		}
 
 		// Return
-		List<String[]> retval = new OperationDataTransformer().convert(arxData.getHandle(), output); 
+		DataSuppressionMask retval = output != null ? transformer.convert(data, output) : getSuppressedOutput(data);
 		arxData.getHandle().release();
+		if (metrics != null) {
+		    metrics.trackPreparation(System.nanoTime() - time);
+		}
 		return retval;
 	}
 
 	/**
-	 * Returns a minimal class size for the given risk threshold.
+	 * Anonymizes the given subset of rows with ARX, leaving all other rows unchanged
 	 * 
-	 * @param threshold
+	 * @param data
+	 * @param rows The indices of the rows, in ascending order
+	 * @param metrics May be null
+	 * @param time Point in time at which preparation started
+	 * @return The suppressed cells, null if the block does not satisfy the thresholds
+	 * @throws KettleException
+	 */
+	private DataSuppressionMask anonymize(DataBuffer data, int[] rows, ParametersMetrics metrics, long time) throws KettleException {
+
+	    // Extract rows
+	    DataBuffer subset = data.createBuffer();
+	    try {
+	        String[] values = new String[data.getNumColumns()];
+	        for (int row : rows) {
+	            for (int column = 0; column < values.length; column++) {
+	                values[column] = data.getValue(row, column);
+	            }
+	            subset.add(values);
+	        }
+
+	        // Anonymize
+	        DataSuppressionMask partial;
+	        if (k > rows.length) {
+	            partial = getSuppressedOutput(subset);
+	            if (metrics != null) {
+	                metrics.trackPreparation(System.nanoTime() - time);
+	            }
+	        } else {
+	            partial = anonymize(subset, metrics, time);
+	        }
+
+	        // Merge and check
+	        time = System.nanoTime();
+	        DataSuppressionMask result = new DataSuppressionMask(data);
+	        for (int i = 0; i < rows.length; i++) {
+	            for (int column = 0; column < values.length; column++) {
+	                if (partial.isSuppressed(i, column)) {
+	                    result.suppress(rows[i], column);
+	                }
+	            }
+	        }
+	        boolean satisfied = new OperationCellSuppressionPrecheck(risk, result).isSatisfied();
+	        if (metrics != null) {
+	            metrics.trackPreparation(System.nanoTime() - time);
+	        }
+	        return satisfied ? result : null;
+	    } catch (IOException e) {
+	        throw new KettleException(e);
+	    } finally {
+	        subset.clear();
+	    }
+	}
+
+	/**
+	 * Creates a configuration for the given parameters.
+	 * 
+	 * @param risk
+	 * @param runtime
 	 * @return
 	 */
-	private int getSizeThreshold(double riskThreshold) {
-		double size = 1d / riskThreshold;
-		double floor = Math.floor(size);
-		if ((1d / floor) - (1d / size) >= 0.01d * riskThreshold) {
-			floor += 1d;
-		}
-		return (int) floor;
+	public static ARXConfiguration createConfiguration(ParametersRisk risk, ParametersRuntime runtime) {
+	    int k = getSizeThreshold(risk.getHighestRisk());
+	    ARXConfiguration config = ARXConfiguration.create();
+	    config.setSuppressionLimit(1.0d - runtime.getRecordsPerIteration());
+	    config.setQualityModel(Metric.createLossMetric(0d));
+	    if (risk.getRecordsAtRisk() == 0d) {
+	        if (k != 1) {
+	            config.addPrivacyModel(new KAnonymity(k));
+	        }
+	        if (risk.getAverageRisk() != 1d) {
+	            config.addPrivacyModel(new AverageReidentificationRisk(risk.getAverageRisk()));
+	        }
+	    } else {
+	        config.addPrivacyModel(new AverageReidentificationRisk(risk.getAverageRisk(), risk.getHighestRisk(), risk.getRecordsAtRisk()));
+	    }
+	    config.setHeuristicSearchTimeLimit(runtime.getSecondsPerIteration() * 1000);
+	    config.setHeuristicSearchEnabled(risk.getQis().size() > runtime.getMaxQIsOptimal());
+	    return config;
 	}
 
 	/**
-	 * Returns the generalization hierarchy for the dataset and attribute
+	 * Returns a configuration for a block, which is cloned from the prepared configuration. As
+	 * ARX only copies references when cloning a configuration, the privacy models are cloned as
+	 * well. ARX's quality models cannot be cloned, so a new one is created, which is cheap.
+	 * 
+	 * @return
+	 */
+	public ARXConfiguration getConfiguration() {
+	    ARXConfiguration config = configuration.clone();
+	    for (PrivacyCriterion model : configuration.getPrivacyModels()) {
+	        config.removeCriterion(model);
+	        config.addPrivacyModel(model.clone());
+	    }
+	    config.setQualityModel(Metric.createLossMetric(0d));
+	    return config;
+	}
+
+	/**
+	 * Returns a result in which all quasi-identifiers are suppressed
 	 * 
 	 * @param data
+	 * @return
+	 */
+	private DataSuppressionMask getSuppressedOutput(DataBuffer data) {
+	    String[] header = data.getHeader();
+	    int[] qis = new int[header.length];
+	    int count = 0;
+	    for (int column = 0; column < header.length; column++) {
+	        if (risk.isQi(header[column])) {
+	            qis[count++] = column;
+	        }
+	    }
+	    DataSuppressionMask result = new DataSuppressionMask(data);
+	    result.suppressAll(Arrays.copyOf(qis, count));
+	    return result;
+	}
+
+	/**
+	 * Returns the generalization hierarchy for the attribute and its distinct values.
+	 * If hierarchies are cached, the cached rows are used, which may contain further values.
+	 * 
 	 * @param attribute
+	 * @param values
 	 * @return
-	 * @throws IOException
 	 */
-	private Hierarchy getHierarchy(Data data, String attribute) {
+	private Hierarchy getHierarchy(String attribute, String[] values) {
+		if (hierarchies != null) {
+		    return Hierarchy.create(hierarchies.getHierarchy(attribute, values));
+		}
 		DefaultHierarchy hierarchy = Hierarchy.create();
-		int col = data.getHandle().getColumnIndexOf(attribute);
-		String[] values = data.getHandle().getDistinctValues(col);
 		for (String value : values) {
 			hierarchy.add(value, OperationDataTransformer.MAGIC_NULL_VALUE);
 		}
 		return hierarchy;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
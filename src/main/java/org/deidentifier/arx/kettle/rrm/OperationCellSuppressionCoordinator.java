@@ -0,0 +1,359 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deidentifier.arx.kettle.ReidentificationRiskManagementStep;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * Coordinates the copies of a step, which run in the same JVM and anonymize their shares of the rows.
+ * Each copy hands over all of its rows once its input is exhausted. The classes of all copies are
+ * counted together, so that risks are assessed for the combined output. Once all copies have arrived,
+ * the last one anonymizes the rows of all copies which need to be anonymized, and each copy receives
+ * the results for its own rows.<br>
+ * <br>
+ * If only a size threshold is used, the classes of all copies are counted together and only rows in
+ * classes which are too small across all copies are suppressed. Suppression decisions are thus the
+ * same as if a single copy had processed all rows. Otherwise, the rows of all copies are anonymized,
+ * unless the combined rows already satisfy the thresholds. The rows are anonymized in blocks of the
+ * configured size, which are buffered with the spill settings of the copies.<br>
+ * <br>
+ * Copies wait for each other as long as any copy makes progress. They fail if no copy has made
+ * progress within the configured time.<br>
+ * <br>
+ * Coordinators are shared via a registry, keyed by transformation and step, and removed once all
+ * copies have released them.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationCellSuppressionCoordinator {
+
+    /** The coordinators of running steps, keyed by transformation and step */
+    private static final Map<String, OperationCellSuppressionCoordinator> COORDINATORS = new HashMap<>();
+
+    /**
+     * Returns the coordinator for the given transformation and step, which is created by the
+     * first copy asking for it.
+     *
+     * @param key Identifies the transformation and the step
+     * @param copies The number of copies of the step
+     * @param risk
+     * @param runtime
+     * @return
+     */
+    public static OperationCellSuppressionCoordinator get(String key, int copies, ParametersRisk risk, ParametersRuntime runtime) {
+        synchronized (COORDINATORS) {
+            OperationCellSuppressionCoordinator coordinator = COORDINATORS.get(key);
+            if (coordinator == null) {
+                coordinator = new OperationCellSuppressionCoordinator(key, copies, risk, runtime);
+                COORDINATORS.put(key, coordinator);
+            }
+            return coordinator;
+        }
+    }
+
+    /** Identifies the transformation and the step */
+    private final String                                                    key;
+
+    /** The number of copies */
+    private final int                                                       copies;
+
+    /** Parameters relating to risk management. */
+    private final ParametersRisk                                            risk;
+
+    /** Parameters relating to the runtime behavior. */
+    private final ParametersRuntime                                         runtime;
+
+    /** The rows of each copy, null if a copy has no rows */
+    private final DataBuffer[]                                              buffers;
+
+    /** The results of each copy */
+    private final List<DataSuppressionMask>                                 outputs;
+
+    /** Whether each copy has arrived */
+    private final boolean[]                                                 arrived;
+
+    /** Whether each copy has released the coordinator */
+    private final boolean[]                                                 released;
+
+    /** The classes of all copies, created by the first copy with rows */
+    private OperationRiskAssessmentIncremental                              assessment;
+
+    /** The number of copies which have arrived */
+    private int                                                             numArrived;
+
+    /** The number of copies which have released the coordinator */
+    private int                                                             numReleased;
+
+    /** Set if results cannot be provided */
+    private KettleException                                                 failure;
+
+    /** Time in milliseconds at which a copy has made progress last */
+    private volatile long                                                   progress;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param key
+     * @param copies
+     * @param risk
+     * @param runtime
+     */
+    private OperationCellSuppressionCoordinator(String key, int copies, ParametersRisk risk, ParametersRuntime runtime) {
+        this.key = key;
+        this.copies = copies;
+        this.risk = risk;
+        this.runtime = runtime;
+        this.buffers = new DataBuffer[copies];
+        this.outputs = new ArrayList<>();
+        for (int i = 0; i < copies; i++) {
+            outputs.add(null);
+        }
+        this.arrived = new boolean[copies];
+        this.released = new boolean[copies];
+        this.progress = System.currentTimeMillis();
+    }
+
+    /**
+     * Hands over the rows of a copy and waits until the results are available. The copy which
+     * arrives last performs the anonymization, using its own instance.
+     *
+     * @param copy The number of the copy
+     * @param data The rows of the copy, null if the copy has not received any rows
+     * @param anonymization The anonymization of the copy
+     * @param metrics The metrics of the copy, may be null
+     * @return The cells suppressed in the rows of the copy. Null if the copy has not received any rows.
+     * @throws KettleException if no copy makes progress in time or if the anonymization fails
+     */
+    public synchronized DataSuppressionMask perform(int copy, DataBuffer data, OperationCellSuppression anonymization,
+                                                    ParametersMetrics metrics) throws KettleException {
+
+        // Register the classes of the copy
+        if (failure != null) {
+            throw failure;
+        }
+        if (data != null && !data.isEmpty()) {
+            if (assessment == null) {
+                assessment = new OperationRiskAssessmentIncremental(risk, data.getHeader());
+            }
+            String[] values = new String[data.getNumColumns()];
+            for (int row = 0; row < data.getNumRows(); row++) {
+                for (int column = 0; column < values.length; column++) {
+                    values[column] = data.getValue(row, column);
+                }
+                assessment.add(values);
+            }
+            buffers[copy] = data;
+        }
+        arrived[copy] = true;
+        numArrived++;
+        progress = System.currentTimeMillis();
+
+        // The last copy anonymizes the rows of all copies
+        if (numArrived == copies) {
+            try {
+                anonymize(anonymization, metrics);
+            } catch (KettleException e) {
+                failure = e;
+            } catch (RuntimeException | Error e) {
+                failure = new KettleException(e);
+                throw e;
+            } finally {
+                notifyAll();
+            }
+        }
+
+        // Wait for the other copies to arrive and for the results. The timeout restarts whenever a copy makes progress.
+        while (failure == null && (numArrived < copies || (data != null && outputs.get(copy) == null))) {
+            long remaining = progress + runtime.getCoordinationTimeout() * 1000L - System.currentTimeMillis();
+            if (numArrived < copies && remaining <= 0) {
+                failure = new KettleException(BaseMessages.getString(ReidentificationRiskManagementStep.class,
+                                                                     "ReidentificationRiskManagementStep.Message.CoordinationTimeout",
+                                                                     numArrived, copies, runtime.getCoordinationTimeout()));
+                notifyAll();
+                break;
+            }
+            try {
+                wait(numArrived < copies ? remaining : 0L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KettleException(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        DataSuppressionMask result = outputs.get(copy);
+        outputs.set(copy, null);
+        buffers[copy] = null;
+        return result;
+    }
+
+    /**
+     * Signals that a copy has made progress, e.g. has read a row, which restarts the timeout of the
+     * copies waiting for it. The time is updated at most every 100 milliseconds.
+     */
+    public void progress() {
+        long time = System.currentTimeMillis();
+        if (time - progress >= 100L) {
+            progress = time;
+        }
+    }
+
+    /**
+     * Releases the coordinator for a copy, which is done once the copy is disposed. If the copy has not
+     * arrived, e.g. because it has failed, the other copies stop waiting for it. The coordinator is removed
+     * from the registry once all copies have released it.
+     *
+     * @param copy
+     */
+    public void release(int copy) {
+        synchronized (COORDINATORS) {
+            synchronized (this) {
+                if (released[copy]) {
+                    return;
+                }
+                released[copy] = true;
+                numReleased++;
+                if (!arrived[copy] && failure == null) {
+                    failure = new KettleException(BaseMessages.getString(ReidentificationRiskManagementStep.class,
+                                                                         "ReidentificationRiskManagementStep.Message.CoordinationAborted", copy));
+                    notifyAll();
+                }
+                if (numReleased == copies && COORDINATORS.get(key) == this) {
+                    COORDINATORS.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Anonymizes the rows of all copies which need to be anonymized and prepares the results.
+     *
+     * @param anonymization
+     * @param metrics May be null
+     * @throws KettleException
+     */
+    private void anonymize(OperationCellSuppression anonymization, ParametersMetrics metrics) throws KettleException {
+
+        // No rows at all
+        if (assessment == null) {
+            return;
+        }
+
+        // Check whether anonymization is needed at all
+        if (assessment.calculate().satisfies(risk)) {
+            for (int copy = 0; copy < copies; copy++) {
+                if (buffers[copy] != null) {
+                    outputs.set(copy, new DataSuppressionMask(buffers[copy]));
+                }
+            }
+            return;
+        }
+
+        // If only a size threshold is used, the classes of all copies are counted together and rows in classes which
+        // are too small are suppressed, including rows in classes which become too small by suppressing other rows
+        if (OperationCellSuppressionTwoPass.isSupported(risk)) {
+            DataSuppressionMask[] parts = new OperationCellSuppressionTwoPass(risk).perform(buffers, metrics);
+            for (int copy = 0; copy < copies; copy++) {
+                outputs.set(copy, parts[copy]);
+            }
+            return;
+        }
+
+        // Otherwise, the rows of all copies are anonymized in blocks
+        int blockSize = runtime.doRowBlocking() ? runtime.getBlockSize() : Integer.MAX_VALUE;
+        DataSuppressionMask[] parts = new DataSuppressionMask[copies];
+        DataBuffer block = null;
+        int[] origins = new int[0];
+        try {
+            for (int copy = 0; copy < copies; copy++) {
+                DataBuffer data = buffers[copy];
+                if (data == null) {
+                    continue;
+                }
+                parts[copy] = new DataSuppressionMask(data);
+                if (block == null) {
+                    block = data.createBuffer();
+                }
+                String[] values = new String[data.getNumColumns()];
+                for (int row = 0; row < data.getNumRows(); row++) {
+                    for (int column = 0; column < values.length; column++) {
+                        values[column] = data.getValue(row, column);
+                    }
+                    int index = block.getNumRows();
+                    if (index * 2 == origins.length) {
+                        origins = Arrays.copyOf(origins, Math.max(2048, origins.length * 2));
+                    }
+                    origins[index * 2] = copy;
+                    origins[index * 2 + 1] = row;
+                    block.add(values);
+                    if (block.isFull() || block.getNumRows() >= blockSize) {
+                        anonymize(anonymization, block, origins, parts, metrics);
+                    }
+                }
+            }
+            if (block != null && !block.isEmpty()) {
+                anonymize(anonymization, block, origins, parts, metrics);
+            }
+        } catch (IOException e) {
+            throw new KettleException(e);
+        } finally {
+            if (block != null) {
+                block.clear();
+            }
+        }
+
+        // Hand over the results
+        for (int copy = 0; copy < copies; copy++) {
+            outputs.set(copy, parts[copy]);
+        }
+    }
+
+    /**
+     * Anonymizes a block of rows, transfers the suppressed cells to the rows of the copies and clears the block.
+     *
+     * @param anonymization
+     * @param block
+     * @param origins For each row of the block, the copy and the row within the copy
+     * @param parts The results of the copies
+     * @param metrics May be null
+     * @throws KettleException
+     */
+    private void anonymize(OperationCellSuppression anonymization, DataBuffer block, int[] origins,
+                           DataSuppressionMask[] parts, ParametersMetrics metrics) throws KettleException {
+        DataSuppressionMask output = anonymization.perform(block, metrics);
+        for (int row = 0; row < block.getNumRows(); row++) {
+            for (int column = 0; column < block.getNumColumns(); column++) {
+                if (output.isSuppressed(row, column)) {
+                    parts[origins[row * 2]].suppress(origins[row * 2 + 1], column);
+                }
+            }
+        }
+        block.clear();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A fast check, which decides whether a block needs to be anonymized at all. Rows are
+ * grouped by their tuples of QI values in a single hash-based pass, using the same risk
+ * model as OperationRiskAssessmentIncremental. If the thresholds are not satisfied, the
+ * rows in classes smaller than the size threshold are reported. The check can also be
+ * applied to a block in which cells have been suppressed, e.g. to verify results.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationCellSuppressionPrecheck {
+
+    /** Whether the block satisfies the thresholds */
+    private final boolean satisfied;
+
+    /** The indices of rows in classes smaller than the size threshold, null if the thresholds are satisfied */
+    private final int[]   rowsAtRisk;
+
+    /**
+     * Checks the given block.
+     *
+     * @param thresholds
+     * @param data
+     */
+    public OperationCellSuppressionPrecheck(ParametersRisk thresholds, DataBuffer data) {
+
+        this(thresholds, new DataSuppressionMask(data));
+    }
+
+    /**
+     * Checks the given block after suppressing the cells of the given mask.
+     *
+     * @param thresholds
+     * @param mask
+     */
+    public OperationCellSuppressionPrecheck(ParametersRisk thresholds, DataSuppressionMask mask) {
+
+        // Group rows
+        DataBuffer data = mask.getData();
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, data.getHeader());
+        OperationRiskAssessmentIncremental.EquivalenceClass[] classes = new OperationRiskAssessmentIncremental.EquivalenceClass[data.getNumRows()];
+        Iterator<String[]> iterator = data.iterator();
+        iterator.next(); // Skip header
+        for (int row = 0; row < classes.length; row++) {
+            String[] values = iterator.next();
+            for (int column = 0; column < values.length; column++) {
+                if (mask.isSuppressed(row, column)) {
+                    values[column] = OperationDataTransformer.MAGIC_NULL_VALUE;
+                }
+            }
+            classes[row] = assessment.register(values);
+        }
+
+        // Check
+        Map<OperationRiskAssessmentIncremental.EquivalenceClass, Long> sizes = assessment.getSizes();
+        this.satisfied = assessment.getRisks(sizes).satisfies(thresholds);
+        if (satisfied) {
+            this.rowsAtRisk = null;
+            return;
+        }
+
+        // Collect rows at risk. Classes which only consist of null values are suppressed already.
+        int k = OperationCellSuppression.getSizeThreshold(thresholds.getHighestRisk());
+        int[] rows = new int[classes.length];
+        int count = 0;
+        for (int row = 0; row < classes.length; row++) {
+            Long size = sizes.get(classes[row]);
+            if (size != null && size < k) {
+                rows[count++] = row;
+            }
+        }
+        this.rowsAtRisk = Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Returns the indices of the rows in classes smaller than the size threshold,
+     * in ascending order. Returns null if the thresholds are satisfied.
+     *
+     * @return
+     */
+    public int[] getRowsAtRisk() {
+        return rowsAtRisk;
+    }
+
+    /**
+     * Returns whether the block already satisfies the thresholds, i.e. whether
+     * no suppression is needed.
+     *
+     * @return
+     */
+    public boolean isSatisfied() {
+        return satisfied;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Performs cell suppression for a single block of rows, so that blocks can be
+ * anonymized by a pool of workers. The task keeps the block, which is needed
+ * again when the result is emitted. If a task is cancelled, e.g. because the step
+ * is disposed, the block is cleared as soon as it is no longer being anonymized,
+ * which deletes spilled segments.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationCellSuppressionTask implements Callable<OperationCellSuppressionTask> {
+
+    /** The operation */
+    private final OperationCellSuppression       operation;
+
+    /** The block */
+    private final DataBuffer                     input;
+
+    /** The metrics of the block */
+    private final ParametersMetrics              metrics;
+
+    /** The suppressed cells */
+    private DataSuppressionMask                  output;
+
+    /** The result, if the task has been submitted via submit() */
+    private Future<OperationCellSuppressionTask> future;
+
+    /** Whether the block is being anonymized */
+    private boolean                              running;
+
+    /** Whether the task has been cancelled */
+    private boolean                              cancelled;
+
+    /**
+     * Constructor.
+     *
+     * @param operation The operation, shared across blocks
+     * @param input
+     * @param metrics
+     */
+    public OperationCellSuppressionTask(OperationCellSuppression operation, DataBuffer input, ParametersMetrics metrics) {
+        this.operation = operation;
+        this.input = input;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Waits until the task submitted via submit() has been completed.
+     *
+     * @throws InterruptedException
+     * @throws ExecutionException If anonymizing the block has failed
+     */
+    public void await() throws InterruptedException, ExecutionException {
+        future.get();
+    }
+
+    @Override
+    public OperationCellSuppressionTask call() throws Exception {
+        synchronized (this) {
+            if (cancelled) {
+                return this;
+            }
+            running = true;
+        }
+        boolean success = false;
+        try {
+            this.output = operation.perform(input, metrics);
+            success = true;
+        } finally {
+            synchronized (this) {
+                running = false;
+                if (cancelled || !success) {
+                    input.clear();
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Cancels the task. The block is cleared right away or, if it is being anonymized, afterwards.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        if (future != null) {
+            future.cancel(true);
+        }
+        if (!running) {
+            input.clear();
+        }
+    }
+
+    /**
+     * Returns the block.
+     *
+     * @return
+     */
+    public DataBuffer getInput() {
+        return input;
+    }
+
+    /**
+     * Returns the metrics of the block.
+     *
+     * @return
+     */
+    public ParametersMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the suppressed cells.
+     *
+     * @return
+     */
+    public DataSuppressionMask getOutput() {
+        return output;
+    }
+
+    /**
+     * Returns whether the task submitted via submit() has been completed.
+     *
+     * @return
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * Hands the task over to the given workers.
+     *
+     * @param workers
+     */
+    public void submit(ExecutorService workers) {
+        this.future = workers.submit(this);
+    }
+}
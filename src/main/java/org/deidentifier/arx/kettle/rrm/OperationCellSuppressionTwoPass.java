@@ -0,0 +1,164 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Cell suppression for thresholds which only consist of a size threshold, i.e. k-anonymity, without
+ * ARX. The first pass counts the sizes of all classes in a DataClassSummary. The suppressions are then
+ * determined from the counts alone: all rows in classes smaller than the size threshold are suppressed.
+ * The second pass replays the rows, suppressing all QI cells of the rows affected. Time is linear in
+ * the number of rows, memory is linear in the number of classes.
+ * <br>
+ * As in ARX, null values are treated like any other value when classes are formed, i.e. the results
+ * are the records which ARX suppresses without generalizing any quasi-identifier. The risk assessments
+ * treat null values as wildcards, which only enlarges classes, so the results also satisfy the
+ * thresholds when they are assessed.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationCellSuppressionTwoPass {
+
+    /**
+     * Returns whether the given thresholds can be handled, i.e. whether they only consist of a size threshold.
+     *
+     * @param risk
+     * @return
+     */
+    public static boolean isSupported(ParametersRisk risk) {
+        return risk.getRecordsAtRisk() == 0d && risk.getAverageRisk() == 1d;
+    }
+
+    /** The thresholds */
+    private final ParametersRisk risk;
+
+    /**
+     * Constructor.
+     *
+     * @param risk Thresholds, which must only consist of a size threshold
+     */
+    public OperationCellSuppressionTwoPass(ParametersRisk risk) {
+        if (!isSupported(risk)) {
+            throw new IllegalArgumentException("Only size thresholds are supported");
+        }
+        this.risk = risk;
+    }
+
+    /**
+     * Performs cell suppression.
+     *
+     * @param data
+     * @param metrics May be null
+     * @return The suppressed cells
+     */
+    public DataSuppressionMask perform(DataBuffer data, ParametersMetrics metrics) {
+        return perform(new DataBuffer[] { data }, metrics)[0];
+    }
+
+    /**
+     * Performs cell suppression on several buffers with the same header, e.g. the rows of several copies
+     * of the step. Classes are counted across all buffers, so that the results are the same as for a
+     * single buffer containing all rows.
+     *
+     * @param data The buffers, entries may be null
+     * @param metrics May be null
+     * @return The suppressed cells for each buffer, null for entries which are null
+     */
+    public DataSuppressionMask[] perform(DataBuffer[] data, ParametersMetrics metrics) {
+
+        // Prepare
+        long time = System.nanoTime();
+        DataSuppressionMask[] result = new DataSuppressionMask[data.length];
+        String[] header = null;
+        for (DataBuffer buffer : data) {
+            if (buffer != null) {
+                header = buffer.getHeader();
+                break;
+            }
+        }
+        if (header == null) {
+            return result;
+        }
+        List<Integer> indices = new ArrayList<>();
+        for (int column = 0; column < header.length; column++) {
+            if (risk.isQi(header[column])) {
+                indices.add(column);
+            }
+        }
+        int[] qis = new int[indices.size()];
+        String[] names = new String[qis.length];
+        for (int i = 0; i < qis.length; i++) {
+            qis[i] = indices.get(i);
+            names[i] = header[qis[i]];
+        }
+
+        // First pass: count
+        DataClassSummary summary = new DataClassSummary(names);
+        String[] tuple = new String[qis.length];
+        for (DataBuffer buffer : data) {
+            if (buffer == null) {
+                continue;
+            }
+            Iterator<String[]> iterator = buffer.iterator();
+            iterator.next(); // Skip header
+            while (iterator.hasNext()) {
+                String[] row = iterator.next();
+                for (int i = 0; i < qis.length; i++) {
+                    tuple[i] = row[qis[i]];
+                }
+                summary.add(tuple);
+            }
+        }
+        if (metrics != null) {
+            metrics.trackPreparation(System.nanoTime() - time);
+            time = System.nanoTime();
+        }
+
+        // Determine suppressions
+        DataSuppressionDictionary suppressions = summary.getSuppressions(risk);
+
+        // Second pass: suppress
+        for (int index = 0; index < data.length; index++) {
+            DataBuffer buffer = data[index];
+            if (buffer == null) {
+                continue;
+            }
+            result[index] = new DataSuppressionMask(buffer);
+            if (suppressions.size() != 0) {
+                for (int row = 0; row < buffer.getNumRows(); row++) {
+                    for (int i = 0; i < qis.length; i++) {
+                        tuple[i] = buffer.getValue(row, qis[i]);
+                    }
+                    if (suppressions.contains(tuple)) {
+                        for (int column : qis) {
+                            result[index].suppress(row, column);
+                        }
+                    }
+                }
+            }
+        }
+        if (metrics != null) {
+            metrics.trackAnonymization(System.nanoTime() - time);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Aggregates the class summaries of the nodes of a cluster. When a transformation runs clustered, each
+ * copy of the step on each slave server summarizes the classes of its rows and sends the summary to the
+ * aggregation, which is hosted by the first copy across all slave servers. The aggregation merges all
+ * summaries, assesses the risks of the complete dataset and, if needed, determines the tuples to be
+ * suppressed. The risks and the resulting dictionary are sent back to all nodes, which apply the dictionary
+ * to their own rows. Only summaries and dictionaries are exchanged, never rows.<br>
+ * <br>
+ * Nodes connect via TCP. Each node sends its summary and waits for the response, which is sent once all
+ * nodes have reported. Nodes wait for each other as long as a node has reported within the timeout.
+ * Suppressions are only determined for thresholds which only consist of a size threshold, as they do not
+ * depend on the order in which rows are suppressed.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationClusterAggregation {
+
+    /** Identifies messages of the protocol */
+    static final int                  MAGIC = 0x52524D43;
+
+    /** The thresholds */
+    private final ParametersRisk      thresholds;
+
+    /** The number of nodes */
+    private final int                 nodes;
+
+    /** Time in seconds for which nodes wait for each other, without any node reporting */
+    private final int                 timeout;
+
+    /** The number of summaries received */
+    private int                       received;
+
+    /** Time in milliseconds at which a node has reported last */
+    private long                      progress;
+
+    /** The merged summary */
+    private DataClassSummary          summary;
+
+    /** The risks, before suppression */
+    private ParametersRisk            risk;
+
+    /** The suppressions */
+    private DataSuppressionDictionary suppressions;
+
+    /** Accepts connections, null if the aggregation has not been started */
+    private ServerSocket              server;
+
+    /** Set if the aggregation has been closed */
+    private boolean                   closed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param thresholds
+     * @param nodes The number of summaries to wait for
+     * @param timeout Time in seconds for which nodes wait for each other, without any node reporting
+     */
+    public OperationClusterAggregation(ParametersRisk thresholds, int nodes, int timeout) {
+        this.thresholds = thresholds;
+        this.nodes = nodes;
+        this.timeout = timeout;
+        this.progress = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds the summary of a node. Nodes without rows send an empty summary, which may not refer to
+     * the quasi-identifiers, as they have not seen the fields of the rows.
+     *
+     * @param summary
+     */
+    public synchronized void add(DataClassSummary summary) {
+        if (isComplete()) {
+            throw new IllegalStateException("Summaries of all " + nodes + " nodes have already been received");
+        }
+        if (this.summary == null || this.summary.getNumRows() == 0) {
+            this.summary = summary;
+        } else if (summary.getNumRows() != 0) {
+            this.summary.merge(summary);
+        }
+        received++;
+        progress = System.currentTimeMillis();
+        notifyAll();
+    }
+
+    /**
+     * Stops accepting connections. Nodes which are still waiting fail.
+     */
+    public void close() {
+        ServerSocket server;
+        synchronized (this) {
+            closed = true;
+            server = this.server;
+            notifyAll();
+        }
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Receives the serialized summary of a node, waits for the summaries of all other nodes and returns the
+     * serialized suppressions.
+     *
+     * @param summary
+     * @return
+     * @throws IOException If the message is malformed or not all nodes have sent their summary in time
+     */
+    public synchronized byte[] exchange(byte[] summary) throws IOException {
+        add(DataClassSummary.fromBytes(summary));
+        while (!isComplete()) {
+            long remaining = progress + timeout * 1000L - System.currentTimeMillis();
+            if (closed) {
+                throw new IOException("The aggregation has been closed, " + received + " of " + nodes + " nodes have sent their summary");
+            }
+            if (remaining <= 0) {
+                throw new IOException("No node has sent its summary for " + timeout + " seconds, " + received + " of " + nodes + " nodes have sent their summary");
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+        return getSuppressions().toBytes();
+    }
+
+    /**
+     * Returns the port on which connections are accepted.
+     *
+     * @return
+     */
+    public synchronized int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the risks of the complete dataset, before suppression.
+     *
+     * @return
+     */
+    public synchronized ParametersRisk getRisk() {
+        checkComplete();
+        if (risk == null) {
+            risk = summary.calculate(thresholds);
+        }
+        return risk;
+    }
+
+    /**
+     * Returns the tuples which must be suppressed on all nodes. The dictionary is empty if the thresholds
+     * are satisfied or if they do not only consist of a size threshold.
+     *
+     * @return
+     */
+    public synchronized DataSuppressionDictionary getSuppressions() {
+        checkComplete();
+        if (suppressions == null) {
+            if (!getRisk().satisfies(thresholds) && OperationCellSuppressionTwoPass.isSupported(thresholds)) {
+                suppressions = summary.getSuppressions(thresholds);
+            } else {
+                suppressions = new DataSuppressionDictionary();
+            }
+        }
+        return suppressions;
+    }
+
+    /**
+     * Returns whether the summaries of all nodes have been received.
+     *
+     * @return
+     */
+    public synchronized boolean isComplete() {
+        return received == nodes;
+    }
+
+    /**
+     * Starts accepting connections from the nodes on a thread of its own.
+     *
+     * @param port The port, 0 for any free port
+     * @throws IOException
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The aggregation has already been started");
+        }
+        server = new ServerSocket(port, Math.max(50, nodes));
+        final ServerSocket socket = server;
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept(socket);
+            }
+        }, "RRM cluster aggregation - " + socket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Accepts connections until the socket is closed, serving each connection on a thread of its own.
+     *
+     * @param socket
+     */
+    private void accept(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            final Socket connection;
+            try {
+                connection = socket.accept();
+            } catch (IOException e) {
+                return; // Closed
+            }
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(connection);
+                }
+            }, "RRM cluster aggregation - " + connection.getRemoteSocketAddress());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Checks whether the summaries of all nodes have been received.
+     */
+    private void checkComplete() {
+        if (!isComplete()) {
+            throw new IllegalStateException("Only " + received + " of " + nodes + " nodes have sent their summary");
+        }
+    }
+
+    /**
+     * Serves a node. The request consists of the magic number and the serialized summary. The response
+     * either consists of true, the average risk, the fraction of records at risk and the serialized
+     * dictionary, or of false and an error message.
+     *
+     * @param connection
+     */
+    private void serve(Socket connection) {
+        try (Socket socket = connection) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            byte[] response;
+            ParametersRisk risk;
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Malformed request");
+                }
+                byte[] request = new byte[in.readInt()];
+                in.readFully(request);
+                response = exchange(request);
+                risk = getRisk();
+            } catch (IOException | RuntimeException e) {
+                out.writeBoolean(false);
+                out.writeUTF(String.valueOf(e.getMessage()));
+                out.flush();
+                return;
+            }
+            out.writeBoolean(true);
+            out.writeDouble(risk.getAverageRisk());
+            out.writeDouble(risk.getRecordsAtRisk());
+            out.writeInt(response.length);
+            out.write(response);
+            out.flush();
+        } catch (IOException e) {
+            // The node has gone away, it fails on its own
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A node of a cluster, i.e. a copy of the step on a slave server, which takes part in the aggregation of
+ * class summaries. The node summarizes the classes of its rows while they arrive. Once its input is
+ * exhausted, it sends the summary to the OperationClusterAggregation and receives the risks of the
+ * complete dataset and the tuples to be suppressed, which are then applied to its own rows.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationClusterNode {
+
+    /** Parameters relating to risk management. */
+    private final ParametersRisk      thresholds;
+
+    /** The indices of the quasi-identifiers in the rows */
+    private final int[]               indices;
+
+    /** The classes of the rows */
+    private final DataClassSummary    summary;
+
+    /** The values of the quasi-identifiers of a row */
+    private final String[]            tuple;
+
+    /** The risks of the complete dataset, received from the aggregation */
+    private ParametersRisk            risk;
+
+    /** The tuples to be suppressed, received from the aggregation */
+    private DataSuppressionDictionary suppressions;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param thresholds
+     * @param header The header of the rows
+     */
+    public OperationClusterNode(ParametersRisk thresholds, String[] header) {
+        this.thresholds = thresholds;
+        List<Integer> indices = new ArrayList<>();
+        for (int column = 0; column < header.length; column++) {
+            if (thresholds.isQi(header[column])) {
+                indices.add(column);
+            }
+        }
+        this.indices = new int[indices.size()];
+        String[] qis = new String[this.indices.length];
+        for (int i = 0; i < this.indices.length; i++) {
+            this.indices[i] = indices.get(i);
+            qis[i] = header[this.indices[i]];
+        }
+        this.summary = new DataClassSummary(qis);
+        this.tuple = new String[qis.length];
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param row
+     */
+    public void add(String[] row) {
+        for (int i = 0; i < indices.length; i++) {
+            tuple[i] = row[indices[i]];
+        }
+        summary.add(tuple);
+    }
+
+    /**
+     * Applies the suppressions received to the given rows, which must have the same header as the rows added.
+     *
+     * @param data
+     * @return The suppressed cells
+     */
+    public DataSuppressionMask apply(DataBuffer data) {
+        DataSuppressionMask result = new DataSuppressionMask(data);
+        if (suppressions.size() != 0) {
+            for (int row = 0; row < data.getNumRows(); row++) {
+                for (int i = 0; i < indices.length; i++) {
+                    tuple[i] = data.getValue(row, indices[i]);
+                }
+                if (suppressions.contains(tuple)) {
+                    for (int column : indices) {
+                        result.suppress(row, column);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends the summary to the aggregation and waits for the response. As the aggregation is started by
+     * another node, connecting is retried until the timeout has passed.
+     *
+     * @param host
+     * @param port
+     * @param timeout Time in seconds for which connecting is retried
+     * @throws IOException If the aggregation cannot be reached or if it fails
+     */
+    public void exchange(String host, int port, int timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout * 1000L;
+        byte[] request = summary.toBytes();
+        try (Socket socket = connect(host, port, deadline)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(OperationClusterAggregation.MAGIC);
+            out.writeInt(request.length);
+            out.write(request);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            if (!in.readBoolean()) {
+                throw new IOException(in.readUTF());
+            }
+            ParametersRisk risk = new ParametersRisk(thresholds.getQis());
+            risk.setHighestRisk(thresholds.getHighestRisk());
+            risk.setAverageRisk(in.readDouble());
+            risk.setRecordsAtRisk(in.readDouble());
+            byte[] response = new byte[in.readInt()];
+            in.readFully(response);
+            this.suppressions = DataSuppressionDictionary.fromBytes(response);
+            this.risk = risk;
+        }
+    }
+
+    /**
+     * Returns the number of rows added.
+     *
+     * @return
+     */
+    public long getNumRows() {
+        return summary.getNumRows();
+    }
+
+    /**
+     * Returns the risks of the complete dataset, before suppression, as received from the aggregation.
+     *
+     * @return
+     */
+    public ParametersRisk getRisk() {
+        return risk;
+    }
+
+    /**
+     * Returns the tuples to be suppressed, as received from the aggregation.
+     *
+     * @return
+     */
+    public DataSuppressionDictionary getSuppressions() {
+        return suppressions;
+    }
+
+    /**
+     * Connects to the aggregation, retrying until the deadline has passed.
+     *
+     * @param host
+     * @param port
+     * @param deadline
+     * @return
+     * @throws IOException
+     */
+    private Socket connect(String host, int port, long deadline) throws IOException {
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), (int) Math.max(1000L, deadline - System.currentTimeMillis()));
+                return socket;
+            } catch (IOException e) {
+                socket.close();
+                if (System.currentTimeMillis() >= deadline) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(100L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -17,22 +17,24 @@
  */
 package org.deidentifier.arx.kettle.rrm;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.List;
 
 import org.deidentifier.arx.DataHandle;
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.kettle.ReidentificationRiskManagementStep;
-import org.deidentifier.arx.kettle.ReidentificationRiskManagementStepData;
 import org.pentaho.di.core.exception.KettleException;
-import org.pentaho.di.core.exception.KettleValueException;
-import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.step.BaseStep;
 
 /**
- * This class encapsulates methods for data transformation. 
+ * This class encapsulates methods for data transformation. Instances used for reading and
+ * writing rows are specialized for the fields of a step and reuse their internal arrays.
+ * Native values are passed on unchanged, only suppressed cells are set to null. Only the
+ * fields which are needed for anonymization are converted and buffered, all other fields
+ * are only contained in the native rows.
  * @author Fabian Prasser
  * @author Helmut Spengler
  *
@@ -42,95 +44,214 @@ public class OperationDataTransformer {
     /** The String representation for NULL values */
     public final static String MAGIC_NULL_VALUE = "_KETTLE_SPOON_NULL_";
 
+    /** The values appended to buffers without columns */
+    private final static String[] NO_VALUES = new String[0];
+
     /**
-     * Creates an empty dataset containing null values in all cells.
+     * Returns whether the value represents a null or suppressed cell. Values stemming from the
+     * buffer or from hierarchies are the constants themselves, which is checked first.
      * 
-     * @param cols number of columns
-     * @param rows number of rows
-     * @param header header
+     * @param value
      * @return
      */
-    public List<String[]> getEmptyDataset(String[] header, int cols, int rows) {
-        List<String[]> ret = new ArrayList<>();
+    static boolean isNull(String value) {
+        if (value == null || value == MAGIC_NULL_VALUE || value == DataType.ANY_VALUE || value == DataType.NULL_VALUE) {
+            return true;
+        }
+        return value.equals(MAGIC_NULL_VALUE) || value.equals(DataType.ANY_VALUE) || value.equals(DataType.NULL_VALUE);
+    }
 
-        ret.add(header);
+    /** The row meta, null if the instance is only used for creating datasets */
+    private final RowMetaInterface meta;
 
-        for (int i = 0; i < rows; i++) {
-            String[] row = new String[cols];
-            for (int j = 0; j < cols; j++) {
-                row[j] = MAGIC_NULL_VALUE;
-            }
-            ret.add(row);
+    /** For each buffered column, the index of the field in native rows */
+    private final int[]            fieldIndexes;
+
+    /** The names of the buffered columns */
+    private final String[]         header;
+
+    /** The array used for converting rows */
+    private final String[]         scratch;
+
+    /**
+     * Creates an instance which can only be used for creating datasets.
+     */
+    public OperationDataTransformer() {
+        this(null, new int[0]);
+    }
+
+    /**
+     * Creates an instance for reading and writing rows.
+     * 
+     * @param meta
+     * @param fieldIndexes For each buffered column, the index of the field in native rows
+     */
+    public OperationDataTransformer(RowMetaInterface meta, int[] fieldIndexes) {
+        this.meta = meta;
+        this.fieldIndexes = fieldIndexes;
+        this.scratch = new String[fieldIndexes.length];
+        this.header = new String[fieldIndexes.length];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = meta.getValueMeta(fieldIndexes[i]).getName();
+        }
+    }
+
+    /**
+     * Returns the names of the buffered columns.
+     * 
+     * @return
+     */
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the number of fields of native rows, including fields which are not buffered.
+     * 
+     * @return
+     */
+    public int getNumFields() {
+        return meta.size();
+    }
+
+    /**
+     * Convert data coming from the previous step of the transformation to internal format
+     * and append it to the buffer. The native row is appended to the buffer's payload.
+     * 
+     * @param buffer
+     * @param row
+     * @return the converted row, which is reused by the next call
+     * @throws KettleException
+     */
+    public String[] read(DataBuffer buffer, Object[] row) throws KettleException {
+        append(buffer, read(row), row);
+        return scratch;
+    }
+
+    /**
+     * Convert data coming from the previous step of the transformation to internal format,
+     * without buffering it. Only the native row is appended to the buffer, which must not
+     * have any columns.
+     * 
+     * @param buffer
+     * @param row
+     * @return the converted row, which is reused by the next call
+     * @throws KettleException
+     */
+    public String[] readNative(DataBuffer buffer, Object[] row) throws KettleException {
+        append(buffer, NO_VALUES, row);
+        return read(row);
+    }
+
+    /**
+     * Append a row which has already been converted to internal format to the buffer.
+     * The native row is appended to the buffer's payload.
+     * 
+     * @param buffer
+     * @param converted
+     * @param row
+     * @throws KettleException
+     */
+    public void append(DataBuffer buffer, String[] converted, Object[] row) throws KettleException {
+        try {
+            buffer.add(converted);
+        } catch (IOException e) {
+            throw new KettleException(BaseMessages.getString(ReidentificationRiskManagementStep.class, "ReidentificationRiskManagementStep.Message.SpillFailed"), e);
+        }
+        if (buffer.getPayload() != null) {
+            buffer.getPayload().add(row);
         }
-        return ret;
     }
 
     /**
      * Convert data coming from the previous step of the transformation to internal format.
      * 
-     * @param stepData
      * @param row
-     * @return
-     * @throws KettleValueException
+     * @return the converted row, which is reused by the next call
+     * @throws KettleException
      */
-    public String[] read(ReidentificationRiskManagementStepData stepData, Object[] row) throws KettleValueException {
-        String[] result = new String[stepData.getFieldIndexes().size()];
-        for (int i = 0; i < result.length; i++) {
-            String string = stepData.getOutputRowMeta().getString(row, stepData.getFieldIndexes().get(i));
-            result[i] = string != null ? string : MAGIC_NULL_VALUE;
+    public String[] read(Object[] row) throws KettleException {
+        for (int i = 0; i < scratch.length; i++) {
+            String string = meta.getString(row, fieldIndexes[i]);
+            scratch[i] = string != null ? string : MAGIC_NULL_VALUE;
         }
-        return result;
+        return scratch;
     }
 
     /**
-     * Convert/prepare internal data and pass it to the next step of the transformation
-     * if regularOutput==true. Else, pass all data to the error channel.
+     * Pass the native rows of the buffer to the next step of the transformation
+     * if regularOutput==true, with cells set to null which have been suppressed in the mask.
+     * Else, pass all data to the error channel.
      * 
      * @param step
-     * @param payload
+     * @param input
+     * @param mask the suppressed cells
      * @param regularOutput whether the payload is routed to the next step or to an error destination
-     * @param stepData
      * @throws KettleException
      */
-    public void write(BaseStep step, List<String[]> payload, boolean regularOutput, ReidentificationRiskManagementStepData stepData) throws KettleException {
-
-        // Skip header
-        for (int i=1; i<payload.size(); i++) {
+    public void write(BaseStep step, DataBuffer input, DataSuppressionMask mask, boolean regularOutput) throws KettleException {
+        BitSet cells = mask.getCells();
+        int columns = input.getNumColumns();
+        int cell = cells.nextSetBit(0);
+        for (int i = 0; i < input.getNumRows(); i++) {
+            Object[] row = input.getPayload().get(i);
+            for (int end = (i + 1) * columns; cell >= 0 && cell < end; cell = cells.nextSetBit(cell + 1)) {
+                row[fieldIndexes[cell - i * columns]] = null;
+            }
+            write(step, row, regularOutput);
+        }
+    }
 
-            String[] rowFromBuffer = payload.get(i);
-            Object[] outputRow = RowDataUtil.allocateRowData(stepData.getOutputRowMeta().size());
+    /**
+     * Pass the native rows of the buffer to the next step of the transformation
+     * if regularOutput==true. Else, pass all data to the error channel.
+     * 
+     * @param step
+     * @param buffer
+     * @param regularOutput whether the payload is routed to the next step or to an error destination
+     * @throws KettleException
+     */
+    public void write(BaseStep step, DataBuffer buffer, boolean regularOutput) throws KettleException {
+        for (int i = 0; i < buffer.getNumRows(); i++) {
+            write(step, buffer.getPayload().get(i), regularOutput);
+        }
+    }
 
-            for (int j = 0; j < rowFromBuffer.length; j++) {
-                String value = rowFromBuffer[j];
-                if (value == null || value.equals(OperationDataTransformer.MAGIC_NULL_VALUE) || value.equals(DataType.ANY_VALUE) || value.equals(DataType.NULL_VALUE)) {
-                    outputRow[stepData.getFieldIndexes().get(j)] = null;
-                } else {
-                    outputRow[stepData.getFieldIndexes().get(j)] = value.getBytes();
-                }
-            }
-            if (regularOutput) {
-                step.putRow(stepData.getOutputRowMeta(), outputRow);
-            } else {                
-                step.putError(stepData.getOutputRowMeta(), outputRow, 1, BaseMessages.getString(ReidentificationRiskManagementStep.class, "ReidentificationRiskManagementStep.Message.InvalidThreshold"), null, "RRM001");
-            }
+    /**
+     * Pass on a single row.
+     * 
+     * @param step
+     * @param row
+     * @param regularOutput
+     * @throws KettleException
+     */
+    private void write(BaseStep step, Object[] row, boolean regularOutput) throws KettleException {
+        if (regularOutput) {
+            step.putRow(meta, row);
+        } else {                
+            step.putError(meta, row, 1, BaseMessages.getString(ReidentificationRiskManagementStep.class, "ReidentificationRiskManagementStep.Message.InvalidThreshold"), null, "RRM001");
         }
     }
 
     /**
-     * Converts a handle to a list of strings
-     * @param header
+     * Converts a handle to the cells of the input which have been suppressed. Rows of the
+     * handle are compared one at a time, without copying the output.
+     * @param input
      * @param output
      * @return
      */
-    public List<String[]> convert(DataHandle input, DataHandle output) {
-        if (output != null) {
-            List<String[]> result = new ArrayList<>();
-            for (Iterator<String[]> iterator = output.iterator(); iterator.hasNext(); ) {
-                result.add(iterator.next());
+    public DataSuppressionMask convert(DataBuffer input, DataHandle output) {
+        DataSuppressionMask result = new DataSuppressionMask(input);
+        Iterator<String[]> iterator = output.iterator();
+        iterator.next(); // Skip header
+        for (int row = 0; iterator.hasNext(); row++) {
+            String[] values = iterator.next();
+            for (int column = 0; column < values.length; column++) {
+                if (isNull(values[column])) {
+                    result.suppress(row, column);
+                }
             }
-            return result;
-        } else {
-            return getEmptyDataset(input.iterator().next(), input.getNumColumns(), input.getNumRows());
         }
+        return result;
     }
 }
@@ -17,16 +17,12 @@
  */
 package org.deidentifier.arx.kettle.rrm;
 
-import java.util.List;
-
-import org.deidentifier.arx.AttributeType;
-import org.deidentifier.arx.Data;
-import org.deidentifier.arx.DataHandle;
-import org.deidentifier.arx.risk.RiskEstimateBuilder;
-import org.deidentifier.arx.risk.RiskModelSampleWildcard;
+import java.util.Iterator;
 
 /**
  * This class encapsulates methods to calculate different types of re-identification risks. 
+ * Results are the same as the ones obtained from ARX's sample-based wildcard risk model, but
+ * the rows are encoded and matched directly, without creating an ARX data object and handle.
  * @author Fabian Prasser
  * @author Helmut Spengler
  *
@@ -50,31 +46,17 @@ public class OperationRiskAssessment {
      * @param data
      * @return
      */
-    public ParametersRisk calculate(List<String[]> data) {
-
-		// Create ARX data object from previously filled rowList object
-		Data arxData = Data.create(data);
-
-		// Configure QI settings
-		for (String qi : thresholds.getQis()) {
-		    
-		    arxData.getDefinition().setAttributeType(qi, AttributeType.QUASI_IDENTIFYING_ATTRIBUTE);
-
+    public ParametersRisk calculate(DataBuffer data) {
+
+		// Encode and count the rows of the previously filled buffer, skipping the header
+		OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, data.getHeader());
+		Iterator<String[]> iterator = data.iterator();
+		iterator.next();
+		while (iterator.hasNext()) {
+		    assessment.add(iterator.next());
 		}
 
-		// Prepare input, estimator, and output variables
-		DataHandle handle = arxData.getHandle();
-		RiskEstimateBuilder builder = handle.getRiskEstimator();
-		ParametersRisk result = new ParametersRisk(thresholds.getQis());
-		
-		// Build risk model
-		RiskModelSampleWildcard riskModel = builder.getSampleBasedRiskSummaryWildcard(thresholds.getHighestRisk(), OperationDataTransformer.MAGIC_NULL_VALUE);
-
-		
-		result.setHighestRisk(thresholds.getHighestRisk()); // riskModel.getHighestRisk() is *not* what we want here		
-		result.setRecordsAtRisk(riskModel.getRecordsAtRisk());
-		result.setAverageRisk(riskModel.getAverageRisk());
-		
-		return result;
+		// Match classes with null values and calculate risks
+		return assessment.calculate();
 	}
 }
@@ -0,0 +1,288 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class calculates re-identification risks incrementally. Rows are counted as they
+ * arrive, only the sizes of the equivalence classes are kept. The results are the same as
+ * the ones obtained from ARX's sample-based wildcard risk model, in which a null value of a
+ * quasi-identifier matches any value in its column.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentIncremental {
+
+    /**
+     * An equivalence class, i.e. an encoded tuple of QI values and its number of occurrences.
+     */
+    static class EquivalenceClass {
+
+        /** The codes */
+        private final int[] codes;
+        /** The hash code */
+        private int         hashcode;
+        /** The number of rows in the class */
+        private int         count;
+
+        /**
+         * Creates a new instance
+         * @param codes
+         */
+        private EquivalenceClass(int[] codes) {
+            this.codes = codes;
+            this.hashcode = Arrays.hashCode(codes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return Arrays.equals(codes, ((EquivalenceClass) obj).codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashcode;
+        }
+    }
+
+    /** Minimal number of stale values per dictionary, before dictionaries are compacted */
+    private static final int                                  MIN_STALE_VALUES = 1024;
+
+    /** Parameters relating to risk management. */
+    private final ParametersRisk                              thresholds;
+
+    /** The indices of the quasi-identifiers in the rows */
+    private final int[]                                       indices;
+
+    /** The dictionaries, one per quasi-identifier */
+    private final DataDictionary[]                            dictionaries;
+
+    /** The equivalence classes */
+    private final Map<EquivalenceClass, EquivalenceClass>     classes = new HashMap<>();
+
+    /** Probe used for lookups */
+    private final EquivalenceClass                            probe;
+
+    /** The number of rows */
+    private long                                              rows;
+
+    /**
+     * Constructor.
+     *
+     * @param thresholds
+     * @param header
+     */
+    public OperationRiskAssessmentIncremental(ParametersRisk thresholds, String[] header) {
+        this.thresholds = thresholds;
+        List<Integer> indices = new ArrayList<>();
+        for (int column = 0; column < header.length; column++) {
+            if (thresholds.isQi(header[column])) {
+                indices.add(column);
+            }
+        }
+        this.indices = new int[indices.size()];
+        this.dictionaries = new DataDictionary[indices.size()];
+        for (int i = 0; i < this.indices.length; i++) {
+            this.indices[i] = indices.get(i);
+            this.dictionaries[i] = new DataDictionary();
+        }
+        this.probe = new EquivalenceClass(new int[this.indices.length]);
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param row
+     */
+    public void add(String[] row) {
+        register(row);
+    }
+
+    /**
+     * Adds a row and returns its class, which can be used to remove the row again.
+     *
+     * @param row
+     * @return
+     */
+    EquivalenceClass register(String[] row) {
+        for (int i = 0; i < indices.length; i++) {
+            probe.codes[i] = dictionaries[i].register(row[indices[i]]);
+        }
+        probe.hashcode = Arrays.hashCode(probe.codes);
+        EquivalenceClass clazz = classes.get(probe);
+        if (clazz == null) {
+            clazz = new EquivalenceClass(probe.codes.clone());
+            classes.put(clazz, clazz);
+        }
+        clazz.count++;
+        rows++;
+        return clazz;
+    }
+
+    /**
+     * Removes a row of the given class, which must have been returned by register().
+     * Dictionaries are compacted once they mainly consist of values which no longer occur.
+     *
+     * @param clazz
+     */
+    void remove(EquivalenceClass clazz) {
+        clazz.count--;
+        rows--;
+        if (clazz.count == 0) {
+            classes.remove(clazz);
+            for (DataDictionary dictionary : dictionaries) {
+                if (dictionary.size() > 2 * classes.size() + MIN_STALE_VALUES) {
+                    compact();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculate the different risk values for all rows added so far.
+     *
+     * @return
+     */
+    public ParametersRisk calculate() {
+        return getRisks(getSizes());
+    }
+
+    /**
+     * Removes all rows.
+     */
+    public void clear() {
+        classes.clear();
+        for (DataDictionary dictionary : dictionaries) {
+            dictionary.clear();
+        }
+        rows = 0;
+    }
+
+    /**
+     * Returns the number of rows added so far.
+     *
+     * @return
+     */
+    public long getNumRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the code of the null value in each column, -1 if it does not occur.
+     *
+     * @return
+     */
+    int[] getNullCodes() {
+        int[] nulls = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            nulls[i] = dictionaries[i].getCode(OperationDataTransformer.MAGIC_NULL_VALUE);
+        }
+        return nulls;
+    }
+
+    /**
+     * Determines the size of each class, taking matching null values into account.
+     * Classes which only consist of null values are not contained.
+     *
+     * @return
+     */
+    Map<EquivalenceClass, Long> getSizes() {
+
+        // Match classes by their null patterns
+        List<EquivalenceClass> list = new ArrayList<>(classes.keySet());
+        OperationRiskAssessmentWildcard wildcard = new OperationRiskAssessmentWildcard(thresholds, getNullCodes());
+        for (EquivalenceClass clazz : list) {
+            wildcard.add(clazz.codes, clazz.count);
+        }
+        long[] sizes = wildcard.getSizes();
+
+        // Classes which only consist of null values are suppressed and ignored
+        Map<EquivalenceClass, Long> result = new HashMap<>();
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i] != 0) {
+                result.put(list.get(i), sizes[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Re-encodes all classes with new dictionaries, which only contain the values that
+     * still occur. Classes are updated in place, so that references remain valid.
+     */
+    private void compact() {
+
+        // Prepare
+        DataDictionary[] compacted = new DataDictionary[dictionaries.length];
+        for (int i = 0; i < compacted.length; i++) {
+            compacted[i] = new DataDictionary();
+        }
+        List<EquivalenceClass> list = new ArrayList<>(classes.keySet());
+        classes.clear();
+
+        // Re-encode
+        for (EquivalenceClass clazz : list) {
+            for (int i = 0; i < compacted.length; i++) {
+                clazz.codes[i] = compacted[i].register(dictionaries[i].getValue(clazz.codes[i]));
+            }
+            clazz.hashcode = Arrays.hashCode(clazz.codes);
+            classes.put(clazz, clazz);
+        }
+        System.arraycopy(compacted, 0, dictionaries, 0, compacted.length);
+    }
+
+    /**
+     * Calculates the risks from the given class sizes.
+     *
+     * @param sizes
+     * @return
+     */
+    ParametersRisk getRisks(Map<EquivalenceClass, Long> sizes) {
+
+        // Prepare
+        int k = OperationCellSuppression.getSizeThreshold(thresholds.getHighestRisk());
+        long total = 0;
+        long recordsAtRisk = 0;
+        double averageRisk = 0d;
+
+        // Calculate
+        for (Map.Entry<EquivalenceClass, Long> entry : sizes.entrySet()) {
+            int count = entry.getKey().count;
+            long size = entry.getValue();
+            total += count;
+            averageRisk += (double) count / (double) size;
+            if (size < k) {
+                recordsAtRisk += count;
+            }
+        }
+
+        // Return
+        ParametersRisk result = new ParametersRisk(thresholds.getQis());
+        result.setHighestRisk(thresholds.getHighestRisk());
+        result.setRecordsAtRisk(total == 0 ? 0d : (double) recordsAtRisk / (double) total);
+        result.setAverageRisk(total == 0 ? 0d : averageRisk / (double) total);
+        return result;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deidentifier.arx.kettle.ReidentificationRiskManagementStep;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * This class calculates re-identification risks like OperationRiskAssessmentIncremental, but counts
+ * the sizes of equivalence classes in off-heap hash tables of encoded tuples. Classes without null
+ * values are counted in a table with a memory limit, which spills to disk once the limit is reached.
+ * Classes with null values, which must be matched against all other classes, are usually few and are
+ * counted in a separate table without a limit. Only the dictionaries of the quasi-identifiers are
+ * held on the heap.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentOffHeap {
+
+    /** Parameters relating to risk management. */
+    private final ParametersRisk   thresholds;
+
+    /** The indices of the quasi-identifiers in the rows */
+    private final int[]            indices;
+
+    /** The dictionaries, one per quasi-identifier */
+    private final DataDictionary[] dictionaries;
+
+    /** Classes without null values */
+    private final DataClassTable   complete;
+
+    /** Classes with null values, excluding classes which only consist of null values */
+    private final DataClassTable   partial;
+
+    /** The codes of the row which is added */
+    private final int[]            codes;
+
+    /** The number of rows */
+    private long                   rows;
+
+    /**
+     * Constructor.
+     *
+     * @param thresholds
+     * @param header
+     * @param limit Memory limit in bytes, 0 disables spilling
+     * @param directory Directory for spilled classes, null for the default temporary-file directory
+     */
+    public OperationRiskAssessmentOffHeap(ParametersRisk thresholds, String[] header, long limit, File directory) {
+        this.thresholds = thresholds;
+        List<Integer> indices = new ArrayList<>();
+        for (int column = 0; column < header.length; column++) {
+            if (thresholds.isQi(header[column])) {
+                indices.add(column);
+            }
+        }
+        this.indices = new int[indices.size()];
+        this.dictionaries = new DataDictionary[indices.size()];
+        for (int i = 0; i < this.indices.length; i++) {
+            this.indices[i] = indices.get(i);
+            this.dictionaries[i] = new DataDictionary();
+        }
+        this.codes = new int[this.indices.length];
+        this.complete = new DataClassTable(this.indices.length, limit, directory);
+        this.partial = new DataClassTable(this.indices.length);
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param row
+     * @throws KettleException if classes cannot be spilled to disk
+     */
+    public void add(String[] row) throws KettleException {
+        int numNulls = 0;
+        for (int i = 0; i < indices.length; i++) {
+            String value = row[indices[i]];
+            codes[i] = dictionaries[i].register(value);
+            numNulls += value.equals(OperationDataTransformer.MAGIC_NULL_VALUE) ? 1 : 0;
+        }
+        try {
+            if (numNulls == 0) {
+                complete.add(codes, 1);
+            } else if (numNulls < indices.length) {
+                partial.add(codes, 1);
+            }
+        } catch (IOException e) {
+            throw new KettleException(BaseMessages.getString(ReidentificationRiskManagementStep.class, "ReidentificationRiskManagementStep.Message.SpillFailed"), e);
+        }
+        rows++;
+    }
+
+    /**
+     * Calculate the different risk values for all rows added so far. Afterwards, all rows are removed.
+     *
+     * @return
+     * @throws KettleException if spilled classes cannot be read
+     */
+    public ParametersRisk calculate() throws KettleException {
+
+        // Prepare
+        final int[] nulls = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            nulls[i] = dictionaries[i].getCode(OperationDataTransformer.MAGIC_NULL_VALUE);
+        }
+
+        // Collect classes with null values
+        final OperationRiskAssessmentWildcard wildcard = new OperationRiskAssessmentWildcard(thresholds, nulls);
+        try {
+            partial.visit(new DataClassTable.EntryVisitor() {
+                @Override
+                public void visit(int[] codes, int count) {
+                    wildcard.add(codes, count);
+                }
+            });
+
+            // Match classes without null values against classes with null values, one by one
+            complete.visit(new DataClassTable.EntryVisitor() {
+                @Override
+                public void visit(int[] codes, int count) {
+                    wildcard.match(codes, count);
+                }
+            });
+        } catch (IOException e) {
+            throw new KettleException(e);
+        }
+
+        // Return
+        clear();
+        return wildcard.calculate();
+    }
+
+    /**
+     * Removes all rows and deletes spilled classes.
+     */
+    public void clear() {
+        complete.clear();
+        partial.clear();
+        for (DataDictionary dictionary : dictionaries) {
+            dictionary.clear();
+        }
+        rows = 0;
+    }
+
+    /**
+     * Returns the number of rows added so far.
+     *
+     * @return
+     */
+    public long getNumRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of times classes have been spilled to disk.
+     *
+     * @return
+     */
+    public int getNumSpills() {
+        return complete.getNumSpills();
+    }
+}
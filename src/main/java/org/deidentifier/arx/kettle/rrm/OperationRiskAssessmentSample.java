@@ -0,0 +1,341 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentIncremental.EquivalenceClass;
+
+/**
+ * This class estimates re-identification risks from a reservoir sample of rows, without keeping
+ * track of the classes of all rows. The wildcard risk model is evaluated on the sampled rows only,
+ * which yields the size of each sampled row's class within the sample. As the sample is drawn
+ * without replacement, the number of other rows of a class which have been sampled follows a
+ * hypergeometric distribution, which is approximated by a binomial distribution. The size of the
+ * class in the population is estimated by scaling the number up with the sampling fraction, and
+ * bounded by the sizes for which the observed number lies within the confidence interval.
+ * <br>
+ * The average risk and the fraction of records at risk are then estimated as means over the sample.
+ * The lower bounds are based on the largest plausible class sizes and the upper bounds on the
+ * smallest ones, widened by confidence intervals based on the normal approximation and the Wilson
+ * score interval, respectively, both corrected for the finite population. If the bounds straddle the
+ * thresholds, the risks must be calculated exactly from all rows. Rows which only consist of null
+ * values are ignored, like in the exact calculation.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentSample {
+
+    /** Seed */
+    private static final long    SEED = 0xDEADBEEFL;
+
+    /**
+     * Returns the quantile of the standard normal distribution for the given two-sided confidence level,
+     * using the rational approximation by Abramowitz and Stegun (26.2.23), which has an absolute error
+     * below 4.5e-4.
+     *
+     * @param confidence
+     * @return
+     */
+    static double getQuantile(double confidence) {
+        double p = Math.max(1e-12d, Math.min(0.5d, (1d - confidence) / 2d));
+        double t = Math.sqrt(-2d * Math.log(p));
+        return t - (2.515517d + 0.802853d * t + 0.010328d * t * t) / (1d + 1.432788d * t + 0.189269d * t * t + 0.001308d * t * t * t);
+    }
+
+    /** Parameters relating to risk management. */
+    private final ParametersRisk thresholds;
+
+    /** The header of the rows */
+    private final String[]       header;
+
+    /** The indices of the quasi-identifiers in the rows */
+    private final int[]          indices;
+
+    /** The reservoir, which holds copies of the sampled rows */
+    private final String[][]     reservoir;
+
+    /** The quantile for the confidence level */
+    private final double         z;
+
+    /** Random numbers */
+    private final Random         random = new Random(SEED);
+
+    /** The number of rows seen, which do not only consist of null values */
+    private long                 rows;
+
+    /** The lower bounds of the last estimate */
+    private ParametersRisk       lower;
+
+    /** The upper bounds of the last estimate */
+    private ParametersRisk       upper;
+
+    /** The number of sampled rows used for the last estimate */
+    private int                  sampled;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param thresholds
+     * @param header The header of the rows
+     * @param size The size of the reservoir
+     * @param confidence The confidence level
+     */
+    public OperationRiskAssessmentSample(ParametersRisk thresholds, String[] header, int size, double confidence) {
+        this.thresholds = thresholds;
+        this.header = header;
+        List<Integer> indices = new ArrayList<>();
+        for (int column = 0; column < header.length; column++) {
+            if (thresholds.isQi(header[column])) {
+                indices.add(column);
+            }
+        }
+        this.indices = new int[indices.size()];
+        for (int i = 0; i < this.indices.length; i++) {
+            this.indices[i] = indices.get(i);
+        }
+        this.reservoir = new String[size][];
+        this.z = getQuantile(confidence);
+    }
+
+    /**
+     * Adds a row, which is copied if it is sampled.
+     *
+     * @param row
+     */
+    public void add(String[] row) {
+
+        // Ignore rows which only consist of null values
+        boolean nulls = true;
+        for (int index : indices) {
+            if (!OperationDataTransformer.isNull(row[index])) {
+                nulls = false;
+                break;
+            }
+        }
+        if (nulls) {
+            return;
+        }
+
+        // Sample
+        if (rows < reservoir.length) {
+            reservoir[(int) rows] = row.clone();
+        } else {
+            long index = (long) (random.nextDouble() * (rows + 1));
+            if (index < reservoir.length) {
+                reservoir[(int) index] = row.clone();
+            }
+        }
+        rows++;
+    }
+
+    /**
+     * Removes all rows from the sample.
+     */
+    public void clear() {
+        for (int i = 0; i < reservoir.length; i++) {
+            reservoir[i] = null;
+        }
+        rows = 0;
+        lower = null;
+        upper = null;
+        sampled = 0;
+    }
+
+    /**
+     * Estimates the risks of all rows added so far. Confidence intervals can be obtained
+     * via getLowerBounds() and getUpperBounds() afterwards.
+     *
+     * @return
+     */
+    public ParametersRisk estimate() {
+
+        // Determine the sizes of the classes within the sample
+        int m = (int) Math.min(rows, reservoir.length);
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, header);
+        EquivalenceClass[] classes = new EquivalenceClass[m];
+        for (int i = 0; i < m; i++) {
+            classes[i] = assessment.register(reservoir[i]);
+        }
+        this.sampled = m;
+
+        // If all rows have been sampled, the risks are exact
+        if (rows <= reservoir.length) {
+            ParametersRisk result = assessment.getRisks(assessment.getSizes());
+            this.lower = result;
+            this.upper = result;
+            return result;
+        }
+
+        // Nothing can be concluded from a single row
+        if (m < 2) {
+            this.lower = getRisk(0d, 0d);
+            this.upper = getRisk(1d, 1d);
+            return upper;
+        }
+
+        // Estimate the sizes of the classes in the population. The number of other sampled rows of a class
+        // of size F is approximately binomial with F - 1 trials and the sampling fraction q.
+        Map<EquivalenceClass, Long> sizes = assessment.getSizes();
+        int k = OperationCellSuppression.getSizeThreshold(thresholds.getHighestRisk());
+        double q = (double) (m - 1) / (double) (rows - 1);
+        double deviation = z * Math.sqrt(q * (1d - q));
+        double[] sums = new double[6];
+        long atRisk = 0;
+        long atRiskLower = 0;
+        long atRiskUpper = 0;
+        for (int i = 0; i < m; i++) {
+            double others = sizes.get(classes[i]) - 1;
+            double root = Math.sqrt(deviation * deviation + 4d * q * others);
+            double min = Math.max(others + 1d, 1d + square((root - deviation) / (2d * q)));
+            double max = Math.max(min, Math.min(rows, 1d + square((root + deviation) / (2d * q))));
+            double size = Math.max(min, Math.min(max, 1d + others / q));
+            add(sums, 0, 1d / size);
+            add(sums, 2, 1d / max);
+            add(sums, 4, 1d / min);
+            atRisk += size < k ? 1 : 0;
+            atRiskLower += max < k ? 1 : 0;
+            atRiskUpper += min < k ? 1 : 0;
+        }
+
+        // Estimate
+        double correction = Math.sqrt(Math.max(0d, (double) (rows - m) / (double) (rows - 1)));
+        double averageLower = sums[2] / m - getWidth(sums[2], sums[3], m) * correction;
+        double averageUpper = sums[4] / m + getWidth(sums[4], sums[5], m) * correction;
+        double fractionLower = getWilsonBound((double) atRiskLower / (double) m, m, correction, false);
+        double fractionUpper = getWilsonBound((double) atRiskUpper / (double) m, m, correction, true);
+
+        // Store and return
+        this.lower = getRisk(Math.max(0d, averageLower), fractionLower);
+        this.upper = getRisk(Math.min(1d, averageUpper), fractionUpper);
+        return getRisk(sums[0] / m, (double) atRisk / (double) m);
+    }
+
+    /**
+     * Returns the lower bounds of the last estimate.
+     *
+     * @return
+     */
+    public ParametersRisk getLowerBounds() {
+        return lower;
+    }
+
+    /**
+     * Returns the number of sampled rows used for the last estimate.
+     *
+     * @return
+     */
+    public int getNumSampledRows() {
+        return sampled;
+    }
+
+    /**
+     * Returns the upper bounds of the last estimate.
+     *
+     * @return
+     */
+    public ParametersRisk getUpperBounds() {
+        return upper;
+    }
+
+    /**
+     * Returns whether the last estimate allows to decide whether the thresholds are satisfied,
+     * i.e. whether the confidence intervals do not straddle the thresholds.
+     *
+     * @return
+     */
+    public boolean isConclusive() {
+        return upper.satisfies(thresholds) || !lower.satisfies(thresholds);
+    }
+
+    /**
+     * Adds a value to the sum and the sum of squares at the given offset.
+     *
+     * @param sums
+     * @param offset
+     * @param value
+     */
+    private void add(double[] sums, int offset, double value) {
+        sums[offset] += value;
+        sums[offset + 1] += value * value;
+    }
+
+    /**
+     * Creates a risk object.
+     *
+     * @param averageRisk
+     * @param recordsAtRisk
+     * @return
+     */
+    private ParametersRisk getRisk(double averageRisk, double recordsAtRisk) {
+        ParametersRisk result = new ParametersRisk(thresholds.getQis());
+        result.setHighestRisk(thresholds.getHighestRisk());
+        result.setAverageRisk(averageRisk);
+        result.setRecordsAtRisk(recordsAtRisk);
+        return result;
+    }
+
+    /**
+     * Returns the half width of the confidence interval of a mean, before correcting for
+     * the finite population.
+     *
+     * @param sum
+     * @param sumOfSquares
+     * @param m
+     * @return
+     */
+    private double getWidth(double sum, double sumOfSquares, int m) {
+        if (m <= 1) {
+            return 0d;
+        }
+        double mean = sum / m;
+        double variance = Math.max(0d, (sumOfSquares - m * mean * mean) / (m - 1));
+        return z * Math.sqrt(variance / m);
+    }
+
+    /**
+     * Returns the lower or upper bound of the Wilson score interval of a fraction, corrected
+     * for the finite population.
+     *
+     * @param fraction
+     * @param m
+     * @param correction
+     * @param upper
+     * @return
+     */
+    private double getWilsonBound(double fraction, int m, double correction, boolean upper) {
+        double denominator = 1d + z * z / m;
+        double center = (fraction + z * z / (2d * m)) / denominator;
+        double width = z * Math.sqrt(fraction * (1d - fraction) / m + z * z / (4d * m * m)) / denominator * correction;
+        return upper ? Math.min(1d, Math.max(fraction, center + width)) : Math.max(0d, Math.min(fraction, center - width));
+    }
+
+    /**
+     * Returns the square of the given value.
+     *
+     * @param value
+     * @return
+     */
+    private double square(double value) {
+        return value * value;
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class calculates re-identification risks from equivalence classes, i.e. distinct tuples of
+ * encoded quasi-identifiers with their number of occurrences, in which a null value matches any value
+ * in its column. Two classes match if they agree in all columns in which neither of them is null.<br>
+ * <br>
+ * Instead of matching all pairs of classes, classes are grouped by their null pattern, i.e. the set of
+ * columns in which they are null. A class with pattern M matches exactly those classes with pattern P
+ * which agree with it on the columns outside of the union M | P. Hence, for each pair of patterns, the
+ * classes of the smaller group are aggregated by their projection onto these columns, and each class of
+ * the larger group is matched with a single lookup, which also accumulates its rows for the classes of
+ * the smaller group. The effort is linear in the number of classes and quadratic in the number of
+ * patterns only, which is small in practice. Classes which only consist of null values are ignored, like in ARX's sample-based
+ * wildcard risk model.<br>
+ * <br>
+ * Classes without null values can also be matched one by one without being stored, once all classes
+ * with null values have been added, which is used to process classes which are streamed from disk.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentWildcard {
+
+    /**
+     * Classes of one pattern, aggregated by their projection onto the columns outside of a superset
+     * of the pattern. For each entry, the number of rows of the classes and the number of rows of
+     * the classes matched against them is maintained.
+     */
+    private static class Projection {
+
+        /** The columns onto which classes are projected */
+        private final int[]  columns;
+
+        /** The mask of the slots */
+        private final int    mask;
+
+        /** The projected codes, one tuple per slot */
+        private final int[]  keys;
+
+        /** The number of rows per slot, 0 denoting an empty slot */
+        private final long[] counts;
+
+        /** The number of rows of matched classes per slot */
+        private final long[] matched;
+
+        /**
+         * Aggregates the given classes.
+         *
+         * @param columns
+         * @param codes
+         * @param counts
+         * @param width
+         * @param members
+         */
+        private Projection(int[] columns, int[] codes, long[] counts, int width, int[] members) {
+            int capacity = 2;
+            while (capacity < members.length * 2) {
+                capacity <<= 1;
+            }
+            this.columns = columns;
+            this.mask = capacity - 1;
+            this.keys = new int[capacity * columns.length];
+            this.counts = new long[capacity];
+            this.matched = new long[capacity];
+            for (int member : members) {
+                int offset = member * width;
+                int slot = getHash(codes, offset) & mask;
+                while (this.counts[slot] != 0 && !equals(codes, offset, slot)) {
+                    slot = (slot + 1) & mask;
+                }
+                if (this.counts[slot] == 0) {
+                    for (int i = 0; i < columns.length; i++) {
+                        keys[slot * columns.length + i] = codes[offset + columns[i]];
+                    }
+                }
+                this.counts[slot] += counts[member];
+            }
+        }
+
+        /**
+         * Returns the slot of the classes which match the given tuple, -1 if there are none.
+         *
+         * @param codes
+         * @param offset
+         * @return
+         */
+        private int find(int[] codes, int offset) {
+            int slot = getHash(codes, offset) & mask;
+            while (counts[slot] != 0) {
+                if (equals(codes, offset, slot)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Returns whether the projection of the given tuple equals the key of the slot.
+         *
+         * @param codes
+         * @param offset
+         * @param slot
+         * @return
+         */
+        private boolean equals(int[] codes, int offset, int slot) {
+            int base = slot * columns.length;
+            for (int i = 0; i < columns.length; i++) {
+                if (keys[base + i] != codes[offset + columns[i]]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the hash code of the projection of the given tuple, mixed like in DataClassTable.
+         *
+         * @param codes
+         * @param offset
+         * @return
+         */
+        private int getHash(int[] codes, int offset) {
+            int hash = 0;
+            for (int column : columns) {
+                hash = Integer.rotateLeft(hash ^ (codes[offset + column] * 0xCC9E2D51), 13) * 5 + 0xE6546B64;
+            }
+            hash = (hash ^ (hash >>> 16)) * 0x85EBCA6B;
+            hash = (hash ^ (hash >>> 13)) * 0xC2B2AE35;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /** Initial number of classes */
+    private static final int                           INITIAL_CAPACITY = 1 << 10;
+
+    /** Parameters relating to risk management. */
+    private final ParametersRisk                       thresholds;
+
+    /** The code of the null value in each column, -1 if it does not occur */
+    private final int[]                                nulls;
+
+    /** The number of codes per class */
+    private final int                                  width;
+
+    /** The codes of the classes */
+    private int[]                                      codes;
+
+    /** The number of rows of the classes */
+    private long[]                                     counts;
+
+    /** The number of classes */
+    private int                                        size;
+
+    /** The classes per pattern, excluding classes which only consist of null values. Null if not prepared yet. */
+    private Map<BitSet, int[]>                         patterns;
+
+    /** The projections of each pattern onto the columns in which it is not null, used for matching */
+    private final Map<BitSet, Projection>              projections      = new HashMap<>();
+
+    /** The number of rows of matched classes */
+    private long                                       matchedRows;
+
+    /** The number of rows at risk of matched classes */
+    private long                                       matchedRowsAtRisk;
+
+    /** The sum of the risks of the rows of matched classes */
+    private double                                     matchedRisk;
+
+    /**
+     * Constructor.
+     *
+     * @param thresholds
+     * @param nulls The code of the null value in each column, -1 if it does not occur
+     */
+    public OperationRiskAssessmentWildcard(ParametersRisk thresholds, int[] nulls) {
+        this.thresholds = thresholds;
+        this.nulls = nulls.clone();
+        this.width = nulls.length;
+        this.codes = new int[INITIAL_CAPACITY * width];
+        this.counts = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds a class. Classes must be added before any class is matched.
+     *
+     * @param codes
+     * @param count
+     */
+    public void add(int[] codes, long count) {
+        if (patterns != null) {
+            throw new IllegalStateException("Classes cannot be added after classes have been matched");
+        }
+        if (size == counts.length) {
+            this.codes = Arrays.copyOf(this.codes, this.codes.length * 2);
+            this.counts = Arrays.copyOf(this.counts, this.counts.length * 2);
+        }
+        System.arraycopy(codes, 0, this.codes, size * width, width);
+        this.counts[size++] = count;
+    }
+
+    /**
+     * Calculates the different risk values for all classes added and matched so far.
+     *
+     * @return
+     */
+    public ParametersRisk calculate() {
+
+        // Prepare
+        int k = OperationCellSuppression.getSizeThreshold(thresholds.getHighestRisk());
+        long total = matchedRows;
+        long recordsAtRisk = matchedRowsAtRisk;
+        double averageRisk = matchedRisk;
+
+        // Calculate
+        long[] sizes = getSizes();
+        for (int i = 0; i < size; i++) {
+            if (sizes[i] != 0) {
+                total += counts[i];
+                averageRisk += (double) counts[i] / (double) sizes[i];
+                recordsAtRisk += sizes[i] < k ? counts[i] : 0;
+            }
+        }
+
+        // Return
+        ParametersRisk result = new ParametersRisk(thresholds.getQis());
+        result.setHighestRisk(thresholds.getHighestRisk());
+        result.setRecordsAtRisk(total == 0 ? 0d : (double) recordsAtRisk / (double) total);
+        result.setAverageRisk(total == 0 ? 0d : averageRisk / (double) total);
+        return result;
+    }
+
+    /**
+     * Removes all classes.
+     */
+    public void clear() {
+        this.codes = new int[INITIAL_CAPACITY * width];
+        this.counts = new long[INITIAL_CAPACITY];
+        this.size = 0;
+        this.patterns = null;
+        this.projections.clear();
+        this.matchedRows = 0;
+        this.matchedRowsAtRisk = 0;
+        this.matchedRisk = 0d;
+    }
+
+    /**
+     * Returns the number of classes added so far.
+     *
+     * @return
+     */
+    public int getNumClasses() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct null patterns of the classes added so far, including
+     * the pattern of classes without null values.
+     *
+     * @return
+     */
+    public int getNumPatterns() {
+        prepare();
+        return patterns.size();
+    }
+
+    /**
+     * Returns the size of each class added so far, in the order in which the classes have been added,
+     * taking matching null values into account. This includes matched classes which have not been
+     * stored. The size of classes which only consist of null values is 0.
+     *
+     * @return
+     */
+    public long[] getSizes() {
+        prepare();
+        long[] sizes = new long[size];
+        List<BitSet> keys = new ArrayList<>(patterns.keySet());
+        for (int i = 0; i < keys.size(); i++) {
+
+            // Classes of the same pattern only match themselves and matched classes
+            int[] members = patterns.get(keys.get(i));
+            Projection own = getProjection(keys.get(i));
+            for (int member : members) {
+                int slot = own.find(codes, member * width);
+                sizes[member] += own.counts[slot] + own.matched[slot];
+            }
+
+            // Classes of different patterns
+            for (int j = i + 1; j < keys.size(); j++) {
+                int[] others = patterns.get(keys.get(j));
+                int[] smaller = members.length <= others.length ? members : others;
+                int[] larger = smaller == members ? others : members;
+                BitSet union = (BitSet) keys.get(i).clone();
+                union.or(keys.get(j));
+                Projection projection = new Projection(getColumns(union), codes, counts, width, smaller);
+                for (int member : larger) {
+                    int slot = projection.find(codes, member * width);
+                    if (slot != -1) {
+                        sizes[member] += projection.counts[slot];
+                        projection.matched[slot] += counts[member];
+                    }
+                }
+                for (int member : smaller) {
+                    sizes[member] += projection.matched[projection.find(codes, member * width)];
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Matches a class without null values against all classes added so far, without storing it, and
+     * accumulates its risks. The sizes of the classes added so far are updated accordingly.
+     *
+     * @param codes
+     * @param count
+     * @return The size of the class, taking matching null values into account
+     */
+    public long match(int[] codes, long count) {
+        for (int i = 0; i < width; i++) {
+            if (codes[i] == nulls[i]) {
+                throw new IllegalArgumentException("Only classes without null values can be matched");
+            }
+        }
+        prepare();
+        long size = count;
+        for (BitSet pattern : patterns.keySet()) {
+            Projection projection = getProjection(pattern);
+            int slot = projection.find(codes, 0);
+            if (slot != -1) {
+                size += projection.counts[slot];
+                projection.matched[slot] += count;
+            }
+        }
+        int k = OperationCellSuppression.getSizeThreshold(thresholds.getHighestRisk());
+        matchedRows += count;
+        matchedRisk += (double) count / (double) size;
+        matchedRowsAtRisk += size < k ? count : 0;
+        return size;
+    }
+
+    /**
+     * Returns the columns in which the given pattern is not null.
+     *
+     * @param pattern
+     * @return
+     */
+    private int[] getColumns(BitSet pattern) {
+        int[] columns = new int[width - pattern.cardinality()];
+        for (int i = 0, column = pattern.nextClearBit(0); i < columns.length; i++, column = pattern.nextClearBit(column + 1)) {
+            columns[i] = column;
+        }
+        return columns;
+    }
+
+    /**
+     * Returns the projection of the classes with the given pattern onto the columns in which
+     * they are not null.
+     *
+     * @param pattern
+     * @return
+     */
+    private Projection getProjection(BitSet pattern) {
+        Projection projection = projections.get(pattern);
+        if (projection == null) {
+            projection = new Projection(getColumns(pattern), codes, counts, width, patterns.get(pattern));
+            projections.put(pattern, projection);
+        }
+        return projection;
+    }
+
+    /**
+     * Groups the classes by their null pattern, unless this has been done before.
+     */
+    private void prepare() {
+        if (patterns != null) {
+            return;
+        }
+
+        // Determine the pattern of each class
+        Map<BitSet, Integer> ids = new LinkedHashMap<>();
+        List<Integer> sizes = new ArrayList<>();
+        int[] classes = new int[size];
+        BitSet probe = new BitSet(width);
+        for (int i = 0; i < size; i++) {
+            probe.clear();
+            for (int column = 0; column < width; column++) {
+                if (codes[i * width + column] == nulls[column]) {
+                    probe.set(column);
+                }
+            }
+            if (width > 0 && probe.cardinality() == width) {
+                classes[i] = -1;
+                continue;
+            }
+            Integer id = ids.get(probe);
+            if (id == null) {
+                id = ids.size();
+                ids.put((BitSet) probe.clone(), id);
+                sizes.add(0);
+            }
+            classes[i] = id;
+            sizes.set(id, sizes.get(id) + 1);
+        }
+
+        // Group
+        int[][] members = new int[ids.size()][];
+        for (int id = 0; id < members.length; id++) {
+            members[id] = new int[sizes.get(id)];
+        }
+        int[] offsets = new int[ids.size()];
+        for (int i = 0; i < size; i++) {
+            if (classes[i] != -1) {
+                members[classes[i]][offsets[classes[i]]++] = i;
+            }
+        }
+        patterns = new LinkedHashMap<>();
+        for (Map.Entry<BitSet, Integer> entry : ids.entrySet()) {
+            patterns.put(entry.getKey(), members[entry.getValue()]);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+
+/**
+ * This class calculates re-identification risks for a sliding window over a continuous
+ * stream of rows. The window contains at most a given number of the most recent rows and,
+ * optionally, only rows which arrived within a given period of time. Sizes of equivalence
+ * classes are updated as rows enter and leave the window, so that a risk snapshot can be
+ * taken at any time without processing the rows of the window again.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentWindow {
+
+    /**
+     * Returns the structure of snapshot rows.
+     *
+     * @param origin The name of the step
+     * @return
+     */
+    public static RowMetaInterface getRowMeta(String origin) {
+        RowMetaInterface result = new RowMeta();
+        ValueMetaInterface[] values = { new ValueMetaInteger("rows"), new ValueMetaInteger("window_rows"),
+                                        new ValueMetaNumber("average_risk"), new ValueMetaNumber("records_at_risk"),
+                                        new ValueMetaBoolean("thresholds_satisfied") };
+        for (ValueMetaInterface value : values) {
+            value.setOrigin(origin);
+            result.addValueMeta(value);
+        }
+        return result;
+    }
+
+    /** Parameters relating to risk management. */
+    private final ParametersRisk                                        thresholds;
+
+    /** The equivalence classes of the rows in the window */
+    private final OperationRiskAssessmentIncremental                    assessment;
+
+    /** The classes of the rows in the window, in order of arrival */
+    private final OperationRiskAssessmentIncremental.EquivalenceClass[] classes;
+
+    /** Points in time at which the rows in the window arrived, null if the window is not limited in time */
+    private final long[]                                                times;
+
+    /** Maximal age of rows in nanoseconds */
+    private final long                                                  duration;
+
+    /** Index of the oldest row */
+    private int                                                         head;
+
+    /** The number of rows in the window */
+    private int                                                         size;
+
+    /** The number of rows added so far */
+    private long                                                        rows;
+
+    /**
+     * Constructor.
+     *
+     * @param thresholds
+     * @param header
+     * @param capacity The maximal number of rows in the window
+     * @param duration The maximal age of rows in seconds, 0 if the window is not limited in time
+     */
+    public OperationRiskAssessmentWindow(ParametersRisk thresholds, String[] header, int capacity, int duration) {
+        this.thresholds = thresholds;
+        this.assessment = new OperationRiskAssessmentIncremental(thresholds, header);
+        this.classes = new OperationRiskAssessmentIncremental.EquivalenceClass[capacity];
+        this.times = duration > 0 ? new long[capacity] : null;
+        this.duration = duration * 1000000000L;
+    }
+
+    /**
+     * Adds a row. If the window is full, the oldest row leaves the window.
+     *
+     * @param row
+     */
+    public void add(String[] row) {
+        long time = times != null ? System.nanoTime() : 0L;
+        evict(time);
+        if (size == classes.length) {
+            assessment.remove(classes[head]);
+            classes[head] = null;
+            head = (head + 1) % classes.length;
+            size--;
+        }
+        int index = (head + size) % classes.length;
+        classes[index] = assessment.register(row);
+        if (times != null) {
+            times[index] = time;
+        }
+        size++;
+        rows++;
+    }
+
+    /**
+     * Calculate the different risk values for the rows currently in the window.
+     *
+     * @return
+     */
+    public ParametersRisk calculate() {
+        if (times != null) {
+            evict(System.nanoTime());
+        }
+        return assessment.calculate();
+    }
+
+    /**
+     * Returns the number of rows added so far.
+     *
+     * @return
+     */
+    public long getNumRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of rows in the window.
+     *
+     * @return
+     */
+    public int getNumWindowRows() {
+        return size;
+    }
+
+    /**
+     * Returns a snapshot row for the given risks, matching the structure returned by getRowMeta().
+     *
+     * @param risks
+     * @return
+     */
+    public Object[] getRow(ParametersRisk risks) {
+        return new Object[] { rows, (long) size, risks.getAverageRisk(), risks.getRecordsAtRisk(), risks.satisfies(thresholds) };
+    }
+
+    /**
+     * Removes rows which are older than the maximal age.
+     *
+     * @param time
+     */
+    private void evict(long time) {
+        if (times == null) {
+            return;
+        }
+        while (size > 0 && time - times[head] > duration) {
+            assessment.remove(classes[head]);
+            classes[head] = null;
+            head = (head + 1) % classes.length;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+
+/**
+ * This class encapsulates the metrics of a single block: the time spent in each phase of
+ * processing, the throughput, the estimated size of the buffer and the fraction of suppressed
+ * cells. Times are measured in nanoseconds and reported in milliseconds.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class ParametersMetrics {
+
+    /** Field names of metrics rows */
+    private static final String[] FIELDS = { "block", "rows", "buffering_ms", "preparation_ms", "anonymization_ms",
+                                             "optimization_ms", "writing_ms", "rows_per_second", "buffer_bytes",
+                                             "suppression_ratio" };
+
+    /**
+     * Returns the structure of metrics rows.
+     *
+     * @param origin The name of the step
+     * @return
+     */
+    public static RowMetaInterface getRowMeta(String origin) {
+        RowMetaInterface result = new RowMeta();
+        for (String field : FIELDS) {
+            ValueMetaInterface value = field.equals("rows_per_second") || field.equals("suppression_ratio") ?
+                                       new ValueMetaNumber(field) : new ValueMetaInteger(field);
+            value.setOrigin(origin);
+            result.addValueMeta(value);
+        }
+        return result;
+    }
+
+    /** The number of the block, starting with 1 */
+    private final long block;
+
+    /** Point in time at which buffering started */
+    private final long start;
+
+    /** Point in time at which writing finished */
+    private long       end;
+
+    /** The number of rows */
+    private long       rows;
+
+    /** Time spent converting and buffering rows */
+    private long       buffering;
+
+    /** Time spent building ARX's representation of the data and converting results */
+    private long       preparation;
+
+    /** Time spent in the anonymizer */
+    private long       anonymization;
+
+    /** Time spent optimizing the result */
+    private long       optimization;
+
+    /** Time spent writing rows */
+    private long       writing;
+
+    /** Estimated size of the buffer in bytes */
+    private long       bufferSize;
+
+    /** The number of suppressed cells */
+    private long       suppressedCells;
+
+    /** The total number of cells */
+    private long       totalCells;
+
+    /**
+     * Creates metrics for a block whose buffering starts now.
+     *
+     * @param block
+     */
+    public ParametersMetrics(long block) {
+        this.block = block;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of the block.
+     *
+     * @return
+     */
+    public long getBlock() {
+        return block;
+    }
+
+    /**
+     * Returns the time spent buffering, in milliseconds.
+     *
+     * @return
+     */
+    public long getBufferingTime() {
+        return buffering / 1000000L;
+    }
+
+    /**
+     * Returns the estimated size of the buffer in bytes.
+     *
+     * @return
+     */
+    public long getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the time spent in the anonymizer, in milliseconds.
+     *
+     * @return
+     */
+    public long getAnonymizationTime() {
+        return anonymization / 1000000L;
+    }
+
+    /**
+     * Returns the fraction of suppressed cells.
+     *
+     * @return
+     */
+    public double getFractionOfSuppressedCells() {
+        return totalCells == 0L ? 0d : (double) suppressedCells / (double) totalCells;
+    }
+
+    /**
+     * Returns the time spent optimizing the result, in milliseconds.
+     *
+     * @return
+     */
+    public long getOptimizationTime() {
+        return optimization / 1000000L;
+    }
+
+    /**
+     * Returns the time spent preparing data, in milliseconds.
+     *
+     * @return
+     */
+    public long getPreparationTime() {
+        return preparation / 1000000L;
+    }
+
+    /**
+     * Returns a metrics row, matching the structure returned by getRowMeta().
+     *
+     * @return
+     */
+    public Object[] getRow() {
+        return new Object[] { block, rows, getBufferingTime(), getPreparationTime(), getAnonymizationTime(),
+                              getOptimizationTime(), getWritingTime(), getRowsPerSecond(), bufferSize,
+                              getFractionOfSuppressedCells() };
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of rows processed per second, from the start of buffering until writing finished.
+     *
+     * @return
+     */
+    public double getRowsPerSecond() {
+        long elapsed = Math.max(1L, (end != 0L ? end : System.nanoTime()) - start);
+        return (double) rows * 1000000000d / (double) elapsed;
+    }
+
+    /**
+     * Returns the time spent writing, in milliseconds.
+     *
+     * @return
+     */
+    public long getWritingTime() {
+        return writing / 1000000L;
+    }
+
+    /**
+     * Tracks time spent in the anonymizer.
+     *
+     * @param nanos
+     */
+    public void trackAnonymization(long nanos) {
+        this.anonymization += nanos;
+    }
+
+    /**
+     * Tracks time spent buffering.
+     *
+     * @param nanos
+     */
+    public void trackBuffering(long nanos) {
+        this.buffering += nanos;
+    }
+
+    /**
+     * Tracks the size of the buffer once it is complete.
+     *
+     * @param buffer
+     */
+    public void trackBuffer(DataBuffer buffer) {
+        this.rows = buffer.getNumRows();
+        this.bufferSize = buffer.getEstimatedSize();
+    }
+
+    /**
+     * Tracks time spent optimizing the result.
+     *
+     * @param nanos
+     */
+    public void trackOptimization(long nanos) {
+        this.optimization += nanos;
+    }
+
+    /**
+     * Tracks time spent preparing data.
+     *
+     * @param nanos
+     */
+    public void trackPreparation(long nanos) {
+        this.preparation += nanos;
+    }
+
+    /**
+     * Tracks the number of suppressed cells.
+     *
+     * @param suppressed
+     * @param total
+     */
+    public void trackSuppressedCells(long suppressed, long total) {
+        this.suppressedCells += suppressed;
+        this.totalCells += total;
+    }
+
+    /**
+     * Tracks time spent writing. Writing is the last phase, which ends the measurement.
+     *
+     * @param nanos
+     */
+    public void trackWriting(long nanos) {
+        this.writing += nanos;
+        this.end = System.nanoTime();
+    }
+}
@@ -17,6 +17,9 @@
  */
 package org.deidentifier.arx.kettle.rrm;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This class encapsulated parameters determining the runtime behavior. 
  * @author Fabian Prasser
@@ -27,12 +30,26 @@ public class ParametersRuntime {
     
     
     /** 
-     * Encapsulates the two working modes of the plugin.
+     * Encapsulates the working modes of the plugin. In MONITOR mode, rows are passed on
+     * immediately and risks are assessed for a sliding window over the stream.
      * @author Helmut Spengler
      */
     public enum Mode {
         ANONYMIZE,
-        ASSESS;
+        ASSESS,
+        MONITOR;
+    }
+
+    /**
+     * Encapsulates how the results of blocks anonymized by workers are emitted. By default, they are
+     * emitted in input order by the step thread, between reading rows. With an emitter thread, rows are
+     * emitted while the step thread reads, either in input order or in the order in which blocks complete.
+     * @author Fabian Prasser
+     */
+    public enum Emission {
+        STEP_THREAD,
+        EMITTER_IN_ORDER,
+        EMITTER_OUT_OF_ORDER;
     }
     
     /** Default value*/
@@ -53,6 +70,52 @@ public class ParametersRuntime {
     public static final  double DEFAULT_SNAPSHOT_SIZE_SNAPSHOT = 0.8d;
     /** Default value*/
     public static final  int    DEFAULT_CACHE_SIZE = 200;
+    /** Default value*/
+    public static final  int    DEFAULT_MAX_BUFFER_SIZE = 0;
+    /** Default value*/
+    public static final  String DEFAULT_SPILL_DIRECTORY = "";
+    /** Default value*/
+    public static final  int    DEFAULT_NUM_WORKERS = 1;
+    /** Default value*/
+    public static final  int    DEFAULT_QUEUE_DEPTH = 4;
+    /** Default value*/
+    public static final Emission DEFAULT_EMISSION = Emission.STEP_THREAD;
+    /** Default value*/
+    public static final  int    DEFAULT_HIERARCHY_CACHE_SIZE = 100000;
+    /** Default value*/
+    public static final  int    DEFAULT_RESULT_CACHE_SIZE = 0;
+    /** Default value*/
+    public static final  String DEFAULT_RESULT_CACHE_DIRECTORY = "";
+    /** Default value*/
+    public static final  String DEFAULT_METRICS_STEP = "";
+    /** Default value*/
+    public static final  int    DEFAULT_WINDOW_SIZE = 100000;
+    /** Default value*/
+    public static final  int    DEFAULT_WINDOW_DURATION = 0;
+    /** Default value*/
+    public static final  int    DEFAULT_SNAPSHOT_INTERVAL = 10000;
+    /** Default value*/
+    public static final  String DEFAULT_PARTITION_FIELDS = "";
+    /** Default value*/
+    public static final  int    DEFAULT_NUM_PARTITIONS = 16;
+    /** Default value*/
+    public static final  int    DEFAULT_COORDINATION_TIMEOUT = 0;
+    /** Default value*/
+    public static final  int    DEFAULT_MIN_BLOCK_SIZE = 1000;
+    /** Default value*/
+    public static final  int    DEFAULT_MAX_BLOCK_SIZE = 0;
+    /** Default value*/
+    public static final  int    DEFAULT_TARGET_LATENCY = 30;
+    /** Default value*/
+    public static final  int    DEFAULT_SAMPLE_SIZE = 0;
+    /** Default value*/
+    public static final  double DEFAULT_CONFIDENCE_LEVEL = 0.95d;
+    /** Default value*/
+    public static final  int    DEFAULT_CLASS_TABLE_SIZE = 0;
+    /** Default value*/
+    public static final  String DEFAULT_AGGREGATION_HOST = "localhost";
+    /** Default value*/
+    public static final  int    DEFAULT_AGGREGATION_PORT = 0;
     
     /** The operation mode of the plugin. */
     private Mode mode = DEFAULT_MODE;
@@ -77,6 +140,75 @@ public class ParametersRuntime {
 
     /** Maximum number of snapshots allowed to store in the history (ARX-default is 200). */
     private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    /** Maximum size of the row buffer in MB, before rows are spilled to disk. Set to zero to deactivate spilling*/
+    private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+
+    /** Directory for spilled rows. If empty, the default temporary-file directory is used*/
+    private String spillDirectory = DEFAULT_SPILL_DIRECTORY;
+
+    /** Number of threads anonymizing blocks in parallel. Set to one to anonymize blocks on the step thread*/
+    private int numWorkers = DEFAULT_NUM_WORKERS;
+
+    /** Maximum number of blocks which are anonymized or wait to be emitted, before reading is paused*/
+    private int queueDepth = DEFAULT_QUEUE_DEPTH;
+
+    /** How the results of blocks are emitted*/
+    private Emission emission = DEFAULT_EMISSION;
+
+    /** Maximum number of values per QI for which hierarchies are cached across blocks. Set to zero to deactivate caching*/
+    private int hierarchyCacheSize = DEFAULT_HIERARCHY_CACHE_SIZE;
+
+    /** Maximum size in MB of the on-disk cache of results of blocks. Set to zero to deactivate caching*/
+    private int resultCacheSize = DEFAULT_RESULT_CACHE_SIZE;
+
+    /** Directory of the result cache. If empty, a directory within the default temporary-file directory is used*/
+    private String resultCacheDirectory = DEFAULT_RESULT_CACHE_DIRECTORY;
+
+    /** Name of the step to which a metrics row is sent for each block. If empty, no metrics rows are written*/
+    private String metricsStep = DEFAULT_METRICS_STEP;
+
+    /** Maximum number of rows in the sliding window used in MONITOR mode*/
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+
+    /** Maximum age of rows in the sliding window in seconds. Set to zero to limit the window by its size only*/
+    private int windowDuration = DEFAULT_WINDOW_DURATION;
+
+    /** Number of rows after which a risk snapshot is taken in MONITOR mode*/
+    private int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+
+    /** Comma-separated QIs by which rows are partitioned in ANONYMIZE mode. If empty, rows are not partitioned*/
+    private String partitionFields = DEFAULT_PARTITION_FIELDS;
+
+    /** Number of partitions*/
+    private int numPartitions = DEFAULT_NUM_PARTITIONS;
+
+    /** Time in seconds for which copies of the step wait for each other to share their classes in ANONYMIZE mode, without any copy making progress. If it is 0, copies anonymize their rows independently*/
+    private int coordinationTimeout = DEFAULT_COORDINATION_TIMEOUT;
+
+    /** Lower bound for adaptive block sizes*/
+    private int minBlockSize = DEFAULT_MIN_BLOCK_SIZE;
+
+    /** Upper bound for adaptive block sizes. If it is 0, the block size is fixed*/
+    private int maxBlockSize = DEFAULT_MAX_BLOCK_SIZE;
+
+    /** Time in seconds which the anonymization of a block should take, if block sizes are adaptive*/
+    private int targetLatency = DEFAULT_TARGET_LATENCY;
+
+    /** Size of the reservoir sample used for pre-assessing risks in ASSESS mode. If it is 0, risks are always calculated exactly*/
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+    /** Confidence level of the intervals estimated from the sample*/
+    private double confidenceLevel = DEFAULT_CONFIDENCE_LEVEL;
+
+    /** Size in MB of the off-heap table used for counting classes in ASSESS mode. If it is 0, classes are counted on the heap*/
+    private int classTableSize = DEFAULT_CLASS_TABLE_SIZE;
+
+    /** Host of the slave server running the first copy of the step, which aggregates the classes of all copies when running clustered*/
+    private String aggregationHost = DEFAULT_AGGREGATION_HOST;
+
+    /** Port on which the classes of all copies are aggregated when running clustered. If it is 0, slave servers process their rows independently*/
+    private int aggregationPort = DEFAULT_AGGREGATION_PORT;
     
     @Override
     public ParametersRuntime clone() {
@@ -90,6 +222,29 @@ public class ParametersRuntime {
         result.setSnapshotSizeDataset(this.snapshotSizeDataset);
         result.setSnapshotSizeSnapshot(this.snapshotSizeSnapshot);
         result.setCacheSize(this.cacheSize);
+        result.setMaxBufferSize(this.maxBufferSize);
+        result.setSpillDirectory(this.spillDirectory);
+        result.setNumWorkers(this.numWorkers);
+        result.setQueueDepth(this.queueDepth);
+        result.setEmission(this.emission);
+        result.setHierarchyCacheSize(this.hierarchyCacheSize);
+        result.setResultCacheSize(this.resultCacheSize);
+        result.setResultCacheDirectory(this.resultCacheDirectory);
+        result.setMetricsStep(this.metricsStep);
+        result.setWindowSize(this.windowSize);
+        result.setWindowDuration(this.windowDuration);
+        result.setSnapshotInterval(this.snapshotInterval);
+        result.setPartitionFields(this.partitionFields);
+        result.setNumPartitions(this.numPartitions);
+        result.setCoordinationTimeout(this.coordinationTimeout);
+        result.setMinBlockSize(this.minBlockSize);
+        result.setMaxBlockSize(this.maxBlockSize);
+        result.setTargetLatency(this.targetLatency);
+        result.setSampleSize(this.sampleSize);
+        result.setConfidenceLevel(this.confidenceLevel);
+        result.setClassTableSize(this.classTableSize);
+        result.setAggregationHost(this.aggregationHost);
+        result.setAggregationPort(this.aggregationPort);
         return result;
     }
     
@@ -244,4 +399,548 @@ public class ParametersRuntime {
     public void setCacheSize(int cacheSize) {
         this.cacheSize = cacheSize;
     }
+
+    /**
+     * Return the maximum size of the row buffer in MB. If it is 0,
+     * spilling is disabled.
+     * @see #doSpilling()
+     * @return
+     */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * Set the maximum size of the row buffer in MB. Set to 0 for
+     * disabling spilling.
+     * @param maxBufferSize
+     * @see #doSpilling()
+     */
+    public void setMaxBufferSize(int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * Return, if buffered rows are spilled to disk. This is the case, if the
+     * maximum buffer size is greater than zero.
+     * @see #getMaxBufferSize()
+     * @see #setMaxBufferSize(int)
+     * @return
+     */
+    public boolean doSpilling() {
+        return maxBufferSize > 0;
+    }
+
+    /**
+     * Return the directory for spilled rows. If it is empty,
+     * the default temporary-file directory is used.
+     * @return
+     */
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Set the directory for spilled rows.
+     * @param spillDirectory
+     */
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Return the number of threads anonymizing blocks in parallel.
+     * @see #doParallelProcessing()
+     * @return
+     */
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    /**
+     * Set the number of threads anonymizing blocks in parallel. Set to 1
+     * for anonymizing blocks on the step thread.
+     * @param numWorkers
+     * @see #doParallelProcessing()
+     */
+    public void setNumWorkers(int numWorkers) {
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Return the maximum number of blocks which are being anonymized or wait
+     * to be emitted. Reading is paused when this number is reached.
+     * @return
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Set the maximum number of blocks which are being anonymized or wait
+     * to be emitted.
+     * @param queueDepth
+     */
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Return how the results of blocks anonymized by workers are emitted.
+     * @return
+     */
+    public Emission getEmission() {
+        return emission;
+    }
+
+    /**
+     * Set how the results of blocks anonymized by workers are emitted.
+     * @param emission
+     */
+    public void setEmission(Emission emission) {
+        this.emission = emission;
+    }
+
+    /**
+     * Return the maximum number of values per QI for which hierarchies are
+     * cached across blocks. If it is 0, caching is disabled.
+     * @return
+     */
+    public int getHierarchyCacheSize() {
+        return hierarchyCacheSize;
+    }
+
+    /**
+     * Set the maximum number of values per QI for which hierarchies are
+     * cached across blocks. Set to 0 for disabling caching.
+     * @param hierarchyCacheSize
+     */
+    public void setHierarchyCacheSize(int hierarchyCacheSize) {
+        this.hierarchyCacheSize = hierarchyCacheSize;
+    }
+
+    /**
+     * Return the maximum size in MB of the on-disk cache of results of blocks.
+     * If it is zero, results are not cached.
+     * @return
+     */
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * Set the maximum size in MB of the on-disk cache of results of blocks.
+     * @param resultCacheSize
+     */
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    /**
+     * Return whether the results of blocks are cached on disk.
+     * @return
+     */
+    public boolean doResultCaching() {
+        return resultCacheSize > 0;
+    }
+
+    /**
+     * Return the directory of the result cache. If it is empty, a directory
+     * within the Kettle home directory of the current user is used.
+     * @return
+     */
+    public String getResultCacheDirectory() {
+        return resultCacheDirectory;
+    }
+
+    /**
+     * Set the directory of the result cache.
+     * @param resultCacheDirectory
+     */
+    public void setResultCacheDirectory(String resultCacheDirectory) {
+        this.resultCacheDirectory = resultCacheDirectory;
+    }
+
+    /**
+     * Return the name of the step to which a metrics row is sent for each block.
+     * If it is empty, no metrics rows are written.
+     * @see #doMetricsOutput()
+     * @return
+     */
+    public String getMetricsStep() {
+        return metricsStep;
+    }
+
+    /**
+     * Set the name of the step to which a metrics row is sent for each block.
+     * Set to an empty string for disabling metrics rows.
+     * @param metricsStep
+     */
+    public void setMetricsStep(String metricsStep) {
+        this.metricsStep = metricsStep;
+    }
+
+    /**
+     * Return, if a metrics row is sent to a dedicated step for each block. This is
+     * the case, if the name of a metrics step is specified.
+     * @see #getMetricsStep()
+     * @return
+     */
+    public boolean doMetricsOutput() {
+        return metricsStep != null && !metricsStep.trim().isEmpty();
+    }
+
+    /**
+     * Return the maximum number of rows in the sliding window used in MONITOR mode.
+     * @return
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Set the maximum number of rows in the sliding window used in MONITOR mode.
+     * @param windowSize
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Return the maximum age of rows in the sliding window in seconds. If it is 0,
+     * the window is limited by its size only.
+     * @return
+     */
+    public int getWindowDuration() {
+        return windowDuration;
+    }
+
+    /**
+     * Set the maximum age of rows in the sliding window in seconds. Set to 0 for
+     * limiting the window by its size only.
+     * @param windowDuration
+     */
+    public void setWindowDuration(int windowDuration) {
+        this.windowDuration = windowDuration;
+    }
+
+    /**
+     * Return the number of rows after which a risk snapshot is taken in MONITOR mode.
+     * @return
+     */
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Set the number of rows after which a risk snapshot is taken in MONITOR mode.
+     * @param snapshotInterval
+     */
+    public void setSnapshotInterval(int snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Return the comma-separated QIs by which rows are partitioned. If it is empty,
+     * rows are not partitioned.
+     * @see #getPartitionFieldList()
+     * @return
+     */
+    public String getPartitionFields() {
+        return partitionFields;
+    }
+
+    /**
+     * Set the comma-separated QIs by which rows are partitioned. Set to an empty
+     * string for disabling partitioning.
+     * @param partitionFields
+     */
+    public void setPartitionFields(String partitionFields) {
+        this.partitionFields = partitionFields;
+    }
+
+    /**
+     * Return the QIs by which rows are partitioned.
+     * @return
+     */
+    public List<String> getPartitionFieldList() {
+        List<String> result = new ArrayList<>();
+        if (partitionFields != null) {
+            for (String field : partitionFields.split(",")) {
+                if (!field.trim().isEmpty()) {
+                    result.add(field.trim());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of partitions.
+     * @return
+     */
+    public int getNumPartitions() {
+        return numPartitions;
+    }
+
+    /**
+     * Set the number of partitions.
+     * @param numPartitions
+     */
+    public void setNumPartitions(int numPartitions) {
+        this.numPartitions = numPartitions;
+    }
+
+    /**
+     * Return the time in seconds for which copies of the step wait for each other, without any copy making progress.
+     * @return
+     */
+    public int getCoordinationTimeout() {
+        return coordinationTimeout;
+    }
+
+    /**
+     * Set the time in seconds for which copies of the step wait for each other, without any copy making progress.
+     * @param coordinationTimeout
+     */
+    public void setCoordinationTimeout(int coordinationTimeout) {
+        this.coordinationTimeout = coordinationTimeout;
+    }
+
+    /**
+     * Return the lower bound for adaptive block sizes.
+     * @return
+     */
+    public int getMinBlockSize() {
+        return minBlockSize;
+    }
+
+    /**
+     * Set the lower bound for adaptive block sizes.
+     * @param minBlockSize
+     */
+    public void setMinBlockSize(int minBlockSize) {
+        this.minBlockSize = minBlockSize;
+    }
+
+    /**
+     * Return the upper bound for adaptive block sizes. If it is 0,
+     * the block size is fixed.
+     * @see #doAdaptiveBlocking()
+     * @return
+     */
+    public int getMaxBlockSize() {
+        return maxBlockSize;
+    }
+
+    /**
+     * Set the upper bound for adaptive block sizes. Set to 0 for
+     * using a fixed block size.
+     * @param maxBlockSize
+     */
+    public void setMaxBlockSize(int maxBlockSize) {
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /**
+     * Return the time in seconds which the anonymization of a block should take,
+     * if block sizes are adaptive.
+     * @return
+     */
+    public int getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * Set the time in seconds which the anonymization of a block should take,
+     * if block sizes are adaptive.
+     * @param targetLatency
+     */
+    public void setTargetLatency(int targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    /**
+     * Return the size of the reservoir sample used for pre-assessing risks in ASSESS mode.
+     * If it is 0, risks are always calculated exactly.
+     * @see #doSampling()
+     * @return
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Set the size of the reservoir sample used for pre-assessing risks in ASSESS mode.
+     * Set to 0 for disabling the pre-assessment.
+     * @param sampleSize
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Return the confidence level of the intervals estimated from the sample.
+     * @return
+     */
+    public double getConfidenceLevel() {
+        return confidenceLevel;
+    }
+
+    /**
+     * Set the confidence level of the intervals estimated from the sample.
+     * @param confidenceLevel
+     */
+    public void setConfidenceLevel(double confidenceLevel) {
+        this.confidenceLevel = confidenceLevel;
+    }
+
+    /**
+     * Return the size in MB of the off-heap table used for counting classes in ASSESS mode.
+     * If it is 0, classes are counted on the heap.
+     * @see #doOffHeapCounting()
+     * @return
+     */
+    public int getClassTableSize() {
+        return classTableSize;
+    }
+
+    /**
+     * Set the size in MB of the off-heap table used for counting classes in ASSESS mode.
+     * Set to 0 for counting classes on the heap.
+     * @param classTableSize
+     */
+    public void setClassTableSize(int classTableSize) {
+        this.classTableSize = classTableSize;
+    }
+
+    /**
+     * Return the host of the slave server running the first copy of the step, which aggregates the
+     * classes of all copies when running clustered.
+     * @return
+     */
+    public String getAggregationHost() {
+        return aggregationHost;
+    }
+
+    /**
+     * Set the host of the slave server running the first copy of the step, which aggregates the
+     * classes of all copies when running clustered.
+     * @param aggregationHost
+     */
+    public void setAggregationHost(String aggregationHost) {
+        this.aggregationHost = aggregationHost;
+    }
+
+    /**
+     * Return the port on which the classes of all copies are aggregated when running clustered.
+     * If it is 0, slave servers process their rows independently.
+     * @see #doClusterAggregation()
+     * @return
+     */
+    public int getAggregationPort() {
+        return aggregationPort;
+    }
+
+    /**
+     * Set the port on which the classes of all copies are aggregated when running clustered.
+     * Set to 0 for processing rows independently on each slave server.
+     * @param aggregationPort
+     */
+    public void setAggregationPort(int aggregationPort) {
+        this.aggregationPort = aggregationPort;
+    }
+
+    /**
+     * Return, if the block size is adapted in ANONYMIZE mode. This is the case, if row blocking
+     * is enabled and an upper bound for block sizes is specified. The block size is used for the
+     * first block and adapted between the lower and the upper bound afterwards.
+     * @see #getMinBlockSize()
+     * @see #getMaxBlockSize()
+     * @return
+     */
+    public boolean doAdaptiveBlocking() {
+        return mode == Mode.ANONYMIZE && doRowBlocking() && maxBlockSize > 0;
+    }
+
+    /**
+     * Return, if risks are pre-assessed on a sample in ASSESS mode. This is the case, if the
+     * sample size is greater than zero and classes are counted on the heap. Risks are only calculated exactly if the confidence
+     * intervals estimated from the sample do not allow a decision.
+     * @see #getSampleSize()
+     * @return
+     */
+    public boolean doSampling() {
+        return mode == Mode.ASSESS && sampleSize > 0 && !doOffHeapCounting();
+    }
+
+    /**
+     * Return, if classes are counted in an off-heap table in ASSESS mode. This is the case, if
+     * the size of the class table is greater than zero. Classes are spilled to disk once the table
+     * reaches its size. Risks are then always calculated exactly, without pre-assessment.
+     * @see #getClassTableSize()
+     * @return
+     */
+    public boolean doOffHeapCounting() {
+        return mode == Mode.ASSESS && classTableSize > 0;
+    }
+
+    /**
+     * Return, if rows are partitioned by QIs in ANONYMIZE mode. This is the case, if
+     * at least one partition field is specified. Each partition is anonymized once all
+     * rows have been read, row blocking is not applied.
+     * @see #getPartitionFields()
+     * @return
+     */
+    public boolean doPartitioning() {
+        return mode == Mode.ANONYMIZE && !getPartitionFieldList().isEmpty();
+    }
+
+    /**
+     * Return, if blocks or partitions are anonymized by a pool of workers. This is the case, if
+     * row blocking or partitioning is enabled and more than one worker is configured.
+     * @see #getNumWorkers()
+     * @see #doRowBlocking()
+     * @see #doPartitioning()
+     * @return
+     */
+    public boolean doParallelProcessing() {
+        return (doRowBlocking() || doPartitioning()) && numWorkers > 1;
+    }
+
+    /**
+     * Return, if the results of blocks are emitted by a dedicated thread. This is the case, if blocks
+     * are anonymized by a pool of workers in ANONYMIZE mode and an emitter thread is configured.
+     * @see #getEmission()
+     * @see #doParallelProcessing()
+     * @return
+     */
+    public boolean doEmitterThread() {
+        return mode == Mode.ANONYMIZE && doParallelProcessing() && emission != Emission.STEP_THREAD;
+    }
+
+    /**
+     * Return, if several copies of the step share their classes in ANONYMIZE mode. This is the case,
+     * if a time for which copies wait for each other is specified and rows are not partitioned. Each
+     * copy then buffers all of its rows, row blocking is only applied to the rows which are anonymized.
+     * @see #getCoordinationTimeout()
+     * @return
+     */
+    public boolean doCoordination() {
+        return mode == Mode.ANONYMIZE && coordinationTimeout > 0 && !doPartitioning();
+    }
+
+    /**
+     * Return, if the copies of the step on the slave servers of a cluster aggregate their classes. This
+     * is the case, if a port for the aggregation and a time for which copies wait for each other are
+     * specified. Each copy then buffers all of its rows, sends a summary of its classes to the first copy
+     * and receives the risks of all rows, as well as the tuples to suppress in ANONYMIZE mode. This takes
+     * precedence over row blocking, partitioning and coordination, but only applies when running clustered.
+     * @see #getAggregationPort()
+     * @see #getCoordinationTimeout()
+     * @return
+     */
+    public boolean doClusterAggregation() {
+        return mode != Mode.MONITOR && aggregationPort > 0 && coordinationTimeout > 0;
+    }
 }
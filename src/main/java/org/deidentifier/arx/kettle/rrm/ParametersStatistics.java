@@ -17,10 +17,7 @@
  */
 package org.deidentifier.arx.kettle.rrm;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
 import org.pentaho.di.core.exception.KettleException;
 
@@ -41,8 +38,20 @@ public class ParametersStatistics {
     /** Milliseconds elapsed since data processing started. */
     private long millis;
     
-    /** The risk results for each processed block. */
-    private Map<ParametersRisk, Long> risks = new HashMap<>();
+    /** The quasi-identifiers of the risk results, null if no results have been tracked. */
+    private Set<String> qis;
+
+    /** The number of rows for which risks have been tracked. */
+    private long riskRows = 0;
+
+    /** The sum of average risks, weighted by the number of rows. */
+    private double averageRisk = 0d;
+
+    /** The highest risk. */
+    private double highestRisk = 0d;
+
+    /** The sum of fractions of records at risk, weighted by the number of rows. */
+    private double recordsAtRisk = 0d;
     
     /**
      * Return the overall fraction of suppressed cells.
@@ -54,8 +63,8 @@ public class ParametersStatistics {
     }
     
     /**
-     * Return aggregated risks over all blocks. For average risk and records at risk,
-     * the arithmetic mean is used. For highest risk, the maximum value is used.
+     * Return aggregated risks over all blocks or windows. For average risk and records at risk,
+     * the mean weighted by the number of rows is used. For highest risk, the maximum value is used.
      * 
      * @return
      * @throws KettleException 
@@ -63,33 +72,15 @@ public class ParametersStatistics {
     public ParametersRisk getRisks() throws KettleException {
         
         // Check
-        if (this.risks.isEmpty()) {
+        if (this.qis == null) {
             throw new KettleException("No statistics stored");
         }
 
-        // Prepare
-        double recordsAtRisk = 0d;
-        double highestRisk = 0d;
-        double averageRisk = 0d;
-        long total = 0;
-        for (Long weight : risks.values()) {
-            total += weight;
-        }
-        
-        // Calculate average
-        for (Entry<ParametersRisk, Long> entry : risks.entrySet()) {
-            averageRisk += entry.getKey().getAverageRisk() * entry.getValue();
-            highestRisk = Math.max(highestRisk,  entry.getKey().getHighestRisk());
-            recordsAtRisk += entry.getKey().getRecordsAtRisk() * entry.getValue();
-        }
-        recordsAtRisk /= total;
-        averageRisk /= total;
-        
         // Return
-        ParametersRisk result = new ParametersRisk(risks.keySet().iterator().next().getQis());
-        result.setRecordsAtRisk(recordsAtRisk);
+        ParametersRisk result = new ParametersRisk(qis);
+        result.setRecordsAtRisk(riskRows == 0 ? 0d : recordsAtRisk / riskRows);
         result.setHighestRisk(highestRisk);
-        result.setAverageRisk(averageRisk);
+        result.setAverageRisk(riskRows == 0 ? 0d : averageRisk / riskRows);
         return result;
     }
 
@@ -109,34 +100,43 @@ public class ParametersStatistics {
     }
     
     /**
-     * Tracks the risks computed for each block.
+     * Tracks the risks computed for a block or a window. Results are accumulated
+     * right away, weighted by the given number of rows.
      * 
      * @param risks
      * @param numRows
      */
     public void trackRisks(ParametersRisk risks, long numRows) {
-        this.risks.put(risks, numRows);
+        this.qis = risks.getQis();
+        this.riskRows += numRows;
+        this.averageRisk += risks.getAverageRisk() * numRows;
+        this.highestRisk = Math.max(this.highestRisk, risks.getHighestRisk());
+        this.recordsAtRisk += risks.getRecordsAtRisk() * numRows;
     }
 
 
     /**
      * Tracks the number of suppressed cells.
      * 
-     * @param input
      * @param output
-     * @return
+     * @return The number of cells suppressed in this block
      */
-    public void trackSuppressedCells(List<String[]> input, List<String[]> output) {
-        
-        // Skip header
-        for (int row = 1; row < output.size(); row++) {
-            String[] outArray = output.get(row);
-            String[] inArray = input.get(row);
-            for (int column = 0; column < outArray.length; column++) {
-                suppressedCells += outArray[column].equals(OperationDataTransformer.MAGIC_NULL_VALUE) && 
-                                   !inArray[column].equals(OperationDataTransformer.MAGIC_NULL_VALUE)? 1 : 0;
-                totalCells++;
-            }
-        }
+    public long trackSuppressedCells(DataSuppressionMask output) {
+        return trackSuppressedCells(output, output.getData().getNumColumns());
+    }
+
+    /**
+     * Track the number of suppressed cells, for rows which consist of more fields than are buffered.
+     * Fields which are not buffered are never suppressed.
+     * 
+     * @param output
+     * @param numFields The number of fields of each row
+     * @return The number of cells suppressed in this block
+     */
+    public long trackSuppressedCells(DataSuppressionMask output, int numFields) {
+        long suppressed = output.getNumSuppressedCells();
+        suppressedCells += suppressed;
+        totalCells += (long) output.getData().getNumRows() * numFields;
+        return suppressed;
     }
 }
@@ -0,0 +1,438 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * An on-disk cache for the results of blocks, so that re-running a transformation on unchanged
+ * data does not repeat the anonymization. Entries are keyed by a fingerprint of the values of
+ * the quasi-identifiers and of all settings which influence the result. Only the suppression
+ * mask is stored, with one bit per cell. The size of the cache is bounded,
+ * the least recently used entries are evicted. The time of last access is kept in the files'
+ * modification times, so that the order of eviction survives restarts. Access is synchronized,
+ * as blocks may be anonymized in parallel. As entries determine which cells are suppressed,
+ * the directory is created with owner-only permissions and must not be writable by others.
+ * Nevertheless, callers must verify cached results before using them.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class ResultCache {
+
+    /** Version of the fingerprint and file format */
+    private static final int             VERSION     = 2;
+
+    /** Suffix of files */
+    private static final String          SUFFIX      = ".mask";
+
+    /** Permissions of the directory */
+    private static final String          PERMISSIONS = "rwx------";
+
+    /** The directory */
+    private final File                   directory;
+
+    /** The maximal size in bytes */
+    private final long                   capacity;
+
+    /** Parameters relating to risk management */
+    private final ParametersRisk         risk;
+
+    /** Digest of the settings */
+    private final byte[]                 settings;
+
+    /** Sizes of the entries, in order of access */
+    private final Map<String, Long>      entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Total size of the entries */
+    private long                         size;
+
+    /** Number of blocks found */
+    private long                         hits;
+
+    /** Number of blocks not found */
+    private long                         misses;
+
+    /**
+     * Opens the cache in the given directory, which is created with owner-only permissions if needed.
+     * Entries written by earlier runs are retained, as long as they fit into the cache.
+     *
+     * @param directory
+     * @param capacity The maximal size in bytes
+     * @param risk
+     * @param runtime
+     * @throws IOException If the directory cannot be created, or if it is writable by other users
+     */
+    public ResultCache(File directory, long capacity, ParametersRisk risk, ParametersRuntime runtime) throws IOException {
+
+        // Prepare
+        this.directory = directory;
+        this.capacity = capacity;
+        this.risk = risk;
+        createDirectory(directory);
+
+        // Digest settings which influence the result
+        MessageDigest digest = getDigest();
+        DataOutputStream out = getOutputStream(digest);
+        List<String> qis = new ArrayList<>(risk.getQis());
+        Collections.sort(qis);
+        out.writeInt(VERSION);
+        out.writeInt(qis.size());
+        for (String qi : qis) {
+            write(out, qi);
+        }
+        out.writeDouble(risk.getHighestRisk());
+        out.writeDouble(risk.getAverageRisk());
+        out.writeDouble(risk.getRecordsAtRisk());
+        out.writeDouble(runtime.getRecordsPerIteration());
+        out.writeInt(runtime.getSecondsPerIteration());
+        out.writeInt(runtime.getMaxQIsOptimal());
+        out.flush();
+        this.settings = digest.digest();
+
+        // Collect existing entries, least recently used first
+        File[] files = directory.listFiles();
+        files = files != null ? files : new File[0];
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(SUFFIX)) {
+                String name = file.getName();
+                entries.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+                size += file.length();
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Creates the given directory with owner-only permissions, if it does not exist, and checks that it
+     * is owned by the current user and not writable by others. On file systems without POSIX
+     * permissions, access is restricted to the owner via java.io.File.
+     *
+     * @param directory
+     * @throws IOException
+     */
+    private static void createDirectory(File directory) throws IOException {
+        Path path = directory.toPath();
+        boolean posix = Files.getFileStore(getExistingParent(path)).supportsFileAttributeView("posix");
+        if (!Files.isDirectory(path)) {
+            if (posix) {
+                Files.createDirectories(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(PERMISSIONS)));
+            } else {
+                Files.createDirectories(path);
+                if (!(directory.setReadable(false, false) && directory.setReadable(true, true) &&
+                      directory.setWritable(false, false) && directory.setWritable(true, true) &&
+                      directory.setExecutable(false, false) && directory.setExecutable(true, true))) {
+                    throw new IOException("Cannot restrict access to directory: " + directory);
+                }
+            }
+        }
+        if (posix) {
+            UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+            if (!Files.getOwner(path).equals(user) || permissions.contains(PosixFilePermission.GROUP_WRITE) ||
+                permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+                throw new IOException("Directory must be owned by the current user and must not be writable by others: " + directory);
+            }
+        }
+    }
+
+    /**
+     * Returns the given path or its closest existing ancestor.
+     *
+     * @param path
+     * @return
+     */
+    private static Path getExistingParent(Path path) {
+        path = path.toAbsolutePath();
+        while (!Files.exists(path) && path.getParent() != null) {
+            path = path.getParent();
+        }
+        return path;
+    }
+
+    /**
+     * Returns the cached result for the given block, or null if it is not contained.
+     *
+     * @param fingerprint
+     * @param data
+     * @return
+     */
+    public DataSuppressionMask get(String fingerprint, DataBuffer data) {
+
+        // Check, which also marks the entry as used
+        synchronized (this) {
+            if (entries.get(fingerprint) == null) {
+                misses++;
+                return null;
+            }
+        }
+
+        // Read
+        BitSet cells;
+        File file = getFile(fingerprint);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION || in.readInt() != data.getNumRows() || in.readInt() != data.getNumColumns()) {
+                throw new IOException("Invalid entry: " + file);
+            }
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            cells = BitSet.valueOf(words);
+        } catch (IOException e) {
+            // Evicted by another process, or not written completely
+            remove(fingerprint);
+            synchronized (this) {
+                misses++;
+            }
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        synchronized (this) {
+            hits++;
+        }
+
+        // Return
+        return new DataSuppressionMask(data, cells);
+    }
+
+    /**
+     * Returns the fingerprint of the given block, which covers the settings, the names of the
+     * quasi-identifiers and their values in all rows.
+     *
+     * @param data
+     * @return
+     */
+    public String getFingerprint(DataBuffer data) {
+        MessageDigest digest = getDigest();
+        digest.update(settings);
+        DataOutputStream out = getOutputStream(digest);
+        int[] qis = getQis(data);
+        try {
+            out.writeInt(data.getNumRows());
+            for (int qi : qis) {
+                write(out, data.getHeader()[qi]);
+            }
+            for (int row = 0; row < data.getNumRows(); row++) {
+                for (int qi : qis) {
+                    write(out, data.getValue(row, qi));
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Cannot happen, as nothing is written
+            throw new IllegalStateException(e);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns a summary of hits, misses and the size of the cache.
+     *
+     * @return
+     */
+    public synchronized String getStatistics() {
+        return hits + " hits, " + misses + " misses, " + entries.size() + " entries, " + size + " bytes";
+    }
+
+    /**
+     * Stores the given result.
+     *
+     * @param fingerprint
+     * @param mask
+     * @throws KettleException
+     */
+    public void put(String fingerprint, DataSuppressionMask mask) throws KettleException {
+
+        // Write to a temporary file first, so that incomplete entries are never visible
+        File file = getFile(fingerprint);
+        File temp = null;
+        try {
+            temp = File.createTempFile("arx-result-", ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                long[] words = mask.getCells().toLongArray();
+                out.writeInt(VERSION);
+                out.writeInt(mask.getData().getNumRows());
+                out.writeInt(mask.getData().getNumColumns());
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            synchronized (this) {
+                if ((!file.exists() || file.delete()) && temp.renameTo(file)) {
+                    Long previous = entries.put(fingerprint, file.length());
+                    size += file.length() - (previous != null ? previous : 0L);
+                    evict();
+                }
+            }
+        } catch (IOException e) {
+            throw new KettleException(e);
+        } finally {
+            if (temp != null && temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Removes least recently used entries until the size of the cache does not exceed its capacity.
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > capacity && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            File file = getFile(entry.getKey());
+            if (file.delete() || !file.exists()) {
+                size -= entry.getValue();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns a new digest.
+     *
+     * @return
+     */
+    private MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Cannot happen, as every platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the file of the given entry.
+     *
+     * @param fingerprint
+     * @return
+     */
+    private File getFile(String fingerprint) {
+        return new File(directory, fingerprint + SUFFIX);
+    }
+
+    /**
+     * Returns a stream which only updates the given digest.
+     *
+     * @param digest
+     * @return
+     */
+    private DataOutputStream getOutputStream(MessageDigest digest) {
+        return new DataOutputStream(new DigestOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                // Discard
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // Discard
+            }
+        }, digest));
+    }
+
+    /**
+     * Returns the indices of the columns which are quasi-identifiers. Columns of the buffer
+     * which are not quasi-identifiers are ignored, as they are not changed.
+     *
+     * @param data
+     * @return
+     */
+    private int[] getQis(DataBuffer data) {
+        String[] header = data.getHeader();
+        int[] result = new int[header.length];
+        int count = 0;
+        for (int column = 0; column < header.length; column++) {
+            if (risk.isQi(header[column])) {
+                result[count++] = column;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Removes the given entry.
+     *
+     * @param fingerprint
+     */
+    private synchronized void remove(String fingerprint) {
+        Long previous = entries.remove(fingerprint);
+        if (previous != null) {
+            size -= previous;
+        }
+        File file = getFile(fingerprint);
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Writes a string, prefixed with its length.
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    private void write(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
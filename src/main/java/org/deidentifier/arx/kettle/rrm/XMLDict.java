@@ -58,6 +58,52 @@ public class XMLDict {
     /** XML element */                              
     public final static String NODE_CACHE_SIZE      = "cache_size";
     /** XML element */                              
+    public final static String NODE_MAX_BUFFER_SIZE = "max_buffer_size";
+    /** XML element */                              
+    public final static String NODE_SPILL_DIR       = "spill_directory";
+    /** XML element */                              
+    public final static String NODE_NUM_WORKERS     = "num_workers";
+    /** XML element */                              
+    public final static String NODE_QUEUE_DEPTH     = "queue_depth";
+    /** XML element */                              
+    public final static String NODE_EMISSION        = "emission";
+    /** XML element */                              
+    public final static String NODE_HIER_CACHE_SIZE = "hierarchy_cache_size";
+    /** XML element */                              
+    public final static String NODE_RESULT_CACHE_SIZE = "result_cache_size";
+    /** XML element */                              
+    public final static String NODE_RESULT_CACHE_DIRECTORY = "result_cache_directory";
+    /** XML element */                              
+    public final static String NODE_METRICS_STEP    = "metrics_step";
+    /** XML element */                              
+    public final static String NODE_WINDOW_SIZE     = "window_size";
+    /** XML element */                              
+    public final static String NODE_WINDOW_DURATION = "window_duration";
+    /** XML element */                              
+    public final static String NODE_SNAPSHOT_INTERVAL = "snapshot_interval";
+    /** XML element */                              
+    public final static String NODE_PARTITION_FIELDS = "partition_fields";
+    /** XML element */                              
+    public final static String NODE_NUM_PARTITIONS  = "num_partitions";
+    /** XML element */                              
+    public final static String NODE_COORDINATION_TIMEOUT = "coordination_timeout";
+    /** XML element */                              
+    public final static String NODE_MIN_BLOCK_SIZE = "min_block_size";
+    /** XML element */                              
+    public final static String NODE_MAX_BLOCK_SIZE = "max_block_size";
+    /** XML element */                              
+    public final static String NODE_TARGET_LATENCY = "target_latency";
+    /** XML element */                              
+    public final static String NODE_SAMPLE_SIZE = "sample_size";
+    /** XML element */                              
+    public final static String NODE_CONFIDENCE_LEVEL = "confidence_level";
+    /** XML element */                              
+    public final static String NODE_CLASS_TABLE_SIZE = "class_table_size";
+    /** XML element */                              
+    public final static String NODE_AGGREGATION_HOST = "aggregation_host";
+    /** XML element */                              
+    public final static String NODE_AGGREGATION_PORT = "aggregation_port";
+    /** XML element */                              
     public final static String NODE_FIELDS          = "fields";
     /** XML element */                              
     public final static String NODE_FIELD           = "field";
@@ -17,6 +17,7 @@
  */
 package org.deidentifier.arx.kettle.rrm;
 
+import org.deidentifier.arx.kettle.rrm.ParametersRuntime.Emission;
 import org.deidentifier.arx.kettle.rrm.ParametersRuntime.Mode;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.w3c.dom.Node;
@@ -67,6 +68,144 @@ public class XMLReaderParametersRuntime extends XMLReader<ParametersRuntime> {
         Node cacheSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_CACHE_SIZE);
         runtimeParams.setCacheSize(Integer.parseInt(XMLHandler.getNodeValue(cacheSize)));
 
+        // MaxBufferSize, not contained in configurations created by earlier versions
+        Node maxBufferSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_MAX_BUFFER_SIZE);
+        if (maxBufferSize != null) {
+            runtimeParams.setMaxBufferSize(Integer.parseInt(XMLHandler.getNodeValue(maxBufferSize)));
+        }
+
+        // SpillDirectory, not contained in configurations created by earlier versions
+        Node spillDirectory = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_SPILL_DIR);
+        if (spillDirectory != null && XMLHandler.getNodeValue(spillDirectory) != null) {
+            runtimeParams.setSpillDirectory(XMLHandler.getNodeValue(spillDirectory));
+        }
+
+        // NumWorkers, not contained in configurations created by earlier versions
+        Node numWorkers = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_NUM_WORKERS);
+        if (numWorkers != null) {
+            runtimeParams.setNumWorkers(Integer.parseInt(XMLHandler.getNodeValue(numWorkers)));
+        }
+
+        // QueueDepth, not contained in configurations created by earlier versions
+        Node queueDepth = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_QUEUE_DEPTH);
+        if (queueDepth != null) {
+            runtimeParams.setQueueDepth(Integer.parseInt(XMLHandler.getNodeValue(queueDepth)));
+        }
+
+        // Emission, not contained in configurations created by earlier versions
+        Node emission = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_EMISSION);
+        if (emission != null) {
+            runtimeParams.setEmission(Emission.valueOf(XMLHandler.getNodeValue(emission)));
+        }
+
+        // HierarchyCacheSize, not contained in configurations created by earlier versions
+        Node hierarchyCacheSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_HIER_CACHE_SIZE);
+        if (hierarchyCacheSize != null) {
+            runtimeParams.setHierarchyCacheSize(Integer.parseInt(XMLHandler.getNodeValue(hierarchyCacheSize)));
+        }
+
+        // MetricsStep, not contained in configurations created by earlier versions
+        Node metricsStep = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_METRICS_STEP);
+        if (metricsStep != null && XMLHandler.getNodeValue(metricsStep) != null) {
+            runtimeParams.setMetricsStep(XMLHandler.getNodeValue(metricsStep));
+        }
+
+        // WindowSize, not contained in configurations created by earlier versions
+        Node windowSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_WINDOW_SIZE);
+        if (windowSize != null) {
+            runtimeParams.setWindowSize(Integer.parseInt(XMLHandler.getNodeValue(windowSize)));
+        }
+
+        // WindowDuration, not contained in configurations created by earlier versions
+        Node windowDuration = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_WINDOW_DURATION);
+        if (windowDuration != null) {
+            runtimeParams.setWindowDuration(Integer.parseInt(XMLHandler.getNodeValue(windowDuration)));
+        }
+
+        // SnapshotInterval, not contained in configurations created by earlier versions
+        Node snapshotInterval = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_SNAPSHOT_INTERVAL);
+        if (snapshotInterval != null) {
+            runtimeParams.setSnapshotInterval(Integer.parseInt(XMLHandler.getNodeValue(snapshotInterval)));
+        }
+
+        // PartitionFields, not contained in configurations created by earlier versions
+        Node partitionFields = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_PARTITION_FIELDS);
+        if (partitionFields != null && XMLHandler.getNodeValue(partitionFields) != null) {
+            runtimeParams.setPartitionFields(XMLHandler.getNodeValue(partitionFields));
+        }
+
+        // NumPartitions, not contained in configurations created by earlier versions
+        Node numPartitions = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_NUM_PARTITIONS);
+        if (numPartitions != null) {
+            runtimeParams.setNumPartitions(Integer.parseInt(XMLHandler.getNodeValue(numPartitions)));
+        }
+
+        // MinBlockSize, not contained in configurations created by earlier versions
+        Node minBlockSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_MIN_BLOCK_SIZE);
+        if (minBlockSize != null) {
+            runtimeParams.setMinBlockSize(Integer.parseInt(XMLHandler.getNodeValue(minBlockSize)));
+        }
+
+        // MaxBlockSize, not contained in configurations created by earlier versions
+        Node maxBlockSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_MAX_BLOCK_SIZE);
+        if (maxBlockSize != null) {
+            runtimeParams.setMaxBlockSize(Integer.parseInt(XMLHandler.getNodeValue(maxBlockSize)));
+        }
+
+        // TargetLatency, not contained in configurations created by earlier versions
+        Node targetLatency = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_TARGET_LATENCY);
+        if (targetLatency != null) {
+            runtimeParams.setTargetLatency(Integer.parseInt(XMLHandler.getNodeValue(targetLatency)));
+        }
+
+        // SampleSize, not contained in configurations created by earlier versions
+        Node sampleSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_SAMPLE_SIZE);
+        if (sampleSize != null) {
+            runtimeParams.setSampleSize(Integer.parseInt(XMLHandler.getNodeValue(sampleSize)));
+        }
+
+        // ConfidenceLevel, not contained in configurations created by earlier versions
+        Node confidenceLevel = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_CONFIDENCE_LEVEL);
+        if (confidenceLevel != null) {
+            runtimeParams.setConfidenceLevel(Double.parseDouble(XMLHandler.getNodeValue(confidenceLevel)));
+        }
+
+        // ClassTableSize, not contained in configurations created by earlier versions
+        Node classTableSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_CLASS_TABLE_SIZE);
+        if (classTableSize != null) {
+            runtimeParams.setClassTableSize(Integer.parseInt(XMLHandler.getNodeValue(classTableSize)));
+        }
+
+        // CoordinationTimeout, not contained in configurations created by earlier versions
+        Node coordinationTimeout = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_COORDINATION_TIMEOUT);
+        if (coordinationTimeout != null) {
+            runtimeParams.setCoordinationTimeout(Integer.parseInt(XMLHandler.getNodeValue(coordinationTimeout)));
+        }
+
+        // ResultCacheSize, not contained in configurations created by earlier versions
+        Node resultCacheSize = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_RESULT_CACHE_SIZE);
+        if (resultCacheSize != null) {
+            runtimeParams.setResultCacheSize(Integer.parseInt(XMLHandler.getNodeValue(resultCacheSize)));
+        }
+
+        // ResultCacheDirectory, not contained in configurations created by earlier versions
+        Node resultCacheDirectory = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_RESULT_CACHE_DIRECTORY);
+        if (resultCacheDirectory != null) {
+            runtimeParams.setResultCacheDirectory(XMLHandler.getNodeValue(resultCacheDirectory));
+        }
+
+        // AggregationHost, not contained in configurations created by earlier versions
+        Node aggregationHost = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_AGGREGATION_HOST);
+        if (aggregationHost != null && XMLHandler.getNodeValue(aggregationHost) != null) {
+            runtimeParams.setAggregationHost(XMLHandler.getNodeValue(aggregationHost));
+        }
+
+        // AggregationPort, not contained in configurations created by earlier versions
+        Node aggregationPort = XMLHandler.getSubNode(nodeRuntimeParams, XMLDict.NODE_AGGREGATION_PORT);
+        if (aggregationPort != null) {
+            runtimeParams.setAggregationPort(Integer.parseInt(XMLHandler.getNodeValue(aggregationPort)));
+        }
+
         // Return
         return runtimeParams;
     }
@@ -37,6 +37,29 @@ public class XMLWriterParametersRuntime extends XMLWriter<ParametersRuntime> {
         write(XMLDict.NODE_SSIZE_DS,     parameters.getSnapshotSizeDataset());
         write(XMLDict.NODE_SSIZE_SS,     parameters.getSnapshotSizeSnapshot());
         write(XMLDict.NODE_CACHE_SIZE,   parameters.getCacheSize());
+        write(XMLDict.NODE_MAX_BUFFER_SIZE, parameters.getMaxBufferSize());
+        write(XMLDict.NODE_SPILL_DIR,    parameters.getSpillDirectory());
+        write(XMLDict.NODE_NUM_WORKERS,  parameters.getNumWorkers());
+        write(XMLDict.NODE_QUEUE_DEPTH,  parameters.getQueueDepth());
+        write(XMLDict.NODE_EMISSION,     parameters.getEmission().name());
+        write(XMLDict.NODE_HIER_CACHE_SIZE, parameters.getHierarchyCacheSize());
+        write(XMLDict.NODE_RESULT_CACHE_SIZE, parameters.getResultCacheSize());
+        write(XMLDict.NODE_RESULT_CACHE_DIRECTORY, parameters.getResultCacheDirectory());
+        write(XMLDict.NODE_METRICS_STEP, parameters.getMetricsStep());
+        write(XMLDict.NODE_WINDOW_SIZE,  parameters.getWindowSize());
+        write(XMLDict.NODE_WINDOW_DURATION, parameters.getWindowDuration());
+        write(XMLDict.NODE_SNAPSHOT_INTERVAL, parameters.getSnapshotInterval());
+        write(XMLDict.NODE_PARTITION_FIELDS, parameters.getPartitionFields());
+        write(XMLDict.NODE_NUM_PARTITIONS, parameters.getNumPartitions());
+        write(XMLDict.NODE_COORDINATION_TIMEOUT, parameters.getCoordinationTimeout());
+        write(XMLDict.NODE_MIN_BLOCK_SIZE, parameters.getMinBlockSize());
+        write(XMLDict.NODE_MAX_BLOCK_SIZE, parameters.getMaxBlockSize());
+        write(XMLDict.NODE_TARGET_LATENCY, parameters.getTargetLatency());
+        write(XMLDict.NODE_SAMPLE_SIZE, parameters.getSampleSize());
+        write(XMLDict.NODE_CONFIDENCE_LEVEL, parameters.getConfidenceLevel());
+        write(XMLDict.NODE_CLASS_TABLE_SIZE, parameters.getClassTableSize());
+        write(XMLDict.NODE_AGGREGATION_HOST, parameters.getAggregationHost());
+        write(XMLDict.NODE_AGGREGATION_PORT, parameters.getAggregationPort());
         unindent();
         
         // Return
@@ -18,8 +18,10 @@
 package org.deidentifier.arx.kettle;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -59,9 +61,6 @@ public class IntegrationAndUiTest {
 
         for ( int i = 0; i < rawData.length; i++ ) {
             Object[] data = new Object[rawData[0].length];
-            for (int j = 0; j < rawData[0].length; j++) {
-                data = new Object[] { rawData[i][j], rawData[i][1] };
-            }
             for (int j = 0; j < rawData[0].length; j++) {
                 data[j] = rawData[i][j];
             }
@@ -84,15 +83,53 @@ public class IntegrationAndUiTest {
      * @return
      */
     private TransMeta createTestTransformation(ParametersRuntime.Mode mode, boolean useWcMatch, double highestRisk, double averageRisk, double recordsAtRisk, Set<String> qis, int blockSize) {
+        return createTestTransformation(mode, TestData.fields1, highestRisk, averageRisk, recordsAtRisk, qis, blockSize);
+    }
+
+    /**
+     * Create a kettle transformation suited for testing.
+     * 
+     * @param mode
+     * @param fields
+     * @param highestRisk
+     * @param averageRisk
+     * @param recordsAtRisk
+     * @param qis
+     * @param blockSize
+     * @return
+     */
+    private TransMeta createTestTransformation(ParametersRuntime.Mode mode, List<String> fields, double highestRisk, double averageRisk, double recordsAtRisk, Set<String> qis, int blockSize) {
+        return createTestTransformation(mode, fields, highestRisk, averageRisk, recordsAtRisk, qis, blockSize,
+                                        ParametersRuntime.DEFAULT_NUM_WORKERS, ParametersRuntime.DEFAULT_EMISSION);
+    }
+
+    /**
+     * Create a kettle transformation suited for testing, which anonymizes blocks in parallel.
+     * 
+     * @param mode
+     * @param fields
+     * @param highestRisk
+     * @param averageRisk
+     * @param recordsAtRisk
+     * @param qis
+     * @param blockSize
+     * @param numWorkers
+     * @param emission
+     * @return
+     */
+    private TransMeta createTestTransformation(ParametersRuntime.Mode mode, List<String> fields, double highestRisk, double averageRisk, double recordsAtRisk, Set<String> qis, int blockSize,
+                                               int numWorkers, ParametersRuntime.Emission emission) {
         ReidentificationRiskManagementStepMeta meta = new ReidentificationRiskManagementStepMeta();
         meta.setDefault();
-        meta.setFields(TestData.fields1);
+        meta.setFields(fields);
         meta.getRiskSettings().setHighestRisk(highestRisk);
         meta.getRiskSettings().setAverageRisk(averageRisk);
         meta.getRiskSettings().setRecordsAtRisk(recordsAtRisk);
         meta.getRiskSettings().setQis(qis);
         meta.getRuntimeSettings().setBlockSize(blockSize);
         meta.getRuntimeSettings().setMode(mode);
+        meta.getRuntimeSettings().setNumWorkers(numWorkers);
+        meta.getRuntimeSettings().setEmission(emission);
         TransMeta tm = TransTestFactory.generateTestTransformation( new Variables(), meta, STEP_NAME );
         return tm;
     }
@@ -154,4 +191,76 @@ public class IntegrationAndUiTest {
 		
 		assertEquals(inputData.size(), result.size());
 	}   
+
+	/**
+	 * Monitor the risks of a stream whose first field is not a quasi-identifier and check
+	 * that all rows are passed on unchanged.
+	 * 
+	 * @throws KettleException
+	 */
+	@Test
+	public void testMonitoring() throws KettleException {
+
+	    TransMeta tm = createTestTransformation(ParametersRuntime.Mode.MONITOR, TestData.fields2, 0.2d, 0.1d, 1d, TestData.qis1, 0);
+
+	    List<RowMetaAndData> inputData = generateInputData(TestData.ds2, TestData.fields2);
+	    List<RowMetaAndData> result = TransTestFactory.executeTestTransformation( tm, TransTestFactory.INJECTOR_STEPNAME,
+	            STEP_NAME, TransTestFactory.DUMMY_STEPNAME, inputData);
+
+	    assertEquals(inputData.size(), result.size());
+	    for (int i = 0; i < inputData.size(); i++) {
+	        assertTrue(Arrays.equals(inputData.get(i).getData(), result.get(i).getData()));
+	    }
+	}
+
+	/**
+	 * Assess the risks of a stream in blocks, buffering only the native rows, and check
+	 * that all rows are passed on unchanged.
+	 * 
+	 * @throws KettleException
+	 */
+	@Test
+	public void testAssessment() throws KettleException {
+
+	    TransMeta tm = createTestTransformation(ParametersRuntime.Mode.ASSESS, TestData.fields2, 1d, 1d, 1d, TestData.qis1, 3);
+
+	    List<RowMetaAndData> inputData = generateInputData(TestData.ds2, TestData.fields2);
+	    List<RowMetaAndData> result = TransTestFactory.executeTestTransformation( tm, TransTestFactory.INJECTOR_STEPNAME,
+	            STEP_NAME, TransTestFactory.DUMMY_STEPNAME, inputData);
+
+	    assertEquals(inputData.size(), result.size());
+	    for (int i = 0; i < inputData.size(); i++) {
+	        assertTrue(Arrays.equals(inputData.get(i).getData(), result.get(i).getData()));
+	    }
+	}
+
+	/**
+	 * Anonymize blocks on several workers, emitting blocks on the step thread and on an emitter
+	 * thread, and check that rows are passed on in input order. Only the first block needs to
+	 * be anonymized, so that it takes longer than the following blocks.
+	 * 
+	 * @throws KettleException
+	 */
+	@Test
+	public void testParallelAnonymization() throws KettleException {
+
+	    String[][] data = new String[201][];
+	    data[0] = new String[] { "name", "sex", "zip" };
+	    for (int i = 1; i < data.length; i++) {
+	        data[i] = i < 7 ? new String[] { String.valueOf(i), i % 2 == 0 ? "M" : "F", "471" + i } : new String[] { String.valueOf(i), "M", "4710" };
+	    }
+	    for (ParametersRuntime.Emission emission : new ParametersRuntime.Emission[] { ParametersRuntime.Emission.STEP_THREAD,
+	                                                                                  ParametersRuntime.Emission.EMITTER_IN_ORDER }) {
+	        TransMeta tm = createTestTransformation(ParametersRuntime.Mode.ANONYMIZE, TestData.fields2, 0.5d, 0.1d, 0d, TestData.qis1, 7, 4, emission);
+
+	        List<RowMetaAndData> inputData = generateInputData(data, TestData.fields2);
+	        List<RowMetaAndData> result = TransTestFactory.executeTestTransformation( tm, TransTestFactory.INJECTOR_STEPNAME,
+	                STEP_NAME, TransTestFactory.DUMMY_STEPNAME, inputData);
+
+	        assertEquals(inputData.size(), result.size());
+	        for (int i = 0; i < inputData.size(); i++) {
+	            assertEquals(inputData.get(i).getData()[0], result.get(i).getData()[0]);
+	        }
+	    }
+	}
 }
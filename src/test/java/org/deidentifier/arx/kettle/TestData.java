@@ -37,4 +37,17 @@ public class TestData {
         {  "F",    null  },  // 1,       4
         {  "M",    null  }   // 1,       6
     };
+
+    static List<String> fields2 = Arrays.asList("name", "sex", "zip");
+    static String[][] ds2 = new String[][] {
+        { "name", "sex", "zip"  },
+        { "a",    "M",   "4711" },
+        { "b",    "M",   "4711" },
+        { "c",    "M",   "4711" },
+        { "d",    null,  "4711" },
+        { "e",    null,  "4711" },
+        { "f",    "F",   "4712" },
+        { "g",    "F",    null  },
+        { "h",    "M",    null  }
+    };
 }
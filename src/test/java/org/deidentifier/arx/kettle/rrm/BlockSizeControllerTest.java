@@ -0,0 +1,132 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests the adaptation of block sizes.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class BlockSizeControllerTest {
+
+    /** The maximal heap size */
+    private static final long HEAP = 1024L * 1024L * 1024L;
+
+    /**
+     * Tests that blocks are shrunk if little heap space is left.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testHeapPressure() throws Exception {
+        BlockSizeController controller = new BlockSizeController(1000, 100, 10000, 1);
+        assertEquals(500, controller.update(getMetrics(100L, 0d), HEAP / 5L, HEAP));
+        assertTrue(controller.getReason().startsWith("heap pressure"));
+    }
+
+    /**
+     * Tests that blocks are shrunk in proportion to the latency, by at most a factor of two.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLatencyAboveTarget() throws Exception {
+        BlockSizeController controller = new BlockSizeController(1000, 100, 10000, 1);
+        assertEquals(800, controller.update(getMetrics(1250L, 0d), HEAP, HEAP));
+        assertTrue(controller.getReason().startsWith("latency above target"));
+        assertEquals(400, controller.update(getMetrics(4000L, 0d), HEAP, HEAP));
+    }
+
+    /**
+     * Tests that blocks are grown if they are anonymized quickly, by at most a factor of two.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLatencyBelowTarget() throws Exception {
+        BlockSizeController controller = new BlockSizeController(1000, 100, 10000, 1);
+        assertEquals(2000, controller.update(getMetrics(100L, 0d), HEAP, HEAP));
+        assertTrue(controller.getReason().startsWith("latency below target"));
+        assertEquals(2000, controller.update(getMetrics(700L, 0d), HEAP, HEAP));
+        assertTrue(controller.getReason().startsWith("within target"));
+    }
+
+    /**
+     * Tests that blocks are grown if many cells are suppressed or if suppression increases.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSuppression() throws Exception {
+        BlockSizeController controller = new BlockSizeController(1000, 100, 10000, 1);
+        assertEquals(1000, controller.update(getMetrics(700L, 0.01d), HEAP, HEAP));
+        assertEquals(1429, controller.update(getMetrics(700L, 0.02d), HEAP, HEAP));
+        assertTrue(controller.getReason().startsWith("suppression"));
+        assertEquals(2042, controller.update(getMetrics(700L, 0.1d), HEAP, HEAP));
+    }
+
+    /**
+     * Tests that block sizes remain within their bounds and that growth is limited by the available heap space.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBounds() throws Exception {
+        BlockSizeController controller = new BlockSizeController(50000, 100, 10000, 1);
+        assertEquals(10000, controller.getBlockSize());
+        for (int i = 0; i < 20; i++) {
+            controller.update(getMetrics(5000L, 0d), HEAP, HEAP);
+        }
+        assertEquals(100, controller.getBlockSize());
+        for (int i = 0; i < 20; i++) {
+            controller.update(getMetrics(10L, 0d), HEAP, HEAP);
+        }
+        assertEquals(10000, controller.getBlockSize());
+        controller = new BlockSizeController(1000, 100, 10000, 1);
+        assertEquals(1000, controller.update(getMetrics(100L, 0d), HEAP / 4L + 1024L, HEAP));
+        assertTrue(controller.getReason().contains("limited by heap"));
+    }
+
+    /**
+     * Returns the metrics of a block of 1000 rows.
+     *
+     * @param latency in milliseconds
+     * @param suppressed The fraction of suppressed cells
+     * @return
+     * @throws IOException
+     */
+    private ParametersMetrics getMetrics(long latency, double suppressed) throws IOException {
+        DataBuffer buffer = new DataBuffer(new String[] { "id" });
+        for (int row = 0; row < 1000; row++) {
+            buffer.add(new String[] { String.valueOf(row) });
+        }
+        ParametersMetrics metrics = new ParametersMetrics(1L);
+        metrics.trackBuffer(buffer);
+        metrics.trackAnonymization(latency * 1000000L);
+        metrics.trackSuppressedCells((long) (suppressed * 100000d), 100000L);
+        return metrics;
+    }
+}
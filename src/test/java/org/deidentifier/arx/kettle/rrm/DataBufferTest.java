@@ -0,0 +1,277 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+/**
+ * Tests the columnar row buffer.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataBufferTest {
+
+    /** Directory for segment files */
+    private File directory;
+
+    /**
+     * Creates the directory for segment files.
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("arx-buffer-test").toFile();
+    }
+
+    /**
+     * Deletes the directory for segment files.
+     */
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Tests that all rows can be read back, cell by cell and via the iterator.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 0L);
+        DataBuffer buffer = TestDataAdult.getBuffer(rows);
+        assertRows(rows, buffer);
+        assertTrue(buffer.getEstimatedSize() > 0L);
+        assertEquals(0, buffer.getNumSegments());
+    }
+
+    /**
+     * Tests that each distinct value is encoded once.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDictionaries() throws Exception {
+        List<String[]> rows = TestDataAdult.getRows();
+        DataBuffer buffer = TestDataAdult.getBuffer(rows);
+        for (int column = 0; column < TestDataAdult.HEADER.length; column++) {
+            Set<String> expected = new LinkedHashSet<>();
+            for (String[] row : rows) {
+                expected.add(row[column]);
+            }
+            assertArrayEquals(expected.toArray(new String[expected.size()]), buffer.getDistinctValues(column));
+            assertArrayEquals(expected.toArray(new String[expected.size()]), buffer.getDistinctValues()[column]);
+        }
+        for (int row = 1; row < rows.size(); row++) {
+            if (rows.get(row)[0].equals(rows.get(0)[0])) {
+                assertTrue(buffer.getValue(row, 0) == buffer.getValue(0, 0));
+            }
+        }
+    }
+
+    /**
+     * Tests that a buffer can be reused after it has been cleared.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testClear() throws Exception {
+        List<String[]> rows = TestDataAdult.getRows();
+        DataBuffer buffer = TestDataAdult.getBuffer(rows);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getDistinctValues(0).length);
+        List<String[]> other = rows.subList(100, 200);
+        for (String[] row : other) {
+            buffer.add(row);
+        }
+        assertRows(other, buffer);
+    }
+
+    /**
+     * Tests that rows which have been spilled to segments can be read back, that segments
+     * are stored in the segment format and that segments are deleted when the buffer is cleared.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSpill() throws Exception {
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 0L);
+        DataBuffer buffer = new DataBuffer(TestDataAdult.HEADER, 16L * 1024L, directory);
+        for (String[] row : rows) {
+            buffer.add(row);
+        }
+        assertTrue(buffer.getNumSegments() > 1);
+        assertEquals(buffer.getNumSegments(), directory.listFiles().length);
+        int spilled = 0;
+        for (File file : directory.listFiles()) {
+            try (DataSegmentReader reader = new DataSegmentReader(file)) {
+                assertArrayEquals(TestDataAdult.HEADER, reader.getHeader());
+                spilled += reader.getNumRows();
+            }
+        }
+        assertTrue(spilled > 0 && spilled <= rows.size());
+        assertRows(rows, buffer);
+        for (int column = 0; column < TestDataAdult.HEADER.length; column++) {
+            Set<String> expected = new LinkedHashSet<>();
+            for (String[] row : rows) {
+                expected.add(row[column]);
+            }
+            assertArrayEquals(expected.toArray(new String[expected.size()]), buffer.getDistinctValues(column));
+        }
+        buffer.clear();
+        assertEquals(0, buffer.getNumSegments());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    /**
+     * Tests random access to spilled rows while further rows are added.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSpillRandomAccess() throws Exception {
+        List<String[]> rows = TestDataAdult.getRows();
+        DataBuffer buffer = new DataBuffer(TestDataAdult.HEADER, 8L * 1024L, directory);
+        Random random = new Random(0L);
+        for (int added = 0; added < rows.size(); added++) {
+            buffer.add(rows.get(added));
+            for (int i = 0; i < 3; i++) {
+                int row = random.nextInt(added + 1);
+                int column = random.nextInt(TestDataAdult.HEADER.length);
+                assertEquals(rows.get(row)[column], buffer.getValue(row, column));
+            }
+        }
+        assertTrue(buffer.getNumSegments() > 1);
+        buffer.clear();
+    }
+
+    /**
+     * Tests a buffer without columns, which only counts rows.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNoColumns() throws Exception {
+        DataBuffer buffer = new DataBuffer(new String[0]);
+        for (int row = 0; row < 5000; row++) {
+            buffer.add(new String[0]);
+        }
+        assertEquals(5000, buffer.getNumRows());
+        assertEquals(0L, buffer.getEstimatedSize());
+        assertFalse(buffer.isFull());
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+    }
+
+    /**
+     * Tests that native rows are held in memory until the buffer exceeds its limit, and are spilled
+     * together with the buffered rows afterwards, also if the buffer has no columns.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSpillPayload() throws Exception {
+        RowMeta meta = new RowMeta();
+        for (String field : TestDataAdult.HEADER) {
+            meta.addValueMeta(new ValueMetaString(field));
+        }
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 1L);
+        for (String[] header : new String[][] { TestDataAdult.HEADER, new String[0] }) {
+
+            // Below the limit
+            DataBuffer buffer = new DataBuffer(header, 64L * 1024L * 1024L, directory);
+            buffer.setPayload(new DataPayload(meta, directory));
+            add(buffer, rows.subList(0, 100));
+            assertEquals(0, directory.listFiles().length);
+            assertTrue(buffer.getEstimatedSize() > 0L);
+            buffer.clear();
+
+            // Above the limit
+            buffer = new DataBuffer(header, 16L * 1024L, directory);
+            buffer.setPayload(new DataPayload(meta, directory));
+            add(buffer, rows);
+            assertTrue(directory.listFiles().length > 0);
+            assertTrue(buffer.getPayload().getEstimatedSize() < 16L * 1024L);
+            assertEquals(rows.size(), buffer.getPayload().size());
+            for (int row = 0; row < rows.size(); row++) {
+                assertArrayEquals(rows.get(row), buffer.getPayload().get(row));
+            }
+            buffer.clear();
+            assertEquals(0, directory.listFiles().length);
+        }
+    }
+
+    /**
+     * Adds the rows to the buffer and to its payload.
+     *
+     * @param buffer
+     * @param rows
+     * @throws Exception
+     */
+    private void add(DataBuffer buffer, List<String[]> rows) throws Exception {
+        for (String[] row : rows) {
+            buffer.add(Arrays.copyOf(row, buffer.getNumColumns()));
+            buffer.getPayload().add(row);
+        }
+    }
+
+    /**
+     * Asserts that the buffer contains the given rows.
+     *
+     * @param rows
+     * @param buffer
+     */
+    private void assertRows(List<String[]> rows, DataBuffer buffer) {
+        assertEquals(rows.size(), buffer.getNumRows());
+        for (int row = rows.size() - 1; row >= 0; row--) {
+            for (int column = 0; column < TestDataAdult.HEADER.length; column++) {
+                assertEquals(rows.get(row)[column], buffer.getValue(row, column));
+            }
+        }
+        Iterator<String[]> iterator = buffer.iterator();
+        assertArrayEquals(TestDataAdult.HEADER, iterator.next());
+        for (String[] row : rows) {
+            assertTrue(Arrays.equals(row, iterator.next()));
+        }
+        assertFalse(iterator.hasNext());
+    }
+}
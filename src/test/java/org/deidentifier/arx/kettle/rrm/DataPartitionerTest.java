@@ -0,0 +1,123 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the assignment of rows to partitions.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataPartitionerTest {
+
+    /**
+     * Tests that all rows of a class are assigned to the same partition and that all partitions are used.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testClasses() throws Exception {
+        DataPartitioner partitioner = new DataPartitioner(TestDataAdult.HEADER, Arrays.asList("sex", "age"), 4);
+        Map<String, Integer> partitions = new HashMap<>();
+        int[] sizes = new int[partitioner.getNumPartitions()];
+        for (String[] row : TestDataAdult.getRows()) {
+            int partition = partitioner.getPartition(row);
+            assertTrue(partition >= 0 && partition < sizes.length);
+            sizes[partition]++;
+            String key = Arrays.toString(Arrays.copyOf(row, TestDataAdult.QIS.length));
+            Integer previous = partitions.put(key, partition);
+            assertTrue(previous == null || previous == partition);
+        }
+        for (int size : sizes) {
+            assertTrue(size > 0);
+        }
+    }
+
+    /**
+     * Tests that partitions only depend on the values of the fields, not on their position.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPositions() throws Exception {
+        List<String> fields = Arrays.asList("sex", "age");
+        DataPartitioner partitioner = new DataPartitioner(TestDataAdult.HEADER, fields, 7);
+        DataPartitioner reversed = new DataPartitioner(new String[] { "age", "sex" }, fields, 7);
+        for (String[] row : TestDataAdult.getRows()) {
+            assertEquals(partitioner.getPartition(row), reversed.getPartition(new String[] { row[1], row[0] }));
+        }
+    }
+
+    /**
+     * Tests that rows with null values in partition fields, which are hashed like any other value,
+     * yield results which satisfy the thresholds when all partitions are assessed together, although
+     * null values are wildcards which match rows of other partitions.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNulls() throws Exception {
+
+        // Partition
+        DataPartitioner partitioner = new DataPartitioner(TestDataAdult.HEADER, Arrays.asList("sex", "age"), 4);
+        List<List<String[]>> partitions = new ArrayList<>();
+        for (int i = 0; i < partitioner.getNumPartitions(); i++) {
+            partitions.add(new ArrayList<String[]>());
+        }
+        for (String[] row : TestDataAdult.getRows(0.1d, 0L)) {
+            partitions.get(partitioner.getPartition(row)).add(row);
+        }
+
+        // Anonymize partitions independently and assess them together
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0d);
+        OperationCellSuppression operation = new OperationCellSuppression(thresholds, new ParametersRuntime());
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+        for (List<String[]> rows : partitions) {
+            DataSuppressionMask mask = operation.perform(TestDataAdult.getBuffer(rows));
+            for (int row = 0; row < rows.size(); row++) {
+                String[] values = rows.get(row).clone();
+                for (int column = 0; column < values.length; column++) {
+                    if (mask.isSuppressed(row, column)) {
+                        values[column] = OperationDataTransformer.MAGIC_NULL_VALUE;
+                    }
+                }
+                assessment.add(values);
+            }
+        }
+        assertTrue(assessment.calculate().satisfies(thresholds));
+    }
+
+    /**
+     * Tests that fields must be contained in the header.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() {
+        new DataPartitioner(TestDataAdult.HEADER, Arrays.asList("zip"), 4);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests reading and writing the columnar segment format.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataSegmentTest {
+
+    /** The header */
+    private static final String[]  HEADER = { "age", "zip", "name", "comment" };
+
+    /** Whether columns are quasi-identifiers */
+    private static final boolean[] QIS    = { true, true, false, false };
+
+    /** The file */
+    private File                   file;
+
+    /**
+     * Creates the file.
+     *
+     * @throws IOException
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("arx-segment-", ".seg");
+    }
+
+    /**
+     * Deletes the file.
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Tests a round trip of random rows, including null values, empty strings and non-ASCII characters.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<String[]> rows = getRows(new Random(0xDEADBEEFL), 2500);
+        write(rows, 1000);
+        try (DataSegmentReader reader = new DataSegmentReader(file)) {
+            assertTrue(Arrays.equals(HEADER, reader.getHeader()));
+            for (int column = 0; column < QIS.length; column++) {
+                assertEquals(QIS[column], reader.isQi(column));
+            }
+            assertEquals(3, reader.getNumBlocks());
+            assertEquals(2500L, reader.getNumRows());
+            List<String[]> result = new ArrayList<>();
+            for (int block = 0; block < reader.getNumBlocks(); block++) {
+                result.addAll(reader.read(block));
+            }
+            assertRows(rows, result);
+        }
+    }
+
+    /**
+     * Tests reading blocks in random order.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testRandomAccess() throws IOException {
+        List<String[]> rows = getRows(new Random(0xCAFEL), 1000);
+        write(rows, 64);
+        Random random = new Random(0xBEEFL);
+        try (DataSegmentReader reader = new DataSegmentReader(file)) {
+            for (int i = 0; i < 50; i++) {
+                long row = random.nextInt(rows.size());
+                int block = reader.getBlock(row);
+                List<String[]> result = reader.read(block);
+                assertTrue(Arrays.equals(rows.get((int) row), result.get((int) (row - reader.getFirstRow(block)))));
+            }
+        }
+    }
+
+    /**
+     * Tests both encodings of codes: long runs of values are run-length encoded, random values are bit-packed.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testEncodings() throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        Random random = new Random(0xDEADL);
+        for (int row = 0; row < 5000; row++) {
+            rows.add(new String[] { String.valueOf(row / 1000), String.valueOf(random.nextInt(300)), "n", null });
+        }
+        write(rows, 5000);
+        try (DataSegmentReader reader = new DataSegmentReader(file)) {
+            assertRows(rows, reader.read(0));
+        }
+    }
+
+    /**
+     * Tests a file without rows.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        write(new ArrayList<String[]>(), 10);
+        try (DataSegmentReader reader = new DataSegmentReader(file)) {
+            assertEquals(0, reader.getNumBlocks());
+            assertEquals(0L, reader.getNumRows());
+            assertTrue(Arrays.equals(HEADER, reader.getHeader()));
+        }
+    }
+
+    /**
+     * Tests that files which have not been written completely are rejected.
+     *
+     * @throws IOException
+     */
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        write(getRows(new Random(0L), 100), 10);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        new DataSegmentReader(file).close();
+    }
+
+    /**
+     * Tests that other files are rejected.
+     *
+     * @throws IOException
+     */
+    @Test(expected = IOException.class)
+    public void testInvalid() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("This is not a segment file".getBytes(StandardCharsets.UTF_8));
+        }
+        new DataSegmentReader(file).close();
+    }
+
+    /**
+     * Tests the compression of byte arrays.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testCompression() throws IOException {
+        Random random = new Random(0xFEEDL);
+        List<byte[]> inputs = new ArrayList<>();
+        inputs.add(new byte[0]);
+        inputs.add(new byte[] { 1, 2, 3 });
+        inputs.add(new byte[100000]);
+        byte[] noise = new byte[10000];
+        random.nextBytes(noise);
+        inputs.add(noise);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("row-").append(random.nextInt(100)).append(';');
+        }
+        inputs.add(text.toString().getBytes(StandardCharsets.UTF_8));
+        for (byte[] input : inputs) {
+            byte[] compressed = DataSegmentCodec.compress(input);
+            assertTrue(Arrays.equals(input, DataSegmentCodec.decompress(compressed, input.length)));
+        }
+        assertTrue(DataSegmentCodec.compress(inputs.get(2)).length < 1000);
+        assertTrue(DataSegmentCodec.compress(inputs.get(4)).length < inputs.get(4).length / 2);
+    }
+
+    /**
+     * Tests that the writer rejects rows of the wrong width.
+     *
+     * @throws IOException
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRow() throws IOException {
+        try (DataSegmentWriter writer = new DataSegmentWriter(file, HEADER, QIS, 10)) {
+            writer.add(new String[] { "1" });
+        }
+    }
+
+    /**
+     * Asserts that two lists of rows are equal.
+     *
+     * @param expected
+     * @param actual
+     */
+    private void assertRows(List<String[]> expected, List<String[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertTrue(Arrays.equals(expected.get(row), actual.get(row)));
+        }
+        assertFalse(expected.isEmpty() && !actual.isEmpty());
+    }
+
+    /**
+     * Creates random rows.
+     *
+     * @param random
+     * @param size
+     * @return
+     */
+    private List<String[]> getRows(Random random, int size) {
+        String[] specials = { null, "", "München", "東京", OperationDataTransformer.MAGIC_NULL_VALUE };
+        List<String[]> rows = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            String[] values = new String[HEADER.length];
+            values[0] = String.valueOf(20 + random.nextInt(50));
+            values[1] = random.nextInt(10) == 0 ? specials[random.nextInt(specials.length)] : "8" + random.nextInt(2000);
+            values[2] = "name-" + row;
+            values[3] = random.nextInt(10) == 0 ? specials[random.nextInt(specials.length)] : "comment " + random.nextInt(20);
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the given rows.
+     *
+     * @param rows
+     * @param rowsPerBlock
+     * @throws IOException
+     */
+    private void write(List<String[]> rows, int rowsPerBlock) throws IOException {
+        try (DataSegmentWriter writer = new DataSegmentWriter(file, HEADER, QIS, rowsPerBlock)) {
+            for (String[] row : rows) {
+                writer.add(row);
+            }
+            assertEquals(rows.size(), writer.getNumRows());
+        }
+    }
+}
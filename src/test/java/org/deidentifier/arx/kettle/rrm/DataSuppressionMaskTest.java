@@ -0,0 +1,103 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the representation of results by suppressed cells.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class DataSuppressionMaskTest {
+
+    /** The buffered columns */
+    private static final String[] HEADER = { "age", "zip", "name" };
+
+    /** The null value */
+    private static final String   NULL   = OperationDataTransformer.MAGIC_NULL_VALUE;
+
+    /**
+     * Tests that exactly the cells suppressed are contained, and that the buffer remains unchanged.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCells() throws Exception {
+        DataSuppressionMask mask = new DataSuppressionMask(getData());
+        mask.suppress(0, 1);
+        mask.suppressAll(new int[] { 0 });
+        boolean[][] expected = { { true, true, false }, { true, false, false }, { true, false, false } };
+        for (int row = 0; row < expected.length; row++) {
+            for (int column = 0; column < HEADER.length; column++) {
+                assertEquals(expected[row][column], mask.isSuppressed(row, column));
+            }
+        }
+        assertEquals(4, mask.getNumSuppressedCells());
+        assertEquals("30", mask.getData().getValue(0, 0));
+        assertEquals("81667", mask.getData().getValue(0, 1));
+    }
+
+    /**
+     * Tests that cells which are null already are not counted as suppressed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNullCells() throws Exception {
+        DataSuppressionMask mask = new DataSuppressionMask(getData());
+        mask.suppressAll(new int[] { 0, 1 });
+        assertEquals(5, mask.getNumSuppressedCells());
+        assertFalse(mask.isSuppressed(1, 1));
+    }
+
+    /**
+     * Tests that statistics count suppressed cells, relative to all fields of the rows.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStatistics() throws Exception {
+        DataSuppressionMask mask = new DataSuppressionMask(getData());
+        mask.suppressAll(new int[] { 0 });
+        ParametersStatistics statistics = new ParametersStatistics();
+        assertEquals(3L, statistics.trackSuppressedCells(mask, 5));
+        assertEquals(3d / 15d, statistics.getFractionOfSuppressedCells(), 1e-9);
+        assertEquals(0L, statistics.trackSuppressedCells(new DataSuppressionMask(getData())));
+        assertEquals(3d / 24d, statistics.getFractionOfSuppressedCells(), 1e-9);
+    }
+
+    /**
+     * Returns a block with a null value.
+     *
+     * @return
+     * @throws Exception
+     */
+    private DataBuffer getData() throws Exception {
+        DataBuffer data = new DataBuffer(HEADER);
+        data.add(new String[] { "30", "81667", "a" });
+        data.add(new String[] { "40", NULL, "b" });
+        data.add(new String[] { "50", "81675", "c" });
+        return data;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the cache for hierarchies shared across blocks.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class HierarchyCacheTest {
+
+    /** The null value */
+    private static final String NULL = OperationDataTransformer.MAGIC_NULL_VALUE;
+
+    /**
+     * Tests that the hierarchy is reused for blocks without new values.
+     */
+    @Test
+    public void testReuse() {
+        HierarchyCache cache = new HierarchyCache(10);
+        String[][] hierarchy = cache.getHierarchy("zip", new String[] { "4711", "4712" });
+        assertArrayEquals(new String[][] { { "4711", NULL }, { "4712", NULL } }, hierarchy);
+        assertSame(hierarchy, cache.getHierarchy("zip", new String[] { "4712" }));
+        assertSame(hierarchy, cache.getHierarchy("zip", new String[] { "4711", "4712" }));
+        assertEquals("zip: 3 hits, 2 misses", cache.getStatistics());
+    }
+
+    /**
+     * Tests that new values are appended to a copy of the hierarchy, and that rows are reused.
+     */
+    @Test
+    public void testGrowth() {
+        HierarchyCache cache = new HierarchyCache(10);
+        String[][] hierarchy = cache.getHierarchy("zip", new String[] { "4711" });
+        String[][] grown = cache.getHierarchy("zip", new String[] { "4711", "4712" });
+        assertArrayEquals(new String[][] { { "4711", NULL } }, hierarchy);
+        assertArrayEquals(new String[][] { { "4711", NULL }, { "4712", NULL } }, grown);
+        assertSame(hierarchy[0], grown[0]);
+        assertArrayEquals(new String[][] { { "4711", NULL } }, cache.getHierarchy("sex", new String[] { "4711" }));
+        assertEquals("sex: 0 hits, 1 misses, zip: 1 hits, 2 misses", cache.getStatistics());
+    }
+
+    /**
+     * Tests that the least recently used values are evicted, but never values of the current block.
+     */
+    @Test
+    public void testEviction() {
+        HierarchyCache cache = new HierarchyCache(2);
+        cache.getHierarchy("zip", new String[] { "1", "2" });
+        cache.getHierarchy("zip", new String[] { "1" });
+        assertArrayEquals(new String[][] { { "1", NULL }, { "3", NULL } }, cache.getHierarchy("zip", new String[] { "3" }));
+        assertArrayEquals(new String[][] { { "1", NULL }, { "3", NULL }, { "4", NULL } }, cache.getHierarchy("zip", new String[] { "1", "3", "4" }));
+        assertArrayEquals(new String[][] { { "4", NULL }, { "5", NULL } }, cache.getHierarchy("zip", new String[] { "4", "5" }));
+    }
+
+    /**
+     * Tests that blocks which are anonymized with cached hierarchies, which contain values of other
+     * blocks, satisfy the thresholds.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAnonymization() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0d);
+        HierarchyCache cache = new HierarchyCache(ParametersRuntime.DEFAULT_HIERARCHY_CACHE_SIZE);
+        OperationCellSuppression operation = new OperationCellSuppression(thresholds, new ParametersRuntime(), cache, null);
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 0L);
+        for (int block = 0; block < 4; block++) {
+            DataBuffer data = TestDataAdult.getBuffer(rows.subList(block * rows.size() / 4, (block + 1) * rows.size() / 4));
+            DataSuppressionMask mask = operation.perform(data);
+            assertTrue(new OperationCellSuppressionPrecheck(thresholds, mask).isSatisfied());
+        }
+        assertTrue(cache.getStatistics().contains("age: "));
+    }
+}
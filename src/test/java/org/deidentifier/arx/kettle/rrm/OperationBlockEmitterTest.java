@@ -0,0 +1,227 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Tests the emission of blocks on a dedicated thread.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationBlockEmitterTest {
+
+    /** The quasi-identifiers */
+    private static final String[]    HEADER = { "age", "zip" };
+
+    /** The workers */
+    private ExecutorService          workers;
+
+    /** The operation */
+    private OperationCellSuppression operation;
+
+    /** Directory for segment files */
+    private File                     directory;
+
+    /**
+     * Creates the workers and the operation.
+     */
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("arx-emitter-test").toFile();
+        workers = Executors.newFixedThreadPool(4);
+        ParametersRisk risk = new ParametersRisk(new HashSet<>(Arrays.asList(HEADER)));
+        risk.setAverageRisk(1d);
+        risk.setRecordsAtRisk(0d);
+        operation = new OperationCellSuppression(risk, new ParametersRuntime());
+    }
+
+    /**
+     * Stops the workers.
+     */
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Tests that blocks are emitted in input order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInOrder() throws Exception {
+        List<Integer> emitted = emit(true, 50, -1);
+        List<Integer> expected = new ArrayList<>();
+        for (int block = 0; block < 50; block++) {
+            expected.add(block);
+        }
+        assertEquals(expected, emitted);
+    }
+
+    /**
+     * Tests that all blocks are emitted exactly once, if the order is not preserved.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testOutOfOrder() throws Exception {
+        List<Integer> emitted = emit(false, 50, -1);
+        Collections.sort(emitted);
+        assertEquals(50, emitted.size());
+        for (int block = 0; block < 50; block++) {
+            assertEquals(Integer.valueOf(block), emitted.get(block));
+        }
+    }
+
+    /**
+     * Tests that a failure of the sink is reported to the submitting thread.
+     *
+     * @throws Exception
+     */
+    @Test(expected = KettleException.class)
+    public void testFailure() throws Exception {
+        emit(true, 10, 3);
+    }
+
+    /**
+     * Tests that closing the emitter clears the buffers of all blocks which have not been emitted,
+     * including spilled segments, while a block is being emitted.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testClose() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        OperationBlockEmitter emitter = new OperationBlockEmitter(workers, true, new OperationBlockEmitter.Sink() {
+            @Override
+            public void emit(OperationCellSuppressionTask task) throws KettleException {
+                entered.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    throw new KettleException(e);
+                }
+            }
+        }, "emitter");
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int block = 0; block < 6; block++) {
+            DataBuffer buffer = new DataBuffer(HEADER, 2048L, directory);
+            for (int row = 0; row < 500; row++) {
+                buffer.add(new String[] { String.valueOf(row % 3), "81667" });
+            }
+            assertTrue(buffer.getNumSegments() > 0);
+            buffers.add(buffer);
+            emitter.submit(new OperationCellSuppressionTask(operation, buffer, null));
+        }
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        emitter.close();
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (directory.listFiles().length > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, directory.listFiles().length);
+        for (DataBuffer buffer : buffers) {
+            assertTrue(buffer.isEmpty());
+        }
+    }
+
+    /**
+     * Tests that a task which is cancelled before it is started clears its block and does not anonymize it.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCancel() throws Exception {
+        DataBuffer buffer = new DataBuffer(HEADER);
+        buffer.add(new String[] { "1", "81667" });
+        OperationCellSuppressionTask task = new OperationCellSuppressionTask(operation, buffer, null);
+        task.cancel();
+        assertTrue(buffer.isEmpty());
+        task.call();
+        assertNull(task.getOutput());
+    }
+
+    /**
+     * Submits the given number of blocks, waits until all blocks have been emitted, and returns the blocks
+     * in the order of emission. Blocks are identified by their number of rows minus one.
+     *
+     * @param ordered
+     * @param blocks
+     * @param failure The block for which the sink fails, -1 for none
+     * @return
+     * @throws Exception
+     */
+    private List<Integer> emit(boolean ordered, int blocks, final int failure) throws Exception {
+        final List<Integer> emitted = Collections.synchronizedList(new ArrayList<Integer>());
+        OperationBlockEmitter emitter = new OperationBlockEmitter(workers, ordered, new OperationBlockEmitter.Sink() {
+            @Override
+            public void emit(OperationCellSuppressionTask task) throws KettleException {
+                int block = task.getInput().getNumRows() - 1;
+                if (block == failure) {
+                    throw new KettleException("Failure");
+                }
+                assertTrue(task.getInput() == task.getOutput().getData());
+                emitted.add(block);
+            }
+        }, "emitter");
+        try {
+            for (int block = 0; block < blocks; block++) {
+                DataBuffer buffer = new DataBuffer(HEADER);
+                for (int row = 0; row <= block; row++) {
+                    buffer.add(new String[] { String.valueOf(row % 3), "81667" });
+                }
+                emitter.submit(new OperationCellSuppressionTask(operation, buffer, null));
+                emitter.await(4);
+                assertTrue(emitter.getNumPending() <= 4);
+            }
+            emitter.await(0);
+            assertEquals(0, emitter.getNumPending());
+        } finally {
+            emitter.close();
+        }
+        return new ArrayList<>(emitted);
+    }
+}
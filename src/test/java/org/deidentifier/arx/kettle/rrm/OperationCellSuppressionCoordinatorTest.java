@@ -0,0 +1,263 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Tests the coordination of several copies of the step, which run on threads of their own.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationCellSuppressionCoordinatorTest {
+
+    /** The number of copies */
+    private static final int COPIES = 3;
+
+    /** Runs the copies */
+    private ExecutorService  executor;
+
+    /**
+     * Starts the threads.
+     */
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(COPIES);
+    }
+
+    /**
+     * Stops the threads.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that the copies wait for each other and that the combined results satisfy the thresholds,
+     * with one copy without rows and blocks which are spilled to disk.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBarrier() throws Exception {
+        int round = 0;
+        for (ParametersRisk thresholds : new ParametersRisk[] { TestDataAdult.getThresholds(0.2d, 1d, 0d),
+                                                               TestDataAdult.getThresholds(0.2d, 0.1d, 0d) }) {
+            for (int blockSize : new int[] { 0, 300 }) {
+                String key = "barrier/" + round++;
+                ParametersRuntime runtime = getRuntime(60, blockSize);
+                List<String[]> rows = TestDataAdult.getRows(0.05d, 0L);
+                DataBuffer[] buffers = { getBuffer(rows.subList(0, 600)), getBuffer(rows.subList(600, rows.size())), null };
+                List<Future<DataSuppressionMask>> results = new ArrayList<>();
+                for (int copy = 0; copy < COPIES; copy++) {
+                    results.add(submit(key, copy, buffers[copy], thresholds, runtime, copy * 100L));
+                }
+
+                // Check the combined results
+                OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+                long suppressed = 0L;
+                for (int copy = 0; copy < COPIES; copy++) {
+                    DataSuppressionMask mask = results.get(copy).get();
+                    if (buffers[copy] == null) {
+                        assertNull(mask);
+                        continue;
+                    }
+                    assertTrue(mask.getData() == buffers[copy]);
+                    suppressed += mask.getNumSuppressedCells();
+                    for (int row = 0; row < buffers[copy].getNumRows(); row++) {
+                        String[] values = new String[TestDataAdult.HEADER.length];
+                        for (int column = 0; column < values.length; column++) {
+                            assertTrue(!mask.isSuppressed(row, column) || thresholds.isQi(TestDataAdult.HEADER[column]));
+                            values[column] = mask.isSuppressed(row, column) ? OperationDataTransformer.MAGIC_NULL_VALUE
+                                                                            : buffers[copy].getValue(row, column);
+                        }
+                        assessment.add(values);
+                    }
+                    buffers[copy].clear();
+                }
+                assertTrue(suppressed > 0);
+                assertTrue(assessment.calculate().satisfies(thresholds));
+                release(key, thresholds, runtime);
+            }
+        }
+    }
+
+    /**
+     * Tests that the other copies fail if a copy fails before handing over its rows.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFailure() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0d);
+        ParametersRuntime runtime = getRuntime(60, 0);
+        List<String[]> rows = TestDataAdult.getRows();
+        List<Future<DataSuppressionMask>> results = new ArrayList<>();
+        for (int copy = 0; copy < COPIES - 1; copy++) {
+            results.add(submit("failure", copy, getBuffer(rows.subList(copy * 500, (copy + 1) * 500)), thresholds, runtime, 0L));
+        }
+        Thread.sleep(200L);
+        OperationCellSuppressionCoordinator.get("failure", COPIES, thresholds, runtime).release(COPIES - 1);
+        for (Future<DataSuppressionMask> result : results) {
+            assertFailed(result);
+        }
+        release("failure", thresholds, runtime);
+    }
+
+    /**
+     * Tests that copies wait for a slow copy as long as it makes progress, and fail if it stalls.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTimeout() throws Exception {
+
+        // Slow copy
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 1d, 0d);
+        ParametersRuntime runtime = getRuntime(1, 0);
+        List<String[]> rows = TestDataAdult.getRows();
+        List<Future<DataSuppressionMask>> results = new ArrayList<>();
+        for (int copy = 0; copy < COPIES - 1; copy++) {
+            results.add(submit("timeout/slow", copy, getBuffer(rows.subList(copy * 500, (copy + 1) * 500)), thresholds, runtime, 0L));
+        }
+        OperationCellSuppressionCoordinator coordinator = OperationCellSuppressionCoordinator.get("timeout/slow", COPIES, thresholds, runtime);
+        for (int i = 0; i < 25; i++) {
+            Thread.sleep(100L);
+            coordinator.progress();
+        }
+        assertNull(coordinator.perform(COPIES - 1, null, new OperationCellSuppression(thresholds, runtime), null));
+        for (Future<DataSuppressionMask> result : results) {
+            assertEquals(500, result.get().getData().getNumRows());
+        }
+        release("timeout/slow", thresholds, runtime);
+
+        // Stalled copy
+        results.clear();
+        for (int copy = 0; copy < COPIES - 1; copy++) {
+            results.add(submit("timeout/stalled", copy, getBuffer(rows.subList(copy * 500, (copy + 1) * 500)), thresholds, runtime, 0L));
+        }
+        for (Future<DataSuppressionMask> result : results) {
+            assertFailed(result);
+        }
+        release("timeout/stalled", thresholds, runtime);
+    }
+
+    /**
+     * Asserts that the copy has failed with a KettleException.
+     *
+     * @param result
+     * @throws InterruptedException
+     */
+    private void assertFailed(Future<DataSuppressionMask> result) throws InterruptedException {
+        try {
+            result.get();
+            assertTrue(false);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof KettleException);
+        }
+    }
+
+    /**
+     * Returns a buffer with the given rows, which spills to disk.
+     *
+     * @param rows
+     * @return
+     * @throws IOException
+     */
+    private DataBuffer getBuffer(List<String[]> rows) throws IOException {
+        DataBuffer buffer = new DataBuffer(TestDataAdult.HEADER, 16L * 1024L, null);
+        for (String[] row : rows) {
+            buffer.add(row);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns runtime parameters.
+     *
+     * @param timeout
+     * @param blockSize
+     * @return
+     */
+    private ParametersRuntime getRuntime(int timeout, int blockSize) {
+        ParametersRuntime runtime = new ParametersRuntime();
+        runtime.setCoordinationTimeout(timeout);
+        runtime.setBlockSize(blockSize);
+        return runtime;
+    }
+
+    /**
+     * Releases the coordinator for all copies and checks that it has been removed from the registry.
+     *
+     * @param key
+     * @param thresholds
+     * @param runtime
+     */
+    private void release(String key, ParametersRisk thresholds, ParametersRuntime runtime) {
+        OperationCellSuppressionCoordinator coordinator = OperationCellSuppressionCoordinator.get(key, COPIES, thresholds, runtime);
+        for (int copy = 0; copy < COPIES; copy++) {
+            coordinator.release(copy);
+        }
+        OperationCellSuppressionCoordinator other = OperationCellSuppressionCoordinator.get(key, COPIES, thresholds, runtime);
+        assertTrue(other != coordinator);
+        for (int copy = 0; copy < COPIES; copy++) {
+            other.release(copy);
+        }
+    }
+
+    /**
+     * Hands over the rows of a copy on a thread of its own, after the given delay.
+     *
+     * @param key
+     * @param copy
+     * @param data
+     * @param thresholds
+     * @param runtime
+     * @param delay in milliseconds
+     * @return
+     */
+    private Future<DataSuppressionMask> submit(final String key, final int copy, final DataBuffer data, final ParametersRisk thresholds,
+                                               final ParametersRuntime runtime, final long delay) {
+        return executor.submit(new Callable<DataSuppressionMask>() {
+            @Override
+            public DataSuppressionMask call() throws Exception {
+                Thread.sleep(delay);
+                OperationCellSuppressionCoordinator coordinator = OperationCellSuppressionCoordinator.get(key, COPIES, thresholds, runtime);
+                return coordinator.perform(copy, data, new OperationCellSuppression(thresholds, runtime), null);
+            }
+        });
+    }
+}
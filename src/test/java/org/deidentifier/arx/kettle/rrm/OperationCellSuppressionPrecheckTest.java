@@ -0,0 +1,134 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * Tests the check whether a block needs to be anonymized.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationCellSuppressionPrecheckTest {
+
+    /** The null value */
+    private static final String   NULL   = OperationDataTransformer.MAGIC_NULL_VALUE;
+
+    /** The buffered columns, the last one is not a quasi-identifier */
+    private static final String[] HEADER = { "sex", "zip", "name" };
+
+    /** Rows whose classes have the sizes 6, 6, 6, 7, 7, 2, 4 and 6 if null values match all values */
+    private static final String[][] ROWS = {
+        { "M", "4711", "a" },
+        { "M", "4711", "b" },
+        { "M", "4711", "c" },
+        { NULL, "4711", "d" },
+        { NULL, "4711", "e" },
+        { "F", "4712", "f" },
+        { "F", NULL, "g" },
+        { "M", NULL, "h" }
+    };
+
+    /**
+     * Tests that null values are treated as wildcards, so that the smallest class has two rows.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSizeThreshold() throws Exception {
+        assertTrue(new OperationCellSuppressionPrecheck(getThresholds(0.5d, 1d), getData()).isSatisfied());
+        assertFalse(new OperationCellSuppressionPrecheck(getThresholds(0.34d, 1d), getData()).isSatisfied());
+    }
+
+    /**
+     * Tests the average risk, which is (3/6 + 2/7 + 1/2 + 1/4 + 1/6) / 8 = 0.2128.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAverageRisk() throws Exception {
+        assertTrue(new OperationCellSuppressionPrecheck(getThresholds(0.5d, 0.22d), getData()).isSatisfied());
+        assertFalse(new OperationCellSuppressionPrecheck(getThresholds(0.5d, 0.21d), getData()).isSatisfied());
+    }
+
+    /**
+     * Tests that the rows in classes smaller than the size threshold are reported.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRowsAtRisk() throws Exception {
+        assertNull(new OperationCellSuppressionPrecheck(getThresholds(0.5d, 1d), getData()).getRowsAtRisk());
+        assertArrayEquals(new int[] { 5 }, new OperationCellSuppressionPrecheck(getThresholds(0.34d, 1d), getData()).getRowsAtRisk());
+        assertArrayEquals(new int[] { 5, 6 }, new OperationCellSuppressionPrecheck(getThresholds(0.2d, 1d), getData()).getRowsAtRisk());
+    }
+
+    /**
+     * Tests that attributes which are not quasi-identifiers are ignored.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNonQuasiIdentifiers() throws Exception {
+        DataBuffer data = new DataBuffer(HEADER);
+        for (int row = 0; row < 4; row++) {
+            data.add(new String[] { "M", "4711", "n" + row });
+        }
+        assertTrue(new OperationCellSuppressionPrecheck(getThresholds(0.25d, 1d), data).isSatisfied());
+        data.add(new String[] { "F", "4711", "n" });
+        assertFalse(new OperationCellSuppressionPrecheck(getThresholds(0.25d, 1d), data).isSatisfied());
+    }
+
+    /**
+     * Returns the example block.
+     *
+     * @return
+     * @throws Exception
+     */
+    private DataBuffer getData() throws Exception {
+        DataBuffer data = new DataBuffer(HEADER);
+        for (String[] row : ROWS) {
+            data.add(row);
+        }
+        return data;
+    }
+
+    /**
+     * Returns thresholds for sex and zip.
+     *
+     * @param highestRisk
+     * @param averageRisk
+     * @return
+     */
+    private ParametersRisk getThresholds(double highestRisk, double averageRisk) {
+        ParametersRisk thresholds = new ParametersRisk(new HashSet<>(Arrays.asList("sex", "zip")));
+        thresholds.setHighestRisk(highestRisk);
+        thresholds.setAverageRisk(averageRisk);
+        thresholds.setRecordsAtRisk(0d);
+        return thresholds;
+    }
+}
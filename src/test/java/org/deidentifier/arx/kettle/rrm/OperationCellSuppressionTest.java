@@ -0,0 +1,195 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.criteria.PrivacyCriterion;
+import org.junit.Test;
+
+/**
+ * Tests cell suppression with ARX.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationCellSuppressionTest {
+
+    /** The number of blocks */
+    private static final int BLOCKS = 4;
+
+    /**
+     * Tests that the results satisfy the thresholds.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testThresholds() throws Exception {
+        for (ParametersRisk thresholds : new ParametersRisk[] { TestDataAdult.getThresholds(0.2d, 0.1d, 0d),
+                                                               TestDataAdult.getThresholds(0.5d, 0.05d, 0.05d) }) {
+            DataBuffer data = TestDataAdult.getBuffer(TestDataAdult.getRows(0.05d, 0L));
+            DataSuppressionMask mask = new OperationCellSuppression(thresholds, new ParametersRuntime()).perform(data);
+            assertTrue(mask.getNumSuppressedCells() > 0);
+            assertSatisfied(thresholds, mask);
+        }
+    }
+
+    /**
+     * Tests that only the rows in classes smaller than the size threshold are anonymized, if the block
+     * then satisfies the thresholds.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRowsAtRisk() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.19d, 0d);
+        DataBuffer data = TestDataAdult.getBuffer(TestDataAdult.getRows(0.05d, 0L));
+        int[] rowsAtRisk = new OperationCellSuppressionPrecheck(thresholds, data).getRowsAtRisk();
+        assertTrue(rowsAtRisk.length > 0 && rowsAtRisk.length < data.getNumRows());
+        DataSuppressionMask mask = new OperationCellSuppression(thresholds, new ParametersRuntime()).perform(data);
+        assertTrue(mask.getNumSuppressedCells() > 0);
+        assertSatisfied(thresholds, mask);
+        for (int row = 0; row < data.getNumRows(); row++) {
+            for (int column = 0; column < data.getNumColumns(); column++) {
+                assertTrue(!mask.isSuppressed(row, column) || Arrays.binarySearch(rowsAtRisk, row) >= 0);
+            }
+        }
+    }
+
+    /**
+     * Tests that the configurations of blocks are clones of the prepared configuration, which do not
+     * share privacy models or quality models.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConfiguration() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0d);
+        OperationCellSuppression operation = new OperationCellSuppression(thresholds, new ParametersRuntime());
+        ARXConfiguration expected = OperationCellSuppression.createConfiguration(thresholds, new ParametersRuntime());
+        ARXConfiguration config1 = operation.getConfiguration();
+        ARXConfiguration config2 = operation.getConfiguration();
+        assertEquals(expected.getSuppressionLimit(), config1.getSuppressionLimit(), 0d);
+        assertEquals(getNames(expected), getNames(config1));
+        assertEquals(2, config1.getPrivacyModels().size());
+        assertTrue(config1.getQualityModel() != config2.getQualityModel());
+        for (PrivacyCriterion model : config1.getPrivacyModels()) {
+            assertFalse(config2.getPrivacyModels().contains(model));
+        }
+    }
+
+    /**
+     * Tests that blocks which are anonymized concurrently with the same operation yield the same results as
+     * blocks which are anonymized one after another with operations of their own.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentBlocks() throws Exception {
+
+        // Prepare
+        final ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0d);
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 0L);
+        final DataBuffer[] blocks = new DataBuffer[BLOCKS];
+        DataSuppressionMask[] expected = new DataSuppressionMask[BLOCKS];
+        for (int block = 0; block < BLOCKS; block++) {
+            blocks[block] = TestDataAdult.getBuffer(rows.subList(block * rows.size() / BLOCKS, (block + 1) * rows.size() / BLOCKS));
+            expected[block] = new OperationCellSuppression(thresholds, new ParametersRuntime()).perform(blocks[block]);
+        }
+
+        // Anonymize concurrently
+        final OperationCellSuppression operation = new OperationCellSuppression(thresholds, new ParametersRuntime());
+        final CyclicBarrier barrier = new CyclicBarrier(BLOCKS);
+        ExecutorService executor = Executors.newFixedThreadPool(BLOCKS);
+        try {
+            for (int round = 0; round < 3; round++) {
+                List<Future<DataSuppressionMask>> results = new ArrayList<>();
+                for (int block = 0; block < BLOCKS; block++) {
+                    final DataBuffer data = blocks[block];
+                    results.add(executor.submit(new Callable<DataSuppressionMask>() {
+                        @Override
+                        public DataSuppressionMask call() throws Exception {
+                            barrier.await();
+                            return operation.perform(data);
+                        }
+                    }));
+                }
+                for (int block = 0; block < BLOCKS; block++) {
+                    DataSuppressionMask actual = results.get(block).get();
+                    assertSatisfied(thresholds, actual);
+                    assertEquals(expected[block].getNumSuppressedCells(), actual.getNumSuppressedCells());
+                    for (int row = 0; row < blocks[block].getNumRows(); row++) {
+                        for (int column = 0; column < TestDataAdult.HEADER.length; column++) {
+                            assertEquals(expected[block].isSuppressed(row, column), actual.isSuppressed(row, column));
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the names of the privacy models of the given configuration.
+     *
+     * @param config
+     * @return
+     */
+    private Set<String> getNames(ARXConfiguration config) {
+        Set<String> names = new HashSet<>();
+        for (PrivacyCriterion model : config.getPrivacyModels()) {
+            names.add(model.toString());
+        }
+        return names;
+    }
+
+    /**
+     * Asserts that the result satisfies the thresholds and that only quasi-identifiers are suppressed.
+     *
+     * @param thresholds
+     * @param mask
+     */
+    private void assertSatisfied(ParametersRisk thresholds, DataSuppressionMask mask) {
+        DataBuffer data = mask.getData();
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, data.getHeader());
+        for (int row = 0; row < data.getNumRows(); row++) {
+            String[] values = new String[data.getNumColumns()];
+            for (int column = 0; column < values.length; column++) {
+                assertTrue(!mask.isSuppressed(row, column) || thresholds.isQi(data.getHeader()[column]));
+                values[column] = mask.isSuppressed(row, column) ? OperationDataTransformer.MAGIC_NULL_VALUE : data.getValue(row, column);
+            }
+            assessment.add(values);
+        }
+        assertTrue(assessment.calculate().satisfies(thresholds));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.AttributeType.Hierarchy.DefaultHierarchy;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.junit.Test;
+
+/**
+ * Tests cell suppression for a size threshold only.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationCellSuppressionTwoPassTest {
+
+    /** The buffered columns */
+    private static final String[] HEADER = { "age", "zip", "name" };
+
+    /** The null value */
+    private static final String   NULL   = OperationDataTransformer.MAGIC_NULL_VALUE;
+
+    /**
+     * Tests that rows in small classes are suppressed, and that only their quasi-identifiers are affected.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExample() throws Exception {
+        DataBuffer data = new DataBuffer(HEADER);
+        for (int i = 0; i < 5; i++) {
+            data.add(new String[] { "30", "81667", "a" + i });
+        }
+        data.add(new String[] { "40", "81667", "b" });
+        data.add(new String[] { "40", "81675", "c" });
+        DataSuppressionMask output = new OperationCellSuppressionTwoPass(getThresholds(5)).perform(data, null);
+        assertEquals(4, output.getNumSuppressedCells());
+        for (int row = 0; row < 7; row++) {
+            assertEquals(row >= 5, output.isSuppressed(row, 0));
+            assertEquals(row >= 5, output.isSuppressed(row, 1));
+            assertFalse(output.isSuppressed(row, 2));
+        }
+    }
+
+    /**
+     * Tests that null values are treated like any other value, i.e. that rows with null values are
+     * suppressed if their class is too small, even if they match enough rows as wildcards.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNulls() throws Exception {
+        DataBuffer data = new DataBuffer(HEADER);
+        for (int i = 0; i < 3; i++) {
+            data.add(new String[] { "30", "81667", "a" + i });
+        }
+        data.add(new String[] { "30", NULL, "b" });
+        data.add(new String[] { "30", NULL, "c" });
+        data.add(new String[] { NULL, NULL, "d" });
+        data.add(new String[] { NULL, NULL, "e" });
+
+        // The class of rows without null values is the only class which is large enough, cells which
+        // are null already are not marked as suppressed
+        DataSuppressionMask output = new OperationCellSuppressionTwoPass(getThresholds(3)).perform(data, null);
+        for (int row = 0; row < data.getNumRows(); row++) {
+            assertEquals(row >= 3 && row < 5, output.isSuppressed(row, 0));
+            assertFalse(output.isSuppressed(row, 1));
+            assertFalse(output.isSuppressed(row, 2));
+        }
+        assertEquals(2, output.getNumSuppressedCells());
+    }
+
+    /**
+     * Tests that the same rows are suppressed as by ARX without generalization for random data
+     * with null values.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testARX() throws Exception {
+        Random random = new Random(0xC0FFEEL);
+        for (int k : new int[] { 2, 5 }) {
+            DataBuffer data = new DataBuffer(HEADER);
+            for (int row = 0; row < 500; row++) {
+                String age = random.nextDouble() < 0.2d ? NULL : String.valueOf(random.nextInt(10));
+                String zip = random.nextDouble() < 0.2d ? NULL : String.valueOf(random.nextInt(5));
+                data.add(new String[] { age, zip, "n" + row });
+            }
+            ParametersRisk thresholds = getThresholds(k);
+            DataSuppressionMask output = new OperationCellSuppressionTwoPass(thresholds).perform(data, null);
+
+            // Anonymize with ARX
+            Data arxData = Data.create(data.iterator());
+            String[][] values = data.getDistinctValues();
+            for (int column = 0; column < HEADER.length; column++) {
+                if (thresholds.isQi(HEADER[column])) {
+                    DefaultHierarchy hierarchy = Hierarchy.create();
+                    for (String value : values[column]) {
+                        hierarchy.add(value, NULL);
+                    }
+                    arxData.getDefinition().setAttributeType(HEADER[column], hierarchy);
+                } else {
+                    arxData.getDefinition().setAttributeType(HEADER[column], AttributeType.INSENSITIVE_ATTRIBUTE);
+                }
+            }
+            ARXConfiguration config = ARXConfiguration.create();
+            config.setSuppressionLimit(1d);
+            config.addPrivacyModel(new KAnonymity(k));
+            ARXResult result = new ARXAnonymizer().anonymize(arxData, config);
+            DataHandle handle = result.getOutput(result.getLattice().getBottom(), false);
+
+            // Compare, cells which are null are not marked as suppressed
+            for (int row = 0; row < data.getNumRows(); row++) {
+                for (int column = 0; column < 2; column++) {
+                    boolean suppressed = handle.isOutlier(row) && !NULL.equals(data.getValue(row, column));
+                    assertEquals(suppressed, output.isSuppressed(row, column));
+                }
+            }
+            arxData.getHandle().release();
+        }
+    }
+
+    /**
+     * Tests that the result satisfies the threshold for random data.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRandom() throws Exception {
+        Random random = new Random(0xDEADBEEFL);
+        for (int k : new int[] { 2, 5, 10 }) {
+            DataBuffer data = new DataBuffer(HEADER);
+            for (int row = 0; row < 2000; row++) {
+                String age = random.nextDouble() < 0.05d ? NULL : String.valueOf(random.nextInt(30));
+                String zip = random.nextDouble() < 0.05d ? NULL : String.valueOf(random.nextInt(10));
+                data.add(new String[] { age, zip, "n" + row });
+            }
+            ParametersRisk thresholds = getThresholds(k);
+            DataSuppressionMask output = new OperationCellSuppressionTwoPass(thresholds).perform(data, null);
+            OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, HEADER);
+            for (int row = 0; row < data.getNumRows(); row++) {
+                String[] values = new String[HEADER.length];
+                for (int column = 0; column < values.length; column++) {
+                    values[column] = output.isSuppressed(row, column) ? NULL : data.getValue(row, column);
+                }
+                assessment.add(values);
+            }
+            assertTrue(assessment.calculate().satisfies(thresholds));
+        }
+    }
+
+    /**
+     * Tests that other thresholds are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupported() {
+        new OperationCellSuppressionTwoPass(new ParametersRisk(new HashSet<>(Arrays.asList("age", "zip"))));
+    }
+
+    /**
+     * Returns thresholds for the given size threshold only.
+     *
+     * @param k
+     * @return
+     */
+    private ParametersRisk getThresholds(int k) {
+        ParametersRisk thresholds = new ParametersRisk(new HashSet<>(Arrays.asList("age", "zip")));
+        thresholds.setHighestRisk(1d / k);
+        thresholds.setAverageRisk(1d);
+        thresholds.setRecordsAtRisk(0d);
+        return thresholds;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the aggregation of classes across the nodes of a cluster. Slave servers are simulated by threads,
+ * which connect to the aggregation via the loopback interface.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationClusterAggregationTest {
+
+    /** The number of nodes */
+    private static final int NODES = 3;
+
+    /** Runs the nodes */
+    private ExecutorService  executor;
+
+    /**
+     * Starts the threads.
+     */
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(NODES);
+    }
+
+    /**
+     * Stops the threads.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that the nodes suppress the same cells as a single two-pass suppression of all rows,
+     * with one node without rows, and that they receive the risks of all rows.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAnonymization() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 1d, 0d);
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 0L);
+        DataBuffer[] buffers = { getBuffer(rows.subList(0, 400)), getBuffer(rows.subList(400, rows.size())), null };
+
+        // Run the nodes
+        OperationClusterAggregation aggregation = new OperationClusterAggregation(thresholds, NODES, 60);
+        aggregation.start(0);
+        List<Future<OperationClusterNode>> nodes = new ArrayList<>();
+        for (int node = 0; node < NODES; node++) {
+            nodes.add(submit(aggregation.getPort(), buffers[node], thresholds, 60, node * 100L));
+        }
+
+        // Compare with the suppression of all rows
+        DataSuppressionMask[] expected = new OperationCellSuppressionTwoPass(thresholds).perform(buffers, null);
+        ParametersRisk risk = getRisk(thresholds, rows);
+        long suppressed = 0L;
+        for (int node = 0; node < NODES; node++) {
+            OperationClusterNode result = nodes.get(node).get();
+            assertEquals(risk.getAverageRisk(), result.getRisk().getAverageRisk(), 1e-12d);
+            assertEquals(risk.getRecordsAtRisk(), result.getRisk().getRecordsAtRisk(), 1e-12d);
+            if (buffers[node] == null) {
+                continue;
+            }
+            DataSuppressionMask mask = result.apply(buffers[node]);
+            assertEquals(expected[node].getCells(), mask.getCells());
+            suppressed += mask.getNumSuppressedCells();
+            buffers[node].clear();
+        }
+        assertTrue(suppressed > 0);
+        assertTrue(aggregation.getSuppressions().size() > 0);
+        aggregation.close();
+    }
+
+    /**
+     * Tests that the nodes receive the risks of all rows, but no suppressions, if the thresholds do not
+     * only consist of a size threshold.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAssessment() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0.05d);
+        List<String[]> rows = TestDataAdult.getRows(0.3d, 1L);
+        OperationClusterAggregation aggregation = new OperationClusterAggregation(thresholds, NODES, 60);
+        aggregation.start(0);
+        List<Future<OperationClusterNode>> nodes = new ArrayList<>();
+        for (int node = 0; node < NODES; node++) {
+            nodes.add(submit(aggregation.getPort(), getBuffer(rows.subList(node * 300, node == NODES - 1 ? rows.size() : (node + 1) * 300)), thresholds, 60, 0L));
+        }
+        ParametersRisk risk = getRisk(thresholds, rows);
+        for (Future<OperationClusterNode> node : nodes) {
+            assertEquals(risk.getAverageRisk(), node.get().getRisk().getAverageRisk(), 1e-12d);
+            assertEquals(risk.getRecordsAtRisk(), node.get().getRisk().getRecordsAtRisk(), 1e-12d);
+            assertEquals(0, node.get().getSuppressions().size());
+        }
+        aggregation.close();
+    }
+
+    /**
+     * Tests that merging deserialized summaries yields the same classes as summarizing all rows at once,
+     * and that dictionaries survive serialization.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSerialization() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 1d, 0d);
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 2L);
+        DataClassSummary expected = new DataClassSummary(TestDataAdult.QIS);
+        DataClassSummary[] parts = { new DataClassSummary(TestDataAdult.QIS), new DataClassSummary(TestDataAdult.QIS) };
+        for (int row = 0; row < rows.size(); row++) {
+            String[] values = getQis(rows.get(row));
+            expected.add(values);
+            parts[row % 2].add(values);
+        }
+        DataClassSummary actual = DataClassSummary.fromBytes(parts[0].toBytes());
+        actual.merge(DataClassSummary.fromBytes(parts[1].toBytes()));
+        assertEquals(expected.getNumRows(), actual.getNumRows());
+        assertEquals(expected.getNumClasses(), actual.getNumClasses());
+        assertEquals(expected.calculate(thresholds).getAverageRisk(), actual.calculate(thresholds).getAverageRisk(), 1e-12d);
+        assertEquals(expected.calculate(thresholds).getRecordsAtRisk(), actual.calculate(thresholds).getRecordsAtRisk(), 1e-12d);
+
+        // Dictionaries
+        DataSuppressionDictionary suppressions = expected.getSuppressions(thresholds);
+        DataSuppressionDictionary copy = DataSuppressionDictionary.fromBytes(suppressions.toBytes());
+        assertTrue(suppressions.size() > 0);
+        assertEquals(suppressions.size(), copy.size());
+        for (String[] row : rows) {
+            assertEquals(suppressions.contains(getQis(row)), copy.contains(getQis(row)));
+        }
+    }
+
+    /**
+     * Tests that nodes fail if another node does not report in time, or if the aggregation cannot be reached.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTimeout() throws Exception {
+
+        // Missing node
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 1d, 0d);
+        List<String[]> rows = TestDataAdult.getRows();
+        OperationClusterAggregation aggregation = new OperationClusterAggregation(thresholds, NODES, 1);
+        aggregation.start(0);
+        int port = aggregation.getPort();
+        List<Future<OperationClusterNode>> nodes = new ArrayList<>();
+        for (int node = 0; node < NODES - 1; node++) {
+            nodes.add(submit(port, getBuffer(rows.subList(node * 500, (node + 1) * 500)), thresholds, 1, 0L));
+        }
+        for (Future<OperationClusterNode> node : nodes) {
+            assertFailed(node);
+        }
+        aggregation.close();
+
+        // Aggregation not reachable
+        assertFailed(submit(port, getBuffer(rows.subList(0, 500)), thresholds, 1, 0L));
+    }
+
+    /**
+     * Asserts that the node has failed with an IOException.
+     *
+     * @param result
+     * @throws InterruptedException
+     */
+    private void assertFailed(Future<OperationClusterNode> result) throws InterruptedException {
+        try {
+            result.get();
+            assertTrue(false);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    /**
+     * Returns a buffer with the given rows, which spills to disk.
+     *
+     * @param rows
+     * @return
+     * @throws IOException
+     */
+    private DataBuffer getBuffer(List<String[]> rows) throws IOException {
+        DataBuffer buffer = new DataBuffer(TestDataAdult.HEADER, 16L * 1024L, null);
+        for (String[] row : rows) {
+            buffer.add(row);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the values of the quasi-identifiers of the given row.
+     *
+     * @param row
+     * @return
+     */
+    private String[] getQis(String[] row) {
+        String[] result = new String[TestDataAdult.QIS.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = row[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the risks of the given rows, assessed at once.
+     *
+     * @param thresholds
+     * @param rows
+     * @return
+     */
+    private ParametersRisk getRisk(ParametersRisk thresholds, List<String[]> rows) {
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+        for (String[] row : rows) {
+            assessment.add(row);
+        }
+        return assessment.calculate();
+    }
+
+    /**
+     * Runs a node on a thread of its own, which summarizes the given rows and exchanges the summary
+     * for the results of all nodes, after the given delay.
+     *
+     * @param port
+     * @param data The rows of the node, may be null
+     * @param thresholds
+     * @param timeout in seconds
+     * @param delay in milliseconds
+     * @return
+     */
+    private Future<OperationClusterNode> submit(final int port, final DataBuffer data, final ParametersRisk thresholds,
+                                                final int timeout, final long delay) {
+        return executor.submit(new Callable<OperationClusterNode>() {
+            @Override
+            public OperationClusterNode call() throws Exception {
+                Thread.sleep(delay);
+                OperationClusterNode node = new OperationClusterNode(thresholds, data != null ? data.getHeader() : new String[0]);
+                for (int row = 0; data != null && row < data.getNumRows(); row++) {
+                    String[] values = new String[data.getNumColumns()];
+                    for (int column = 0; column < values.length; column++) {
+                        values[column] = data.getValue(row, column);
+                    }
+                    node.add(values);
+                }
+                node.exchange("localhost", port, timeout);
+                return node;
+            }
+        });
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.WrappedBoolean;
+import org.deidentifier.arx.common.WrappedInteger;
+import org.deidentifier.arx.risk.RiskModelSampleWildcard;
+import org.deidentifier.arx.kettle.rrm.OperationRiskAssessmentIncremental.EquivalenceClass;
+import org.junit.Test;
+
+/**
+ * Tests that incremental risk assessment yields the same results as ARX's sample-based wildcard risk model.
+ * The model is created directly, as the risk estimator of the minimal ARX library requires further dependencies.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentIncrementalTest {
+
+    /** The thresholds */
+    private static final ParametersRisk[] THRESHOLDS = { TestDataAdult.getThresholds(0.2d, 0.1d, 0.05d),
+                                                         TestDataAdult.getThresholds(0.05d, 0.01d, 0.01d),
+                                                         TestDataAdult.getThresholds(0.5d, 1d, 0d) };
+
+    /**
+     * Tests risks of all rows, with and without null values.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRisks() throws Exception {
+        for (double nulls : new double[] { 0d, 0.05d, 0.3d }) {
+            List<String[]> rows = TestDataAdult.getRows(nulls, 2L);
+            for (ParametersRisk thresholds : THRESHOLDS) {
+                OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+                for (String[] row : rows) {
+                    assessment.add(row);
+                }
+                assertEquals(getExpected(thresholds, rows), assessment.calculate());
+            }
+        }
+    }
+
+    /**
+     * Tests risks of the rows which remain after rows have been removed, as done for sliding windows.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRemove() throws Exception {
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 3L);
+        for (ParametersRisk thresholds : THRESHOLDS) {
+            OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+            List<EquivalenceClass> classes = new ArrayList<>();
+            for (String[] row : rows) {
+                classes.add(assessment.register(row));
+            }
+            List<String[]> remaining = new ArrayList<>();
+            for (int row = 0; row < rows.size(); row++) {
+                if (row % 3 == 0 || row < rows.size() / 2) {
+                    assessment.remove(classes.get(row));
+                } else {
+                    remaining.add(rows.get(row));
+                }
+            }
+            assertEquals(getExpected(thresholds, remaining), assessment.calculate());
+        }
+    }
+
+    /**
+     * Tests that the buffer-based assessment yields the same results.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBuffer() throws Exception {
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 4L);
+        for (ParametersRisk thresholds : THRESHOLDS) {
+            assertEquals(getExpected(thresholds, rows), new OperationRiskAssessment(thresholds).calculate(TestDataAdult.getBuffer(rows)));
+        }
+    }
+
+    /**
+     * Asserts that both risks are equal.
+     *
+     * @param expected
+     * @param actual
+     */
+    private void assertEquals(ParametersRisk expected, ParametersRisk actual) {
+        org.junit.Assert.assertEquals(expected.getAverageRisk(), actual.getAverageRisk(), 1e-9d);
+        org.junit.Assert.assertEquals(expected.getRecordsAtRisk(), actual.getRecordsAtRisk(), 1e-9d);
+    }
+
+    /**
+     * Calculates the risks with ARX's sample-based wildcard risk model.
+     *
+     * @param thresholds
+     * @param rows
+     * @return
+     */
+    private ParametersRisk getExpected(ParametersRisk thresholds, List<String[]> rows) {
+        List<String[]> data = new ArrayList<>();
+        data.add(TestDataAdult.HEADER);
+        for (String[] row : rows) {
+            data.add(Arrays.copyOf(row, row.length));
+        }
+        Data arxData = Data.create(data);
+        for (String qi : thresholds.getQis()) {
+            arxData.getDefinition().setAttributeType(qi, AttributeType.QUASI_IDENTIFYING_ATTRIBUTE);
+        }
+        DataHandleInternal handle = new DataHandleInternal(arxData.getHandle()) {};
+        RiskModelSampleWildcard model = new RiskModelSampleWildcard(handle, thresholds.getQis(), thresholds.getHighestRisk(),
+                                                                    OperationDataTransformer.MAGIC_NULL_VALUE,
+                                                                    new WrappedBoolean(), new WrappedInteger());
+        ParametersRisk result = new ParametersRisk(thresholds.getQis());
+        result.setHighestRisk(thresholds.getHighestRisk());
+        result.setAverageRisk(model.getAverageRisk());
+        result.setRecordsAtRisk(model.getRecordsAtRisk());
+        return result;
+    }
+}
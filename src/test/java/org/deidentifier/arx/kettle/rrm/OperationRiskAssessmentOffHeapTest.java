@@ -0,0 +1,173 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that risk assessment with off-heap class tables yields the same results as incremental
+ * risk assessment, with and without spilling classes to disk.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentOffHeapTest {
+
+    /** The thresholds */
+    private static final ParametersRisk[] THRESHOLDS = { TestDataAdult.getThresholds(0.2d, 0.1d, 0.05d),
+                                                         TestDataAdult.getThresholds(0.05d, 0.01d, 0.01d),
+                                                         TestDataAdult.getThresholds(0.5d, 1d, 0d) };
+
+    /** Memory limit which forces classes to be spilled */
+    private static final long             LIMIT      = 4096L;
+
+    /** Directory for spilled classes */
+    private File                          directory;
+
+    /**
+     * Creates the directory for spilled classes.
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("arx-classes-test").toFile();
+    }
+
+    /**
+     * Deletes the directory for spilled classes.
+     */
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Tests risks of classes held in memory.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInMemory() throws Exception {
+        for (double nulls : new double[] { 0d, 0.05d, 0.3d }) {
+            List<String[]> rows = TestDataAdult.getRows(nulls, 4L);
+            for (ParametersRisk thresholds : THRESHOLDS) {
+                OperationRiskAssessmentOffHeap assessment = new OperationRiskAssessmentOffHeap(thresholds, TestDataAdult.HEADER, 0L, directory);
+                assertEquals(getExpected(thresholds, rows), getRisk(assessment, rows));
+                org.junit.Assert.assertEquals(0, assessment.getNumSpills());
+            }
+        }
+    }
+
+    /**
+     * Tests risks of classes which have been spilled to disk, and that spilled classes are deleted afterwards.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSpill() throws Exception {
+        for (double nulls : new double[] { 0d, 0.05d, 0.3d }) {
+            List<String[]> rows = TestDataAdult.getRows(nulls, 5L);
+            for (ParametersRisk thresholds : THRESHOLDS) {
+                OperationRiskAssessmentOffHeap assessment = new OperationRiskAssessmentOffHeap(thresholds, TestDataAdult.HEADER, LIMIT, directory);
+                for (String[] row : rows) {
+                    assessment.add(row);
+                }
+                assertTrue(assessment.getNumSpills() > 0);
+                org.junit.Assert.assertEquals(rows.size(), assessment.getNumRows());
+                assertEquals(getExpected(thresholds, rows), assessment.calculate());
+                org.junit.Assert.assertEquals(0L, assessment.getNumRows());
+                org.junit.Assert.assertEquals(0, assessment.getNumSpills());
+                org.junit.Assert.assertEquals(0, directory.listFiles().length);
+            }
+        }
+    }
+
+    /**
+     * Tests that the assessment can be reused after calculating risks, as done for consecutive blocks.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReuse() throws Exception {
+        ParametersRisk thresholds = THRESHOLDS[0];
+        OperationRiskAssessmentOffHeap assessment = new OperationRiskAssessmentOffHeap(thresholds, TestDataAdult.HEADER, LIMIT, directory);
+        for (long seed = 6L; seed < 9L; seed++) {
+            List<String[]> rows = TestDataAdult.getRows(0.05d, seed);
+            assertEquals(getExpected(thresholds, rows), getRisk(assessment, rows));
+        }
+        for (String[] row : TestDataAdult.getRows(0.05d, 9L)) {
+            assessment.add(row);
+        }
+        assessment.clear();
+        org.junit.Assert.assertEquals(0L, assessment.getNumRows());
+        org.junit.Assert.assertEquals(0, directory.listFiles().length);
+    }
+
+    /**
+     * Asserts that both risks are equal.
+     *
+     * @param expected
+     * @param actual
+     */
+    private void assertEquals(ParametersRisk expected, ParametersRisk actual) {
+        org.junit.Assert.assertEquals(expected.getAverageRisk(), actual.getAverageRisk(), 1e-9d);
+        org.junit.Assert.assertEquals(expected.getRecordsAtRisk(), actual.getRecordsAtRisk(), 1e-9d);
+    }
+
+    /**
+     * Returns the risks calculated by incremental risk assessment.
+     *
+     * @param thresholds
+     * @param rows
+     * @return
+     */
+    private ParametersRisk getExpected(ParametersRisk thresholds, List<String[]> rows) {
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+        for (String[] row : rows) {
+            assessment.add(row);
+        }
+        return assessment.calculate();
+    }
+
+    /**
+     * Adds the rows and calculates their risks.
+     *
+     * @param assessment
+     * @param rows
+     * @return
+     * @throws Exception
+     */
+    private ParametersRisk getRisk(OperationRiskAssessmentOffHeap assessment, List<String[]> rows) throws Exception {
+        for (String[] row : rows) {
+            assessment.add(row);
+        }
+        return assessment.calculate();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the estimation of risks from a sample.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentSampleTest {
+
+    /**
+     * Tests that the confidence intervals contain the exact risks.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIntervals() throws Exception {
+        for (double nulls : new double[] { 0d, 0.05d, 0.3d }) {
+            for (int size : new int[] { 100, 300 }) {
+                ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0.05d);
+                OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+                OperationRiskAssessmentSample sample = new OperationRiskAssessmentSample(thresholds, TestDataAdult.HEADER, size, 0.99d);
+                for (String[] row : TestDataAdult.getRows(nulls, 1L)) {
+                    assessment.add(row);
+                    sample.add(row);
+                }
+                sample.estimate();
+                ParametersRisk exact = assessment.calculate();
+                ParametersRisk lower = sample.getLowerBounds();
+                ParametersRisk upper = sample.getUpperBounds();
+                assertTrue(sample.getNumSampledRows() > 0 && sample.getNumSampledRows() <= size);
+                assertTrue(lower.getAverageRisk() <= exact.getAverageRisk() && exact.getAverageRisk() <= upper.getAverageRisk());
+                assertTrue(lower.getRecordsAtRisk() <= exact.getRecordsAtRisk() && exact.getRecordsAtRisk() <= upper.getRecordsAtRisk());
+            }
+        }
+    }
+
+    /**
+     * Tests that the risks are calculated exactly if all rows have been sampled.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExact() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0.05d);
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+        OperationRiskAssessmentSample sample = new OperationRiskAssessmentSample(thresholds, TestDataAdult.HEADER, 2000, 0.99d);
+        for (String[] row : TestDataAdult.getRows(0.05d, 1L)) {
+            assessment.add(row);
+            sample.add(row);
+        }
+        ParametersRisk estimate = sample.estimate();
+        ParametersRisk exact = assessment.calculate();
+        assertEquals(exact.getAverageRisk(), estimate.getAverageRisk(), 0d);
+        assertEquals(exact.getRecordsAtRisk(), estimate.getRecordsAtRisk(), 0d);
+        assertTrue(sample.isConclusive());
+    }
+
+    /**
+     * Tests that the estimate is conclusive if the risks are far from the thresholds.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConclusive() throws Exception {
+        List<String[]> rows = TestDataAdult.getRows(0d, 1L);
+        for (boolean satisfied : new boolean[] { true, false }) {
+            ParametersRisk thresholds = satisfied ? TestDataAdult.getThresholds(1d, 1d, 1d) : TestDataAdult.getThresholds(0.01d, 0.001d, 0.001d);
+            OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+            OperationRiskAssessmentSample sample = new OperationRiskAssessmentSample(thresholds, TestDataAdult.HEADER, 300, 0.99d);
+            for (String[] row : rows) {
+                assessment.add(row);
+                sample.add(row);
+            }
+            assertEquals(satisfied, sample.estimate().satisfies(thresholds));
+            assertEquals(satisfied, assessment.calculate().satisfies(thresholds));
+            assertTrue(sample.isConclusive());
+            assertFalse(sample.getNumSampledRows() == rows.size());
+        }
+    }
+}
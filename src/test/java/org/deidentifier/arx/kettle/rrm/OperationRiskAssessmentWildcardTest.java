@@ -0,0 +1,340 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the wildcard matching of equivalence classes against a pairwise matching of all classes.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentWildcardTest {
+
+    /** Code of the null value in all columns */
+    private static final int NULL = 0;
+
+    /**
+     * Tests the example from TestData, in which F, M and 4711, 4712 are encoded as 1, 2.
+     */
+    @Test
+    public void testExample() {
+        int[][] codes = { { 2, 1 }, { NULL, 1 }, { 1, 2 }, { 1, NULL }, { 2, NULL } };
+        long[] counts = { 3, 2, 1, 1, 1 };
+        OperationRiskAssessmentWildcard wildcard = create(codes, counts, new int[] { NULL, NULL });
+        assertSizes(new long[] { 6, 7, 2, 4, 6 }, wildcard.getSizes());
+        assertEquals(3, wildcard.getNumPatterns());
+    }
+
+    /**
+     * Tests classes without null values, which only match themselves.
+     */
+    @Test
+    public void testNoNulls() {
+        int[][] codes = { { 1, 1 }, { 1, 2 }, { 2, 1 } };
+        long[] counts = { 5, 1, 2 };
+        OperationRiskAssessmentWildcard wildcard = create(codes, counts, new int[] { -1, -1 });
+        assertSizes(counts, wildcard.getSizes());
+        ParametersRisk risk = wildcard.calculate();
+        assertEquals(3d / 8d, risk.getRecordsAtRisk(), 1e-9);
+        assertEquals(3d / 8d, risk.getAverageRisk(), 1e-9);
+    }
+
+    /**
+     * Tests that classes which only consist of null values are ignored.
+     */
+    @Test
+    public void testAllNulls() {
+        int[][] codes = { { NULL, NULL }, { 1, NULL }, { 1, 1 } };
+        long[] counts = { 10, 1, 1 };
+        OperationRiskAssessmentWildcard wildcard = create(codes, counts, new int[] { NULL, NULL });
+        assertSizes(new long[] { 0, 2, 2 }, wildcard.getSizes());
+        ParametersRisk risk = wildcard.calculate();
+        assertEquals(1d, risk.getRecordsAtRisk(), 1e-9);
+        assertEquals(0.5d, risk.getAverageRisk(), 1e-9);
+
+        // Only null values
+        wildcard = create(new int[][] { { NULL, NULL } }, new long[] { 3 }, new int[] { NULL, NULL });
+        assertSizes(new long[] { 0 }, wildcard.getSizes());
+        assertEquals(0d, wildcard.calculate().getAverageRisk(), 0d);
+    }
+
+    /**
+     * Tests classes with multiple null values, which match across different patterns.
+     */
+    @Test
+    public void testMultipleNulls() {
+        int[][] codes = { { 1, NULL, NULL }, { NULL, 2, NULL }, { NULL, NULL, 3 }, { 1, 2, 3 }, { 2, 2, 2 } };
+        long[] counts = { 1, 2, 4, 8, 16 };
+        OperationRiskAssessmentWildcard wildcard = create(codes, counts, new int[] { NULL, NULL, NULL });
+        assertSizes(getSizes(codes, counts, new int[] { NULL, NULL, NULL }), wildcard.getSizes());
+        assertSizes(new long[] { 15, 31, 15, 15, 18 }, wildcard.getSizes());
+    }
+
+    /**
+     * Tests empty input.
+     */
+    @Test
+    public void testEmpty() {
+        OperationRiskAssessmentWildcard wildcard = create(new int[0][], new long[0], new int[] { NULL, NULL });
+        assertEquals(0, wildcard.getSizes().length);
+        ParametersRisk risk = wildcard.calculate();
+        assertEquals(0d, risk.getRecordsAtRisk(), 0d);
+        assertEquals(0d, risk.getAverageRisk(), 0d);
+    }
+
+    /**
+     * Tests random classes with different numbers of columns and fractions of null values.
+     */
+    @Test
+    public void testRandom() {
+        Random random = new Random(0xDEADBEEFL);
+        for (int columns = 1; columns <= 6; columns++) {
+            for (double fraction : new double[] { 0d, 0.05d, 0.3d, 0.8d }) {
+                int[] nulls = new int[columns];
+                int[][] codes = getClasses(random, 500, columns, 4, fraction);
+                long[] counts = new long[codes.length];
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = 1 + random.nextInt(5);
+                }
+                OperationRiskAssessmentWildcard wildcard = create(codes, counts, nulls);
+                long[] expected = getSizes(codes, counts, nulls);
+                assertSizes(expected, wildcard.getSizes());
+                assertRisks(getRisks(expected, counts), wildcard.calculate());
+            }
+        }
+    }
+
+    /**
+     * Tests that matching classes without null values one by one yields the same results as adding them.
+     */
+    @Test
+    public void testMatch() {
+        Random random = new Random(0xCAFEL);
+        int[] nulls = new int[4];
+        int[][] codes = getClasses(random, 1000, nulls.length, 3, 0.2d);
+        long[] counts = new long[codes.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 1 + random.nextInt(3);
+        }
+        long[] expected = getSizes(codes, counts, nulls);
+
+        // Add classes with null values, match all others
+        OperationRiskAssessmentWildcard wildcard = new OperationRiskAssessmentWildcard(new ParametersRisk(), nulls);
+        List<Integer> partial = new ArrayList<>();
+        for (int i = 0; i < codes.length; i++) {
+            if (getNumNulls(codes[i], nulls) != 0) {
+                wildcard.add(codes[i], counts[i]);
+                partial.add(i);
+            }
+        }
+        for (int i = 0; i < codes.length; i++) {
+            if (getNumNulls(codes[i], nulls) == 0) {
+                assertEquals(expected[i], wildcard.match(codes[i], counts[i]));
+            }
+        }
+        long[] sizes = wildcard.getSizes();
+        for (int i = 0; i < sizes.length; i++) {
+            assertEquals(expected[partial.get(i)], sizes[i]);
+        }
+        assertRisks(getRisks(expected, counts), wildcard.calculate());
+    }
+
+    /**
+     * Tests that the incremental assessment of rows yields the same results as a pairwise matching.
+     */
+    @Test
+    public void testIncremental() {
+        Random random = new Random(0xBEEFL);
+        String[] header = { "a", "b", "c", "d" };
+        ParametersRisk thresholds = new ParametersRisk(new HashSet<>(Arrays.asList("a", "b", "d")));
+        OperationRiskAssessmentIncremental assessment = new OperationRiskAssessmentIncremental(thresholds, header);
+        int[] nulls = new int[3];
+        int[][] rows = getClasses(random, 2000, 3, 5, 0.1d);
+        for (int[] row : rows) {
+            String[] values = new String[header.length];
+            values[0] = getValue(row[0]);
+            values[1] = getValue(row[1]);
+            values[2] = "x";
+            values[3] = getValue(row[2]);
+            assessment.add(values);
+        }
+        long[] counts = new long[rows.length];
+        Arrays.fill(counts, 1L);
+        assertRisks(getRisks(getSizes(rows, counts, nulls), counts), assessment.calculate());
+    }
+
+    /**
+     * Asserts that risks are equal.
+     *
+     * @param expected
+     * @param actual
+     */
+    private void assertRisks(ParametersRisk expected, ParametersRisk actual) {
+        assertEquals(expected.getRecordsAtRisk(), actual.getRecordsAtRisk(), 1e-9);
+        assertEquals(expected.getAverageRisk(), actual.getAverageRisk(), 1e-9);
+    }
+
+    /**
+     * Asserts that sizes are equal.
+     *
+     * @param expected
+     * @param actual
+     */
+    private void assertSizes(long[] expected, long[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Size of class " + i, expected[i], actual[i]);
+        }
+    }
+
+    /**
+     * Creates an instance containing the given classes.
+     *
+     * @param codes
+     * @param counts
+     * @param nulls
+     * @return
+     */
+    private OperationRiskAssessmentWildcard create(int[][] codes, long[] counts, int[] nulls) {
+        OperationRiskAssessmentWildcard wildcard = new OperationRiskAssessmentWildcard(new ParametersRisk(), nulls);
+        for (int i = 0; i < codes.length; i++) {
+            wildcard.add(codes[i], counts[i]);
+        }
+        return wildcard;
+    }
+
+    /**
+     * Returns random distinct classes, in which code 0 denotes null.
+     *
+     * @param random
+     * @param number
+     * @param columns
+     * @param cardinality
+     * @param fraction Fraction of null values
+     * @return
+     */
+    private int[][] getClasses(Random random, int number, int columns, int cardinality, double fraction) {
+        List<List<Integer>> result = new ArrayList<>();
+        for (int i = 0; i < number; i++) {
+            List<Integer> tuple = new ArrayList<>();
+            for (int column = 0; column < columns; column++) {
+                tuple.add(random.nextDouble() < fraction ? NULL : 1 + random.nextInt(cardinality));
+            }
+            if (!result.contains(tuple)) {
+                result.add(tuple);
+            }
+        }
+        int[][] codes = new int[result.size()][columns];
+        for (int i = 0; i < codes.length; i++) {
+            for (int column = 0; column < columns; column++) {
+                codes[i][column] = result.get(i).get(column);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the number of null values in the given class.
+     *
+     * @param codes
+     * @param nulls
+     * @return
+     */
+    private int getNumNulls(int[] codes, int[] nulls) {
+        int result = 0;
+        for (int i = 0; i < codes.length; i++) {
+            result += codes[i] == nulls[i] ? 1 : 0;
+        }
+        return result;
+    }
+
+    /**
+     * Calculates risks from the given sizes.
+     *
+     * @param sizes
+     * @param counts
+     * @return
+     */
+    private ParametersRisk getRisks(long[] sizes, long[] counts) {
+        int k = OperationCellSuppression.getSizeThreshold(ParametersRisk.DEFAULT_HIGHEST_RISK);
+        long total = 0;
+        long recordsAtRisk = 0;
+        double averageRisk = 0d;
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i] != 0) {
+                total += counts[i];
+                averageRisk += (double) counts[i] / (double) sizes[i];
+                recordsAtRisk += sizes[i] < k ? counts[i] : 0;
+            }
+        }
+        ParametersRisk result = new ParametersRisk();
+        result.setRecordsAtRisk(total == 0 ? 0d : (double) recordsAtRisk / (double) total);
+        result.setAverageRisk(total == 0 ? 0d : averageRisk / (double) total);
+        return result;
+    }
+
+    /**
+     * Determines the size of each class by matching all pairs of classes.
+     *
+     * @param codes
+     * @param counts
+     * @param nulls
+     * @return
+     */
+    private long[] getSizes(int[][] codes, long[] counts, int[] nulls) {
+        long[] sizes = new long[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            if (getNumNulls(codes[i], nulls) == nulls.length) {
+                continue;
+            }
+            for (int j = 0; j < codes.length; j++) {
+                if (getNumNulls(codes[j], nulls) == nulls.length) {
+                    continue;
+                }
+                boolean matches = true;
+                for (int column = 0; column < nulls.length && matches; column++) {
+                    int code1 = codes[i][column];
+                    int code2 = codes[j][column];
+                    matches = code1 == code2 || code1 == nulls[column] || code2 == nulls[column];
+                }
+                sizes[i] += matches ? counts[j] : 0;
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the value represented by the given code.
+     *
+     * @param code
+     * @return
+     */
+    private String getValue(int code) {
+        return code == NULL ? OperationDataTransformer.MAGIC_NULL_VALUE : "v" + code;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests risk assessment for sliding windows.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class OperationRiskAssessmentWindowTest {
+
+    /**
+     * Tests that the risks of a window limited in size are the same as the risks of its rows.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCapacity() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0.05d);
+        List<String[]> rows = TestDataAdult.getRows(0.05d, 5L);
+        for (int capacity : new int[] { 1, 50, 300 }) {
+            OperationRiskAssessmentWindow window = new OperationRiskAssessmentWindow(thresholds, TestDataAdult.HEADER, capacity, 0);
+            for (int added = 1; added <= rows.size(); added++) {
+                window.add(rows.get(added - 1));
+                if (added % 37 == 0 || added == rows.size()) {
+                    int from = Math.max(0, added - capacity);
+                    assertEquals(added, window.getNumRows());
+                    assertEquals(added - from, window.getNumWindowRows());
+                    assertRisks(thresholds, rows.subList(from, added), window.calculate());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that rows leave a window limited in time once they are too old.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDuration() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0.05d);
+        List<String[]> rows = TestDataAdult.getRows();
+        OperationRiskAssessmentWindow window = new OperationRiskAssessmentWindow(thresholds, TestDataAdult.HEADER, 1000, 1);
+        for (String[] row : rows.subList(0, 500)) {
+            window.add(row);
+        }
+        assertEquals(500, window.getNumWindowRows());
+        Thread.sleep(1200L);
+        for (String[] row : rows.subList(500, 600)) {
+            window.add(row);
+        }
+        assertEquals(100, window.getNumWindowRows());
+        assertRisks(thresholds, rows.subList(500, 600), window.calculate());
+        Thread.sleep(1200L);
+        window.calculate();
+        assertEquals(0, window.getNumWindowRows());
+        assertEquals(600, window.getNumRows());
+    }
+
+    /**
+     * Tests that snapshot rows match their structure.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRow() throws Exception {
+        ParametersRisk thresholds = TestDataAdult.getThresholds(0.2d, 0.1d, 0.05d);
+        OperationRiskAssessmentWindow window = new OperationRiskAssessmentWindow(thresholds, TestDataAdult.HEADER, 10, 0);
+        for (String[] row : TestDataAdult.getRows().subList(0, 20)) {
+            window.add(row);
+        }
+        ParametersRisk risks = window.calculate();
+        Object[] row = window.getRow(risks);
+        assertEquals(OperationRiskAssessmentWindow.getRowMeta("step").size(), row.length);
+        assertEquals(20L, row[0]);
+        assertEquals(10L, row[1]);
+        assertEquals(risks.getAverageRisk(), (Double) row[2], 0d);
+        assertEquals(risks.getRecordsAtRisk(), (Double) row[3], 0d);
+        assertEquals(risks.satisfies(thresholds), row[4]);
+    }
+
+    /**
+     * Asserts that the risks are the same as the risks of the given rows.
+     *
+     * @param thresholds
+     * @param rows
+     * @param actual
+     */
+    private void assertRisks(ParametersRisk thresholds, List<String[]> rows, ParametersRisk actual) {
+        OperationRiskAssessmentIncremental expected = new OperationRiskAssessmentIncremental(thresholds, TestDataAdult.HEADER);
+        for (String[] row : rows) {
+            expected.add(row);
+        }
+        ParametersRisk risks = expected.calculate();
+        assertEquals(risks.getAverageRisk(), actual.getAverageRisk(), 1e-9d);
+        assertEquals(risks.getRecordsAtRisk(), actual.getRecordsAtRisk(), 1e-9d);
+    }
+}
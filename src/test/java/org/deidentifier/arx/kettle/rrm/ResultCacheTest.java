@@ -0,0 +1,277 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the on-disk cache of results.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+public class ResultCacheTest {
+
+    /** The buffered columns */
+    private static final String[] HEADER = { "age", "zip", "name" };
+
+    /** The null value */
+    private static final String   NULL   = OperationDataTransformer.MAGIC_NULL_VALUE;
+
+    /** The directory */
+    private File                  directory;
+
+    /**
+     * Creates the directory.
+     *
+     * @throws IOException
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("arx-cache-", "");
+        directory.delete();
+    }
+
+    /**
+     * Deletes the directory.
+     */
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Tests that a result is restored from its mask, also by a cache opened later on.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        DataBuffer data = getData(0);
+        DataSuppressionMask output = getOutput(data);
+        ResultCache cache = new ResultCache(directory, 1L << 20, getRisk(0.2d), new ParametersRuntime());
+        String fingerprint = cache.getFingerprint(data);
+        assertNull(cache.get(fingerprint, data));
+        cache.put(fingerprint, output);
+
+        cache = new ResultCache(directory, 1L << 20, getRisk(0.2d), new ParametersRuntime());
+        assertEquals(fingerprint, cache.getFingerprint(getData(0)));
+        DataSuppressionMask result = cache.get(fingerprint, data);
+        assertNotNull(result);
+        assertEquals(10, result.getNumSuppressedCells());
+        assertTrue(result.isSuppressed(0, 0));
+        for (int row = 0; row < data.getNumRows(); row++) {
+            for (int column = 0; column < HEADER.length; column++) {
+                assertEquals(output.isSuppressed(row, column), result.isSuppressed(row, column));
+            }
+        }
+    }
+
+    /**
+     * Tests that fingerprints depend on the quasi-identifiers and the settings only.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFingerprint() throws Exception {
+        ResultCache cache = new ResultCache(directory, 1L << 20, getRisk(0.2d), new ParametersRuntime());
+        String fingerprint = cache.getFingerprint(getData(0));
+
+        DataBuffer data = getData(0);
+        data.add(new String[] { "30", "81667", "x" });
+        assertFalse(fingerprint.equals(cache.getFingerprint(data)));
+
+        DataBuffer insensitive = new DataBuffer(HEADER);
+        for (int i = 0; i < 10; i++) {
+            insensitive.add(new String[] { "3" + (i % 3), "810" + (i % 2), "other" + i });
+        }
+        assertEquals(fingerprint, cache.getFingerprint(insensitive));
+
+        ResultCache other = new ResultCache(directory, 1L << 20, getRisk(0.1d), new ParametersRuntime());
+        assertFalse(fingerprint.equals(other.getFingerprint(getData(0))));
+        ParametersRuntime runtime = new ParametersRuntime();
+        runtime.setSecondsPerIteration(runtime.getSecondsPerIteration() + 1);
+        other = new ResultCache(directory, 1L << 20, getRisk(0.2d), runtime);
+        assertFalse(fingerprint.equals(other.getFingerprint(getData(0))));
+    }
+
+    /**
+     * Tests that the least recently used entries are evicted.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEviction() throws Exception {
+        ResultCache cache = new ResultCache(directory, 50L, getRisk(0.2d), new ParametersRuntime());
+        List<String> fingerprints = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            DataBuffer data = getData(i);
+            fingerprints.add(cache.getFingerprint(data));
+            cache.put(fingerprints.get(i), getOutput(data));
+            if (i == 2) {
+                assertNotNull(cache.get(fingerprints.get(1), getData(1)));
+            }
+        }
+        assertNull(cache.get(fingerprints.get(0), getData(0)));
+        assertNotNull(cache.get(fingerprints.get(1), getData(1)));
+        assertNull(cache.get(fingerprints.get(2), getData(2)));
+        assertNotNull(cache.get(fingerprints.get(3), getData(3)));
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    /**
+     * Tests that invalid entries are treated as misses and removed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInvalid() throws Exception {
+        DataBuffer data = getData(0);
+        ResultCache cache = new ResultCache(directory, 1L << 20, getRisk(0.2d), new ParametersRuntime());
+        String fingerprint = cache.getFingerprint(data);
+        cache.put(fingerprint, getOutput(data));
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        try (FileOutputStream out = new FileOutputStream(files[0])) {
+            out.write(new byte[] { 1, 2, 3 });
+        }
+        assertNull(cache.get(fingerprint, data));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    /**
+     * Tests that the directory is created with owner-only permissions and that directories which
+     * are writable by others are rejected.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPermissions() throws Exception {
+        new ResultCache(directory, 1L << 20, getRisk(0.2d), new ParametersRuntime());
+        if (!Files.getFileStore(directory.toPath()).supportsFileAttributeView("posix")) {
+            return;
+        }
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(directory.toPath()));
+        Files.setPosixFilePermissions(directory.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+        try {
+            new ResultCache(directory, 1L << 20, getRisk(0.2d), new ParametersRuntime());
+            assertTrue(false);
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Tests that cached results are reused only if the block satisfies the thresholds after
+     * applying them, and that ARX is used otherwise.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testVerification() throws Exception {
+        DataBuffer data = TestDataAdult.getBuffer(TestDataAdult.getRows().subList(0, 300));
+        ParametersRisk risk = TestDataAdult.getThresholds(0.5d, 0.1d, 0.05d);
+        ResultCache cache = new ResultCache(directory, 1L << 20, risk, new ParametersRuntime());
+        OperationCellSuppression operation = new OperationCellSuppression(risk, new ParametersRuntime(), cache);
+        DataSuppressionMask expected = operation.perform(data);
+        assertFalse(new OperationCellSuppressionPrecheck(risk, data).isSatisfied());
+        assertTrue(new OperationCellSuppressionPrecheck(risk, expected).isSatisfied());
+
+        // Reused
+        assertEquals(expected.getCells(), operation.perform(data).getCells());
+        assertTrue(cache.getStatistics().startsWith("1 hits"));
+
+        // Replaced by an entry which does not suppress any cells
+        String fingerprint = cache.getFingerprint(data);
+        cache.put(fingerprint, new DataSuppressionMask(data));
+        DataSuppressionMask result = operation.perform(data);
+        assertTrue(cache.getStatistics().startsWith("2 hits"));
+        assertTrue(result.getNumSuppressedCells() > 0);
+        assertTrue(new OperationCellSuppressionPrecheck(risk, result).isSatisfied());
+    }
+
+    /**
+     * Returns a block which differs for each seed.
+     *
+     * @param seed
+     * @return
+     * @throws IOException
+     */
+    private DataBuffer getData(int seed) throws IOException {
+        DataBuffer data = new DataBuffer(HEADER);
+        for (int i = 0; i < 10; i++) {
+            data.add(new String[] { "3" + (i % 3), "81" + seed + (i % 2), "name" + i });
+        }
+        return data;
+    }
+
+    /**
+     * Returns a result in which some cells are suppressed.
+     *
+     * @param data
+     * @return
+     */
+    private DataSuppressionMask getOutput(DataBuffer data) {
+        DataSuppressionMask result = new DataSuppressionMask(data);
+        for (int row = 0; row < data.getNumRows(); row++) {
+            if (row % 3 == 0) {
+                result.suppress(row, 0);
+                result.suppress(row, 1);
+            } else if (row % 4 == 1) {
+                result.suppress(row, 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns thresholds for age and zip.
+     *
+     * @param highestRisk
+     * @return
+     */
+    private ParametersRisk getRisk(double highestRisk) {
+        ParametersRisk result = new ParametersRisk(new HashSet<>(Arrays.asList("age", "zip")));
+        result.setHighestRisk(highestRisk);
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Kettle re-identification risk management step
+ * Copyright (C) 2018 TUM/MRI
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.kettle.rrm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Provides the rows of the adult test dataset, optionally with null values.
+ *
+ * @author Fabian Prasser
+ * @author Helmut Spengler
+ */
+class TestDataAdult {
+
+    /** The attributes */
+    static final String[] HEADER = { "sex", "age", "race", "marital-status", "education", "native-country",
+                                     "workclass", "occupation", "salary-class" };
+
+    /** The quasi-identifiers */
+    static final String[] QIS    = { "sex", "age", "race", "marital-status" };
+
+    /**
+     * Returns all rows, without the header.
+     *
+     * @return
+     * @throws IOException
+     */
+    static List<String[]> getRows() throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(TestDataAdult.class.getResourceAsStream("/adult1000.csv"),
+                                                                              StandardCharsets.UTF_8))) {
+            reader.readLine(); // Skip header
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                rows.add(line.split(";"));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns all rows, without the header. Values of quasi-identifiers are replaced
+     * by null with the given probability.
+     *
+     * @param nulls
+     * @param seed
+     * @return
+     * @throws IOException
+     */
+    static List<String[]> getRows(double nulls, long seed) throws IOException {
+        Random random = new Random(seed);
+        List<String[]> rows = getRows();
+        for (String[] row : rows) {
+            for (int column = 0; column < QIS.length; column++) {
+                if (random.nextDouble() < nulls) {
+                    row[column] = OperationDataTransformer.MAGIC_NULL_VALUE;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns a buffer with the given rows.
+     *
+     * @param rows
+     * @return
+     * @throws IOException
+     */
+    static DataBuffer getBuffer(List<String[]> rows) throws IOException {
+        DataBuffer buffer = new DataBuffer(HEADER);
+        for (String[] row : rows) {
+            buffer.add(row);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns thresholds for the quasi-identifiers.
+     *
+     * @param highestRisk
+     * @param averageRisk
+     * @param recordsAtRisk
+     * @return
+     */
+    static ParametersRisk getThresholds(double highestRisk, double averageRisk, double recordsAtRisk) {
+        ParametersRisk thresholds = new ParametersRisk(new HashSet<>(Arrays.asList(QIS)));
+        thresholds.setHighestRisk(highestRisk);
+        thresholds.setAverageRisk(averageRisk);
+        thresholds.setRecordsAtRisk(recordsAtRisk);
+        return thresholds;
+    }
+}